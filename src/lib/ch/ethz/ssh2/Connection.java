@@ -12,6 +12,8 @@ import java.util.Vector;
 
 import ch.ethz.ssh2.auth.AuthenticationManager;
 import ch.ethz.ssh2.channel.ChannelManager;
+import ch.ethz.ssh2.compression.CompressionCounters;
+import ch.ethz.ssh2.compression.CompressionFactory;
 import ch.ethz.ssh2.crypto.CryptoWishList;
 import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
 import ch.ethz.ssh2.crypto.digest.MAC;
@@ -98,6 +100,8 @@ import ch.ethz.ssh2.util.TimeoutService.TimeoutToken;
 
 	private boolean tcpNoDelay = false;
 
+	private int maxChannelWindowSize = 0;
+
 	private ProxyData proxyData = null;
 
 	private Vector connectionMonitors = new Vector();
@@ -173,7 +177,7 @@ import ch.ethz.ssh2.util.TimeoutService.TimeoutToken;
 			am = new AuthenticationManager(tm);
 
 		if (cm == null)
-			cm = new ChannelManager(tm);
+			cm = new ChannelManager(tm, maxChannelWindowSize);
 
 		if (user == null)
 			throw new IllegalArgumentException("user argument is null");
@@ -254,7 +258,7 @@ import ch.ethz.ssh2.util.TimeoutService.TimeoutToken;
 			am = new AuthenticationManager(tm);
 
 		if (cm == null)
-			cm = new ChannelManager(tm);
+			cm = new ChannelManager(tm, maxChannelWindowSize);
 
 		if (user == null)
 			throw new IllegalArgumentException("user argument is null");
@@ -300,7 +304,7 @@ import ch.ethz.ssh2.util.TimeoutService.TimeoutToken;
 			am = new AuthenticationManager(tm);
 
 		if (cm == null)
-			cm = new ChannelManager(tm);
+			cm = new ChannelManager(tm, maxChannelWindowSize);
 
 		if (user == null)
 			throw new IllegalArgumentException("user argument is null");
@@ -351,7 +355,7 @@ import ch.ethz.ssh2.util.TimeoutService.TimeoutToken;
 			am = new AuthenticationManager(tm);
 
 		if (cm == null)
-			cm = new ChannelManager(tm);
+			cm = new ChannelManager(tm, maxChannelWindowSize);
 
 		if (user == null)
 			throw new IllegalArgumentException("user argument is null");
@@ -419,7 +423,7 @@ import ch.ethz.ssh2.util.TimeoutService.TimeoutToken;
 			am = new AuthenticationManager(tm);
 
 		if (cm == null)
-			cm = new ChannelManager(tm);
+			cm = new ChannelManager(tm, maxChannelWindowSize);
 
 		if (user == null)
 			throw new IllegalArgumentException("user argument is null");
@@ -952,7 +956,7 @@ import ch.ethz.ssh2.util.TimeoutService.TimeoutToken;
 			am = new AuthenticationManager(tm);
 
 		if (cm == null)
-			cm = new ChannelManager(tm);
+			cm = new ChannelManager(tm, maxChannelWindowSize);
 
 		return am.getRemainingMethods(user);
 	}
@@ -1085,6 +1089,41 @@ import ch.ethz.ssh2.util.TimeoutService.TimeoutToken;
 		tm.sendMessage(pi.getPayload());
 	}
 
+	/**
+	 * Checks that the server is alive with a keepalive@openssh.com global
+	 * request, without opening a session. The connection is not locked
+	 * while waiting for the reply.
+	 * <p>
+	 * This method must only be called once the connection is authenticated.
+	 *
+	 * @param timeoutMillis how long to wait for the reply, 0 waits forever.
+	 * @return the round trip time in milliseconds, or -1 if the server did not
+	 *         reply in time.
+	 * @throws IOException if the connection is broken.
+	 */
+	public long ping(long timeoutMillis) throws IOException
+	{
+		ChannelManager channelManager;
+
+		synchronized (this)
+		{
+			if (tm == null)
+				throw new IllegalStateException("Cannot ping, you need to establish a connection first.");
+
+			if (!authenticated)
+				throw new IllegalStateException("Cannot ping, connection is not authenticated.");
+
+			channelManager = cm;
+		}
+
+		long start = System.currentTimeMillis();
+
+		if (!channelManager.requestKeepalive(timeoutMillis))
+			return -1;
+
+		return System.currentTimeMillis() - start;
+	}
+
 	/**
 	 * Removes duplicates from a String array, keeps only first occurence
 	 * of each element. Does not destroy order of elements; can handle nulls.
@@ -1132,6 +1171,51 @@ import ch.ethz.ssh2.util.TimeoutService.TimeoutToken;
 		return tmp;
 	}
 
+	/**
+	 * Enables the zlib compression in both directions, preferably the delayed
+	 * "zlib@openssh.com" variant. It is used only if the server supports it
+	 * and the Java runtime can do it. Must be called before connect().
+	 * 
+	 * @param enable
+	 */
+	public synchronized void setCompression(boolean enable)
+	{
+		String[] algos = enable ? CompressionFactory.getCompressorList() : CompressionFactory
+				.getDefaultCompressorList();
+		cryptoWishList.c2s_comp_algos = algos;
+		cryptoWishList.s2c_comp_algos = algos;
+	}
+
+	/**
+	 * Sets the upper limit for the local window of the channels. The window
+	 * of every channel starts small and grows up to this limit, if the
+	 * window turns out to be the bottleneck (e.g., on links with a long
+	 * round trip time). The receive buffers grow with the window, so this
+	 * limits the memory, that one channel can use. Must be called before
+	 * the channels are opened.
+	 * 
+	 * @param size
+	 *            in bytes, values smaller than the default window are ignored.
+	 */
+	public synchronized void setMaxChannelWindowSize(int size)
+	{
+		this.maxChannelWindowSize = size;
+	}
+
+	/**
+	 * Returns the counters of the payload bytes before and after the
+	 * compression.
+	 * 
+	 * @return a {@link CompressionCounters} object.
+	 */
+	public synchronized CompressionCounters getCompressionCounters()
+	{
+		if (tm == null)
+			throw new IllegalStateException(
+					"Cannot get compression counters, you need to establish a connection first.");
+		return tm.getCompressionCounters();
+	}
+
 	/**
 	 * Unless you know what you are doing, you will never need this.
 	 * 
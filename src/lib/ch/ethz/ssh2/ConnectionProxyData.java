@@ -0,0 +1,27 @@
+package ch.ethz.ssh2;
+
+/**
+ * A <code>ConnectionProxyData</code> object is used to tunnel a connection
+ * through a direct-tcpip channel of another, already authenticated
+ * {@link Connection} (a jump host). The hostname and port of the tunnelled
+ * connection are resolved and connected by the jump host.
+ * 
+ * @see Connection#setProxyData(ProxyData)
+ */
+public class ConnectionProxyData implements ProxyData
+{
+	public final Connection connection;
+
+	/**
+	 * @param connection
+	 *            an authenticated connection to the jump host, it must stay
+	 *            open as long as the tunnelled connection is used.
+	 */
+	public ConnectionProxyData(Connection connection)
+	{
+		if (connection == null)
+			throw new IllegalArgumentException("connection must be non-null");
+
+		this.connection = connection;
+	}
+}
@@ -1,6 +1,8 @@
 
 package ch.ethz.ssh2.channel;
 
+import java.io.IOException;
+
 /**
  * Channel.
  * 
@@ -42,6 +44,15 @@ public class Channel
 
 	static final int CHANNEL_BUFFER_SIZE = 30000;
 
+	/* The stdout/stderr buffers start with this size and grow when needed */
+	static final int INITIAL_BUFFER_SIZE = 4096;
+
+	/*
+	 * The window grows, if the remote side waited for our window adjust
+	 * for at least 1/STALL_RATIO of the time between two adjusts.
+	 */
+	static final int STALL_RATIO = 4;
+
 	/*
 	 * To achieve correctness, the following rules have to be respected when
 	 * accessing this object:
@@ -117,8 +128,19 @@ public class Channel
 	int localMaxPacketSize = -1;
 	int remoteMaxPacketSize = -1;
 
-	final byte[] stdoutBuffer = new byte[CHANNEL_BUFFER_SIZE];
-	final byte[] stderrBuffer = new byte[CHANNEL_BUFFER_SIZE];
+	/* The current size of the local window, it is tuned up to maxWindowSize */
+	int windowSize = CHANNEL_BUFFER_SIZE;
+	int maxWindowSize = CHANNEL_BUFFER_SIZE;
+
+	/* Window tuning statistics */
+	long lastWindowAdjustTime = 0;
+	long receivedSinceWindowAdjust = 0;
+	boolean windowExhausted = false;
+	boolean rttPending = false;
+	long rtt = -1;
+
+	byte[] stdoutBuffer = new byte[INITIAL_BUFFER_SIZE];
+	byte[] stderrBuffer = new byte[INITIAL_BUFFER_SIZE];
 
 	int stdoutReadpos = 0;
 	int stdoutWritepos = 0;
@@ -147,7 +169,9 @@ public class Channel
 	{
 		this.cm = cm;
 
-		this.localWindow = CHANNEL_BUFFER_SIZE;
+		this.maxWindowSize = Math.max(cm.getMaxWindowSize(), CHANNEL_BUFFER_SIZE);
+		this.windowSize = CHANNEL_BUFFER_SIZE;
+		this.localWindow = windowSize;
 		this.localMaxPacketSize = 35000 - 1024; // leave enough slack
 
 		this.stdinStream = new ChannelOutputStream(this);
@@ -204,4 +228,113 @@ public class Channel
 				this.reasonClosed = reasonClosed;
 		}
 	}
+
+	/*
+	 * The following methods may only be called while holding the lock on the
+	 * channel.
+	 */
+
+	/**
+	 * Accounts the received data against the local window and returns the
+	 * buffer, that is big enough to append len bytes at writepos.
+	 */
+	byte[] windowConsumed(byte[] buffer, int writepos, int len) throws IOException
+	{
+		if (localWindow < len)
+			throw new IOException("Remote sent too much data, does not fit into window.");
+
+		localWindow -= len;
+		receivedSinceWindowAdjust += len;
+
+		if (rttPending)
+		{
+			/* first data after the remote side waited for our window adjust */
+			rtt = System.currentTimeMillis() - lastWindowAdjustTime;
+			rttPending = false;
+		}
+
+		if (localWindow < localMaxPacketSize)
+			windowExhausted = true;
+
+		if (writepos + len <= buffer.length)
+			return buffer;
+
+		/*
+		 * localWindow guarantees that the unread data never need more than
+		 * windowSize and the caller compacts the buffer before it grows
+		 */
+		int newSize = Math.max(writepos + len, Math.min(buffer.length * 2, windowSize));
+		byte[] newBuffer = new byte[newSize];
+		System.arraycopy(buffer, 0, newBuffer, 0, writepos);
+		return newBuffer;
+	}
+
+	int stdoutUnread()
+	{
+		return stdoutWritepos - stdoutReadpos;
+	}
+
+	int stderrUnread()
+	{
+		return stderrWritepos - stderrReadpos;
+	}
+
+	/**
+	 * Moves the unread data to the start of the buffer. It is done only when
+	 * the buffer is empty, half of it was read or the new data don't fit at
+	 * the end, so that the data are not moved after every read.
+	 */
+	void compactStdout()
+	{
+		if (stdoutReadpos != stdoutWritepos)
+			System.arraycopy(stdoutBuffer, stdoutReadpos, stdoutBuffer, 0, stdoutWritepos - stdoutReadpos);
+
+		stdoutWritepos -= stdoutReadpos;
+		stdoutReadpos = 0;
+	}
+
+	void compactStderr()
+	{
+		if (stderrReadpos != stderrWritepos)
+			System.arraycopy(stderrBuffer, stderrReadpos, stderrBuffer, 0, stderrWritepos - stderrReadpos);
+
+		stderrWritepos -= stderrReadpos;
+		stderrReadpos = 0;
+	}
+
+	/**
+	 * Called before a window adjust is sent. The window is doubled, if the
+	 * remote side had to wait for the adjust for a significant part of the
+	 * last interval (the window is smaller than the bandwidth-delay product
+	 * of the link) and the reader keeps up with the data. Returns the new
+	 * window size.
+	 */
+	int tuneWindow()
+	{
+		long now = System.currentTimeMillis();
+		long interval = now - lastWindowAdjustTime;
+
+		if (windowExhausted && rtt >= 0 && lastWindowAdjustTime != 0 && windowSize < maxWindowSize)
+		{
+			boolean readerKeepsUp = Math.max(stdoutUnread(), stderrUnread()) < windowSize / 2;
+
+			if (readerKeepsUp && rtt * STALL_RATIO >= interval)
+			{
+				long throughput = (interval > 0) ? receivedSinceWindowAdjust * 1000 / interval : -1;
+
+				windowSize = (int) Math.min((long) windowSize * 2, maxWindowSize);
+
+				if (ChannelManager.log.isEnabled())
+					ChannelManager.log.log(50, "Channel " + localID + ": window grows to " + windowSize + " (rtt "
+							+ rtt + " ms, " + throughput + " bytes/s)");
+			}
+		}
+
+		rttPending = windowExhausted;
+		windowExhausted = false;
+		receivedSinceWindowAdjust = 0;
+		lastWindowAdjustTime = now;
+
+		return windowSize;
+	}
 }
@@ -11,6 +11,7 @@ import ch.ethz.ssh2.packets.PacketChannelOpenConfirmation;
 import ch.ethz.ssh2.packets.PacketChannelOpenFailure;
 import ch.ethz.ssh2.packets.PacketGlobalCancelForwardRequest;
 import ch.ethz.ssh2.packets.PacketGlobalForwardRequest;
+import ch.ethz.ssh2.packets.PacketGlobalKeepaliveRequest;
 import ch.ethz.ssh2.packets.PacketOpenDirectTCPIPChannel;
 import ch.ethz.ssh2.packets.PacketOpenSessionChannel;
 import ch.ethz.ssh2.packets.PacketSessionExecCommand;
@@ -33,7 +34,7 @@ import ch.ethz.ssh2.transport.TransportManager;
  */
 @SuppressWarnings({"unchecked", "deprecation", "serial"}) public class ChannelManager implements MessageHandler
 {
-	private static final Logger log = Logger.getLogger(ChannelManager.class);
+	static final Logger log = Logger.getLogger(ChannelManager.class);
 
 	private HashMap x11_magic_cookies = new HashMap();
 
@@ -44,6 +45,11 @@ import ch.ethz.ssh2.transport.TransportManager;
 	private boolean shutdown = false;
 	private int globalSuccessCounter = 0;
 	private int globalFailedCounter = 0;
+	/* Replies to the global requests, that timed out, they come in the order of the requests */
+	private int globalRepliesPending = 0;
+
+	/* The replies to the global requests can't be told apart, only one request may wait for them */
+	private final Object globalRequestLock = new Object();
 
 	private HashMap remoteForwardings = new HashMap();
 
@@ -51,12 +57,29 @@ import ch.ethz.ssh2.transport.TransportManager;
 
 	private boolean listenerThreadsAllowed = true;
 
+	private final int maxWindowSize;
+
 	public ChannelManager(TransportManager tm)
+	{
+		this(tm, Channel.CHANNEL_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param maxWindowSize
+	 *            upper limit for the auto-tuned local window of the channels.
+	 */
+	public ChannelManager(TransportManager tm, int maxWindowSize)
 	{
 		this.tm = tm;
+		this.maxWindowSize = maxWindowSize;
 		tm.registerMessageHandler(this, 80, 100);
 	}
 
+	public int getMaxWindowSize()
+	{
+		return maxWindowSize;
+	}
+
 	private Channel getChannel(int id)
 	{
 		synchronized (channels)
@@ -461,33 +484,97 @@ import ch.ethz.ssh2.transport.TransportManager;
 			remoteForwardings.put(key, rfd);
 		}
 
-		synchronized (channels)
+		synchronized (globalRequestLock)
 		{
-			globalSuccessCounter = globalFailedCounter = 0;
-		}
+			synchronized (channels)
+			{
+				globalSuccessCounter = globalFailedCounter = 0;
+			}
 
-		PacketGlobalForwardRequest pgf = new PacketGlobalForwardRequest(true, bindAddress, bindPort);
-		tm.sendMessage(pgf.getPayload());
+			PacketGlobalForwardRequest pgf = new PacketGlobalForwardRequest(true, bindAddress, bindPort);
+			tm.sendMessage(pgf.getPayload());
 
-		if (log.isEnabled())
-			log.log(50, "Requesting a remote forwarding ('" + bindAddress + "', " + bindPort + ")");
+			if (log.isEnabled())
+				log.log(50, "Requesting a remote forwarding ('" + bindAddress + "', " + bindPort + ")");
 
-		try
-		{
-			waitForGlobalSuccessOrFailure();
-		}
-		catch (IOException e)
-		{
-			synchronized (remoteForwardings)
+			try
 			{
-				remoteForwardings.remove(rfd);
+				waitForGlobalSuccessOrFailure();
+			}
+			catch (IOException e)
+			{
+				synchronized (remoteForwardings)
+				{
+					remoteForwardings.remove(rfd);
+				}
+				throw e;
 			}
-			throw e;
 		}
 
 		return bindPort;
 	}
 
+	/**
+	 * Sends a keepalive@openssh.com global request and waits for the reply.
+	 * A success or a failure both mean, that the server is alive. A reply,
+	 * that comes after the timeout, is dropped and not taken as the reply to
+	 * the next global request.
+	 *
+	 * @param timeoutMillis how long to wait for the reply, 0 waits forever.
+	 * @return false if there was no reply in time.
+	 * @throws IOException if the connection is broken.
+	 */
+	public boolean requestKeepalive(long timeoutMillis) throws IOException
+	{
+		synchronized (globalRequestLock)
+		{
+			synchronized (channels)
+			{
+				globalSuccessCounter = globalFailedCounter = 0;
+			}
+
+			tm.sendMessage(new PacketGlobalKeepaliveRequest().getPayload());
+
+			if (log.isEnabled())
+				log.log(80, "Sending " + PacketGlobalKeepaliveRequest.REQUEST_NAME);
+
+			long end = System.currentTimeMillis() + timeoutMillis;
+
+			synchronized (channels)
+			{
+				while ((globalSuccessCounter == 0) && (globalFailedCounter == 0))
+				{
+					if (shutdown)
+						throw new IOException("The connection is being shutdown");
+
+					long wait = 0;
+
+					if (timeoutMillis > 0)
+					{
+						wait = end - System.currentTimeMillis();
+						if (wait <= 0)
+						{
+							globalRepliesPending++;
+							return false;
+						}
+					}
+
+					try
+					{
+						channels.wait(wait);
+					}
+					catch (InterruptedException ignore)
+					{
+						Thread.currentThread().interrupt();
+						globalRepliesPending++;
+						return false;
+					}
+				}
+				return true;
+			}
+		}
+	}
+
 	public void requestCancelGlobalForward(int bindPort) throws IOException
 	{
 		RemoteForwardingData rfd = null;
@@ -500,19 +587,23 @@ import ch.ethz.ssh2.transport.TransportManager;
 				throw new IOException("Sorry, there is no known remote forwarding for remote port " + bindPort);
 		}
 
-		synchronized (channels)
+		synchronized (globalRequestLock)
 		{
-			globalSuccessCounter = globalFailedCounter = 0;
-		}
+			synchronized (channels)
+			{
+				globalSuccessCounter = globalFailedCounter = 0;
+			}
 
-		PacketGlobalCancelForwardRequest pgcf = new PacketGlobalCancelForwardRequest(true, rfd.bindAddress,
-				rfd.bindPort);
-		tm.sendMessage(pgcf.getPayload());
+			PacketGlobalCancelForwardRequest pgcf = new PacketGlobalCancelForwardRequest(true, rfd.bindAddress,
+					rfd.bindPort);
+			tm.sendMessage(pgcf.getPayload());
 
-		if (log.isEnabled())
-			log.log(50, "Requesting cancelation of remote forward ('" + rfd.bindAddress + "', " + rfd.bindPort + ")");
+			if (log.isEnabled())
+				log.log(50, "Requesting cancelation of remote forward ('" + rfd.bindAddress + "', " + rfd.bindPort
+						+ ")");
 
-		waitForGlobalSuccessOrFailure();
+			waitForGlobalSuccessOrFailure();
+		}
 
 		/* Only now we are sure that no more forwarded connections will arrive */
 
@@ -772,10 +863,10 @@ import ch.ethz.ssh2.transport.TransportManager;
 				throw new IOException("Got SSH_MSG_CHANNEL_EXTENDED_DATA, but channel is not in correct state ("
 						+ c.state + ")");
 
-			if (c.localWindow < len)
-				throw new IOException("Remote sent too much data, does not fit into window.");
+			if (c.stderrWritepos + len > c.stderrBuffer.length)
+				c.compactStderr();
 
-			c.localWindow -= len;
+			c.stderrBuffer = c.windowConsumed(c.stderrBuffer, c.stderrWritepos, len);
 
 			System.arraycopy(msg, 13, c.stderrBuffer, c.stderrWritepos, len);
 			c.stderrWritepos += len;
@@ -928,13 +1019,9 @@ import ch.ethz.ssh2.transport.TransportManager;
 				System.arraycopy(c.stdoutBuffer, c.stdoutReadpos, target, off, copylen);
 				c.stdoutReadpos += copylen;
 
-				if (c.stdoutReadpos != c.stdoutWritepos)
-
-					System.arraycopy(c.stdoutBuffer, c.stdoutReadpos, c.stdoutBuffer, 0, c.stdoutWritepos
-							- c.stdoutReadpos);
-
-				c.stdoutWritepos -= c.stdoutReadpos;
-				c.stdoutReadpos = 0;
+				/* compact only after half of the buffer was read, not after every read */
+				if (c.stdoutReadpos == c.stdoutWritepos || c.stdoutReadpos > c.stdoutBuffer.length / 2)
+					c.compactStdout();
 			}
 			else
 			{
@@ -942,22 +1029,17 @@ import ch.ethz.ssh2.transport.TransportManager;
 				System.arraycopy(c.stderrBuffer, c.stderrReadpos, target, off, copylen);
 				c.stderrReadpos += copylen;
 
-				if (c.stderrReadpos != c.stderrWritepos)
-
-					System.arraycopy(c.stderrBuffer, c.stderrReadpos, c.stderrBuffer, 0, c.stderrWritepos
-							- c.stderrReadpos);
-
-				c.stderrWritepos -= c.stderrReadpos;
-				c.stderrReadpos = 0;
+				if (c.stderrReadpos == c.stderrWritepos || c.stderrReadpos > c.stderrBuffer.length / 2)
+					c.compactStderr();
 			}
 
 			if (c.state != Channel.STATE_OPEN)
 				return copylen;
 
-			if (c.localWindow < ((Channel.CHANNEL_BUFFER_SIZE + 1) / 2))
+			if (c.localWindow < ((c.windowSize + 1) / 2))
 			{
-				int minFreeSpace = Math.min(Channel.CHANNEL_BUFFER_SIZE - c.stdoutWritepos, Channel.CHANNEL_BUFFER_SIZE
-						- c.stderrWritepos);
+				int windowSize = c.tuneWindow();
+				int minFreeSpace = Math.min(windowSize - c.stdoutUnread(), windowSize - c.stderrUnread());
 
 				increment = minFreeSpace - c.localWindow;
 				c.localWindow = minFreeSpace;
@@ -1028,10 +1110,10 @@ import ch.ethz.ssh2.transport.TransportManager;
 			if (c.state != Channel.STATE_OPEN)
 				throw new IOException("Got SSH_MSG_CHANNEL_DATA, but channel is not in correct state (" + c.state + ")");
 
-			if (c.localWindow < len)
-				throw new IOException("Remote sent too much data, does not fit into window.");
+			if (c.stdoutWritepos + len > c.stdoutBuffer.length)
+				c.compactStdout();
 
-			c.localWindow -= len;
+			c.stdoutBuffer = c.windowConsumed(c.stdoutBuffer, c.stdoutWritepos, len);
 
 			System.arraycopy(msg, 9, c.stdoutBuffer, c.stdoutWritepos, len);
 			c.stdoutWritepos += len;
@@ -1488,8 +1570,16 @@ import ch.ethz.ssh2.transport.TransportManager;
 	{
 		synchronized (channels)
 		{
-			globalSuccessCounter++;
-			channels.notifyAll();
+			if (globalRepliesPending > 0)
+			{
+				/* the late reply to a request, that does not wait anymore */
+				globalRepliesPending--;
+			}
+			else
+			{
+				globalSuccessCounter++;
+				channels.notifyAll();
+			}
 		}
 
 		if (log.isEnabled())
@@ -1500,8 +1590,16 @@ import ch.ethz.ssh2.transport.TransportManager;
 	{
 		synchronized (channels)
 		{
-			globalFailedCounter++;
-			channels.notifyAll();
+			if (globalRepliesPending > 0)
+			{
+				/* the late reply to a request, that does not wait anymore */
+				globalRepliesPending--;
+			}
+			else
+			{
+				globalFailedCounter++;
+				channels.notifyAll();
+			}
 		}
 
 		if (log.isEnabled())
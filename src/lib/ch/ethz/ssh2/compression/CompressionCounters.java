@@ -0,0 +1,60 @@
+package ch.ethz.ssh2.compression;
+
+/**
+ * Counts the payload bytes before and after the compression, to see how
+ * much the compression saves.
+ */
+public class CompressionCounters
+{
+	private long sentRaw = 0;
+
+	private long sentCompressed = 0;
+
+	private long receivedRaw = 0;
+
+	private long receivedCompressed = 0;
+
+	public synchronized void addSent(int raw, int compressed)
+	{
+		sentRaw += raw;
+		sentCompressed += compressed;
+	}
+
+	public synchronized void addReceived(int raw, int compressed)
+	{
+		receivedRaw += raw;
+		receivedCompressed += compressed;
+	}
+
+	/**
+	 * @return sent payload bytes before the compression.
+	 */
+	public synchronized long getSentRaw()
+	{
+		return sentRaw;
+	}
+
+	/**
+	 * @return sent payload bytes after the compression.
+	 */
+	public synchronized long getSentCompressed()
+	{
+		return sentCompressed;
+	}
+
+	/**
+	 * @return received payload bytes after the decompression.
+	 */
+	public synchronized long getReceivedRaw()
+	{
+		return receivedRaw;
+	}
+
+	/**
+	 * @return received payload bytes, as they came over the wire.
+	 */
+	public synchronized long getReceivedCompressed()
+	{
+		return receivedCompressed;
+	}
+}
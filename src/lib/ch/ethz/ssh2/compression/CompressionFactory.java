@@ -0,0 +1,55 @@
+package ch.ethz.ssh2.compression;
+
+/**
+ * CompressionFactory.
+ */
+public class CompressionFactory
+{
+	public static final String NONE = "none";
+
+	public static final String ZLIB = "zlib";
+
+	public static final String ZLIB_DELAYED = "zlib@openssh.com";
+
+	public static String[] getDefaultCompressorList()
+	{
+		return new String[] { NONE };
+	}
+
+	/**
+	 * @return the compression algorithms in the order of preference, if the
+	 *         compression should be used.
+	 */
+	public static String[] getCompressorList()
+	{
+		if (Zlib.isSupported() == false)
+			return getDefaultCompressorList();
+		return new String[] { ZLIB_DELAYED, ZLIB, NONE };
+	}
+
+	public static void checkCompressorList(String[] algos)
+	{
+		for (int i = 0; i < algos.length; i++)
+		{
+			if (NONE.equals(algos[i]))
+				continue;
+			if ((ZLIB.equals(algos[i]) || ZLIB_DELAYED.equals(algos[i])) && Zlib.isSupported())
+				continue;
+			throw new IllegalArgumentException("Unknown compression algorithm '" + algos[i] + "'");
+		}
+	}
+
+	/**
+	 * @return the compressor or null for "none".
+	 */
+	public static ICompressor createCompressor(String type)
+	{
+		if (type == null || NONE.equals(type))
+			return null;
+		if (ZLIB.equals(type))
+			return new Zlib(false);
+		if (ZLIB_DELAYED.equals(type))
+			return new Zlib(true);
+		throw new IllegalArgumentException("Unknown compression algorithm '" + type + "'");
+	}
+}
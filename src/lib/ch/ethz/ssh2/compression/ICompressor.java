@@ -0,0 +1,30 @@
+package ch.ethz.ssh2.compression;
+
+import java.io.IOException;
+
+/**
+ * Compression of the packet payload, that is negotiated during the key
+ * exchange.
+ */
+public interface ICompressor
+{
+	/**
+	 * Delayed compression (zlib@openssh.com) starts only after the
+	 * user authentication was successful.
+	 */
+	public boolean isDelayed();
+
+	/**
+	 * Compresses the payload. Returns a buffer with the compressed data,
+	 * the buffer may be reused by the next call. The length of the
+	 * compressed data is returned in outLen[0].
+	 */
+	public byte[] compress(byte[] buf, int off, int len, int[] outLen) throws IOException;
+
+	/**
+	 * Uncompresses the payload. Returns a buffer with the uncompressed data,
+	 * the buffer may be reused by the next call. The length of the
+	 * uncompressed data is returned in outLen[0].
+	 */
+	public byte[] uncompress(byte[] buf, int off, int len, int[] outLen) throws IOException;
+}
@@ -0,0 +1,135 @@
+package ch.ethz.ssh2.compression;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * "zlib" and "zlib@openssh.com" compression with java.util.zip.
+ * <p>
+ * Every packet must be flushed with Z_SYNC_FLUSH, that is available in the
+ * Deflater only since Java 7. It is called through reflection and the zlib
+ * compression is not offered on older runtimes.
+ */
+public class Zlib implements ICompressor
+{
+	/* Deflater.SYNC_FLUSH */
+	private static final int SYNC_FLUSH = 2;
+
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+
+	/* the biggest packet, that the transport accepts */
+	private static final int MAX_UNCOMPRESSED_SIZE = 35000;
+
+	private static final Method deflateWithFlush = findDeflateWithFlush();
+
+	private final boolean delayed;
+
+	private final Deflater deflater = new Deflater(6);
+
+	private final Inflater inflater = new Inflater();
+
+	private byte[] compressBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+	private byte[] uncompressBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+	public Zlib(boolean delayed)
+	{
+		this.delayed = delayed;
+	}
+
+	private static Method findDeflateWithFlush()
+	{
+		try
+		{
+			return Deflater.class.getMethod("deflate", new Class<?>[] { byte[].class, int.class, int.class, int.class });
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @return whether the zlib compression can be used in this runtime.
+	 */
+	public static boolean isSupported()
+	{
+		return deflateWithFlush != null;
+	}
+
+	public boolean isDelayed()
+	{
+		return delayed;
+	}
+
+	public byte[] compress(byte[] buf, int off, int len, int[] outLen) throws IOException
+	{
+		deflater.setInput(buf, off, len);
+		int pos = 0;
+		while (true)
+		{
+			pos += deflate(compressBuffer, pos, compressBuffer.length - pos);
+			if (pos < compressBuffer.length)
+				break;
+			compressBuffer = grow(compressBuffer);
+		}
+		outLen[0] = pos;
+		return compressBuffer;
+	}
+
+	public byte[] uncompress(byte[] buf, int off, int len, int[] outLen) throws IOException
+	{
+		inflater.setInput(buf, off, len);
+		int pos = 0;
+		try
+		{
+			while (true)
+			{
+				int n = inflater.inflate(uncompressBuffer, pos, uncompressBuffer.length - pos);
+				pos += n;
+				if (pos < uncompressBuffer.length && (n == 0 || inflater.needsInput()))
+					break;
+				if (pos == uncompressBuffer.length)
+				{
+					if (uncompressBuffer.length >= MAX_UNCOMPRESSED_SIZE)
+						throw new IOException("Uncompressed packet is too big.");
+					uncompressBuffer = grow(uncompressBuffer);
+				}
+			}
+		}
+		catch (DataFormatException e)
+		{
+			throw (IOException) new IOException("Remote sent corrupt compressed data.").initCause(e);
+		}
+		outLen[0] = pos;
+		return uncompressBuffer;
+	}
+
+	private int deflate(byte[] out, int off, int len) throws IOException
+	{
+		try
+		{
+			return ((Integer) deflateWithFlush.invoke(deflater, new Object[] { out, new Integer(off),
+					new Integer(len), new Integer(SYNC_FLUSH) })).intValue();
+		}
+		catch (IllegalAccessException e)
+		{
+			throw (IOException) new IOException("Compression failed.").initCause(e);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw (IOException) new IOException("Compression failed.").initCause(e.getCause());
+		}
+	}
+
+	private static byte[] grow(byte[] buffer)
+	{
+		byte[] tmp = new byte[buffer.length * 2];
+		System.arraycopy(buffer, 0, tmp, 0, buffer.length);
+		return tmp;
+	}
+}
@@ -1,6 +1,9 @@
 
 package ch.ethz.ssh2.crypto.cipher;
 
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -17,34 +20,41 @@ import java.util.Vector;
 		int blocksize;
 		int keysize;
 		String cipherClass;
+		String jceAlgorithm;
 
-		public CipherEntry(String type, int blockSize, int keySize, String cipherClass)
+		public CipherEntry(String type, int blockSize, int keySize, String cipherClass, String jceAlgorithm)
 		{
 			this.type = type;
 			this.blocksize = blockSize;
 			this.keysize = keySize;
 			this.cipherClass = cipherClass;
+			this.jceAlgorithm = jceAlgorithm;
 		}
 	}
 
 	static Vector ciphers = new Vector();
 
+	/* type -> whether the JCE provider can do it */
+	private static final Map<String, Boolean> jceAvailable = new HashMap<String, Boolean>();
+
+	private static boolean useJce = true;
+
 	static
 	{
 		/* Higher Priority First */
 
-		ciphers.addElement(new CipherEntry("aes256-ctr", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes192-ctr", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes128-ctr", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("blowfish-ctr", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish"));
+		ciphers.addElement(new CipherEntry("aes256-ctr", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes192-ctr", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes128-ctr", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("blowfish-ctr", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish", "Blowfish"));
 
-		ciphers.addElement(new CipherEntry("aes256-cbc", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes192-cbc", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("aes128-cbc", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES"));
-		ciphers.addElement(new CipherEntry("blowfish-cbc", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish"));
+		ciphers.addElement(new CipherEntry("aes256-cbc", 16, 32, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes192-cbc", 16, 24, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("aes128-cbc", 16, 16, "ch.ethz.ssh2.crypto.cipher.AES", "AES"));
+		ciphers.addElement(new CipherEntry("blowfish-cbc", 8, 16, "ch.ethz.ssh2.crypto.cipher.BlowFish", "Blowfish"));
 		
-		ciphers.addElement(new CipherEntry("3des-ctr", 8, 24, "ch.ethz.ssh2.crypto.cipher.DESede"));
-		ciphers.addElement(new CipherEntry("3des-cbc", 8, 24, "ch.ethz.ssh2.crypto.cipher.DESede"));
+		ciphers.addElement(new CipherEntry("3des-ctr", 8, 24, "ch.ethz.ssh2.crypto.cipher.DESede", "DESede"));
+		ciphers.addElement(new CipherEntry("3des-cbc", 8, 24, "ch.ethz.ssh2.crypto.cipher.DESede", "DESede"));
 	}
 
 	public static String[] getDefaultCipherList()
@@ -64,11 +74,34 @@ import java.util.Vector;
 			getEntry(cipherCandidates[i]);
 	}
 
+	/**
+	 * The ciphers are taken from the javax.crypto provider of the Java runtime,
+	 * if it supports them, otherwise the pure Java implementations from this
+	 * package are used. Set it to false to always use the latter.
+	 */
+	public static synchronized void setUseJce(boolean use)
+	{
+		useJce = use;
+	}
+
 	public static BlockCipher createCipher(String type, boolean encrypt, byte[] key, byte[] iv)
 	{
+		CipherEntry ce = getEntry(type);
+
+		if (isJceAvailable(ce))
+		{
+			try
+			{
+				return new JceBlockCipher(ce.jceAlgorithm, getMode(type), encrypt, key, iv);
+			}
+			catch (GeneralSecurityException e)
+			{
+				/* fall back to the pure Java cipher */
+			}
+		}
+
 		try
 		{
-			CipherEntry ce = getEntry(type);
 			Class cc = Class.forName(ce.cipherClass);
 			BlockCipher bc = (BlockCipher) cc.newInstance();
 
@@ -90,6 +123,43 @@ import java.util.Vector;
 		}
 	}
 
+	private static String getMode(String type)
+	{
+		if (type.endsWith("-cbc"))
+			return "CBC";
+		if (type.endsWith("-ctr"))
+			return "CTR";
+		throw new IllegalArgumentException("Cannot instantiate " + type);
+	}
+
+	/**
+	 * Checks once per cipher type, whether the provider can initialize it. With
+	 * the restricted crypto policy e.g. the 256 bit AES keys are not allowed.
+	 */
+	private static synchronized boolean isJceAvailable(CipherEntry ce)
+	{
+		if (!useJce)
+			return false;
+
+		Boolean available = jceAvailable.get(ce.type);
+
+		if (available == null)
+		{
+			try
+			{
+				new JceBlockCipher(ce.jceAlgorithm, getMode(ce.type), true, new byte[ce.keysize],
+						new byte[ce.blocksize]);
+				available = Boolean.TRUE;
+			}
+			catch (Exception e)
+			{
+				available = Boolean.FALSE;
+			}
+			jceAvailable.put(ce.type, available);
+		}
+		return available.booleanValue();
+	}
+
 	private static CipherEntry getEntry(String type)
 	{
 		for (int i = 0; i < ciphers.size(); i++)
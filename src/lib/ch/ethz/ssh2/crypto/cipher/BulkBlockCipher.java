@@ -0,0 +1,14 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+/**
+ * A BlockCipher that can transform many blocks in one call. The cipher
+ * streams use it to avoid the per block overhead.
+ */
+public interface BulkBlockCipher extends BlockCipher
+{
+	/**
+	 * Transforms len bytes, len must be a multiple of the block size. src and
+	 * dst may be the same array.
+	 */
+	public void transformBlocks(byte[] src, int srcoff, byte[] dst, int dstoff, int len);
+}
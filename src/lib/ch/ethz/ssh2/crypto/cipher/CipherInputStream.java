@@ -102,6 +102,26 @@ public class CipherInputStream
 	{
 		int count = 0;
 
+		if (pos >= blockSize && len >= blockSize && currentCipher instanceof BulkBlockCipher)
+		{
+			/* read the whole blocks directly into dst and decrypt them in place */
+			int blocks = len - (len % blockSize);
+			readPlain(dst, off, blocks);
+
+			try
+			{
+				((BulkBlockCipher) currentCipher).transformBlocks(dst, off, dst, off, blocks);
+			}
+			catch (Exception e)
+			{
+				throw (IOException) new IOException("Error while decrypting blocks.").initCause(e);
+			}
+
+			off += blocks;
+			len -= blocks;
+			count += blocks;
+		}
+
 		while (len > 0)
 		{
 			if (pos >= blockSize)
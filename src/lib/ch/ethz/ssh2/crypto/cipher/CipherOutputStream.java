@@ -102,8 +102,51 @@ public class CipherOutputStream
 		pos = 0;
 	}
 
+	/**
+	 * Transforms whole blocks directly from src into the output buffer.
+	 */
+	private void writeBlocks(byte[] src, int off, int len) throws IOException
+	{
+		BulkBlockCipher bulkCipher = (BulkBlockCipher) currentCipher;
+
+		while (len > 0)
+		{
+			int space = ((BUFF_SIZE - out_buffer_pos) / blockSize) * blockSize;
+
+			if (space == 0)
+			{
+				bo.write(out_buffer, 0, out_buffer_pos);
+				out_buffer_pos = 0;
+				continue;
+			}
+
+			int copy = (len > space) ? space : len;
+
+			try
+			{
+				bulkCipher.transformBlocks(src, off, out_buffer, out_buffer_pos, copy);
+			}
+			catch (Exception e)
+			{
+				throw (IOException) new IOException("Error while encrypting blocks.").initCause(e);
+			}
+
+			off += copy;
+			out_buffer_pos += copy;
+			len -= copy;
+		}
+	}
+
 	public void write(byte[] src, int off, int len) throws IOException
 	{
+		if (pos == 0 && len >= blockSize && currentCipher instanceof BulkBlockCipher)
+		{
+			int blocks = len - (len % blockSize);
+			writeBlocks(src, off, blocks);
+			off += blocks;
+			len -= blocks;
+		}
+
 		while (len > 0)
 		{
 			int avail = blockSize - pos;
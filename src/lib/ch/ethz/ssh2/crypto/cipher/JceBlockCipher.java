@@ -0,0 +1,67 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A cipher in CBC or CTR mode provided by the javax.crypto provider of the
+ * Java runtime. Unlike the classes in this package, the providers use the
+ * AES instructions of the CPU, if there are any.
+ */
+public class JceBlockCipher implements BulkBlockCipher
+{
+	private final Cipher cipher;
+	private final int blockSize;
+
+	/**
+	 * @param algorithm
+	 *            e.g., "AES"
+	 * @param mode
+	 *            "CBC" or "CTR"
+	 */
+	public JceBlockCipher(String algorithm, String mode, boolean encrypt, byte[] key, byte[] iv)
+			throws GeneralSecurityException
+	{
+		cipher = Cipher.getInstance(algorithm + "/" + mode + "/NoPadding");
+		cipher.init(encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, new SecretKeySpec(key, algorithm),
+				new IvParameterSpec(iv));
+		blockSize = cipher.getBlockSize();
+
+		if (blockSize != iv.length)
+			throw new IllegalArgumentException("IV must be " + blockSize + " bytes long! (currently " + iv.length + ")");
+	}
+
+	public void init(boolean forEncryption, byte[] key)
+	{
+		/* the cipher was initialized in the constructor */
+	}
+
+	public final int getBlockSize()
+	{
+		return blockSize;
+	}
+
+	public final void transformBlock(byte[] src, int srcoff, byte[] dst, int dstoff)
+	{
+		transformBlocks(src, srcoff, dst, dstoff, blockSize);
+	}
+
+	public final void transformBlocks(byte[] src, int srcoff, byte[] dst, int dstoff, int len)
+	{
+		try
+		{
+			int n = cipher.update(src, srcoff, len, dst, dstoff);
+
+			if (n != len)
+				throw new IllegalStateException("Cipher returned " + n + " bytes instead of " + len);
+		}
+		catch (ShortBufferException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
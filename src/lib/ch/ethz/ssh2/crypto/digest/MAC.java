@@ -1,6 +1,11 @@
-
 package ch.ethz.ssh2.crypto.digest;
 
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
 /**
  * MAC.
  * 
@@ -12,10 +17,20 @@ public final class MAC
 	Digest mac;
 	int size;
 
+	/* Used instead of mac, if the javax.crypto provider supports the algorithm */
+	Mac jceMac;
+	byte[] jceOut;
+
+	private static boolean useJce = true;
+
 	public final static String[] getMacList()
 	{
 		/* Higher Priority First */
 
+		if (isJceAvailable("HmacSHA256") && isJceAvailable("HmacSHA512"))
+			return new String[] { "hmac-sha2-256", "hmac-sha2-512", "hmac-sha1-96", "hmac-sha1", "hmac-md5-96",
+					"hmac-md5" };
+
 		return new String[] { "hmac-sha1-96", "hmac-sha1", "hmac-md5-96", "hmac-md5" };
 	}
 
@@ -27,6 +42,10 @@ public final class MAC
 
 	public final static int getKeyLen(String type)
 	{
+		if (type.equals("hmac-sha2-256"))
+			return 32;
+		if (type.equals("hmac-sha2-512"))
+			return 64;
 		if (type.equals("hmac-sha1"))
 			return 20;
 		if (type.equals("hmac-sha1-96"))
@@ -38,32 +57,109 @@ public final class MAC
 		throw new IllegalArgumentException("Unkown algorithm " + type);
 	}
 
+	/**
+	 * The MACs are taken from the javax.crypto provider of the Java runtime, if
+	 * it supports them, otherwise the pure Java implementations from this
+	 * package are used. Set it to false to always use the latter, the
+	 * hmac-sha2 MACs are not offered then.
+	 */
+	public static synchronized void setUseJce(boolean use)
+	{
+		useJce = use;
+	}
+
+	private static synchronized boolean isJceAvailable(String algorithm)
+	{
+		if (!useJce)
+			return false;
+
+		try
+		{
+			Mac.getInstance(algorithm);
+			return true;
+		}
+		catch (GeneralSecurityException e)
+		{
+			return false;
+		}
+	}
+
 	public MAC(String type, byte[] key)
 	{
-		if (type.equals("hmac-sha1"))
+		if (type.equals("hmac-sha2-256"))
+		{
+			initJce("HmacSHA256", key, 32);
+		}
+		else if (type.equals("hmac-sha2-512"))
+		{
+			initJce("HmacSHA512", key, 64);
+		}
+		else if (type.equals("hmac-sha1"))
 		{
-			mac = new HMAC(new SHA1(), key, 20);
+			if (!initJce("HmacSHA1", key, 20))
+				mac = new HMAC(new SHA1(), key, 20);
 		}
 		else if (type.equals("hmac-sha1-96"))
 		{
-			mac = new HMAC(new SHA1(), key, 12);
+			if (!initJce("HmacSHA1", key, 12))
+				mac = new HMAC(new SHA1(), key, 12);
 		}
 		else if (type.equals("hmac-md5"))
 		{
-			mac = new HMAC(new MD5(), key, 16);
+			if (!initJce("HmacMD5", key, 16))
+				mac = new HMAC(new MD5(), key, 16);
 		}
 		else if (type.equals("hmac-md5-96"))
 		{
-			mac = new HMAC(new MD5(), key, 12);
+			if (!initJce("HmacMD5", key, 12))
+				mac = new HMAC(new MD5(), key, 12);
 		}
 		else
 			throw new IllegalArgumentException("Unkown algorithm " + type);
 
-		size = mac.getDigestLength();
+		if (jceMac == null && mac == null)
+			throw new IllegalArgumentException("Cannot instantiate " + type);
+
+		if (mac != null)
+			size = mac.getDigestLength();
+	}
+
+	/**
+	 * Initializes jceMac, the result is truncated to size bytes. Returns false
+	 * if the provider does not support the algorithm.
+	 */
+	private boolean initJce(String algorithm, byte[] key, int size)
+	{
+		if (!isJceAvailable(algorithm))
+			return false;
+
+		try
+		{
+			Mac m = Mac.getInstance(algorithm);
+			m.init(new SecretKeySpec(key, algorithm));
+			jceMac = m;
+			jceOut = new byte[m.getMacLength()];
+			this.size = size;
+			return true;
+		}
+		catch (GeneralSecurityException e)
+		{
+			return false;
+		}
 	}
 
 	public final void initMac(int seq)
 	{
+		if (jceMac != null)
+		{
+			jceMac.reset();
+			jceMac.update((byte) (seq >> 24));
+			jceMac.update((byte) (seq >> 16));
+			jceMac.update((byte) (seq >> 8));
+			jceMac.update((byte) (seq));
+			return;
+		}
+
 		mac.reset();
 		mac.update((byte) (seq >> 24));
 		mac.update((byte) (seq >> 16));
@@ -73,12 +169,29 @@ public final class MAC
 
 	public final void update(byte[] packetdata, int off, int len)
 	{
-		mac.update(packetdata, off, len);
+		if (jceMac != null)
+			jceMac.update(packetdata, off, len);
+		else
+			mac.update(packetdata, off, len);
 	}
 
 	public final void getMac(byte[] out, int off)
 	{
-		mac.digest(out, off);
+		if (jceMac == null)
+		{
+			mac.digest(out, off);
+			return;
+		}
+
+		try
+		{
+			jceMac.doFinal(jceOut, 0);
+		}
+		catch (ShortBufferException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		System.arraycopy(jceOut, 0, out, off, size);
 	}
 
 	public final int size()
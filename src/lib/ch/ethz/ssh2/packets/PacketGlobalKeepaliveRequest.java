@@ -0,0 +1,33 @@
+
+package ch.ethz.ssh2.packets;
+
+/**
+ * PacketGlobalKeepaliveRequest. A global request that the server does not
+ * know, OpenSSH answers it with SSH_MSG_REQUEST_FAILURE, which is enough
+ * to know that the server is alive.
+ */
+public class PacketGlobalKeepaliveRequest
+{
+	public static final String REQUEST_NAME = "keepalive@openssh.com";
+
+	byte[] payload;
+
+	public PacketGlobalKeepaliveRequest()
+	{
+	}
+
+	public byte[] getPayload()
+	{
+		if (payload == null)
+		{
+			TypesWriter tw = new TypesWriter();
+			tw.writeByte(Packets.SSH_MSG_GLOBAL_REQUEST);
+
+			tw.writeString(REQUEST_NAME);
+			tw.writeBoolean(true);
+
+			payload = tw.getBytes();
+		}
+		return payload;
+	}
+}
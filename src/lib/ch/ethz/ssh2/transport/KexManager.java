@@ -7,6 +7,8 @@ import java.security.SecureRandom;
 import ch.ethz.ssh2.ConnectionInfo;
 import ch.ethz.ssh2.DHGexParameters;
 import ch.ethz.ssh2.ServerHostKeyVerifier;
+import ch.ethz.ssh2.compression.CompressionFactory;
+import ch.ethz.ssh2.compression.ICompressor;
 import ch.ethz.ssh2.crypto.CryptoWishList;
 import ch.ethz.ssh2.crypto.KeyMaterial;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
@@ -65,6 +67,12 @@ public class KexManager
 	final int port;
 	final SecureRandom rnd;
 
+	/* The compression streams go on across the key exchanges, as in OpenSSH */
+	String send_comp_algo;
+	ICompressor send_comp;
+	String recv_comp_algo;
+	ICompressor recv_comp;
+
 	public KexManager(TransportManager tm, ClientServerHello csh, CryptoWishList initialCwl, String hostname, int port,
 			ServerHostKeyVerifier keyVerifier, SecureRandom rnd)
 	{
@@ -269,6 +277,30 @@ public class KexManager
 		return true;
 	}
 
+	/**
+	 * @return the compressor, that is already in use, if the algorithm has
+	 *         not changed, a rekey must not reset the zlib stream.
+	 */
+	private ICompressor getSendCompressor(String algo)
+	{
+		if (!algo.equals(send_comp_algo))
+		{
+			send_comp = CompressionFactory.createCompressor(algo);
+			send_comp_algo = algo;
+		}
+		return send_comp;
+	}
+
+	private ICompressor getRecvCompressor(String algo)
+	{
+		if (!algo.equals(recv_comp_algo))
+		{
+			recv_comp = CompressionFactory.createCompressor(algo);
+			recv_comp_algo = algo;
+		}
+		return recv_comp;
+	}
+
 	private void finishKex() throws IOException
 	{
 		if (sessionId == null)
@@ -298,6 +330,7 @@ public class KexManager
 		}
 
 		tm.changeSendCipher(cbc, mac);
+		tm.changeSendCompression(getSendCompressor(kxs.np.comp_algo_client_to_server));
 		tm.kexFinished();
 	}
 
@@ -479,6 +512,7 @@ public class KexManager
 			}
 
 			tm.changeRecvCipher(cbc, mac);
+			tm.changeRecvCompression(getRecvCompressor(kxs.np.comp_algo_server_to_client));
 
 			ConnectionInfo sci = new ConnectionInfo();
 
@@ -490,6 +524,8 @@ public class KexManager
 			sci.serverToClientCryptoAlgorithm = kxs.np.enc_algo_server_to_client;
 			sci.clientToServerMACAlgorithm = kxs.np.mac_algo_client_to_server;
 			sci.serverToClientMACAlgorithm = kxs.np.mac_algo_server_to_client;
+			sci.clientToServerCompressionAlgorithm = kxs.np.comp_algo_client_to_server;
+			sci.serverToClientCompressionAlgorithm = kxs.np.comp_algo_server_to_client;
 			sci.serverHostKeyAlgorithm = kxs.np.server_host_key_algo;
 			sci.serverHostKey = kxs.hostkey;
 
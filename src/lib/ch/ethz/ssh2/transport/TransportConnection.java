@@ -6,6 +6,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.SecureRandom;
 
+import ch.ethz.ssh2.compression.CompressionCounters;
+import ch.ethz.ssh2.compression.ICompressor;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
 import ch.ethz.ssh2.crypto.cipher.CipherInputStream;
 import ch.ethz.ssh2.crypto.cipher.CipherOutputStream;
@@ -50,6 +52,24 @@ public class TransportConnection
 
 	int recv_padd_blocksize = 8;
 
+	/* Depends on the negotiated compression, delayed compression waits for the authentication */
+
+	volatile ICompressor send_comp;
+
+	volatile ICompressor recv_comp;
+
+	ICompressor delayed_send_comp;
+
+	ICompressor delayed_recv_comp;
+
+	boolean authenticated = false;
+
+	final int[] send_comp_len = new int[1];
+
+	final int[] recv_comp_len = new int[1];
+
+	final CompressionCounters compressionCounters = new CompressionCounters();
+
 	/* won't change */
 
 	final byte[] send_padding_buffer = new byte[256];
@@ -101,6 +121,58 @@ public class TransportConnection
 			send_padd_blocksize = 8;
 	}
 
+	public synchronized void changeSendCompression(ICompressor comp)
+	{
+		if ((comp != null) && comp.isDelayed() && (authenticated == false))
+		{
+			delayed_send_comp = comp;
+			send_comp = null;
+		}
+		else
+		{
+			delayed_send_comp = null;
+			send_comp = comp;
+		}
+	}
+
+	public synchronized void changeRecvCompression(ICompressor comp)
+	{
+		if ((comp != null) && comp.isDelayed() && (authenticated == false))
+		{
+			delayed_recv_comp = comp;
+			recv_comp = null;
+		}
+		else
+		{
+			delayed_recv_comp = null;
+			recv_comp = comp;
+		}
+	}
+
+	public CompressionCounters getCompressionCounters()
+	{
+		return compressionCounters;
+	}
+
+	/**
+	 * The server starts the delayed compression after it sends
+	 * SSH_MSG_USERAUTH_SUCCESS and the client after it receives it.
+	 */
+	private synchronized void startDelayedCompression()
+	{
+		authenticated = true;
+		if (delayed_send_comp != null)
+		{
+			send_comp = delayed_send_comp;
+			delayed_send_comp = null;
+		}
+		if (delayed_recv_comp != null)
+		{
+			recv_comp = delayed_recv_comp;
+			delayed_recv_comp = null;
+		}
+	}
+
 	public void sendMessage(byte[] message) throws IOException
 	{
 		sendMessage(message, 0, message.length, 0);
@@ -119,6 +191,19 @@ public class TransportConnection
 
 	public void sendMessage(byte[] message, int off, int len, int padd) throws IOException
 	{
+		int message_type = message[off] & 0xff;
+
+		ICompressor comp = send_comp;
+
+		if (comp != null)
+		{
+			int raw_len = len;
+			message = comp.compress(message, off, len, send_comp_len);
+			off = 0;
+			len = send_comp_len[0];
+			compressionCounters.addSent(raw_len, len);
+		}
+
 		if (padd < 4)
 			padd = 4;
 		else if (padd > 64)
@@ -193,7 +278,7 @@ public class TransportConnection
 
 		if (log.isEnabled())
 		{
-			log.log(90, "Sent " + Packets.getMessageName(message[off] & 0xff) + " " + len + " bytes payload");
+			log.log(90, "Sent " + Packets.getMessageName(message_type) + " " + len + " bytes payload");
 		}
 
 		send_seq_number++;
@@ -272,6 +357,23 @@ public class TransportConnection
 
 		recv_seq_number++;
 
+		ICompressor comp = recv_comp;
+
+		if (comp != null)
+		{
+			byte[] uncompressed = comp.uncompress(buffer, off, payload_length, recv_comp_len);
+
+			if (recv_comp_len[0] >= len)
+				throw new IOException("Receive buffer too small (" + len + ", need " + recv_comp_len[0] + ")");
+
+			System.arraycopy(uncompressed, 0, buffer, off, recv_comp_len[0]);
+			compressionCounters.addReceived(recv_comp_len[0], payload_length);
+			payload_length = recv_comp_len[0];
+		}
+
+		if ((authenticated == false) && ((buffer[off] & 0xff) == Packets.SSH_MSG_USERAUTH_SUCCESS))
+			startDelayedCompression();
+
 		if (log.isEnabled())
 		{
 			log.log(90, "Received " + Packets.getMessageName(buffer[off] & 0xff) + " " + payload_length
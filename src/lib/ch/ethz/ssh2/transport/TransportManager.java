@@ -13,11 +13,15 @@ import java.util.Vector;
 
 import ch.ethz.ssh2.ConnectionInfo;
 import ch.ethz.ssh2.ConnectionMonitor;
+import ch.ethz.ssh2.ConnectionProxyData;
 import ch.ethz.ssh2.DHGexParameters;
 import ch.ethz.ssh2.HTTPProxyData;
 import ch.ethz.ssh2.HTTPProxyException;
+import ch.ethz.ssh2.LocalStreamForwarder;
 import ch.ethz.ssh2.ProxyData;
 import ch.ethz.ssh2.ServerHostKeyVerifier;
+import ch.ethz.ssh2.compression.CompressionCounters;
+import ch.ethz.ssh2.compression.ICompressor;
 import ch.ethz.ssh2.crypto.Base64;
 import ch.ethz.ssh2.crypto.CryptoWishList;
 import ch.ethz.ssh2.crypto.cipher.BlockCipher;
@@ -127,6 +131,9 @@ import ch.ethz.ssh2.util.Tokenizer;
 	int port;
 	final Socket sock = new Socket();
 
+	/* Used instead of sock, if the connection is tunnelled through another connection */
+	LocalStreamForwarder tunnel = null;
+
 	Object connectionSemaphore = new Object();
 
 	boolean flagKexOngoing = false;
@@ -218,12 +225,32 @@ import ch.ethz.ssh2.util.Tokenizer;
 
 	public void setTcpNoDelay(boolean state) throws IOException
 	{
-		sock.setTcpNoDelay(state);
+		if (tunnel == null)
+			sock.setTcpNoDelay(state);
 	}
 
 	public void setSoTimeout(int timeout) throws IOException
 	{
-		sock.setSoTimeout(timeout);
+		if (tunnel == null)
+			sock.setSoTimeout(timeout);
+	}
+
+	private InputStream getInputStream() throws IOException
+	{
+		return (tunnel != null) ? tunnel.getInputStream() : sock.getInputStream();
+	}
+
+	private OutputStream getOutputStream() throws IOException
+	{
+		return (tunnel != null) ? tunnel.getOutputStream() : sock.getOutputStream();
+	}
+
+	private void closeSocket() throws IOException
+	{
+		if (tunnel != null)
+			tunnel.close();
+		else
+			sock.close();
 	}
 
 	public ConnectionInfo getConnectionInfo(int kexNumber) throws IOException
@@ -254,7 +281,7 @@ import ch.ethz.ssh2.util.Tokenizer;
 
 			try
 			{
-				sock.close();
+				closeSocket();
 			}
 			catch (IOException ignore)
 			{
@@ -285,7 +312,7 @@ import ch.ethz.ssh2.util.Tokenizer;
 
 					try
 					{
-						sock.close();
+						closeSocket();
 					}
 					catch (IOException ignore)
 					{
@@ -439,6 +466,16 @@ import ch.ethz.ssh2.util.Tokenizer;
 			return;
 		}
 
+		if (proxyData instanceof ConnectionProxyData)
+		{
+			ConnectionProxyData pd = (ConnectionProxyData) proxyData;
+
+			/* The jump host connects to hostname:port for us */
+
+			tunnel = pd.connection.createLocalStreamForwarder(hostname, port);
+			return;
+		}
+
 		throw new IOException("Unsupported ProxyData");
 	}
 
@@ -454,9 +491,9 @@ import ch.ethz.ssh2.util.Tokenizer;
 		 * for later use.
 		 */
 
-		ClientServerHello csh = new ClientServerHello(sock.getInputStream(), sock.getOutputStream());
+		ClientServerHello csh = new ClientServerHello(getInputStream(), getOutputStream());
 
-		tc = new TransportConnection(sock.getInputStream(), sock.getOutputStream(), rnd);
+		tc = new TransportConnection(getInputStream(), getOutputStream(), rnd);
 
 		km = new KexManager(this, csh, cwl, hostname, port, verifier, rnd);
 		km.initiateKEX(cwl, dhgex);
@@ -587,6 +624,21 @@ import ch.ethz.ssh2.util.Tokenizer;
 		tc.changeSendCipher(bc, mac);
 	}
 
+	public void changeRecvCompression(ICompressor comp)
+	{
+		tc.changeRecvCompression(comp);
+	}
+
+	public void changeSendCompression(ICompressor comp)
+	{
+		tc.changeSendCompression(comp);
+	}
+
+	public CompressionCounters getCompressionCounters()
+	{
+		return tc.getCompressionCounters();
+	}
+
 	public void sendAsynchronousMessage(byte[] msg) throws IOException
 	{
 		synchronized (asynchronousQueue)
@@ -108,6 +108,8 @@ public class ArgumentParser {
     /** The --cmd-log. /var/log/lcmc.log on the servers. */
     private static final String CMD_LOG_OP = "cmd-log";
     private static final String CHECK_SWING_OP = "check-swing";
+    /** The --command-server. Execute commands through one ssh session. */
+    private static final String COMMAND_SERVER_OP = "command-server";
     @Inject
     private UserConfig userConfig;
     @Inject
@@ -174,6 +176,7 @@ public class ArgumentParser {
         options.addOption(null, NO_EMBED_OP, false, "don't embed applet in the browser");
         options.addOption(null, CMD_LOG_OP, false, "Log executed commands to the lcmc.log on the servers");
         options.addOption(null, CHECK_SWING_OP, false, "ADVANCED USE: for testing");
+        options.addOption(null, COMMAND_SERVER_OP, false, "execute commands through one ssh session on every host");
         final CommandLineParser parser = new PosixParser();
         String autoArgs = null;
         try {
@@ -230,6 +233,9 @@ public class ArgumentParser {
             if (cmd.hasOption(CMD_LOG_OP)) {
                 application.setCmdLog(true);
             }
+            if (cmd.hasOption(COMMAND_SERVER_OP)) {
+                application.setCommandServer(true);
+            }
             if (cmd.hasOption(CHECK_SWING_OP)) {
                 swingUtils.setCheckSwing(true);
             }
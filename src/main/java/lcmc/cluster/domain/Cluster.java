@@ -39,6 +39,7 @@ import lcmc.drbd.domain.BlockDevice;
 import lcmc.cluster.ui.ClusterBrowser;
 import lcmc.cluster.ui.ClusterTab;
 import lcmc.cluster.ui.SSHGui;
+import lcmc.cluster.service.ssh.LastSuccessfulPassword;
 import lcmc.cluster.service.storage.BlockDeviceService;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
@@ -78,6 +79,7 @@ public class Cluster implements Comparable<Cluster> {
     private final Set<Host> proxyHosts = new LinkedHashSet<Host>();
     @Inject
     private BlockDeviceService blockDeviceService;
+    private final Object connectedHostLock = new Object();
 
     public void setName(final String name) {
         this.name = name;
@@ -200,40 +202,99 @@ public class Cluster implements Comparable<Cluster> {
 
     /** Connect all hosts in the cluster. Returns false, if it was canceled. */
     public boolean connect(final Window rootPane, final boolean progressIndicator, final int index) {
-        boolean first = true;
-        String dsaKey = null;
-        String rsaKey = null;
-        String pwd = null;
+        return connect(rootPane, progressIndicator, index, new LastSuccessfulPassword());
+    }
+
+    /**
+     * Connect all hosts in the cluster. Returns false, if it was canceled.
+     *
+     * If no passwords are shared yet, the first host is connected alone,
+     * because the user may be asked for the password or key passphrase and
+     * the successful one is stored in the shared passwords. The other hosts
+     * try the shared passwords first and are connected all at once in the
+     * background.
+     */
+    public boolean connect(final Window rootPane,
+                           final boolean progressIndicator,
+                           final int index,
+                           final LastSuccessfulPassword sharedPasswords) {
+        final List<Host> notConnectedHosts = new ArrayList<Host>();
         for (final Host host : hosts) {
             host.setIsLoading();
             if (host.isConnected()) {
                 host.setLoadingDone();
-                continue;
+            } else if (!host.getSSH().isConnecting()) {
+                notConnectedHosts.add(host);
             }
-            if (!first) {
-                host.getSSH().setPasswords(dsaKey, rsaKey, pwd);
+        }
+        if (notConnectedHosts.isEmpty()) {
+            return true;
+        }
+        if (!sharedPasswords.isAnySet()) {
+            final Host firstHost = notConnectedHosts.remove(0);
+            connectHost(firstHost, rootPane, progressIndicator, index);
+            firstHost.getSSH().waitForConnection();
+            if (firstHost.getSSH().isConnectionCanceled()) {
+                return false;
             }
-            if (rootPane == null) {
-                host.connect(null, progressIndicator, index);
-            } else {
-                host.connect(new SSHGui(rootPane, host, null), progressIndicator, index);
+            if (firstHost.isConnected()) {
+                sharedPasswords.setPasswordsIfNoneIsSet(firstHost.getSSH().getLastSuccessfulDsaKey(),
+                                                        firstHost.getSSH().getLastSuccessfulRsaKey(),
+                                                        firstHost.getSSH().getLastSuccessfulPassword());
             }
-            host.getSSH().waitForConnection();
-            if (first) {
-                /* wait till it's connected and try the others with the
-                 * same password/key. */
-                if (host.getSSH().isConnectionCanceled()) {
+        }
+        for (final Host host : notConnectedHosts) {
+            host.getSSH().setPasswords(sharedPasswords.getDsaKey(),
+                                       sharedPasswords.getRsaKey(),
+                                       sharedPasswords.getPassword());
+            connectHost(host, rootPane, progressIndicator, index);
+        }
+        return true;
+    }
+
+    private void connectHost(final Host host,
+                             final Window rootPane,
+                             final boolean progressIndicator,
+                             final int index) {
+        if (rootPane == null) {
+            host.connect(null, progressIndicator, index);
+        } else {
+            host.connect(new SSHGui(rootPane, host, null), progressIndicator, index);
+        }
+    }
+
+    /** Is called by the host, after it has been connected. */
+    public void hostConnected() {
+        synchronized (connectedHostLock) {
+            connectedHostLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits till at least one host is connected, but no longer than the
+     * timeout. Returns whether a host is connected.
+     */
+    public boolean waitForConnectedHost(final long timeoutMillis) {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (connectedHostLock) {
+            while (true) {
+                for (final Host host : getHostsArray()) {
+                    if (host.isConnected()) {
+                        return true;
+                    }
+                }
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
                     return false;
                 }
-                if (host.isConnected()) {
-                    dsaKey = host.getSSH().getLastSuccessfulDsaKey();
-                    rsaKey = host.getSSH().getLastSuccessfulRsaKey();
-                    pwd = host.getSSH().getLastSuccessfulPassword();
+                try {
+                    connectedHostLock.wait(remaining);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
                 }
             }
-            first = false;
         }
-        return true;
     }
 
     /**
@@ -62,8 +62,12 @@ public class Authentication {
     }
 
     public void authenticate(final SshConnection sshConnection) throws IOException {
+        authenticate(sshConnection, host.getFirstUsername());
+    }
+
+    /** Authenticates the user on the connection, e.g. to one of the hops. */
+    public void authenticate(final SshConnection sshConnection, final String username) throws IOException {
         LOG.debug2("authenticate: start");
-        final String username = host.getFirstUsername();
         while (!sshConnection.isCanceled() && !authenticated) {
             if (lastSuccessfulPassword.getPassword() == null) {
                 String lastPassword = application.getAutoOptionHost("pw");
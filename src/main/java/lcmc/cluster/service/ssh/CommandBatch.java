@@ -0,0 +1,93 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.cluster.service.ssh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the commands, that are separated with ";;;", in one session. Every
+ * command is followed by a marker with its exit code, so that the output
+ * can be split again. The script stops after the first failed command,
+ * like the commands in separate sessions.
+ *
+ *     { command1
+ *     }; rc=$?; printf '\n%s %d\n' '@@LCMC-BATCH-<nonce>' $rc; [ $rc = 0 ] || exit $rc
+ */
+final class CommandBatch {
+    private static final String MARKER_PREFIX = "@@LCMC-BATCH-";
+    private static final Random RANDOM = new Random();
+
+    private final String[] commands;
+    private final String marker;
+    private final Pattern markerPattern;
+
+    CommandBatch(final String[] commands) {
+        this(commands, Long.toHexString(RANDOM.nextLong() & Long.MAX_VALUE));
+    }
+
+    CommandBatch(final String[] commands, final String nonce) {
+        this.commands = commands;
+        marker = MARKER_PREFIX + nonce;
+        /* the newline before the marker is ours, pty makes \r\n of it */
+        markerPattern = Pattern.compile("\r?\n" + Pattern.quote(marker) + " (\\d+)\r?\n");
+    }
+
+    /** Returns the commands joined into one script. */
+    String getScript() {
+        final StringBuilder script = new StringBuilder(200);
+        for (final String command : commands) {
+            script.append("{ ")
+                  .append(command.trim())
+                  .append("\n}; rc=$?; printf '\\n%s %d\\n' '")
+                  .append(marker)
+                  .append("' $rc; [ $rc = 0 ] || exit $rc\n");
+        }
+        return script.toString();
+    }
+
+    /**
+     * Splits the output of the script. A command without a marker, e.g.
+     * because it called exit itself, gets the exit code of the session and
+     * the commands after it are not returned.
+     */
+    List<SshOutput> parseOutput(final SshOutput sessionOutput) {
+        final String output = sessionOutput.getOutput();
+        final List<SshOutput> results = new ArrayList<SshOutput>(commands.length);
+        final Matcher m = markerPattern.matcher(output);
+        int start = 0;
+        while (results.size() < commands.length && m.find()) {
+            final int exitCode = Integer.parseInt(m.group(1));
+            results.add(new SshOutput(output.substring(start, m.start()), exitCode));
+            start = m.end();
+            if (exitCode != 0) {
+                return results;
+            }
+        }
+        if (results.size() < commands.length) {
+            final int exitCode = sessionOutput.getExitCode() == 0 ? 1 : sessionOutput.getExitCode();
+            results.add(new SshOutput(output.substring(start), exitCode));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.cluster.service.ssh;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lcmc.common.domain.Scheduler;
+import lcmc.common.domain.util.Tools;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Executes ssh commands of one host.
+ *
+ * Short commands run in a bounded pool of worker threads, the rest waits in
+ * the queue. Commands that stream their output (status and event daemons)
+ * may run for the whole session, they get their own reusable workers, so
+ * that they can't starve the pool. Session timeouts of all hosts go to the
+ * shared scheduler.
+ */
+public final class CommandExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(CommandExecutor.class);
+    private static final int KEEP_ALIVE_SECONDS = 60;
+
+    /** Set in the worker threads of all hosts. */
+    private static final ThreadLocal<Boolean> IN_WORKER = new ThreadLocal<Boolean>();
+
+    private final Scheduler scheduler;
+    private final ThreadPoolExecutor commandPool;
+    private final ThreadPoolExecutor streamPool;
+    private final Set<ExecCommandThread> activeCommands =
+            Collections.newSetFromMap(new ConcurrentHashMap<ExecCommandThread, Boolean>());
+    private final AtomicLong submittedCount = new AtomicLong(0);
+
+    public CommandExecutor(final String name, final Scheduler scheduler) {
+        this.scheduler = scheduler;
+        final int poolSize = Tools.getDefaultInt("SSH.Command.Threads");
+        commandPool = createPool(poolSize, poolSize, new LinkedBlockingQueue<Runnable>(), "ssh-exec-" + name);
+        commandPool.allowCoreThreadTimeOut(true);
+        streamPool = createPool(0, Integer.MAX_VALUE, new SynchronousQueue<Runnable>(), "ssh-stream-" + name);
+    }
+
+    private static ThreadPoolExecutor createPool(final int coreSize,
+                                                 final int maxSize,
+                                                 final BlockingQueue<Runnable> queue,
+                                                 final String name) {
+        return new ThreadPoolExecutor(coreSize,
+                                      maxSize,
+                                      KEEP_ALIVE_SECONDS,
+                                      TimeUnit.SECONDS,
+                                      queue,
+                                      new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build()) {
+            @Override
+            protected void beforeExecute(final Thread t, final Runnable r) {
+                IN_WORKER.set(Boolean.TRUE);
+            }
+        };
+    }
+
+    void submit(final ExecCommandThread execCommandThread) {
+        submittedCount.incrementAndGet();
+        activeCommands.add(execCommandThread);
+        if (execCommandThread.isStreaming()) {
+            streamPool.execute(execCommandThread.getTask());
+        } else {
+            commandPool.execute(execCommandThread.getTask());
+            final int queued = commandPool.getQueue().size();
+            if (queued > 0) {
+                LOG.debug1("submit: commands waiting in the queue: " + queued);
+            }
+        }
+    }
+
+    /**
+     * A worker that waits for a command, that is still in the queue, would
+     * hold a place in the pool, that the command needs. In this case the
+     * command is removed from the queue and executed in the current thread.
+     */
+    void runQueuedInWorker(final ExecCommandThread execCommandThread) {
+        if (Boolean.TRUE.equals(IN_WORKER.get()) && commandPool.remove(execCommandThread.getTask())) {
+            LOG.debug2("runQueuedInWorker: running queued command in the worker");
+            execCommandThread.getTask().run();
+        }
+    }
+
+    /** Called by the command, after it has finished. */
+    void finished(final ExecCommandThread execCommandThread) {
+        activeCommands.remove(execCommandThread);
+    }
+
+    /** Schedules a timeout, the returned job must be canceled, if it's not needed anymore. */
+    Scheduler.Job scheduleTimeout(final Runnable timeoutAction, final int timeoutMillis) {
+        return scheduler.schedule("ssh-timeout", timeoutAction, timeoutMillis);
+    }
+
+    /** Cancels all running and waiting commands. */
+    public void cancelAll() {
+        for (final ExecCommandThread execCommandThread : activeCommands) {
+            execCommandThread.cancelTheSession();
+        }
+    }
+
+    /** Returns number of commands, that wait for a free worker. */
+    public int getQueueDepth() {
+        return commandPool.getQueue().size();
+    }
+
+    /** Returns number of commands that are being executed at the moment. */
+    public int getActiveCount() {
+        return commandPool.getActiveCount() + streamPool.getActiveCount();
+    }
+
+    public int getPoolSize() {
+        return commandPool.getPoolSize() + streamPool.getPoolSize();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return commandPool.getCompletedTaskCount() + streamPool.getCompletedTaskCount();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.cluster.service.ssh;
+
+import ch.ethz.ssh2.ChannelCondition;
+import ch.ethz.ssh2.Session;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lcmc.common.domain.util.Tools;
+import lcmc.host.domain.Host;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Executes commands through the lcmc-gui-helper command server, that runs in
+ * one ssh session and executes one command at a time. This saves opening of
+ * a session, pty and sudo for every command, that matter on the slow links.
+ * The ConnectionThread keeps a few of them, so that the commands don't wait
+ * for each other.
+ *
+ * Request:  "id length\n" followed by the command.
+ * Response: "id o length\n" + stdout bytes, "id e length\n" + stderr bytes
+ *           and finally "id x exitcode\n".
+ */
+final class CommandServer {
+    private static final Logger LOG = LoggerFactory.getLogger(CommandServer.class);
+    static final String READY = "--command-server-ready--";
+    private static final String ENCODING = "UTF-8";
+    private static final int MAX_HEADER_LENGTH = 100;
+
+    private final Session session;
+    private final InputStream stdout;
+    private final OutputStream stdin;
+    private final Lock mExecLock = new ReentrantLock();
+    /** Whether a command was given this command server to run on it. */
+    private final AtomicBoolean reserved = new AtomicBoolean(false);
+    private int lastRequestId = 0;
+    private volatile boolean closed = false;
+
+    private CommandServer(final Session session) {
+        this.session = session;
+        stdout = new BufferedInputStream(session.getStdout());
+        stdin = session.getStdin();
+    }
+
+    /**
+     * Starts the command server on the host. If sudo is used, it is tried
+     * without password first and then with the password, that the user has
+     * already entered. Returns null, if the server could not be started.
+     */
+    static CommandServer start(final SshConnection sshConnection, final Host host) {
+        final String helper = host.getHostParser().replaceVars("@GUI-HELPER@ command-server");
+        if (host.isUseSudo() != null && host.isUseSudo()) {
+            final CommandServer server = start(sshConnection, "sudo -E -n " + helper, null);
+            if (server != null) {
+                return server;
+            }
+            final String sudoPassword = host.getSudoPassword();
+            if (sudoPassword == null || sudoPassword.isEmpty()) {
+                return null;
+            }
+            return start(sshConnection, "sudo -E -S -p '' " + helper, sudoPassword);
+        }
+        return start(sshConnection, helper, null);
+    }
+
+    private static CommandServer start(final SshConnection sshConnection,
+                                       final String command,
+                                       final String sudoPassword) {
+        CommandServer server = null;
+        try {
+            server = new CommandServer(sshConnection.openSession());
+            server.session.execCommand("bash -c '" + Tools.escapeSingleQuotes(command, 1) + '\'');
+            if (sudoPassword != null) {
+                server.stdin.write((sudoPassword + '\n').getBytes(ENCODING));
+                server.stdin.flush();
+            }
+            final String ready = server.readLine(Tools.getDefaultInt("SSH.ConnectTimeout"));
+            if (READY.equals(ready)) {
+                LOG.debug1("start: command server is ready");
+                return server;
+            }
+            LOG.debug1("start: unexpected answer from the command server: " + ready);
+        } catch (final IOException e) {
+            LOG.debug1("start: command server could not be started: " + e.getMessage());
+        }
+        if (server != null) {
+            server.close();
+        }
+        return null;
+    }
+
+    /** Returns true, if the command server was idle and is reserved for the caller now. */
+    boolean reserve() {
+        return reserved.compareAndSet(false, true);
+    }
+
+    /** The command server can be reserved for the next command. */
+    void release() {
+        reserved.set(false);
+    }
+
+    /**
+     * Executes the command and returns its stdout and stderr in the order as
+     * it arrived. The command server is closed, if something goes wrong.
+     */
+    SshOutput exec(final String command, final int timeout) throws IOException {
+        mExecLock.lock();
+        try {
+            if (closed) {
+                throw new IOException("command server is closed");
+            }
+            lastRequestId++;
+            final int requestId = lastRequestId;
+            final byte[] commandBytes = command.getBytes(ENCODING);
+            stdin.write((requestId + " " + commandBytes.length + '\n').getBytes(ENCODING));
+            stdin.write(commandBytes);
+            stdin.flush();
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            while (true) {
+                final String header = readLine(timeout);
+                if (header == null) {
+                    throw new IOException("command server closed the connection");
+                }
+                final String[] parts = header.split(" ");
+                if (parts.length != 3 || !Integer.toString(requestId).equals(parts[0])) {
+                    throw new IOException("unexpected header: " + header);
+                }
+                final int value = Integer.parseInt(parts[2]);
+                if ("x".equals(parts[1])) {
+                    return new SshOutput(output.toString(ENCODING), value);
+                }
+                readFully(output, value, timeout);
+            }
+        } catch (final NumberFormatException e) {
+            close();
+            throw new IOException("could not parse the response: " + e.getMessage());
+        } catch (final IOException e) {
+            close();
+            throw e;
+        } finally {
+            mExecLock.unlock();
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /** Closes the session after the running command has finished. */
+    void closeWhenIdle() {
+        mExecLock.lock();
+        try {
+            close();
+        } finally {
+            mExecLock.unlock();
+        }
+    }
+
+    /** Closes the session, a running command gets an error. */
+    void close() {
+        closed = true;
+        session.close();
+    }
+
+    private String readLine(final int timeout) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            waitForData(timeout);
+            final int b = stdout.read();
+            if (b < 0) {
+                return null;
+            }
+            if (b == '\n') {
+                return line.toString(ENCODING);
+            }
+            line.write(b);
+            if (line.size() > MAX_HEADER_LENGTH) {
+                throw new IOException("header is too long");
+            }
+        }
+    }
+
+    private void readFully(final ByteArrayOutputStream output, final int length, final int timeout)
+            throws IOException {
+        final byte[] buff = new byte[Math.min(length, 8192)];
+        int remaining = length;
+        while (remaining > 0) {
+            waitForData(timeout);
+            final int len = stdout.read(buff, 0, Math.min(remaining, buff.length));
+            if (len < 0) {
+                throw new IOException("command server closed the connection");
+            }
+            output.write(buff, 0, len);
+            remaining -= len;
+        }
+    }
+
+    private void waitForData(final int timeout) throws IOException {
+        if (stdout.available() > 0) {
+            return;
+        }
+        final int conditions = session.waitForCondition(ChannelCondition.STDOUT_DATA | ChannelCondition.EOF, timeout);
+        if ((conditions & ChannelCondition.TIMEOUT) != 0) {
+            throw new IOException("Timeout while waiting for the command server.");
+        }
+        if (closed) {
+            throw new IOException("command server is closed");
+        }
+    }
+}
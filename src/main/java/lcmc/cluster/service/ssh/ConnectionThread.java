@@ -20,7 +20,14 @@
 
 package lcmc.cluster.service.ssh;
 
+import ch.ethz.ssh2.ConnectionProxyData;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import lcmc.common.domain.Application;
 import lcmc.common.ui.utils.SwingUtils;
@@ -39,6 +46,8 @@ import javax.inject.Provider;
 @Named
 public class ConnectionThread extends Thread {
     private static final Logger LOG = LoggerFactory.getLogger(ConnectionThread.class);
+    /** How many commands can run on the command servers at the same time. */
+    private static final int MAX_COMMAND_SERVERS = 3;
     private String hostname;
     private SSHGui sshGui;
     private Host host;
@@ -48,15 +57,28 @@ public class ConnectionThread extends Thread {
     private Authentication authentication;
 
     private volatile SshConnection sshConnection = null;
+    /** Connections to the hops in front of the host, if it is reached through the tunnel. */
+    private volatile List<SshConnection> hopConnections = Collections.emptyList();
+    private volatile boolean tunnelled = false;
 
     private volatile boolean connectionFailed;
     private volatile boolean connectionEstablished = false;
+
+    private final Lock mCommandServerLock = new ReentrantLock();
+    private final List<CommandServer> commandServers = new ArrayList<CommandServer>();
+    /** Command servers that are being started outside of the lock. */
+    private int startingCommandServers = 0;
+    /** Changes, when the command servers are closed, so that the ones just starting are not used. */
+    private int commandServerGeneration = 0;
+    private boolean commandServerFailed = false;
     @Inject
     private Application application;
     @Inject
     private SwingUtils swingUtils;
     @Inject
     private Provider<PopupHostKeyVerifier> popupHostKeyVerifierProvider;
+    @Inject
+    private Provider<Authentication> authenticationProvider;
 
     void init(final Host host,
               final SSHGui sshGui,
@@ -89,7 +111,7 @@ public class ConnectionThread extends Thread {
             if (hostname == null) {
                 throw new IOException("hostname is not set");
             }
-            connect(newSshConnection);
+            connect(newSshConnection, hostname);
             authenticate(newSshConnection);
         } catch (final IOException e) {
             handleFailedConnection(e.getMessage());
@@ -98,6 +120,9 @@ public class ConnectionThread extends Thread {
 
     public void closeConnection() {
         connectionEstablished = false;
+        for (final CommandServer oldCommandServer : takeCommandServers()) {
+            oldCommandServer.close();
+        }
     }
 
     public boolean isConnectionEstablished() {
@@ -107,6 +132,19 @@ public class ConnectionThread extends Thread {
     public void closeConnectionForGood() {
         closeConnection();
         sshConnection.disconnectForGood();
+        if (tunnelled) {
+            sshConnection.close();
+        }
+        closeHopConnections();
+    }
+
+    /**
+     * Returns whether the host is reached through direct-tcpip tunnels of
+     * the hops. The commands don't have to be prefixed with ssh commands for
+     * the hops then.
+     */
+    public boolean isTunnelled() {
+        return tunnelled;
     }
 
     public boolean isConnectionFailed() {
@@ -127,6 +165,116 @@ public class ConnectionThread extends Thread {
         return sshConnection;
     }
 
+    /** Returns whether the commands are wrapped in ssh commands for the hops. */
+    boolean isHoppedWithNestedSsh() {
+        final String ipAddress = host.getIpAddress();
+        return !tunnelled && ipAddress != null && ipAddress.indexOf(',') >= 0;
+    }
+
+    /**
+     * Reserves an idle command server for one command, a new one is started,
+     * if all the running ones are busy. The caller releases it after the
+     * command. Returns null if the command should be executed in its own
+     * session: the command server is not enabled, the host is behind hops,
+     * the command server could not be started on this connection, or there
+     * are already MAX_COMMAND_SERVERS busy or starting command servers.
+     * The command server is started without holding the lock, so that the
+     * other commands don't wait for it.
+     */
+    CommandServer reserveCommandServer() {
+        if (!isCommandServerUsed()) {
+            return null;
+        }
+        final int generation;
+        mCommandServerLock.lock();
+        try {
+            final Iterator<CommandServer> it = commandServers.iterator();
+            while (it.hasNext()) {
+                final CommandServer commandServer = it.next();
+                if (commandServer.isClosed()) {
+                    it.remove();
+                } else if (commandServer.reserve()) {
+                    return commandServer;
+                }
+            }
+            if (commandServerFailed || commandServers.size() + startingCommandServers >= MAX_COMMAND_SERVERS) {
+                return null;
+            }
+            startingCommandServers++;
+            generation = commandServerGeneration;
+        } finally {
+            mCommandServerLock.unlock();
+        }
+        final CommandServer commandServer = CommandServer.start(sshConnection, host);
+        mCommandServerLock.lock();
+        try {
+            startingCommandServers--;
+            if (generation == commandServerGeneration) {
+                if (commandServer == null) {
+                    LOG.info("reserveCommandServer: " + host.getName() + ": using a session for every command");
+                    commandServerFailed = true;
+                    return null;
+                }
+                commandServer.reserve();
+                commandServers.add(commandServer);
+                return commandServer;
+            }
+        } finally {
+            mCommandServerLock.unlock();
+        }
+        /* the command servers were closed in the meantime */
+        if (commandServer != null) {
+            commandServer.close();
+        }
+        return null;
+    }
+
+    /** Returns whether the commands are executed on the command servers, if possible. */
+    boolean isCommandServerUsed() {
+        if (!application.isCommandServer() || !connectionEstablished || isHoppedWithNestedSsh()) {
+            return false;
+        }
+        mCommandServerLock.lock();
+        try {
+            return !commandServerFailed;
+        } finally {
+            mCommandServerLock.unlock();
+        }
+    }
+
+    /** The start of the command server will be tried again, e.g. after the sudo password was entered. */
+    void retryCommandServer() {
+        mCommandServerLock.lock();
+        try {
+            commandServerFailed = false;
+        } finally {
+            mCommandServerLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the command servers, new ones will be started with the next
+     * commands, e.g. after the helper was updated.
+     */
+    void resetCommandServer() {
+        for (final CommandServer oldCommandServer : takeCommandServers()) {
+            oldCommandServer.closeWhenIdle();
+        }
+    }
+
+    private List<CommandServer> takeCommandServers() {
+        mCommandServerLock.lock();
+        try {
+            final List<CommandServer> oldCommandServers = new ArrayList<CommandServer>(commandServers);
+            commandServers.clear();
+            commandServerGeneration++;
+            commandServerFailed = false;
+            return oldCommandServers;
+        } finally {
+            mCommandServerLock.unlock();
+        }
+    }
+
     public boolean isDisconnectedForGood() {
         return sshConnection != null && sshConnection.isDisconnectedForGood();
     }
@@ -137,12 +285,17 @@ public class ConnectionThread extends Thread {
         }
     }
 
-    private void connect(final SshConnection newSshConnection) throws IOException {
+    private void connect(final SshConnection newSshConnection, final String hostname) throws IOException {
         LOG.debug2("run: verify host keys: " + hostname);
         final String[] hostkeyAlgos = application.getKnownHosts().getPreferredServerHostkeyAlgorithmOrder(hostname);
         if (hostkeyAlgos != null) {
             newSshConnection.setServerHostKeyAlgorithms(hostkeyAlgos);
         }
+        if (host.isUseCompression()) {
+            LOG.debug1("run: " + hostname + ": compression enabled");
+            newSshConnection.setCompression(true);
+        }
+        newSshConnection.setMaxChannelWindowSize(Tools.getDefaultInt("SSH.ChannelWindow.Max"));
         final int connectTimeout = Tools.getDefaultInt("SSH.ConnectTimeout");
         final int kexTimeout = Tools.getDefaultInt("SSH.KexTimeout");
         if (progressBar != null) {
@@ -175,8 +328,81 @@ public class ConnectionThread extends Thread {
         if (newSshConnection.isCanceled()) {
             authenticationCanceledOrTimeout(newSshConnection);
         } else {
-            authenticationOk(newSshConnection);
+            authenticationOk(connectThroughHops(newSshConnection));
+        }
+    }
+
+    /**
+     * Connects the host behind the hops through a direct-tcpip tunnel of the
+     * previous hop, so that all commands and port forwardings use one
+     * transport to the host. If the tunnel can't be established, e.g. if the
+     * forwarding is not allowed on a hop, the connection to the first hop is
+     * used with the nested ssh commands as before.
+     */
+    private SshConnection connectThroughHops(final SshConnection firstHop) {
+        closeHopConnections();
+        tunnelled = false;
+        final String[] ips = host.getIpAddress().split(",");
+        if (ips.length < 2) {
+            return firstHop;
         }
+        final String[] usernames = host.getUsername().split(",");
+        final int hopPort = Integer.parseInt(Tools.getDefault("SSH.Port"));
+        final List<SshConnection> connections = new ArrayList<SshConnection>();
+        connections.add(firstHop);
+        try {
+            for (int i = 1; i < ips.length; i++) {
+                final SshConnection previous = connections.get(connections.size() - 1);
+                final SshConnection next = new SshConnection(ips[i], hopPort);
+                next.setProxyData(new ConnectionProxyData(previous));
+                connections.add(next);
+                LOG.debug1("connectThroughHops: " + host.getName() + ": tunnel to " + ips[i]);
+                connect(next, ips[i]);
+                final Authentication hopAuthentication = authenticationProvider.get();
+                hopAuthentication.init(new LastSuccessfulPassword(), host, sshGui);
+                hopAuthentication.authenticate(next, i < usernames.length ? usernames[i] : Host.ROOT_USER);
+                if (next.isCanceled()) {
+                    throw new IOException("authentication canceled");
+                }
+            }
+        } catch (final IOException e) {
+            LOG.appWarning("connectThroughHops: " + host.getName() + ": using nested ssh, tunnel failed: "
+                           + e.getMessage());
+            closeConnections(connections.subList(1, connections.size()));
+            return firstHop;
+        }
+        final SshConnection last = connections.remove(connections.size() - 1);
+        hopConnections = connections;
+        tunnelled = true;
+        return last;
+    }
+
+    private void closeHopConnections() {
+        final List<SshConnection> oldHopConnections = hopConnections;
+        hopConnections = Collections.emptyList();
+        closeConnections(oldHopConnections);
+    }
+
+    /**
+     * Closes the connections from the last one in a separate thread, closing
+     * of a connection, that was lost, could hang.
+     */
+    private void closeConnections(final List<SshConnection> connections) {
+        if (connections.isEmpty()) {
+            return;
+        }
+        final List<SshConnection> toClose = new ArrayList<SshConnection>(connections);
+        Collections.reverse(toClose);
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (final SshConnection connection : toClose) {
+                    connection.close();
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
     }
 
     private void authenticationCanceledOrTimeout(final SshConnection newSshConnection) {
@@ -37,6 +37,7 @@ public class ExecCommandConfig {
 
     private Host host;
     private ConnectionThread connectionThread;
+    private CommandExecutor commandExecutor;
     private SSHGui sshGui;
     private String command = null;
     private String commandString = null;
@@ -60,6 +61,11 @@ public class ExecCommandConfig {
         return this;
     }
 
+    public ExecCommandConfig commandExecutor(final CommandExecutor commandExecutor) {
+        this.commandExecutor = commandExecutor;
+        return this;
+    }
+
     public ExecCommandConfig sshGui(final SSHGui sshGui) {
         this.sshGui = sshGui;
         return this;
@@ -128,7 +134,7 @@ public class ExecCommandConfig {
             mainPanel.setTerminalPanel(host.getTerminalPanel());
         }
         final ExecCommandThread execCommandThread = new ExecCommandThread(mainPanel, progressIndicator, this);
-        execCommandThread.start();
+        commandExecutor.submit(execCommandThread);
         return execCommandThread;
     }
 
@@ -166,19 +172,17 @@ public class ExecCommandConfig {
         return connectionThread;
     }
 
+    public CommandExecutor getCommandExecutor() {
+        return commandExecutor;
+    }
+
     public SSHGui getSshGui() {
         return sshGui;
     }
 
     public String getCommand() {
         if (commandString != null) {
-            return host.getHostParser().replaceVars(Tools.getDistCommand(commandString,
-                                                         host.getHostParser().getDistributionName(),
-                                                         host.getHostParser().getDistributionVersionString(),
-                                                         host.getHostParser().getArch(),
-                                                         convertCmdCallback,
-                                                         inBash,
-                                                         inSudo));
+            return host.getHostParser().getDistCommandWithVars(commandString, convertCmdCallback, inBash, inSudo);
         }
         return host.getHostParser().replaceVars(command);
     }
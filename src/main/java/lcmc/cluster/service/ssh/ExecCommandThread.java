@@ -25,6 +25,12 @@ import ch.ethz.ssh2.Session;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.CharBuffer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -37,10 +43,14 @@ import lcmc.common.domain.ExecCallback;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
 import lcmc.common.domain.NewOutputCallback;
+import lcmc.common.domain.Scheduler;
 import lcmc.common.domain.util.Tools;
 
-/** This class is a thread that executes commands. */
-public final class ExecCommandThread extends Thread {
+/**
+ * This class executes commands. It runs in the worker thread of the
+ * host's CommandExecutor and can be waited for like a future.
+ */
+public final class ExecCommandThread implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(ExecCommandThread.class);
 
     private final Host host;
@@ -53,16 +63,18 @@ public final class ExecCommandThread extends Thread {
     private final boolean commandVisible;
     private final MainPanel mainPanel;
     private final ProgressIndicator progressIndicator;
+    private final CommandExecutor commandExecutor;
+    private final FutureTask<Void> task = new FutureTask<Void>(this, null);
 
     private volatile boolean cancelIt = false;
     private final Lock mSessionLock = new ReentrantLock();
     private Session sess = null;
+    private volatile CommandServer usedCommandServer = null;
     private final int sshCommandTimeout;
 
     private static final int ERROR_EXIT_CODE = 255;
     private static final int EXEC_OUTPUT_BUFFER_SIZE = 8192;
     private static final int DEFAULT_EXIT_CODE = 100;
-    private static final String ENCODING = "UTF-8";
 
     ExecCommandThread(final MainPanel mainPanel,
                       final ProgressIndicator progressIndicator,
@@ -73,6 +85,7 @@ public final class ExecCommandThread extends Thread {
         this.host = execCommandConfig.getHost();
         this.connectionThread = execCommandConfig.getConnectionThread();
         this.sshGui = execCommandConfig.getSshGui();
+        this.commandExecutor = execCommandConfig.getCommandExecutor();
 
         this.execCallback = execCommandConfig.getExecCallback();
         this.newOutputCallback = execCommandConfig.getNewOutputCallback();
@@ -100,7 +113,20 @@ public final class ExecCommandThread extends Thread {
      */
     @Override
     public void run() {
-        if (!connectionThread.isConnectionEstablished()) {
+        try {
+            runCommand();
+        } finally {
+            commandExecutor.finished(this);
+        }
+    }
+
+    private void runCommand() {
+        if (cancelIt) {
+            /* canceled, while it was waiting in the queue */
+            if (execCallback != null) {
+                execCallback.doneError("", 130);
+            }
+        } else if (!connectionThread.isConnectionEstablished()) {
             if (execCallback != null) {
                 execCallback.doneError("not connected", 139);
             }
@@ -128,10 +154,47 @@ public final class ExecCommandThread extends Thread {
         if (thisSession != null) {
             thisSession.close();
         }
+        final CommandServer commandServer = usedCommandServer;
+        if (commandServer != null) {
+            /* the response can't be skipped, a new server will be started */
+            commandServer.close();
+        }
+    }
+
+    /**
+     * Sends the input to the command, that is running in its own session,
+     * e.g. to a daemon. Returns false, if there is no such session. The
+     * session lock is not held while writing, so that a write, that is stuck
+     * on a slow host, doesn't block the cancel.
+     */
+    public boolean sendInput(final String input) {
+        final Session thisSession;
+        mSessionLock.lock();
+        try {
+            thisSession = sess;
+        } finally {
+            mSessionLock.unlock();
+        }
+        if (thisSession == null) {
+            return false;
+        }
+        try {
+            final OutputStream stdin = thisSession.getStdin();
+            /* one input after another */
+            synchronized (stdin) {
+                stdin.write(input.getBytes("UTF-8"));
+                stdin.flush();
+            }
+            return true;
+        } catch (final IOException e) {
+            LOG.debug1("sendInput: " + host.getName() + ": " + e.getMessage());
+            return false;
+        }
     }
 
     static private class ConnectionTimeout {
-        private boolean timeout = false;
+        private volatile boolean timeout = false;
+        private Scheduler.Job timeoutJob = null;
 
         private void setTimeout() {
             timeout = true;
@@ -140,33 +203,102 @@ public final class ExecCommandThread extends Thread {
         private boolean wasTimeout() {
             return timeout;
         }
+
+        private void cancelTimer() {
+            if (timeoutJob != null) {
+                timeoutJob.cancel();
+            }
+        }
     }
 
+    /** Waits till the command is finished. */
     public ExecCommandThread block() {
+        commandExecutor.runQueuedInWorker(this);
         try {
-            join();
+            task.get();
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
+        } catch (final CancellationException e) {
+            LOG.debug1("block: command canceled: " + command);
+        } catch (final ExecutionException e) {
+            LOG.appError("block: command failed: " + command, e.getCause());
         }
         return this;
     }
 
+    /**
+     * Waits till the command is finished, or the timeout in milliseconds
+     * elapses. Returns whether the command is finished.
+     */
+    public boolean block(final long timeout) {
+        commandExecutor.runQueuedInWorker(this);
+        try {
+            task.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final TimeoutException e) {
+            return false;
+        } catch (final CancellationException e) {
+            LOG.debug1("block: command canceled: " + command);
+        } catch (final ExecutionException e) {
+            LOG.appError("block: command failed: " + command, e.getCause());
+        }
+        return isDone();
+    }
+
+    public boolean isDone() {
+        return task.isDone();
+    }
+
+    /** Commands with output callback can run for a long time. */
+    boolean isStreaming() {
+        return newOutputCallback != null;
+    }
+
+    /** Commands without a timeout or with a longer one, would hold a command server for long. */
+    private boolean isLongRunning() {
+        return sshCommandTimeout == Ssh.NO_COMMAND_TIMEOUT || sshCommandTimeout > Ssh.DEFAULT_COMMAND_TIMEOUT;
+    }
+
+    FutureTask<Void> getTask() {
+        return task;
+    }
+
     private void exec() {
         // ;;; separates commands, that are to be executed one after one,
         // if previous command has finished successfully.
         final String[] commands = command.split(";;;");
+        if (commands.length > 1
+            && !isStreaming()
+            && !outputVisible
+            && !connectionThread.isHoppedWithNestedSsh()
+            && !connectionThread.isCommandServerUsed()) {
+            execBatch(commands);
+            return;
+        }
         final StringBuilder ans = new StringBuilder("");
         for (final String command1 : commands) {
-            final ConnectionTimeout connectionTimeout = setupConnectionTimeout();
-            try {
-                openSshSession(connectionTimeout);
-            } catch (final IOException e) {
-                handleSshSessionFailure();
-                break;
-            }
             final String cmd = command1.trim();
-            writeCommandToTerminal(cmd);
-            final SshOutput ret = execOneCommand(cmd);
+            /* commands that stream their output or run long, run in their own session */
+            final CommandServer commandServer =
+                            isStreaming() || isLongRunning() ? null : connectionThread.reserveCommandServer();
+            final SshOutput ret;
+            if (commandServer == null) {
+                final ConnectionTimeout connectionTimeout = setupConnectionTimeout();
+                try {
+                    openSshSession(connectionTimeout);
+                } catch (final IOException e) {
+                    handleSshSessionFailure();
+                    break;
+                } finally {
+                    connectionTimeout.cancelTimer();
+                }
+                writeCommandToTerminal(cmd);
+                ret = execOneCommand(cmd);
+            } else {
+                writeCommandToTerminal(cmd);
+                ret = execOnCommandServer(commandServer, cmd);
+            }
             ans.append(ret.getOutput());
             final int exitCode = ret.getExitCode();
             if (exitCode != 0) {
@@ -180,6 +312,39 @@ public final class ExecCommandThread extends Thread {
         }
     }
 
+    /**
+     * Executes the commands in one session, instead of opening a session
+     * for every one of them. The output would contain the markers, so the
+     * commands with visible output are not batched, neither are the commands,
+     * that go through nested ssh, whose quoting doesn't protect the script.
+     */
+    private void execBatch(final String[] commands) {
+        final ConnectionTimeout connectionTimeout = setupConnectionTimeout();
+        try {
+            openSshSession(connectionTimeout);
+        } catch (final IOException e) {
+            handleSshSessionFailure();
+            return;
+        } finally {
+            connectionTimeout.cancelTimer();
+        }
+        for (final String cmd : commands) {
+            writeCommandToTerminal(cmd.trim());
+        }
+        final CommandBatch commandBatch = new CommandBatch(commands);
+        final StringBuilder ans = new StringBuilder("");
+        for (final SshOutput ret : commandBatch.parseOutput(execOneCommand(commandBatch.getScript()))) {
+            ans.append(ret.getOutput());
+            if (ret.getExitCode() != 0) {
+                handleCommandFailure(ans, ret.getExitCode());
+                return;
+            }
+        }
+        if (execCallback != null) {
+            execCallback.done(ans.toString());
+        }
+    }
+
     private void handleCommandFailure(final StringBuilder ans,
             final int exitCode) {
         if (execCallback != null) {
@@ -223,10 +388,9 @@ public final class ExecCommandThread extends Thread {
 
     private ConnectionTimeout setupConnectionTimeout() {
         final ConnectionTimeout connectionTimeout = new ConnectionTimeout();
-        final Thread thread = new Thread(new Runnable() {
+        connectionTimeout.timeoutJob = commandExecutor.scheduleTimeout(new Runnable() {
             @Override
             public void run() {
-                Tools.sleep(Tools.getDefaultInt("SSH.ConnectTimeout"));
                 if (!connectionTimeout.wasTimeout()) {
                     LOG.debug1("run: " + host.getName() + ": open ssh session: timeout");
                     connectionTimeout.setTimeout();
@@ -240,11 +404,18 @@ public final class ExecCommandThread extends Thread {
                     }
                 }
             }
-        });
-        thread.start();
+        }, Tools.getDefaultInt("SSH.ConnectTimeout"));
         return connectionTimeout;
     }
 
+    /** The ssh commands for the hops are not needed, if the host is reached through the tunnel. */
+    private String getHoppedCommand(final String oneCommand) {
+        if (connectionThread.isTunnelled()) {
+            return oneCommand;
+        }
+        return host.getHoppedCommand(oneCommand);
+    }
+
     private SshOutput execOneCommand(final String oneCommand) {
         if (sshCommandTimeout > 0 && sshCommandTimeout < 2000) {
             LOG.appWarning("execOneCommand: timeout: " + sshCommandTimeout + " to small for timeout? " + command);
@@ -275,10 +446,10 @@ public final class ExecCommandThread extends Thread {
             LOG.debug2("execOneCommand: command: "
                        + host.getName()
                        + ": "
-                       + host.getSudoCommand(host.getHoppedCommand(oneCommand), true));
+                       + host.getSudoCommand(getHoppedCommand(oneCommand), true));
             thisSession.execCommand("bash -c '"
                                     + Tools.escapeSingleQuotes("export LC_ALL=C;"
-                                                               + host.getSudoCommand(host.getHoppedCommand(oneCommand),
+                                                               + host.getSudoCommand(getHoppedCommand(oneCommand),
                                                                                      false), 1) + '\'');
             outputString = execCommandAndCaptureOutput(oneCommand, thisSession);
             if (cancelIt) {
@@ -303,11 +474,46 @@ public final class ExecCommandThread extends Thread {
         return new SshOutput(outputString, exitCode);
     }
 
+    private SshOutput execOnCommandServer(final CommandServer commandServer, final String oneCommand) {
+        /* the command server already runs with sudo */
+        final String serverCommand = oneCommand.replaceAll(DistResource.SUDO, " ");
+        LOG.debug2("execOnCommandServer: command: " + host.getName() + ": " + serverCommand);
+        usedCommandServer = commandServer;
+        SshOutput sshOutput;
+        try {
+            sshOutput = commandServer.exec(serverCommand, sshCommandTimeout);
+        } catch (final IOException e) {
+            if (cancelIt) {
+                return new SshOutput("", 130);
+            }
+            LOG.appWarning("execOnCommandServer: " + host.getName() + ':' + e.getMessage() + ':' + oneCommand);
+            progressIndicator.progressIndicatorFailed(host.getName(),
+                                                      "SSH error: " + oneCommand.replaceAll(DistResource.SUDO, ""));
+            sshOutput = new SshOutput("", ERROR_EXIT_CODE);
+        } finally {
+            usedCommandServer = null;
+            commandServer.release();
+        }
+        if (cancelIt) {
+            return new SshOutput("", 130);
+        }
+        if (outputVisible) {
+            host.getTerminalPanel().addContent(sshOutput.getOutput());
+        }
+        if (commandVisible) {
+            host.getTerminalPanel().nextCommand();
+        }
+        LOG.debug2("execOnCommandServer: output: " + sshOutput.getExitCode() + ": " + host.getName() + ": "
+                   + sshOutput.getOutput());
+        return sshOutput;
+    }
+
     private String execCommandAndCaptureOutput(final String oneCommand, final Session thisSession) throws IOException {
         final InputStream stdout = thisSession.getStdout();
         final OutputStream stdin = thisSession.getStdin();
         final InputStream stderr = thisSession.getStderr();
-        final byte[] buff = new byte[EXEC_OUTPUT_BUFFER_SIZE];
+        final OutputDecoder stdoutDecoder = new OutputDecoder(EXEC_OUTPUT_BUFFER_SIZE);
+        final OutputDecoder stderrDecoder = new OutputDecoder(EXEC_OUTPUT_BUFFER_SIZE);
         boolean skipNextLine = false;
         final StringBuilder res = new StringBuilder("");
         while (true) {
@@ -350,8 +556,8 @@ public final class ExecCommandThread extends Thread {
                 /* OK, either STDOUT_DATA or STDERR_DATA (or both) */
                 /* ... is set. */
             }
-            final StringBuilder output = readStdout(stdout, buff);
-            if (output.indexOf(Ssh.SUDO_PROMPT) >= 0) {
+            final CharBuffer output = readStdout(stdout, stdoutDecoder);
+            if (OutputDecoder.contains(output, Ssh.SUDO_PROMPT)) {
                 if (sudoPwd == null) {
                     enterSudoPassword();
                 }
@@ -359,29 +565,30 @@ public final class ExecCommandThread extends Thread {
                 stdin.write(pwd.getBytes("UTF-8"));
                 skipNextLine = true;
                 continue;
-            } else if (output.indexOf(Ssh.SUDO_FAIL) >= 0) {
+            } else if (OutputDecoder.contains(output, Ssh.SUDO_FAIL)) {
                 host.setSudoPassword(null);
             } else {
                 if (skipNextLine) {
                     /* this is the "enter" after pwd */
                     skipNextLine = false;
-                    if (output.charAt(0) == 13 && output.charAt(1) == 10) {
-                        output.delete(0, 2);
+                    if (output.length() >= 2 && output.charAt(0) == 13 && output.charAt(1) == 10) {
+                        output.position(output.position() + 2);
                         if (output.length() == 0) {
                             continue;
                         }
                     }
                 }
             }
-            final StringBuilder errOutput = readStderr(stderr, buff);
-            res.append(errOutput);
+            res.append(readStderr(stderr, stderrDecoder));
             if (newOutputCallback != null && !cancelIt) {
-                LOG.debug2("execOneCommand: output: "
-                           + ": "
-                           + host.getName()
-                           + ": "
-                           + output.toString());
-                newOutputCallback.output(output.toString());
+                if (LOG.isDebug2Enabled()) {
+                    LOG.debug2("execOneCommand: output: "
+                               + ": "
+                               + host.getName()
+                               + ": "
+                               + output);
+                }
+                newOutputCallback.output(output);
             }
             if (cancelIt) {
                 return res.toString();
@@ -393,42 +600,26 @@ public final class ExecCommandThread extends Thread {
         return res.toString();
     }
 
-    /** If you below replace "while" with "if", then the way
-     * the output appears on the local stdout and stder streams
-     * is more "balanced". Addtionally reducing the buffer size
-     * will also improve the interleaving, but performance will
-     * slightly suffer. OKOK, that all matters only if you get
-     * HUGE amounts of stdout and stderr data =)
+    /**
+     * Returns the stdout, that has arrived. The chars are valid till the next
+     * read. Only the terminal panel gets its own copy.
      */
-    private StringBuilder readStdout(final InputStream stdout, final byte[] buff) throws IOException {
-        final StringBuilder output = new StringBuilder();
-        while (stdout.available() > 0 && !cancelIt) {
-            final int len = stdout.read(buff);
-            if (len > 0) {
-                final String buffString = new String(buff, 0, len, ENCODING);
-                output.append(buffString);
-                if (outputVisible) {
-                    host.getTerminalPanel().addContent(buffString);
-                }
-            }
+    private CharBuffer readStdout(final InputStream stdout, final OutputDecoder decoder) throws IOException {
+        final CharBuffer output = decoder.read(stdout);
+        if (outputVisible && output.hasRemaining()) {
+            host.getTerminalPanel().addContent(output.toString());
         }
         return output;
     }
 
-    private StringBuilder readStderr(final InputStream stderr, final byte[] buff) throws IOException {
-        final StringBuilder output = new StringBuilder();
-        while (stderr.available() > 0 && !cancelIt) {
-            // this is unreachable.
-            // stdout and stderr are mixed in the stdout
-            // if pty is requested.
-            final int len = stderr.read(buff);
-            if (len > 0) {
-                final String buffString = new String(buff, 0, len, ENCODING);
-                output.append(buffString);
-                if (outputVisible) {
-                    host.getTerminalPanel().addContentErr(buffString);
-                }
-            }
+    /**
+     * This is unreachable, stdout and stderr are mixed in the stdout, if
+     * pty is requested.
+     */
+    private CharBuffer readStderr(final InputStream stderr, final OutputDecoder decoder) throws IOException {
+        final CharBuffer output = decoder.read(stderr);
+        if (outputVisible && output.hasRemaining()) {
+            host.getTerminalPanel().addContentErr(output.toString());
         }
         return output;
     }
@@ -454,6 +645,8 @@ public final class ExecCommandThread extends Thread {
                 return true;
             } else {
                 host.setSudoPassword(sudoPwd);
+                /* the command server can be started with sudo now */
+                connectionThread.retryCommandServer();
             }
         }
         return false;
@@ -0,0 +1,253 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.cluster.service.ssh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lcmc.common.domain.ExecCallback;
+import lcmc.common.domain.Scheduler;
+import lcmc.host.domain.Host;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * One command, that runs on several hosts at the same time. Every host has
+ * its own deadline, after which it is reported as timed out, so that a
+ * slow host doesn't hold up the others. The callback is called once, after
+ * all hosts have finished, timed out or were canceled.
+ */
+public final class FanOut {
+    private static final Logger LOG = LoggerFactory.getLogger(FanOut.class);
+    /** Exit code of a host, whose deadline has passed, like timeout(1). */
+    public static final int TIMEOUT_EXIT_CODE = 124;
+    public static final int CANCELED_EXIT_CODE = 130;
+    private static final int ERROR_EXIT_CODE = 255;
+
+    /** Blocking task, that is executed for every host. */
+    public interface HostTask {
+        SshOutput execute(Host host);
+    }
+
+    /** Creates the command for a host, its exec callback is still called. */
+    public interface CommandFactory {
+        ExecCommandConfig createCommand(Host host);
+    }
+
+    public interface Callback {
+        void done(FanOut fanOut);
+    }
+
+    private final Host[] hosts;
+    private final Scheduler scheduler;
+    private final Callback callback;
+    private final ConcurrentMap<Host, SshOutput> outputs = new ConcurrentHashMap<Host, SshOutput>();
+    private final Map<Host, ExecCommandThread> runningCommands = new ConcurrentHashMap<Host, ExecCommandThread>();
+    private final List<Scheduler.Job> deadlineJobs = Collections.synchronizedList(new ArrayList<Scheduler.Job>());
+    private final CountDownLatch finishedLatch;
+    private final AtomicBoolean callbackCalled = new AtomicBoolean(false);
+    private volatile boolean canceled = false;
+
+    /** A host, that is in the array more than once, runs the command only once. */
+    FanOut(final Host[] hosts, final Scheduler scheduler, final Callback callback) {
+        final Set<Host> distinctHosts = new LinkedHashSet<Host>(Arrays.asList(hosts));
+        this.hosts = distinctHosts.toArray(new Host[distinctHosts.size()]);
+        this.scheduler = scheduler;
+        this.callback = callback;
+        finishedLatch = new CountDownLatch(this.hosts.length);
+    }
+
+    void start(final HostTask hostTask, final int deadlineMillis) {
+        if (hosts.length == 0) {
+            allFinished();
+            return;
+        }
+        for (final Host host : hosts) {
+            if (deadlineMillis > 0) {
+                deadlineJobs.add(scheduler.schedule("fan-out deadline " + host.getName(), new Runnable() {
+                    @Override
+                    public void run() {
+                        LOG.debug1("run: " + host.getName() + ": fan-out deadline has passed");
+                        cancelHost(host, TIMEOUT_EXIT_CODE);
+                    }
+                }, deadlineMillis));
+            }
+            scheduler.submit("fan-out " + host.getName(), new Runnable() {
+                @Override
+                public void run() {
+                    SshOutput output = null;
+                    try {
+                        output = hostTask.execute(host);
+                    } finally {
+                        runningCommands.remove(host);
+                        /* the host must finish even if the task failed */
+                        finished(host, output == null ? new SshOutput("", ERROR_EXIT_CODE) : output);
+                    }
+                }
+            });
+        }
+    }
+
+    /** Executes the commands with the host's ssh, they can be canceled. */
+    HostTask toHostTask(final CommandFactory commandFactory) {
+        return new HostTask() {
+            @Override
+            public SshOutput execute(final Host host) {
+                if (outputs.containsKey(host)) {
+                    return null;
+                }
+                final ExecCommandConfig execCommandConfig = commandFactory.createCommand(host);
+                final ExecCallback execCallback = execCommandConfig.getExecCallback();
+                final SshOutput[] output = new SshOutput[1];
+                execCommandConfig.execCallback(new ExecCallback() {
+                    @Override
+                    public void done(final String answer) {
+                        if (execCallback != null) {
+                            execCallback.done(answer);
+                        }
+                        output[0] = new SshOutput(answer, 0);
+                    }
+
+                    @Override
+                    public void doneError(final String answer, final int errorCode) {
+                        if (execCallback != null) {
+                            execCallback.doneError(answer, errorCode);
+                        }
+                        output[0] = new SshOutput(answer, errorCode);
+                    }
+                });
+                final ExecCommandThread execCommandThread = host.execCommand(execCommandConfig);
+                runningCommands.put(host, execCommandThread);
+                if (outputs.containsKey(host)) {
+                    /* deadline or cancel came in the meantime */
+                    execCommandThread.cancelTheSession();
+                }
+                execCommandThread.block();
+                return output[0];
+            }
+        };
+    }
+
+    /** Cancels the hosts, that haven't finished yet. */
+    public void cancel() {
+        canceled = true;
+        for (final Host host : hosts) {
+            cancelHost(host, CANCELED_EXIT_CODE);
+        }
+    }
+
+    /** Waits till all hosts have finished, timed out or were canceled. */
+    public FanOut await() {
+        try {
+            finishedLatch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return this;
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /** Returns whether the command was successful on all hosts. */
+    public boolean isSuccess() {
+        for (final Host host : hosts) {
+            final SshOutput output = outputs.get(host);
+            if (output == null || !output.isSuccess()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the output of the host or null, if it hasn't finished yet. */
+    public SshOutput getOutput(final Host host) {
+        return outputs.get(host);
+    }
+
+    /** Returns outputs of the hosts, that have finished, in order of the hosts. */
+    public Map<Host, SshOutput> getOutputs() {
+        final Map<Host, SshOutput> result = new LinkedHashMap<Host, SshOutput>();
+        for (final Host host : hosts) {
+            final SshOutput output = outputs.get(host);
+            if (output != null) {
+                result.put(host, output);
+            }
+        }
+        return result;
+    }
+
+    public List<Host> getTimedOutHosts() {
+        final List<Host> result = new ArrayList<Host>();
+        for (final Host host : hosts) {
+            final SshOutput output = outputs.get(host);
+            if (output != null && output.getExitCode() == TIMEOUT_EXIT_CODE) {
+                result.add(host);
+            }
+        }
+        return result;
+    }
+
+    private void cancelHost(final Host host, final int exitCode) {
+        if (finished(host, new SshOutput("", exitCode))) {
+            final ExecCommandThread execCommandThread = runningCommands.get(host);
+            if (execCommandThread != null) {
+                execCommandThread.cancelTheSession();
+            }
+        }
+    }
+
+    /** Records the first result of the host, returns false, if it already had one. */
+    private boolean finished(final Host host, final SshOutput output) {
+        if (outputs.putIfAbsent(host, output) != null) {
+            return false;
+        }
+        finishedLatch.countDown();
+        if (finishedLatch.getCount() == 0) {
+            allFinished();
+        }
+        return true;
+    }
+
+    private void allFinished() {
+        if (!callbackCalled.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (deadlineJobs) {
+            for (final Scheduler.Job job : deadlineJobs) {
+                job.cancel();
+            }
+        }
+        if (callback != null) {
+            callback.done(this);
+        }
+    }
+}
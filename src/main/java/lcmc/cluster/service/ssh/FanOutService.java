@@ -0,0 +1,71 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.cluster.service.ssh;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import lcmc.common.domain.Scheduler;
+import lcmc.host.domain.Host;
+
+/**
+ * Runs commands on all hosts at the same time, instead of a thread for
+ * every host, that every caller would have to start and join.
+ */
+@Named
+@Singleton
+public class FanOutService {
+    /** The hosts have only the ssh command timeouts. */
+    public static final int NO_DEADLINE = 0;
+
+    @Inject
+    private Scheduler scheduler;
+
+    /** Starts the commands and returns immediately, the callback is called at the end. */
+    public FanOut start(final Host[] hosts,
+                        final FanOut.CommandFactory commandFactory,
+                        final int deadlineMillis,
+                        final FanOut.Callback callback) {
+        final FanOut fanOut = new FanOut(hosts, scheduler, callback);
+        fanOut.start(fanOut.toHostTask(commandFactory), deadlineMillis);
+        return fanOut;
+    }
+
+    /** Starts the blocking tasks and returns immediately, the callback is called at the end. */
+    public FanOut startTasks(final Host[] hosts,
+                             final FanOut.HostTask hostTask,
+                             final int deadlineMillis,
+                             final FanOut.Callback callback) {
+        final FanOut fanOut = new FanOut(hosts, scheduler, callback);
+        fanOut.start(hostTask, deadlineMillis);
+        return fanOut;
+    }
+
+    /** Executes the commands and waits till all hosts have finished or timed out. */
+    public FanOut execOnHosts(final Host[] hosts, final FanOut.CommandFactory commandFactory, final int deadlineMillis) {
+        return start(hosts, commandFactory, deadlineMillis, null).await();
+    }
+
+    /** Executes the tasks and waits till all hosts have finished or timed out. */
+    public FanOut execTasksOnHosts(final Host[] hosts, final FanOut.HostTask hostTask, final int deadlineMillis) {
+        return startTasks(hosts, hostTask, deadlineMillis, null).await();
+    }
+}
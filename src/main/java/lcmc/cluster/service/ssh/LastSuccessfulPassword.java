@@ -48,8 +48,12 @@ public class LastSuccessfulPassword {
         this.dsaKey = dsaKey;
     }
 
+    public boolean isAnySet() {
+        return dsaKey != null || rsaKey != null || password != null;
+    }
+
     public void setPasswordsIfNoneIsSet(final String dsaKey, final String rsaKey, final String password) {
-        if (this.dsaKey == null && this.rsaKey == null && this.password == null) {
+        if (!isAnySet()) {
             this.dsaKey = dsaKey;
             this.rsaKey = rsaKey;
             this.password = password;
@@ -0,0 +1,88 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.cluster.service.ssh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes the output of one stream of a ssh session. The buffers are
+ * allocated once per stream and the decoded output is returned as a view
+ * into them, that is valid only till the next read.
+ *
+ * Bytes of a multi-byte character, that was split between two reads, are
+ * kept for the next read.
+ */
+final class OutputDecoder {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final CharsetDecoder decoder = UTF_8.newDecoder()
+                                                .onMalformedInput(CodingErrorAction.REPLACE)
+                                                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes;
+    /** UTF-8 never decodes to more chars than bytes. */
+    private final CharBuffer chars;
+
+    OutputDecoder(final int bufferSize) {
+        bytes = ByteBuffer.allocate(bufferSize);
+        chars = CharBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Reads the data, that has already arrived, without waiting for more,
+     * and returns it decoded. The returned chars are overwritten by the next
+     * read.
+     */
+    CharBuffer read(final InputStream in) throws IOException {
+        while (bytes.hasRemaining() && in.available() > 0) {
+            final int len = in.read(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            if (len < 0) {
+                break;
+            }
+            bytes.position(bytes.position() + len);
+        }
+        bytes.flip();
+        chars.clear();
+        decoder.decode(bytes, chars, false);
+        bytes.compact();
+        chars.flip();
+        return chars;
+    }
+
+    /** Returns whether the chars contain the string. */
+    static boolean contains(final CharSequence chars, final String s) {
+        final int last = chars.length() - s.length();
+        for (int i = 0; i <= last; i++) {
+            int j = 0;
+            while (j < s.length() && chars.charAt(i + j) == s.charAt(j)) {
+                j++;
+            }
+            if (j == s.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -24,7 +24,12 @@ package lcmc.cluster.service.ssh;
 
 import ch.ethz.ssh2.LocalPortForwarder;
 import ch.ethz.ssh2.SCPClient;
+import ch.ethz.ssh2.compression.CompressionCounters;
+import com.google.common.hash.Hashing;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -39,6 +44,7 @@ import lcmc.common.ui.ProgressBar;
 import lcmc.cluster.ui.SSHGui;
 import lcmc.common.domain.ConnectionCallback;
 import lcmc.common.domain.ExecCallback;
+import lcmc.common.domain.Scheduler;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
 import lcmc.common.domain.util.Tools;
@@ -61,6 +67,14 @@ public class Ssh {
     private static final String MESSAGE_CANCELED = "canceled";
     private static final String LOGOUT_COMMAND = "logout";
     private static final SshOutput NOT_CONNECTED_ERROR = new SshOutput("", 112);
+    private static final String TEMP_DIR = "/tmp";
+    /** Result of the scp method. */
+    public enum ScpResult {
+        UPLOADED,
+        UNCHANGED,
+        FAILED
+    }
+
     /** SSHGui object for enter password dialogs etc. */
     private SSHGui sshGui;
     /** Callback when connection is failed or properly closed. */
@@ -69,6 +83,7 @@ public class Ssh {
     @Inject
     private Provider<ConnectionThread> connectionThreadProvider;
     private ConnectionThread connectionThread;
+    private CommandExecutor commandExecutor;
     private ProgressBar progressBar = null;
 
     private final LastSuccessfulPassword lastSuccessfulPassword = new LastSuccessfulPassword();
@@ -87,6 +102,8 @@ public class Ssh {
     private SwingUtils swingUtils;
     @Inject
     private Provider<Authentication> authenticationProvider;
+    @Inject
+    private Scheduler scheduler;
 
     boolean reconnect() {
         swingUtils.isNotSwingThread();
@@ -123,6 +140,9 @@ public class Ssh {
         this.sshGui = sshGui;
         this.connectionCallback = connectionCallback;
         this.host = host;
+        if (commandExecutor == null) {
+            commandExecutor = new CommandExecutor(host.getName(), scheduler);
+        }
         if (connectionThread != null && connectionThread.isConnectionEstablished()) {
             connectionThread.setConnectionFailed(false);
             // already connected
@@ -158,6 +178,16 @@ public class Ssh {
         return lastSuccessfulPassword.getPassword();
     }
 
+    /** Returns whether the connection is being established at the moment. */
+    public boolean isConnecting() {
+        mConnectionThreadLock.lock();
+        try {
+            return connectionThread != null && connectionThread.isAlive();
+        } finally {
+            mConnectionThreadLock.unlock();
+        }
+    }
+
     /** Waits till connection is established or is failed. */
     public void waitForConnection() {
         mConnectionThreadLock.lock();
@@ -225,11 +255,13 @@ public class Ssh {
             if (connectionThread == null || !connectionThread.isConnectionEstablished()) {
                 return;
             }
+            logCompressionCounters();
             connectionThread.disconnectForGood();
             connectionThread.closeConnectionForGood();
         } finally {
             mConnectionLock.unlock();
         }
+        commandExecutor.cancelAll();
         LOG.debug("disconnect: host: " + host.getName());
         host.getTerminalPanel().addCommand(LOGOUT_COMMAND);
         host.getTerminalPanel().nextCommand();
@@ -272,6 +304,7 @@ public class Ssh {
         } finally {
             mConnectionLock.unlock();
         }
+        commandExecutor.cancelAll();
         LOG.debug("forceDisconnect: host: " + host.getName());
         host.getTerminalPanel().addCommand("logout");
         host.getTerminalPanel().nextCommand();
@@ -327,6 +360,7 @@ public class Ssh {
 
         execCommandConfig.host(host)
                          .connectionThread(connectionThread)
+                         .commandExecutor(commandExecutor)
                          .sshGui(sshGui)
                          .execCallback(execCallback)
                          .execute(mainPanel, progressIndicator).block();
@@ -342,6 +376,7 @@ public class Ssh {
         reconnect();
         return execCommandConfig.host(host)
                                 .connectionThread(connectionThread)
+                                .commandExecutor(commandExecutor)
                                 .sshGui(sshGui)
                                 .execute(mainPanel, progressIndicator);
     }
@@ -350,6 +385,7 @@ public class Ssh {
         reconnect();
         return execCommandConfig.host(host)
                                 .connectionThread(connectionThread)
+                                .commandExecutor(commandExecutor)
                                 .sshGui(sshGui)
                                 .capture(mainPanel, progressIndicator);
     }
@@ -360,7 +396,11 @@ public class Ssh {
             final String fileName = "/help-progs/lcmc-gui-helper";
             final String file = Tools.getFile(fileName);
             if (file != null) {
-                scp(file, "@GUI-HELPER-PROG@", "0700", false, null, null, null);
+                final ScpResult result = scp(file, "@GUI-HELPER-PROG@", "0700", false, null, null, null);
+                if (result == ScpResult.UPLOADED && connectionThread != null) {
+                    /* the running command server is from the old helper */
+                    connectionThread.resetCommandServer();
+                }
             }
         }
     }
@@ -415,20 +455,37 @@ public class Ssh {
     }
 
     /**
-     * Copies file to the /tmp/ dir on the remote host.
+     * Copies file to the remote host. The content is uploaded with scp to a
+     * temporary file and then moved in place with sudo. A file without the
+     * pre, post and install commands is not uploaded at all, if the remote
+     * file has the same checksum and, if the mode is set, the same mode.
      *
      * @param remoteFilename
      *          new file name on the other host
+     * @return whether the file was uploaded, was unchanged or the upload
+     *         failed
      */
-    public void scp(final String fileContent,
-                    final String remoteFilename,
-                    final String mode,
-                    final boolean makeBackup,
-                    String installCommand,
-                    final String preCommand,
-                    final String postCommand) {
+    public ScpResult scp(final String fileContent,
+                         final String remoteFilename,
+                         final String mode,
+                         final boolean makeBackup,
+                         String installCommand,
+                         final String preCommand,
+                         final String postCommand) {
         if  (!isConnected()) {
-            return;
+            return ScpResult.FAILED;
+        }
+        final byte[] data;
+        try {
+            data = fileContent.getBytes("UTF-8");
+        } catch (final UnsupportedEncodingException e) {
+            LOG.appError("scp: unsupported encoding", e);
+            return ScpResult.FAILED;
+        }
+        if (installCommand == null && preCommand == null && postCommand == null
+            && isRemoteFileUnchanged(data, remoteFilename, mode)) {
+            LOG.debug1("scp: " + host.getName() + ": " + remoteFilename + " is unchanged");
+            return ScpResult.UNCHANGED;
         }
         final String commands = buildScpCommand(remoteFilename, makeBackup, preCommand);
         String modeString = "";
@@ -443,28 +500,35 @@ public class Ssh {
         if (installCommand == null) {
             installCommand = "mv " + remoteFilename + ".new " + remoteFilename;
         }
-        final String commandTail = "\">" + remoteFilename + ".new"
-                                   + modeString
+        final String commandTail = modeString
 
                                    + "&& "
                                    + installCommand
 
                                    + postCommandString
                                    + backupString;
-        LOG.debug1("scp: " + commands + "echo \"..." + commandTail);
+        final String tempFile = uploadToTempFile(data);
+        final String writeCommand;
+        if (tempFile == null) {
+            /* printf writes the content without a new line, as scp, so that its sha1 sum matches */
+            LOG.debug1("scp: " + commands + "printf %s \"...\">" + remoteFilename + ".new" + commandTail);
+            writeCommand = "printf %s \"" + Tools.escapeQuotes(fileContent, 1) + "\">" + remoteFilename + ".new";
+        } else {
+            writeCommand = "{ cat " + tempFile + " >" + remoteFilename + ".new; rc=$?; rm -f " + tempFile
+                           + "; [ $rc = 0 ]; }";
+            LOG.debug1("scp: " + commands + writeCommand + commandTail);
+        }
         final String escapedBashCommand = DistResource.SUDO
                                           + "bash -c \""
-                                          + Tools.escapeQuotes(commands
-                                                               + "echo \""
-                                                               + Tools.escapeQuotes(fileContent, 1)
-                                                               + commandTail, 1)
+                                          + Tools.escapeQuotes(commands + writeCommand + commandTail, 1)
                                           + '"';
+        final AtomicBoolean uploaded = new AtomicBoolean(false);
         execCommand(new ExecCommandConfig()
                         .command(escapedBashCommand)
                         .execCallback(new ExecCallback() {
                                           @Override
                                           public void done(final String ans) {
-                                              /* ok */
+                                              uploaded.set(true);
                                           }
 
                                           @Override
@@ -478,6 +542,67 @@ public class Ssh {
                         .sshCommandTimeout(10000) /* smaller timeout */
                         .silentCommand()
                         .silentOutput()).block();
+        if (uploaded.get()) {
+            return ScpResult.UPLOADED;
+        }
+        return ScpResult.FAILED;
+    }
+
+    /**
+     * Returns true if the remote file exists and has the same sha1 sum as the
+     * data and, if the mode is not null, the same mode.
+     */
+    private boolean isRemoteFileUnchanged(final byte[] data, final String remoteFilename, final String mode) {
+        String command = DistResource.SUDO + "sha1sum " + remoteFilename + " 2>/dev/null";
+        if (mode != null) {
+            command += " && " + DistResource.SUDO + "stat -c %a " + remoteFilename;
+        }
+        final SshOutput remote = execCommandAndWait(new ExecCommandConfig()
+                                                        .command(command)
+                                                        .sshCommandTimeout(10000)
+                                                        .silentCommand()
+                                                        .silentOutput());
+        if (!remote.isSuccess()) {
+            return false;
+        }
+        final String[] fields = remote.getOutput().trim().split("\\s+");
+        if (!Hashing.sha1().hashBytes(data).toString().equals(fields[0])) {
+            return false;
+        }
+        if (mode == null) {
+            return true;
+        }
+        return fields.length > 2 && stripLeadingZeros(mode).equals(stripLeadingZeros(fields[fields.length - 1]));
+    }
+
+    /** Returns the octal mode without leading zeros, "0600" and "600" are the same mode. */
+    private static String stripLeadingZeros(final String mode) {
+        int i = 0;
+        while (i < mode.length() - 1 && mode.charAt(i) == '0') {
+            i++;
+        }
+        return mode.substring(i);
+    }
+
+    /**
+     * Uploads the data with scp to a temporary file, that only the user can
+     * read. Returns its name or null, if the upload wasn't possible, e.g. if
+     * the scp would go only to the first hop.
+     */
+    private String uploadToTempFile(final byte[] data) {
+        final String ipAddress = host.getIpAddress();
+        if (!connectionThread.isTunnelled() && ipAddress != null && ipAddress.indexOf(',') >= 0) {
+            return null;
+        }
+        final String tempName = "lcmc-upload-" + UUID.randomUUID();
+        try {
+            final SCPClient scpClient = new SCPClient(connectionThread.getConnection());
+            scpClient.put(data, tempName, TEMP_DIR, "0600");
+            return TEMP_DIR + '/' + tempName;
+        } catch (final IOException e) {
+            LOG.debug1("uploadToTempFile: " + host.getName() + ": scp failed: " + e.getMessage());
+            return null;
+        }
     }
 
     public void startVncPortForwarding(final String remoteHost, final int remotePort) throws IOException {
@@ -500,6 +625,56 @@ public class Ssh {
         }
     }
 
+    /**
+     * Returns how many bytes were sent and received before and after the
+     * compression, or null if the host is not connected.
+     */
+    public CompressionCounters getCompressionCounters() {
+        try {
+            return connectionThread.getConnection().getCompressionCounters();
+        } catch (final IOException e) {
+            return null;
+        } catch (final IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sends a keepalive to the host, without opening a session. Returns the
+     * round trip time in milliseconds or -1, if the host didn't answer in the
+     * timeout.
+     */
+    public long ping(final int timeout) {
+        if (!isConnected()) {
+            return -1;
+        }
+        try {
+            return connectionThread.getConnection().ping(timeout);
+        } catch (final IOException e) {
+            LOG.debug1("ping: " + host.getName() + ": " + e.getMessage());
+            return -1;
+        } catch (final IllegalStateException e) {
+            return -1;
+        }
+    }
+
+    private void logCompressionCounters() {
+        if (!host.isUseCompression()) {
+            return;
+        }
+        final CompressionCounters counters = getCompressionCounters();
+        if (counters != null) {
+            LOG.debug("disconnect: " + host.getName() + ": compression:"
+                      + " sent: " + counters.getSentRaw() + " / " + counters.getSentCompressed()
+                      + ", received: " + counters.getReceivedRaw() + " / " + counters.getReceivedCompressed());
+        }
+    }
+
+    /** Returns the executor of this host's commands, e.g. for its queue statistics. */
+    public CommandExecutor getCommandExecutor() {
+        return commandExecutor;
+    }
+
     public boolean isConnectionCanceled() {
         return connectionThread != null && connectionThread.isDisconnectedForGood();
     }
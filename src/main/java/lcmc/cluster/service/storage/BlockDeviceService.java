@@ -69,11 +69,23 @@ public class BlockDeviceService {
 
     @Subscribe
     public void blockDevicesChanged(final HwBlockDevicesChangedEvent event) {
-        final HostBlockDevices hostBlockDevices = new HostBlockDevices();
-        hostBlockDevices.setBlockDevices(event.getBlockDevices());
-        hostBlockDevicesByHost.put(event.getHost(), hostBlockDevices);
-        updateCommonBlockDeviceNames(Optional.fromNullable(event.getHost().getCluster()));
-        clusterEventBus.post(new BlockDevicesChangedEvent(event.getHost(), hostBlockDevices.getBlockDevices()));
+        HostBlockDevices hostBlockDevices = hostBlockDevicesByHost.get(event.getHost());
+        if (hostBlockDevices == null) {
+            hostBlockDevices = new HostBlockDevices();
+            hostBlockDevices.updateBlockDevices(event.getBlockDevices(), Collections.<BlockDevice>emptyList());
+            hostBlockDevicesByHost.put(event.getHost(), hostBlockDevices);
+            updateCommonBlockDeviceNames(Optional.fromNullable(event.getHost().getCluster()));
+            clusterEventBus.post(new BlockDevicesChangedEvent(event.getHost(), hostBlockDevices.getBlockDevices()));
+            return;
+        }
+        if (!event.getAddedBlockDevices().isEmpty() || !event.getRemovedBlockDevices().isEmpty()) {
+            hostBlockDevices.updateBlockDevices(event.getAddedBlockDevices(), event.getRemovedBlockDevices());
+            updateCommonBlockDeviceNames(Optional.fromNullable(event.getHost().getCluster()));
+        }
+        /* the changed devices were updated in place, only their views have to be updated */
+        clusterEventBus.post(new BlockDevicesChangedEvent(event.getHost(),
+                                                          hostBlockDevices.getBlockDevices(),
+                                                          event.getChangedBlockDevices()));
     }
 
     @Subscribe
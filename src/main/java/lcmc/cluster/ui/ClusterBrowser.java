@@ -72,6 +72,7 @@ import lcmc.drbd.ui.resource.GlobalInfo;
 import lcmc.drbd.ui.resource.ResourceInfo;
 import lcmc.drbd.ui.resource.VolumeInfo;
 import lcmc.event.NetworkChangedEvent;
+import lcmc.host.domain.HelperOutputDecoder;
 import lcmc.host.domain.Host;
 import lcmc.host.ui.ClusterHostsInfo;
 import lcmc.host.ui.HostBrowser;
@@ -183,6 +184,8 @@ public class ClusterBrowser extends Browser {
                                    new ArrayList<String>(Arrays.asList(CRM_TIMEOUT_PARAMETER, CRM_INTERVAL_PARAMETER));
     private static final String RESET_STRING = "---reset---\r\n";
     private static final int RESET_STRING_LEN = RESET_STRING.length();
+    /** How long to wait for a connected host, before the hosts are connected again. */
+    private static final int RECONNECT_INTERVAL = 30000;
     /** Match ...by-res/r0 or by-res/r0/0 from DRBD 8.4. */
     private static final Pattern DEV_DRBD_BY_RES_PATTERN = Pattern.compile("^/dev/drbd/by-res/([^/]+)(?:/(\\d+))?$");
     /** Hash that holds all hb classes with descriptions that appear in the
@@ -411,6 +414,22 @@ public class ClusterBrowser extends Browser {
         clusterViewPanel.setRightComponentInView(this, component);
     }
 
+    /** Returns whether the selected view needs the vm info, the services can be virtual domains too. */
+    public boolean isVmInfoShown() {
+        final DefaultMutableTreeNode node = getSelectedNode();
+        return node != null && (node.isNodeAncestor(vmsNode) || node.isNodeAncestor(crmNode));
+    }
+
+    /** Returns whether the selected view needs the drbd info. */
+    public boolean isDrbdInfoShown() {
+        final DefaultMutableTreeNode node = getSelectedNode();
+        return node != null && node.isNodeAncestor(drbdNode);
+    }
+
+    private DefaultMutableTreeNode getSelectedNode() {
+        return (DefaultMutableTreeNode) treeMenuController.getMenuTree().getLastSelectedPathComponent();
+    }
+
     /**
      * Saves positions of service and block devices from the heartbeat and drbd
      * graphs to the config files on every node.
@@ -600,7 +619,6 @@ public class ClusterBrowser extends Browser {
                 do { /* wait here until a host is connected. */
                     boolean notConnected = true;
                     for (final Host host : hosts) {
-                        // TODO: fix that, use latches or callback
                         if (host.isConnected()) {
                             /* at least one connected. */
                             notConnected = false;
@@ -612,12 +630,7 @@ public class ClusterBrowser extends Browser {
                     } else {
                         firstHost = getFirstHost();
                     }
-                    if (firstHost == null) {
-                        try {
-                            Thread.sleep(30000);
-                        } catch (final InterruptedException ex) {
-                            Thread.currentThread().interrupt();
-                        }
+                    if (firstHost == null && !cluster.waitForConnectedHost(RECONNECT_INTERVAL)) {
                         final boolean ok =
                                  cluster.connect(null, notConnectedCount < 1, notConnectedCount + 1);
                         if (!ok) {
@@ -677,16 +690,6 @@ public class ClusterBrowser extends Browser {
         }
     }
 
-    private void startPing(final Host host) {
-        while (true) {
-            host.startPing();
-            Tools.sleep(10000);
-            if (serverStatusCanceled) {
-                break;
-            }
-        }
-    }
-
     /** Start polling of the server status on one host. */
     void startServerStatus(final Host host) {
         final String hostName = host.getName();
@@ -782,13 +785,6 @@ public class ClusterBrowser extends Browser {
     void startConnectionStatusOnAllHosts() {
         final Host[] hosts = cluster.getHostsArray();
         for (final Host host : hosts) {
-            final Thread pingThread = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    startPing(host);
-                }
-            });
-            pingThread.start();
             host.startConnectionStatus();
         }
     }
@@ -885,10 +881,39 @@ public class ClusterBrowser extends Browser {
                    },
 
                    new NewOutputCallback() {
-                       private final StringBuffer outputBuffer = new StringBuffer(300);
+                       private boolean drbdUpdate;
+                       private boolean eventUpdate;
+                       private final HelperOutputDecoder decoder =
+                           new HelperOutputDecoder(host.getHostParser())
+                               .on("drbd", new HelperOutputDecoder.FrameConsumer() {
+                                   @Override
+                                   public void frame(final String drbdConfig) {
+                                       host.drbdStatusLock();
+                                       try {
+                                           final DrbdXml newDrbdXml = drbdXmlProvider.get();
+                                           newDrbdXml.init(cluster.getHostsArray(), hostDrbdParameters);
+                                           newDrbdXml.update(drbdConfig);
+                                           drbdXml = newDrbdXml;
+                                       } finally {
+                                           host.drbdStatusUnlock();
+                                       }
+                                       drbdUpdate = true;
+                                       firstTime.countDown();
+                                   }
+                               })
+                               .on("event", new HelperOutputDecoder.FrameConsumer() {
+                                   @Override
+                                   public void frame(final String event) {
+                                       if (drbdXml.parseDrbdEvent(host.getName(), drbdGraph, event)) {
+                                           host.setDrbdStatusOk(true);
+                                           eventUpdate = true;
+                                       }
+                                   }
+                               });
+
                        @Override
-                       public void output(final String output) {
-                           if ("--nm--".equals(output.trim())) {
+                       public void output(final CharSequence output) {
+                           if (Tools.equalsTrimmed(output, "--nm--")) {
                                if (host.isDrbdStatusOk()) {
                                    LOG.debug1("startDrbdStatus: host: " + host.getName());
                                    host.setDrbdStatusOk(false);
@@ -905,29 +930,9 @@ public class ClusterBrowser extends Browser {
                                drbdGraph.repaint();
                                clusterHostsInfo.updateTable(ClusterHostsInfo.MAIN_TABLE);
                            }
-                           outputBuffer.append(output);
-                           String drbdConfig, event;
-                           boolean drbdUpdate = false;
-                           boolean eventUpdate = false;
-                           do {
-                               host.drbdStatusLock();
-                               drbdConfig = host.getHostParser().getOutput("drbd", outputBuffer);
-                               if (drbdConfig != null) {
-                                   final DrbdXml newDrbdXml = drbdXmlProvider.get();
-                                   newDrbdXml.init(cluster.getHostsArray(), hostDrbdParameters);
-                                   newDrbdXml.update(drbdConfig);
-                                   drbdXml = newDrbdXml;
-                                   drbdUpdate = true;
-                                   firstTime.countDown();
-                               }
-                               host.drbdStatusUnlock();
-                               event = host.getHostParser().getOutput("event", outputBuffer);
-                               if (event != null && drbdXml.parseDrbdEvent(host.getName(), drbdGraph, event)) {
-                                   host.setDrbdStatusOk(true);
-                                   eventUpdate = true;
-                               }
-                           } while (event != null || drbdConfig != null);
-                           Tools.chomp(outputBuffer);
+                           drbdUpdate = false;
+                           eventUpdate = false;
+                           decoder.decode(output);
                            if (drbdUpdate) {
                                swingUtils.invokeLater(new Runnable() {
                                    @Override
@@ -982,6 +987,7 @@ public class ClusterBrowser extends Browser {
         serverStatusCanceled = true;
         final Host[] hosts = cluster.getHostsArray();
         for (final Host host : hosts) {
+            host.stopConnectionStatus();
             host.getHostParser().stopServerStatus();
         }
     }
@@ -1027,7 +1033,7 @@ public class ClusterBrowser extends Browser {
         }
     }
 
-    public void parseClusterOutput(final String output,
+    public void parseClusterOutput(final CharSequence output,
                             final StringBuffer clusterStatusOutput,
                             final Host host,
                             final CountDownLatch firstTime,
@@ -1039,7 +1045,7 @@ public class ClusterBrowser extends Browser {
             firstTime.countDown();
             return;
         }
-        if (output == null || "".equals(output)) {
+        if (output == null || output.length() == 0) {
             clusterStatus0.setOnlineNode(host.getName(), "no");
             setCrmStatus(host, false);
             firstTime.countDown();
@@ -1174,7 +1180,7 @@ public class ClusterBrowser extends Browser {
                         private final StringBuffer clusterStatusOutput = new StringBuffer(300);
 
                         @Override
-                        public void output(final String output) {
+                        public void output(final CharSequence output) {
                             parseClusterOutput(output, clusterStatusOutput, host, firstTime, runMode);
                         }
                     });
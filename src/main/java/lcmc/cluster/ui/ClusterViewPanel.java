@@ -24,6 +24,8 @@ import java.awt.BorderLayout;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.swing.Box;
+import javax.swing.event.TreeSelectionEvent;
+import javax.swing.event.TreeSelectionListener;
 import lcmc.cluster.domain.Cluster;
 import lcmc.common.ui.main.MainData;
 import lcmc.common.ui.ViewPanel;
@@ -46,7 +48,12 @@ public class ClusterViewPanel extends ViewPanel implements AllHostsUpdatable {
 
         clusterBrowser.init(cluster);
         cluster.setBrowser(clusterBrowser);
-        getTree(clusterBrowser);
+        getTree(clusterBrowser).addTreeSelectionListener(new TreeSelectionListener() {
+            @Override
+            public void valueChanged(final TreeSelectionEvent e) {
+                mainData.getClustersPanel().updateInfoVisibility();
+            }
+        });
         cluster.getBrowser().initClusterBrowser();
         cluster.getBrowser().setClusterViewPanel(this);
         add(Box.createVerticalStrut(4), BorderLayout.PAGE_START);
@@ -23,6 +23,7 @@
 package lcmc.cluster.ui;
 
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.GridLayout;
 import java.awt.Insets;
@@ -45,6 +46,7 @@ import lcmc.common.domain.Application;
 import lcmc.cluster.domain.Cluster;
 import lcmc.common.domain.UserConfig;
 import lcmc.common.ui.main.MainData;
+import lcmc.host.domain.Host;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
 import lcmc.common.domain.util.Tools;
@@ -90,6 +92,7 @@ public final class ClustersPanel extends JPanel {
             @Override
             public void stateChanged(final ChangeEvent changeEvent) {
                 final JTabbedPane prevSource = (JTabbedPane) changeEvent.getSource();
+                updateInfoVisibility();
                 final ClusterTab source = previouslySelectedTab;
                 previouslySelectedTab = (ClusterTab) prevSource.getSelectedComponent();
 
@@ -161,8 +164,33 @@ public final class ClustersPanel extends JPanel {
         tabbedPane.repaint();
     }
 
+    /**
+     * Only the hosts of the selected cluster need the info, and of that only
+     * the info of the view, that is shown, is needed often.
+     */
+    public void updateInfoVisibility() {
+        final Component selected = tabbedPane.getSelectedComponent();
+        for (int i = 0; i < tabbedPane.getTabCount(); i++) {
+            final Component tab = tabbedPane.getComponentAt(i);
+            if (!(tab instanceof ClusterTab)) {
+                continue;
+            }
+            final Cluster cluster = ((ClusterTab) tab).getCluster();
+            if (cluster == null) {
+                continue;
+            }
+            final boolean visible = tab == selected;
+            final ClusterBrowser browser = cluster.getBrowser();
+            final boolean vmVisible = visible && browser != null && browser.isVmInfoShown();
+            final boolean drbdVisible = visible && browser != null && browser.isDrbdInfoShown();
+            for (final Host host : cluster.getHosts()) {
+                host.getHostParser().setInfoVisible(visible, vmVisible, drbdVisible);
+            }
+        }
+    }
+
     public ClusterTab getClusterTab() {
-        final java.awt.Component sp = tabbedPane.getSelectedComponent();
+        final Component sp = tabbedPane.getSelectedComponent();
         if (sp == null) {
             return null;
         } else  {
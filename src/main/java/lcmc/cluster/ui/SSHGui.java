@@ -31,6 +31,8 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.swing.BoxLayout;
 import javax.swing.JApplet;
 import javax.swing.JDialog;
@@ -55,6 +57,8 @@ import lcmc.common.domain.util.Tools;
 public final class SSHGui {
     private static final Logger LOG = LoggerFactory.getLogger(SSHGui.class);
     private static final int DEFAULT_FIELD_LENGTH = 20;
+    /** Hosts that connect at the same time ask for passwords one after another. */
+    private static final Lock PROMPT_LOCK = new ReentrantLock();
     /** Root pane on which the dialogs are comming to. */
     private final Container rootPane;
     private final Host host;
@@ -89,18 +93,23 @@ public final class SSHGui {
                                        final String underText,
                                        final String defaultValue,
                                        final boolean isPassword) {
-        final EnterSomethingDialog esd;
-        if (rootPane instanceof JDialog) {
-            esd = new EnterSomethingDialog((JDialog) rootPane, title, content, underText, defaultValue, isPassword);
-        } else if (rootPane instanceof JApplet) {
-            esd = new EnterSomethingDialog((JApplet) rootPane, title, content, underText, defaultValue, isPassword);
-        } else {
-            esd = new EnterSomethingDialog((Frame) rootPane, title, content, underText, defaultValue, isPassword);
-        }
+        PROMPT_LOCK.lock();
+        try {
+            final EnterSomethingDialog esd;
+            if (rootPane instanceof JDialog) {
+                esd = new EnterSomethingDialog((JDialog) rootPane, title, content, underText, defaultValue, isPassword);
+            } else if (rootPane instanceof JApplet) {
+                esd = new EnterSomethingDialog((JApplet) rootPane, title, content, underText, defaultValue, isPassword);
+            } else {
+                esd = new EnterSomethingDialog((Frame) rootPane, title, content, underText, defaultValue, isPassword);
+            }
 
-        esd.setVisible(true);
+            esd.setVisible(true);
 
-        return esd.answer;
+            return esd.answer;
+        } finally {
+            PROMPT_LOCK.unlock();
+        }
     }
 
     /**
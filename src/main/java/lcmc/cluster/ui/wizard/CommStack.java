@@ -46,7 +46,8 @@ import lcmc.common.domain.ExecCallback;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
-import lcmc.cluster.service.ssh.ExecCommandThread;
+import lcmc.cluster.service.ssh.FanOut;
+import lcmc.cluster.service.ssh.FanOutService;
 import lcmc.common.domain.util.Tools;
 import lombok.val;
 
@@ -69,6 +70,8 @@ final class CommStack extends DialogCluster {
     private SwingUtils swingUtils;
     @Inject
     private WidgetFactory widgetFactory;
+    @Inject
+    private FanOutService fanOutService;
 
     @Override
     public WizardDialog nextDialog() {
@@ -103,41 +106,32 @@ final class CommStack extends DialogCluster {
     @Override
     protected void initDialogAfterVisible() {
         final Host[] hosts = getCluster().getHostsArray();
-        final ExecCommandThread[] infoThreads = new ExecCommandThread[hosts.length];
         getProgressBar().start(10000);
-        int i = 0;
-        for (final Host host : hosts) {
-            infoThreads[i] = host.execCommand(new ExecCommandConfig()
-                                                  .commandString("Cluster.Init.getInstallationInfo")
-                                                  .progressBar(getProgressBar())
-                                                  .execCallback(new ExecCallback() {
-                                                      @Override
-                                                      public void done(final String answer) {
-                                                          for (final String line : answer.split("\\r?\\n")) {
-                                                              host.getHostParser().parseInstallationInfo(line);
-                                                          }
-                                                      }
-                                                      @Override
-                                                      public void doneError(final String answer, final int errorCode) {
-                                                          skipButtonSetEnabled(false);
-                                                          LOG.error("initDialogAfterVisible: "
-                                                                    + host.getName()
-                                                                    + ": could not get install info: "
-                                                                    + answer);
+        fanOutService.execOnHosts(hosts, new FanOut.CommandFactory() {
+            @Override
+            public ExecCommandConfig createCommand(final Host host) {
+                return new ExecCommandConfig().commandString("Cluster.Init.getInstallationInfo")
+                                              .progressBar(getProgressBar())
+                                              .execCallback(new ExecCallback() {
+                                                  @Override
+                                                  public void done(final String answer) {
+                                                      for (final String line : answer.split("\\r?\\n")) {
+                                                          host.getHostParser().parseInstallationInfo(line);
                                                       }
-                                                  })
-                                                  .silentCommand()
-                                                  .silentOutput());
-            i++;
-        }
-        for (final ExecCommandThread t : infoThreads) {
-            /* wait for all of them */
-            try {
-                t.join();
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
+                                                  }
+                                                  @Override
+                                                  public void doneError(final String answer, final int errorCode) {
+                                                      skipButtonSetEnabled(false);
+                                                      LOG.error("initDialogAfterVisible: "
+                                                                + host.getName()
+                                                                + ": could not get install info: "
+                                                                + answer);
+                                                  }
+                                              })
+                                              .silentCommand()
+                                              .silentOutput();
             }
-        }
+        }, FanOutService.NO_DEADLINE);
         progressBarDone();
         boolean aisIsPossible = true;
         boolean hbIsPossible = true;
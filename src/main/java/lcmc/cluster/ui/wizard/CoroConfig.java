@@ -50,7 +50,6 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.SpringLayout;
 
-import lcmc.Exceptions.IllegalVersionException;
 import lcmc.common.ui.Access;
 import lcmc.common.ui.main.MainData;
 import lcmc.common.domain.AccessMode;
@@ -68,14 +67,15 @@ import lcmc.cluster.ui.widget.Check;
 import lcmc.cluster.ui.widget.Widget;
 import lcmc.cluster.ui.widget.WidgetFactory;
 import lcmc.crm.service.Corosync;
-import lcmc.common.domain.ExecCallback;
 import lcmc.cluster.service.NetworkService;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
 import lcmc.common.ui.utils.MyButton;
 import lcmc.crm.service.Openais;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
-import lcmc.cluster.service.ssh.ExecCommandThread;
+import lcmc.cluster.service.ssh.FanOut;
+import lcmc.cluster.service.ssh.FanOutService;
+import lcmc.cluster.service.ssh.SshOutput;
 import lcmc.common.domain.util.Tools;
 import lcmc.common.ui.utils.WidgetListener;
 
@@ -135,6 +135,8 @@ final class CoroConfig extends DialogCluster {
     private NetworkService networkService;
     @Inject
     private Access access;
+    @Inject
+    private FanOutService fanOutService;
 
     public void init(final WizardDialog previousDialog, final Cluster cluster) {
         super.init(previousDialog, cluster);
@@ -350,7 +352,6 @@ final class CoroConfig extends DialogCluster {
      */
     private boolean updateOldAisConfig() { /* is run in a thread */
         final Host[] hosts = getCluster().getHostsArray();
-        final ExecCommandThread[] ts = new ExecCommandThread[hosts.length];
         configStatus.setText(Tools.getString("Dialog.Cluster.CoroConfig.Loading"));
 
         String cf = "/etc/corosync/corosync.conf";
@@ -360,34 +361,21 @@ final class CoroConfig extends DialogCluster {
             command = "OpenAIS.getAisConfig";
         }
         final String configFile = cf;
+        final String commandString = command;
+        final FanOut fanOut = fanOutService.execOnHosts(hosts, new FanOut.CommandFactory() {
+            @Override
+            public ExecCommandConfig createCommand(final Host host) {
+                return new ExecCommandConfig().commandString(commandString)
+                                              .silentCommand()
+                                              .silentOutput();
+            }
+        }, FanOutService.NO_DEADLINE);
         int i = 0;
         for (final Host h : hosts) {
-            final int index = i;
-            ts[i] = h.execCommand(new ExecCommandConfig()
-                                      .commandString(command)
-                                      .execCallback(new ExecCallback() {
-                                          @Override
-                                          public void done(final String answer) {
-                                              configs[index] = answer;
-                                          }
-
-                                          @Override
-                                          public void doneError(final String answer, final int errorCode) {
-                                              configs[index] = OPENAIS_CONF_READ_ERROR_STRING;
-                                          }
-                                      })
-                                      .silentCommand()
-                                      .silentOutput());
+            final SshOutput sshOutput = fanOut.getOutput(h);
+            configs[i] = sshOutput != null && sshOutput.isSuccess() ? sshOutput.getOutput() : OPENAIS_CONF_READ_ERROR_STRING;
             i++;
         }
-        for (final ExecCommandThread t : ts) {
-            /* wait for all of them */
-            try {
-                t.join();
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
 
         boolean noConfigs = true;
         boolean configOk = false;
@@ -720,12 +708,7 @@ final class CoroConfig extends DialogCluster {
         config.append(Tools.getRelease());
         config.append("\n\n");
         final Host[] hosts = getCluster().getHostsArray();
-        boolean corosync2 = false;
-        try {
-           corosync2 = Tools.compareVersions(hosts[0].getHostParser().getCorosyncVersion(), "2") >= 0;
-        } catch (final IllegalVersionException e) {
-            LOG.appWarning("aisConfigHead: cannot compare corosync version: " + hosts[0].getHostParser().getCorosyncVersion());
-        }
+        final boolean corosync2 = hosts[0].getHostParser().getCapabilities().isCorosync2();
         if (!corosync2) {
             config.append(plugins(fake));
         }
@@ -801,12 +784,7 @@ final class CoroConfig extends DialogCluster {
     private CharSequence aisConfigPacemaker(final String tab, final String serviceVersion) {
         final StringBuilder config = new StringBuilder(120);
         final Host[] hosts = getCluster().getHostsArray();
-        boolean corosync2 = false;
-        try {
-           corosync2 = Tools.compareVersions(hosts[0].getHostParser().getCorosyncVersion(), "2") >= 0;
-        } catch (final IllegalVersionException e) {
-            LOG.appWarning("aisConfigPacemaker: cannot compare corosync version: " + hosts[0].getHostParser().getCorosyncVersion());
-        }
+        final boolean corosync2 = hosts[0].getHostParser().getCapabilities().isCorosync2();
         if (corosync2) {
             config.append("\nquorum {\n");
             config.append(tab);
@@ -53,7 +53,6 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.SpringLayout;
 
-import lcmc.Exceptions;
 import lcmc.common.ui.Access;
 import lcmc.common.ui.main.MainData;
 import lcmc.common.domain.AccessMode;
@@ -71,14 +70,15 @@ import lcmc.common.ui.WizardDialog;
 import lcmc.cluster.ui.widget.Check;
 import lcmc.cluster.ui.widget.Widget;
 import lcmc.cluster.ui.widget.WidgetFactory;
-import lcmc.common.domain.ExecCallback;
 import lcmc.crm.service.Heartbeat;
 import lcmc.cluster.service.NetworkService;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
 import lcmc.common.ui.utils.MyButton;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
-import lcmc.cluster.service.ssh.ExecCommandThread;
+import lcmc.cluster.service.ssh.FanOut;
+import lcmc.cluster.service.ssh.FanOutService;
+import lcmc.cluster.service.ssh.SshOutput;
 import lcmc.common.domain.util.Tools;
 import lcmc.common.ui.utils.WidgetListener;
 
@@ -205,6 +205,8 @@ final class HbConfig extends DialogCluster {
     private NetworkService networkService;
     @Inject
     private Access access;
+    @Inject
+    private FanOutService fanOutService;
 
     @Override
     public void init(final WizardDialog previousDialog, final Cluster cluster) {
@@ -277,17 +279,7 @@ final class HbConfig extends DialogCluster {
                                 final boolean configOk = updateOldHbConfig();
                                 if (dopdWidget.isSelected()) {
                                     for (final Host h : hosts) {
-                                        final String hbV = h.getHostParser().getHeartbeatVersion();
-                                        boolean wa = false;
-                                        try {
-                                            if (hbV != null && Tools.compareVersions(hbV, "3.0.2") <= 0) {
-                                                wa = true;
-                                            }
-                                        } catch (
-                                         final Exceptions.IllegalVersionException e) {
-                                            LOG.appWarning("run: " + e.getMessage(), e);
-                                        }
-                                        Heartbeat.enableDopd(h, wa);
+                                        Heartbeat.enableDopd(h, h.getHostParser().getCapabilities().needsDopdWorkaround());
                                     }
                                 }
                                 Heartbeat.reloadHeartbeats(hosts);
@@ -450,35 +442,21 @@ final class HbConfig extends DialogCluster {
      */
     private boolean updateOldHbConfig() { /* is run in a thread */
         final Host[] hosts = getCluster().getHostsArray();
-        final ExecCommandThread[] ts = new ExecCommandThread[hosts.length];
         configStatus.setText(Tools.getString("Dialog.Cluster.HbConfig.Loading"));
+        final FanOut fanOut = fanOutService.execOnHosts(hosts, new FanOut.CommandFactory() {
+            @Override
+            public ExecCommandConfig createCommand(final Host host) {
+                return new ExecCommandConfig().commandString("Heartbeat.getHbConfig")
+                                              .silentCommand()
+                                              .silentOutput();
+            }
+        }, FanOutService.NO_DEADLINE);
         int i = 0;
-
         for (final Host h : hosts) {
-            final int index = i;
-            ts[i] = h.execCommand(new ExecCommandConfig().commandString("Heartbeat.getHbConfig")
-                             .execCallback(new ExecCallback() {
-                                 @Override
-                                 public void done(final String answer) {
-                                     configs[index] = answer;
-                                 }
-                                 @Override
-                                 public void doneError(final String answer, final int errorCode) {
-                                     configs[index] = HA_CF_ERROR_STRING;
-                                 }
-                             })
-                             .silentCommand()
-                             .silentOutput());
+            final SshOutput sshOutput = fanOut.getOutput(h);
+            configs[i] = sshOutput != null && sshOutput.isSuccess() ? sshOutput.getOutput() : HA_CF_ERROR_STRING;
             i++;
         }
-        for (final ExecCommandThread t : ts) {
-            /* wait for all of them */
-            try {
-                t.join();
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
 
         boolean configOk = false;
         boolean noConfigs = true;
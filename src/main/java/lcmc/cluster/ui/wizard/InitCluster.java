@@ -64,7 +64,8 @@ import lcmc.logger.LoggerFactory;
 import lcmc.common.ui.utils.MyButton;
 import lcmc.crm.service.Openais;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
-import lcmc.cluster.service.ssh.ExecCommandThread;
+import lcmc.cluster.service.ssh.FanOut;
+import lcmc.cluster.service.ssh.FanOutService;
 import lcmc.common.domain.util.Tools;
 import lombok.val;
 
@@ -75,6 +76,8 @@ import lombok.val;
 public class InitCluster extends DialogCluster {
     private static final Logger LOG = LoggerFactory.getLogger(InitCluster.class);
     private static final int CHECK_INTERVAL = 1000;
+    /** A host that takes longer is not waited for in the periodic check. */
+    private static final int CHECK_CLUSTER_DEADLINE = 10000;
     private static final String HEARTBEAT_BUTTON_SWITCH_TEXT = Tools.getString("Dialog.Cluster.Init.HbButtonSwitch");
     private static final String COROSYNC_AIS_BUTTON_SWITCH_TEXT =
                                                           Tools.getString("Dialog.Cluster.Init.CsAisButtonSwitch");
@@ -121,6 +124,8 @@ public class InitCluster extends DialogCluster {
     private SwingUtils swingUtils;
     @Inject
     private Access access;
+    @Inject
+    private FanOutService fanOutService;
 
     public void init(final WizardDialog previousDialog, final Cluster cluster) {
         super.init(previousDialog, cluster);
@@ -213,40 +218,32 @@ public class InitCluster extends DialogCluster {
 
     /** Checks drbds and heartbeats on all nodes of the cluster. */
     private void checkCluster(final boolean periodic) {
-        /* check if modules are loaded. */
+        /* check if modules are loaded, a host that doesn't answer in time
+           keeps its last state. */
         final Host[] hosts = getCluster().getHostsArray();
-        final ExecCommandThread[] infoThreads = new ExecCommandThread[hosts.length];
-        int i = 0;
-        for (final Host h : hosts) {
-            infoThreads[i] = h.execCommand(new ExecCommandConfig()
-                                               .commandString("Cluster.Init.getInstallationInfo")
-                                               .execCallback(new ExecCallback() {
-                                                   @Override
-                                                   public void done(final String answer) {
-                                                       for (final String line : answer.split("\\r?\\n")) {
-                                                           h.getHostParser().parseInstallationInfo(line);
-                                                       }
-                                                   }
-                                                   @Override
-                                                   public void doneError(final String answer, final int errorCode) {
-                                                       LOG.appWarning("doneError: could not get install info");
-                                                   }
-                                               })
-                                               .silentCommand()
-                                               .silentOutput());
-            i++;
-        }
-        for (final ExecCommandThread t : infoThreads) {
-            /* wait for all of them */
-            try {
-                t.join();
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
+        fanOutService.execOnHosts(hosts, new FanOut.CommandFactory() {
+            @Override
+            public ExecCommandConfig createCommand(final Host h) {
+                return new ExecCommandConfig().commandString("Cluster.Init.getInstallationInfo")
+                                              .execCallback(new ExecCallback() {
+                                                  @Override
+                                                  public void done(final String answer) {
+                                                      for (final String line : answer.split("\\r?\\n")) {
+                                                          h.getHostParser().parseInstallationInfo(line);
+                                                      }
+                                                  }
+                                                  @Override
+                                                  public void doneError(final String answer, final int errorCode) {
+                                                      LOG.appWarning("doneError: could not get install info");
+                                                  }
+                                              })
+                                              .silentCommand()
+                                              .silentOutput();
             }
-        }
+        }, CHECK_CLUSTER_DEADLINE);
 
         /* DRBD */
-        i = 0;
+        int i = 0;
         final boolean lastDrbdLoadedExists = lastDrbdLoaded != null;
         if (!lastDrbdLoadedExists) {
             lastDrbdLoaded = new Boolean[hosts.length];
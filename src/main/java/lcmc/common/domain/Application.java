@@ -111,6 +111,8 @@ public class Application {
     private boolean noPassphrase = false;
     private boolean embedApplet = Tools.isLinux();
     private boolean cmdLog = false;
+    /** Whether the commands should go through the command server of the lcmc-gui-helper. */
+    private boolean commandServer = false;
     private Test autoTest = null;
 
     @Inject
@@ -513,6 +515,14 @@ public class Application {
         return cmdLog;
     }
 
+    public void setCommandServer(final boolean commandServer) {
+        this.commandServer = commandServer;
+    }
+
+    public boolean isCommandServer() {
+        return commandServer;
+    }
+
     /**
      * Returns default value for integer option from AppDefaults resource
      * bundle and scales it according the --scale option.
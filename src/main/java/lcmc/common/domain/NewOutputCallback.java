@@ -32,7 +32,8 @@ public interface NewOutputCallback {
      * that run in endless loop and spit an output line time to time.
      *
      * @param output
-     *          output of the command
+     *          output of the command, it is valid only during the call and
+     *          must be copied, if it's needed later
      */
-    void output(String output);
+    void output(CharSequence output);
 }
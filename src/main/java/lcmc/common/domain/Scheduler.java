@@ -0,0 +1,270 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.common.domain;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * One place for all timeouts and periodic jobs, instead of a sleeping thread
+ * for each of them.
+ *
+ * The timer runs in one thread, so the jobs must be short. The blocking jobs,
+ * e.g. the ones that wait for a ssh command, are handed over to the worker
+ * threads, that exist only while there is some work for them. A periodic job
+ * is scheduled again after it has finished.
+ */
+@Named
+@Singleton
+public class Scheduler {
+    private static final Logger LOG = LoggerFactory.getLogger(Scheduler.class);
+    private static final long PURGE_INTERVAL_SECONDS = 60;
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 60;
+
+    private final ScheduledThreadPoolExecutor timer =
+            new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setNameFormat("scheduler")
+                                                                         .setDaemon(true)
+                                                                         .build());
+    private final ThreadPoolExecutor workers =
+            new ThreadPoolExecutor(0,
+                                   Integer.MAX_VALUE,
+                                   WORKER_KEEP_ALIVE_SECONDS,
+                                   TimeUnit.SECONDS,
+                                   new SynchronousQueue<Runnable>(),
+                                   new ThreadFactoryBuilder().setNameFormat("scheduler-worker-%d")
+                                                             .setDaemon(true)
+                                                             .build());
+    private final Map<Job, Boolean> activeJobs = new ConcurrentHashMap<Job, Boolean>();
+    private final AtomicLong scheduledCount = new AtomicLong(0);
+    private final AtomicLong executedCount = new AtomicLong(0);
+    private final AtomicLong canceledCount = new AtomicLong(0);
+    private final AtomicLong failedCount = new AtomicLong(0);
+    private final AtomicLong totalLatenessMillis = new AtomicLong(0);
+    private final AtomicLong maxLatenessMillis = new AtomicLong(0);
+
+    public Scheduler() {
+        /* canceled timeouts would stay in the queue till their time otherwise */
+        timer.scheduleWithFixedDelay(new Runnable() {
+                                         @Override
+                                         public void run() {
+                                             timer.purge();
+                                         }
+                                     },
+                                     PURGE_INTERVAL_SECONDS,
+                                     PURGE_INTERVAL_SECONDS,
+                                     TimeUnit.SECONDS);
+    }
+
+    /** Runs the short task once after the delay, e.g. a timeout. */
+    public Job schedule(final String name, final Runnable task, final long delayMillis) {
+        return start(new Job(name, task, 0, false), delayMillis);
+    }
+
+    /** Runs the task, that may block, in a worker thread now. */
+    public Job submit(final String name, final Runnable task) {
+        return start(new Job(name, task, 0, true), 0);
+    }
+
+    /**
+     * Runs the task repeatedly, the delay is counted from the end of the
+     * previous run. Blocking tasks run in a worker thread.
+     */
+    public Job scheduleWithFixedDelay(final String name,
+                                      final Runnable task,
+                                      final long initialDelayMillis,
+                                      final long delayMillis,
+                                      final boolean blocking) {
+        return start(new Job(name, task, delayMillis, blocking), initialDelayMillis);
+    }
+
+    private Job start(final Job job, final long delayMillis) {
+        activeJobs.put(job, Boolean.TRUE);
+        job.scheduleNext(delayMillis);
+        return job;
+    }
+
+    /** Returns the statistics as a text for the debug info. */
+    public String getStatistics() {
+        final Map<String, Integer> periodicJobs = new TreeMap<String, Integer>();
+        int pendingTimeouts = 0;
+        for (final Job job : activeJobs.keySet()) {
+            if (job.isPeriodic()) {
+                final Integer count = periodicJobs.get(job.getName());
+                periodicJobs.put(job.getName(), count == null ? 1 : count + 1);
+            } else {
+                pendingTimeouts++;
+            }
+        }
+        final long executed = executedCount.get();
+        final StringBuilder s = new StringBuilder(300);
+        s.append("threads: ").append(timer.getPoolSize() + workers.getPoolSize())
+         .append(" (timer: ").append(timer.getPoolSize())
+         .append(", workers: ").append(workers.getPoolSize())
+         .append(", busy workers: ").append(workers.getActiveCount()).append(")\n");
+        s.append("queued: ").append(timer.getQueue().size())
+         .append(", pending timeouts: ").append(pendingTimeouts).append('\n');
+        s.append("scheduled: ").append(scheduledCount.get())
+         .append(", executed: ").append(executed)
+         .append(", canceled: ").append(canceledCount.get())
+         .append(", failed: ").append(failedCount.get()).append('\n');
+        s.append("lateness: avg ").append(executed == 0 ? 0 : totalLatenessMillis.get() / executed)
+         .append(" ms, max ").append(maxLatenessMillis.get()).append(" ms\n");
+        s.append("periodic jobs:\n");
+        for (final Map.Entry<String, Integer> entry : periodicJobs.entrySet()) {
+            s.append("    ").append(entry.getKey());
+            if (entry.getValue() > 1) {
+                s.append(" x").append(entry.getValue());
+            }
+            s.append('\n');
+        }
+        return s.toString();
+    }
+
+    /** Returns names of the periodic jobs, mostly for tests. */
+    public List<String> getPeriodicJobNames() {
+        final List<String> names = new ArrayList<String>();
+        for (final Job job : activeJobs.keySet()) {
+            if (job.isPeriodic()) {
+                names.add(job.getName());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private void recordLateness(final long latenessMillis) {
+        final long lateness = Math.max(latenessMillis, 0);
+        totalLatenessMillis.addAndGet(lateness);
+        while (true) {
+            final long max = maxLatenessMillis.get();
+            if (lateness <= max || maxLatenessMillis.compareAndSet(max, lateness)) {
+                return;
+            }
+        }
+    }
+
+    /** A scheduled timeout or periodic job, that can be canceled. */
+    public final class Job implements Runnable {
+        private final String name;
+        private final Runnable task;
+        private final long delayMillis;
+        private final boolean blocking;
+        private volatile boolean canceled = false;
+        private volatile ScheduledFuture<?> future = null;
+        private volatile long expectedTime;
+
+        private Job(final String name, final Runnable task, final long delayMillis, final boolean blocking) {
+            this.name = name;
+            this.task = task;
+            this.delayMillis = delayMillis;
+            this.blocking = blocking;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        boolean isPeriodic() {
+            return delayMillis > 0;
+        }
+
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        /** Cancels the job, the run that is in progress is not interrupted. */
+        public void cancel() {
+            if (canceled) {
+                return;
+            }
+            canceled = true;
+            canceledCount.incrementAndGet();
+            activeJobs.remove(this);
+            final ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+
+        private void scheduleNext(final long delay) {
+            if (canceled) {
+                return;
+            }
+            scheduledCount.incrementAndGet();
+            expectedTime = System.currentTimeMillis() + delay;
+            future = timer.schedule(this, delay, TimeUnit.MILLISECONDS);
+            if (canceled) {
+                future.cancel(false);
+            }
+        }
+
+        /** Called by the timer. */
+        @Override
+        public void run() {
+            if (canceled) {
+                return;
+            }
+            recordLateness(System.currentTimeMillis() - expectedTime);
+            if (blocking) {
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runTask();
+                    }
+                });
+            } else {
+                runTask();
+            }
+        }
+
+        private void runTask() {
+            try {
+                task.run();
+            } catch (final RuntimeException e) {
+                failedCount.incrementAndGet();
+                LOG.appError("runTask: job failed: " + name, e);
+            } finally {
+                executedCount.incrementAndGet();
+            }
+            if (isPeriodic()) {
+                scheduleNext(delayMillis);
+            } else {
+                activeJobs.remove(this);
+            }
+        }
+    }
+}
@@ -32,6 +32,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
@@ -51,6 +53,7 @@ import javax.xml.transform.stream.StreamResult;
 
 import lcmc.cluster.domain.Cluster;
 import lcmc.cluster.domain.Clusters;
+import lcmc.cluster.service.ssh.LastSuccessfulPassword;
 import lcmc.cluster.ui.ClusterBrowser;
 import lcmc.cluster.ui.ClusterTab;
 import lcmc.common.ui.utils.SwingUtils;
@@ -78,6 +81,7 @@ public final class UserConfig extends XMLTools {
     private static final String HOST_SSHPORT_ATTR = "ssh";
     private static final String HOST_COLOR_ATTR = "color";
     private static final String HOST_USESUDO_ATTR = "sudo";
+    private static final String HOST_COMPRESSION_ATTR = "compression";
     private static final String CLUSTER_NAME_ATTR = "name";
     private static final String HOST_NODE_STRING = "host";
     private static final String PROXY_HOST_NODE_STRING = "proxy-host";
@@ -102,6 +106,8 @@ public final class UserConfig extends XMLTools {
     private Hosts allHosts;
     @Inject
     private Clusters allClusters;
+    @Inject
+    private Scheduler scheduler;
     /**
      * @param saveAll whether to save clusters specified from the command line
      */
@@ -210,10 +216,14 @@ public final class UserConfig extends XMLTools {
 
     /**
      * Starts specified clusters and connects to the hosts of this clusters.
+     * The hosts of all clusters connect at the same time, after the first
+     * one has been connected, so that the user is asked for the password
+     * or key passphrase only once.
      */
     public void startClusters(final Collection<Cluster> selectedClusters) {
         final Set<Cluster> clusters = allClusters.getClusterSet();
         if (clusters != null) {
+            final LastSuccessfulPassword sharedPasswords = new LastSuccessfulPassword();
             /* clusters */
             for (final Cluster cluster : clusters) {
                 if (selectedClusters != null && !selectedClusters.contains(cluster)) {
@@ -228,7 +238,7 @@ public final class UserConfig extends XMLTools {
                 if (cluster.getHosts().isEmpty()) {
                     continue;
                 }
-                final boolean ok = cluster.connect(null, true, 1);
+                final boolean ok = cluster.connect(null, true, 1, sharedPasswords);
                 if (!ok) {
                     swingUtils.invokeLater(new Runnable() {
                         @Override
@@ -238,12 +248,25 @@ public final class UserConfig extends XMLTools {
                     });
                     continue;
                 }
-                final Runnable runnable = new Runnable() {
-                    @Override
-                    public void run() {
-                        for (final Host host : cluster.getHosts()) {
-                            host.waitOnLoading();
-                        }
+                addClusterViewAfterLoading(cluster);
+            }
+        }
+    }
+
+    /**
+     * Adds the cluster view as soon as the first host is loaded, or after
+     * all hosts have failed.
+     */
+    private void addClusterViewAfterLoading(final Cluster cluster) {
+        final AtomicBoolean added = new AtomicBoolean(false);
+        final AtomicInteger notLoaded = new AtomicInteger(cluster.getHosts().size());
+        for (final Host host : cluster.getHosts()) {
+            scheduler.submit("load " + host.getName(), new Runnable() {
+                @Override
+                public void run() {
+                    host.waitOnLoading();
+                    final boolean last = notLoaded.decrementAndGet() == 0;
+                    if ((host.isConnected() || last) && added.compareAndSet(false, true)) {
                         swingUtils.invokeLater(new Runnable() {
                             @Override
                             public void run() {
@@ -255,10 +278,8 @@ public final class UserConfig extends XMLTools {
                             }
                         });
                     }
-                };
-                final Thread thread = new Thread(runnable);
-                thread.start();
-            }
+                }
+            });
         }
     }
 
@@ -293,6 +314,7 @@ public final class UserConfig extends XMLTools {
                             final String sshPort = getAttribute(hostNode, HOST_SSHPORT_ATTR);
                             final String color = getAttribute(hostNode, HOST_COLOR_ATTR);
                             final String useSudo = getAttribute(hostNode, HOST_USESUDO_ATTR);
+                            final String compression = getAttribute(hostNode, HOST_COMPRESSION_ATTR);
                             final Node ipNode = getChildNode(hostNode, "ip");
                             String ip = null;
                             if (ipNode != null) {
@@ -300,7 +322,9 @@ public final class UserConfig extends XMLTools {
                             }
                             final Node usernameNode = getChildNode(hostNode, "user");
                             final String username = getText(usernameNode);
-                            setHost(hostMap, username, nodeName, ip, sshPort, color, "true".equals(useSudo), true);
+                            final Host host =
+                                    setHost(hostMap, username, nodeName, ip, sshPort, color, "true".equals(useSudo), true);
+                            host.setUseCompression("true".equals(compression));
                         }
                     }
                 }
@@ -327,7 +351,7 @@ public final class UserConfig extends XMLTools {
     }
 
     /** Create host object and initialize it from user config. */
-    public void setHost(final Map<String, List<Host>> hostMap,
+    public Host setHost(final Map<String, List<Host>> hostMap,
                         String username,
                         final String nodeName,
                         final String ip,
@@ -365,6 +389,7 @@ public final class UserConfig extends XMLTools {
             hostMap.put(nodeName, hostList);
         }
         hostList.add(host);
+        return host;
     }
 
     public void setHostCluster(final Map<String, List<Host>> hostMap,
@@ -425,6 +450,9 @@ public final class UserConfig extends XMLTools {
         if (useSudo != null && useSudo) {
             hostNode.setAttribute(HOST_USESUDO_ATTR, "true");
         }
+        if (host.isUseCompression()) {
+            hostNode.setAttribute(HOST_COMPRESSION_ATTR, "true");
+        }
         if (ip != null) {
             final Node ipNode = hostNode.appendChild(doc.createElement("ip"));
 
@@ -22,16 +22,21 @@
 
 package lcmc.common.domain;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -39,6 +44,13 @@ import org.xml.sax.SAXException;
  */
 public class XMLTools {
     private static final Logger LOG = LoggerFactory.getLogger(XMLTools.class);
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
 
     public static Node getChildNode(final Node node, final String tag) {
         final NodeList nodeList = node.getChildNodes();
@@ -82,19 +94,30 @@ public class XMLTools {
         return ch.getNodeValue();
     }
 
-    public static Document getXMLDocument(final String xmlraw) {
+    /** Returns the xml without the white space around it, or null if there is nothing to parse. */
+    private static String getXMLToParse(final String xmlraw) {
         if (xmlraw == null) {
             return null;
         }
         final String xml = xmlraw.trim();
-        final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        if (factory == null || xml.isEmpty() || "no resources defined!".equals(xml)) {
+        if (xml.isEmpty() || "no resources defined!".equals(xml)) {
+            return null;
+        }
+        return xml;
+    }
+
+    public static Document getXMLDocument(final String xmlraw) {
+        final String xml = getXMLToParse(xmlraw);
+        if (xml == null) {
             return null;
         }
         final Document document;
         try {
-            final DocumentBuilder builder = factory.newDocumentBuilder();
-            document = builder.parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+            final DocumentBuilder builder;
+            synchronized (DOCUMENT_BUILDER_FACTORY) {
+                builder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+            }
+            document = builder.parse(new InputSource(new StringReader(xml)));
         } catch (final SAXException sxe) {
             LOG.appError("getXMLDocument: could not parse: " + xml, sxe);
             return null;
@@ -105,4 +128,75 @@ public class XMLTools {
         }
         return document;
     }
+
+    /**
+     * Returns reader, that goes through the xml once, without building the
+     * document, or null if there is nothing to parse. It is at the root
+     * element, or at the end, if the xml has no elements.
+     */
+    public static XMLStreamReader getXMLStreamReader(final String xmlraw) throws XMLStreamException {
+        final String xml = getXMLToParse(xmlraw);
+        if (xml == null) {
+            return null;
+        }
+        final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+        while (reader.hasNext() && !reader.isStartElement()) {
+            reader.next();
+        }
+        return reader;
+    }
+
+    /**
+     * Goes to the next child element of the current element and returns
+     * true, or goes to the end of the current element and returns false.
+     * The children, that are not needed, must be skipped with skipElement.
+     */
+    public static boolean nextChildElement(final XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /** Goes to the end of the current element. */
+    public static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    public static String getAttribute(final XMLStreamReader reader, final String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    /** Returns the text before the first child and goes to the end of the current element, like getText. */
+    public static String getText(final XMLStreamReader reader) throws XMLStreamException {
+        final StringBuilder text = new StringBuilder();
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.CHARACTERS
+                || event == XMLStreamConstants.SPACE
+                || event == XMLStreamConstants.CDATA) {
+                text.append(reader.getText());
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                skipElement(reader);
+                skipElement(reader);
+                break;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+        }
+        return text.toString();
+    }
 }
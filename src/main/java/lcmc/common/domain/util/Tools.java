@@ -81,7 +81,11 @@ import javax.swing.text.html.HTMLDocument;
 
 import com.google.common.base.Optional;
 
+import lcmc.AppContext;
 import lcmc.Exceptions;
+import lcmc.cluster.service.ssh.FanOut;
+import lcmc.cluster.service.ssh.FanOutService;
+import lcmc.cluster.service.ssh.SshOutput;
 import lcmc.common.domain.ConvertCmdCallback;
 import lcmc.common.domain.StringValue;
 import lcmc.configs.DistResource;
@@ -750,7 +754,7 @@ public final class Tools {
 
     /**
      * Creates config on all hosts with specified name in the specified
-     * directory.
+     * directory. The hosts are done at the same time.
      */
     public static void createConfigOnAllHosts(final Host[] hosts,
                                               final String config,
@@ -758,9 +762,13 @@ public final class Tools {
                                               final String dir,
                                               final String mode,
                                               final boolean makeBackup) {
-        for (final Host host : hosts) {
-            host.getSSH().createConfig(config, fileName, dir, mode, makeBackup, null, null);
-        }
+        AppContext.getBean(FanOutService.class).execTasksOnHosts(hosts, new FanOut.HostTask() {
+            @Override
+            public SshOutput execute(final Host host) {
+                host.getSSH().createConfig(config, fileName, dir, mode, makeBackup, null, null);
+                return new SshOutput("", 0);
+            }
+        }, FanOutService.NO_DEADLINE);
     }
 
     /** Returns border with title. */
@@ -1259,14 +1267,7 @@ public final class Tools {
      * Heartbeat 2.1.4.
      */
     public static boolean versionBeforePacemaker(final Host host) {
-        final String hbV = host.getHostParser().getHeartbeatVersion();
-        final String pcmkV = host.getHostParser().getPacemakerVersion();
-        try {
-            return pcmkV == null && hbV != null && Tools.compareVersions(hbV, "2.99.0") < 0;
-        } catch (final Exceptions.IllegalVersionException e) {
-            LOG.appWarning("versionBeforePacemaker: " + e.getMessage(), e);
-            return false;
-        }
+        return host.getHostParser().getCapabilities().isBeforePacemaker();
     }
 
     /** Trim the white space (' ', '\n') at the end of the string buffer.*/
@@ -1282,6 +1283,27 @@ public final class Tools {
         }
     }
 
+    /** Returns whether the chars are equal to the string, if whitespace at both ends is ignored. */
+    public static boolean equalsTrimmed(final CharSequence chars, final String s) {
+        int start = 0;
+        int end = chars.length();
+        while (start < end && chars.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && chars.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (chars.charAt(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /** Return brigher version of the color (or darker). */
     public static Color brighterColor(final Color c, final double x) {
         double r = c.getRed() * x;
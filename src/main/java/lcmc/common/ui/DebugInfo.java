@@ -0,0 +1,100 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.ui;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.SpringLayout;
+
+import lcmc.cluster.service.ssh.CommandExecutor;
+import lcmc.common.domain.Scheduler;
+import lcmc.common.domain.util.Tools;
+import lcmc.host.domain.Host;
+import lcmc.host.domain.Hosts;
+
+/**
+ * Shows the statistics of the scheduler and of the ssh command executors.
+ */
+@Named
+public final class DebugInfo extends ConfigDialog {
+    @Inject
+    private Scheduler scheduler;
+    @Inject
+    private Hosts allHosts;
+
+    @Override
+    protected void initDialogBeforeVisible() {
+        super.initDialogBeforeVisible();
+        enableComponents();
+    }
+
+    @Override
+    protected String getDialogTitle() {
+        return Tools.getString("Dialog.DebugInfo.Title");
+    }
+
+    @Override
+    protected String getDescription() {
+        return Tools.getString("Dialog.DebugInfo.Description");
+    }
+
+    @Override
+    protected JComponent getInputPane() {
+        final JPanel pane = new JPanel(new SpringLayout());
+        final JScrollPane sp = getAnswerPane(getStatistics());
+
+        pane.add(sp);
+        SpringUtilities.makeCompactGrid(pane, 1, 1,  //rows, cols
+                                              1, 1,  //initX, initY
+                                              1, 1); //xPad, yPad
+        return pane;
+    }
+
+    private String getStatistics() {
+        final StringBuilder s = new StringBuilder(1000);
+        s.append("scheduler\n").append(scheduler.getStatistics());
+        for (final Host host : allHosts.getHostsArray()) {
+            final CommandExecutor commandExecutor = host.getSSH().getCommandExecutor();
+            if (commandExecutor == null) {
+                continue;
+            }
+            s.append('\n').append(host.getName())
+             .append("\nkeepalive rtt: ").append(host.getPingRtt()).append(" ms")
+             .append("\nqueued: ").append(commandExecutor.getQueueDepth())
+             .append(", active: ").append(commandExecutor.getActiveCount())
+             .append(", threads: ").append(commandExecutor.getPoolSize())
+             .append("\nsubmitted: ").append(commandExecutor.getSubmittedCount())
+             .append(", completed: ").append(commandExecutor.getCompletedCount())
+             .append("\ndropped host info: ").append(host.getHostParser().getDroppedInfoCount())
+             .append("\nhelper sections:");
+            for (final Map.Entry<String, Long> sectionTime : host.getHostParser().getHelperSectionTimes().entrySet()) {
+                s.append(' ').append(sectionTime.getKey()).append(' ').append(sectionTime.getValue()).append(" ms");
+            }
+            s.append('\n');
+        }
+        return s.toString();
+    }
+}
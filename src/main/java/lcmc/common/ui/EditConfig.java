@@ -46,11 +46,12 @@ import lcmc.common.ui.main.ProgressIndicator;
 import lcmc.common.ui.utils.SwingUtils;
 import lcmc.configs.DistResource;
 import lcmc.host.domain.Host;
-import lcmc.common.domain.ExecCallback;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
-import lcmc.cluster.service.ssh.ExecCommandThread;
+import lcmc.cluster.service.ssh.FanOut;
+import lcmc.cluster.service.ssh.FanOutService;
+import lcmc.cluster.service.ssh.SshOutput;
 import lcmc.common.domain.util.Tools;
 
 /**
@@ -74,6 +75,8 @@ public final class EditConfig extends ConfigDialog {
     private ProgressIndicator progressIndicator;
     @Inject
     private SwingUtils swingUtils;
+    @Inject
+    private FanOutService fanOutService;
 
     public void init(final String fileToEdit, final Set<Host> hosts) {
         this.fileToEdit = fileToEdit;
@@ -141,39 +144,33 @@ public final class EditConfig extends ConfigDialog {
 
     @Override
     protected void initDialogAfterVisible() {
-        final ExecCommandThread[] threads = new ExecCommandThread[hosts.size()];
         final String[] results = new String[hosts.size()];
         final Integer[] errors = new Integer[hosts.size()];
+        final FanOut fanOut = fanOutService.execOnHosts(hosts.toArray(new Host[hosts.size()]),
+                                                        new FanOut.CommandFactory() {
+            @Override
+            public ExecCommandConfig createCommand(final Host host) {
+                return new ExecCommandConfig().command(DistResource.SUDO + "cat " + fileToEdit);
+            }
+        }, FanOutService.NO_DEADLINE);
         int i = 0;
         for (final Host host : hosts) {
-            final int index = i;
-            final ExecCallback execCallback =
-                new ExecCallback() {
-                    @Override
-                    public void done(final String answer) {
-                        final String text = answer.replaceAll("\r", "").replaceFirst("\n$", "");
-                        results[index] = text;
-                        errors[index] = 0;
-                    }
-
-                    @Override
-                    public void doneError(final String answer, final int errorCode) {
-                        results[index] = answer;
-                        errors[index] = errorCode;
-                        LOG.sshError(host, "", answer, "", errorCode);
-                    }
-
-                };
-            threads[i] = host.execCommand(new ExecCommandConfig().command(DistResource.SUDO + "cat " + fileToEdit)
-                                                                 .execCallback(execCallback));
-            i++;
-        }
-        for (final ExecCommandThread t : threads) {
-            try {
-                t.join(0);
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
+            final SshOutput sshOutput = fanOut.getOutput(host);
+            if (sshOutput == null) {
+                /* not finished, e.g. the thread was interrupted */
+                results[i] = "";
+                errors[i] = FanOut.CANCELED_EXIT_CODE;
+                i++;
+                continue;
             }
+            if (sshOutput.isSuccess()) {
+                results[i] = sshOutput.getOutput().replaceAll("\r", "").replaceFirst("\n$", "");
+            } else {
+                results[i] = sshOutput.getOutput();
+                LOG.sshError(host, "", sshOutput.getOutput(), "", sshOutput.getExitCode());
+            }
+            errors[i] = sshOutput.getExitCode();
+            i++;
         }
         i = 0;
         for (final Host host : hosts) {
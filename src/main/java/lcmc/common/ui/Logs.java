@@ -66,6 +66,9 @@ import lcmc.logger.LoggerFactory;
 import lcmc.common.ui.utils.MyButton;
 import lcmc.common.domain.util.Tools;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
+import lcmc.cluster.service.ssh.FanOut;
+import lcmc.cluster.service.ssh.FanOutService;
+import lcmc.cluster.service.ssh.SshOutput;
 
 /**
  * An implementation of an dialog with log files from many hosts.
@@ -73,6 +76,7 @@ import lcmc.cluster.service.ssh.ExecCommandConfig;
 @Named
 public class Logs extends ConfigDialog {
     private static final Logger LOG = LoggerFactory.getLogger(Logs.class);
+    private static final int LOGS_TIMEOUT = 30000;
     private final JTextPane logTextArea = new JTextPane();
     private final Map<String, JCheckBox> patternToCheckBoxMap = new HashMap<String, JCheckBox>();
     private final Lock mRefreshLock = new ReentrantLock();
@@ -80,6 +84,8 @@ public class Logs extends ConfigDialog {
     @Inject
     private SwingUtils swingUtils;
     @Inject
+    private FanOutService fanOutService;
+    @Inject
     private WidgetFactory widgetFactory;
 
     /**
@@ -165,51 +171,45 @@ public class Logs extends ConfigDialog {
     protected final void refreshLogs() {
         enableAllComponents(false);
         final Host[] hosts = getHosts();
-        final Thread[] threads = new Thread[hosts.length];
-        final String[] texts = new String[hosts.length];
-
         final Map<String, String> replaceHash = getOptionsHash();
 
-        int i = 0;
         final String stacktrace = Tools.getStackTrace();
-        for (final Host host : hosts) {
-            final int index = i;
-            final String command = host.getHostParser().getDistCommand(logFileCommand(), replaceHash);
-            threads[index] = host.execCommand(new ExecCommandConfig()
-                                                   .command(command)
-                                                   .execCallback(new ExecCallback() {
-                                                       @Override
-                                                       public void done(final String answer) {
-                                                           texts[index] = answer;
-                                                       }
-                                                       @Override
-                                                       public void doneError(final String answer,
-                                                                             final int errorCode) {
-                                                           texts[index] = host.getName() + ": " + answer + '\n';
-                                                           LOG.sshError(host, command, answer, stacktrace, errorCode);
-                                                       }
-                                                   })
-                                                   .sshCommandTimeout(30000)
-                                                   .silentCommand()
-                                                   .silentOutput());
-            i++;
-        }
-        i = 0;
+        final FanOut fanOut = fanOutService.execOnHosts(hosts, new FanOut.CommandFactory() {
+            @Override
+            public ExecCommandConfig createCommand(final Host host) {
+                final String command = host.getHostParser().getDistCommand(logFileCommand(), replaceHash);
+                return new ExecCommandConfig().command(command)
+                                              .execCallback(new ExecCallback() {
+                                                  @Override
+                                                  public void done(final String answer) {
+                                                  }
+                                                  @Override
+                                                  public void doneError(final String answer, final int errorCode) {
+                                                      LOG.sshError(host, command, answer, stacktrace, errorCode);
+                                                  }
+                                              })
+                                              .sshCommandTimeout(LOGS_TIMEOUT)
+                                              .silentCommand()
+                                              .silentOutput();
+            }
+        }, LOGS_TIMEOUT);
         final StringBuilder ans = new StringBuilder("");
-        for (final Thread t : threads) {
-            try {
-                t.join();
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
+        for (final Host host : hosts) {
+            final SshOutput sshOutput = fanOut.getOutput(host);
+            if (sshOutput == null) {
+                /* not finished, e.g. the thread was interrupted */
+                ans.append(host.getName()).append(": no answer\n");
+            } else if (sshOutput.isSuccess()) {
+                ans.append(sshOutput.getOutput());
+            } else {
+                ans.append(host.getName()).append(": ").append(sshOutput.getOutput()).append('\n');
             }
-            ans.append(texts[i]);
-            i++;
         }
         final String[] output = ans.toString().split("\r\n");
         final String[] months = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
         final Pattern p = Pattern.compile('(' + Tools.join("|", months) + ") +(\\d+) +(\\d+):(\\d+):(\\d+).*");
         final Map<String, Integer> monthsHash = new HashMap<String, Integer>();
-        i = 0;
+        int i = 0;
         for (final String m : months) {
             monthsHash.put(m, i);
             i++;
@@ -308,7 +308,7 @@ public class Logs extends ConfigDialog {
     }
 
     protected final String wordBoundary(final String w) {
-        return "\\\\<" + w + "\\\\>";
+        return "\\<" + w + "\\>";
     }
 
     /** Returns a map from pattern name to its pattern. */
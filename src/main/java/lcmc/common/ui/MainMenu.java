@@ -123,6 +123,8 @@ public final class MainMenu extends JPanel implements ActionListener {
     @Inject
     private About aboutDialog;
     @Inject
+    private Provider<DebugInfo> debugInfoProvider;
+    @Inject
     private Dialogs dialogs;
     @Inject
     private Access access;
@@ -238,6 +240,12 @@ public final class MainMenu extends JPanel implements ActionListener {
                     0,
                     aboutActionListener(),
                     null);
+        addMenuItem(Tools.getString("MainMenu.DebugInfo"),
+                    submenu,
+                    KeyEvent.VK_D,
+                    0,
+                    debugInfoActionListener(),
+                    null);
 
         menuBar.add(submenu);
 
@@ -522,6 +530,22 @@ public final class MainMenu extends JPanel implements ActionListener {
         };
     }
 
+    private ActionListener debugInfoActionListener() {
+        return new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                LOG.debug1("actionPerformed: MENU ACTION: debug info");
+                final Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        debugInfoProvider.get().showDialog();
+                    }
+                });
+                t.start();
+            }
+        };
+    }
+
     /** Bug report action listener. */
     private ActionListener bugReportActionListener() {
         return new ActionListener() {
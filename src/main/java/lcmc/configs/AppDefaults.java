@@ -61,6 +61,9 @@ public final class AppDefaults extends ListResourceBundle {
         {"DrbdMC.height",                        768},
 
         {"MainPanel.TerminalPanelHeight",        150},
+        {"TerminalPanel.MaxLines",               2000},
+        {"TerminalPanel.MaxPendingChars",        100000}, /* per refresh, the rest is dropped */
+        {"TerminalPanel.RefreshInterval",        40},     /* ms */
 
         {"ConfigDialog.width",                   880},
         {"ConfigDialog.height",                  400},
@@ -339,6 +342,10 @@ public final class AppDefaults extends ListResourceBundle {
         {"SSH.KexTimeout",           0}, /* milliseconds, 0 no timeout */
         {"SSH.Command.Timeout.Long", 0},     /* milliseconds, 0 no timeout */
         {"SSH.Command.Timeout",      180000}, /* milliseconds */
+        {"SSH.Command.Threads",      8},     /* worker threads per host */
+        {"SSH.ChannelWindow.Max",    2097152}, /* bytes, per channel */
+        {"HostParser.PollInterval",           10}, /* seconds, hw, vm and drbd info, that is shown */
+        {"HostParser.BackgroundPollInterval", 60}, /* seconds, info, that is not shown */
         {"ProgressBar.Sleep",        100},   /* milliseconds */
         {"ProgressBar.Delay",        50},    /* milliseconds */
 
@@ -86,6 +86,9 @@ public final class TextResource extends ListResourceBundle {
         {"MainMenu.BugReport",
          "Bug Report"},
 
+        {"MainMenu.DebugInfo",
+         "Debug Info"},
+
         {"MainMenu.DrbdGuiFiles",
          "DRBD Management Console files"},
 
@@ -224,6 +227,9 @@ public final class TextResource extends ListResourceBundle {
         {"Dialog.Host.NewHost.UseSudo",
          "Use sudo:"},
 
+        {"Dialog.Host.NewHost.UseCompression",
+         "Use compression:"},
+
         {"Dialog.Host.NewHost.EnterPassword",
          "Password:"},
 
@@ -764,6 +770,12 @@ public final class TextResource extends ListResourceBundle {
          "Select configs you would like to send. You can edit the text"
          + " bellow if you want. You can also send it to lcmcgui@gmail.com." },
 
+        {"Dialog.DebugInfo.Title",
+         "Debug Info"},
+
+        {"Dialog.DebugInfo.Description",
+         "Timers, periodic jobs and ssh command queues."},
+
         {"Dialog.About.Licences",
 "Linux Cluster Management Console is free software; you can redistribute it and/or\n"
 + "modify it under the terms of the GNU General Public License as published\n"
@@ -2041,6 +2053,9 @@ public final class TextResource extends ListResourceBundle {
         {"SSH.SudoAuthentication",
          "Sudo Authentication"},
 
+        {"TerminalPanel.OutputDropped",
+         "... output was too fast, characters dropped:"},
+
         {"Heartbeat.getClusterMetadata",
          "getting metadata"},
 
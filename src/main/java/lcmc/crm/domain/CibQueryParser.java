@@ -0,0 +1,1076 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.crm.domain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import lcmc.common.domain.StringValue;
+import lcmc.common.domain.Value;
+import lcmc.common.domain.XMLTools;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+import org.apache.commons.collections15.map.MultiKeyMap;
+
+/**
+ * Parses the output of the cibadmin query in one pass with a StAX reader
+ * and fills the CibQuery, without building the DOM document. Only the
+ * attributes of the lrm resources are kept from the status section, the
+ * node states are applied after the configuration was parsed, so that the
+ * resources and nodes are known.
+ *
+ * It is used for one query only.
+ */
+final class CibQueryParser {
+    private static final Logger LOG = LoggerFactory.getLogger(CibQueryParser.class);
+    private static final Pattern CLONE_INSTANCE_PATTERN = Pattern.compile("(.*):(\\d+)$");
+
+    private final CrmXml crmXml;
+    /** Heartbeat before pacemaker has the nvpairs in attributes and other names in the constraints. */
+    private final boolean beforePacemaker;
+
+    private final CibQuery cibQueryData = new CibQuery();
+    private final Set<String> fencedNodes = new HashSet<String>();
+    private String dcUuid = null;
+    private String dc = null;
+    private boolean configurationFound = false;
+    private boolean crmConfigFound = false;
+    private boolean resourcesFound = false;
+
+    private String rscDefaultsId = null;
+    private final Map<String, String> rscDefaultsParams = new HashMap<String, String>();
+    private final Map<String, String> rscDefaultsParamsNvpairIds = new HashMap<String, String>();
+    private final Map<String, Value> opDefaultsParams = new HashMap<String, Value>();
+
+    private final Table<String, String, String> nodeParametersMap = HashBasedTable.create();
+    private final Map<String, String> nodeOnline = new HashMap<String, String>();
+    private final Map<String, String> nodeID = new HashMap<String, String>();
+    private final Set<String> nodePending = new HashSet<String>();
+    private final List<NodeState> nodeStates = new ArrayList<NodeState>();
+
+    private final Map<String, Map<String, String>> parametersMap = new HashMap<String, Map<String, String>>();
+    private final Map<String, Map<String, String>> parametersNvpairsIdsMap =
+                                                                      new HashMap<String, Map<String, String>>();
+    private final Map<String, ResourceAgent> resourceTypeMap = new HashMap<String, ResourceAgent>();
+    private final Set<String> orphanedList = new HashSet<String>();
+    /** host -> inLRMList list */
+    private final Map<String, Set<String>> inLRMList = new HashMap<String, Set<String>>();
+    private final Map<String, String> resourceInstanceAttrIdMap = new HashMap<String, String>();
+    private final MultiKeyMap<String, Value> operationsMap = new MultiKeyMap<String, Value>();
+    private final Map<String, String> metaAttrsIdMap = new HashMap<String, String>();
+    private final Map<String, String> operationsIdMap = new HashMap<String, String>();
+    private final Map<String, Map<String, String>> resOpIdsMap = new HashMap<String, Map<String, String>>();
+    /* must be linked, so that clone from group is before the group itself. */
+    private final Map<String, List<String>> groupsToResourcesMap = new LinkedHashMap<String, List<String>>();
+    private final Map<String, String> cloneToResourceMap = new HashMap<String, String>();
+    private final List<String> masterList = new ArrayList<String>();
+    private final Table<String, String, String> failedMap = HashBasedTable.create();
+    private final Table<String, String, Set<String>> failedClonesMap = HashBasedTable.create();
+    private final Map<String, String> pingCountMap = new HashMap<String, String>();
+    private final Map<String, String> operationsIdRefs = new HashMap<String, String>();
+    private final Map<String, String> operationsIdtoCRMId = new HashMap<String, String>();
+    private final Map<String, String> metaAttrsIdRefs = new HashMap<String, String>();
+    private final Map<String, String> metaAttrsIdToCRMId = new HashMap<String, String>();
+
+    private final Map<String, CrmXml.ColocationData> colocationIdMap =
+                                                                new LinkedHashMap<String, CrmXml.ColocationData>();
+    private final Map<String, List<CrmXml.ColocationData>> colocationRscMap =
+                                                                new HashMap<String, List<CrmXml.ColocationData>>();
+    private final Map<String, CrmXml.OrderData> orderIdMap = new LinkedHashMap<String, CrmXml.OrderData>();
+    private final Map<String, List<CrmXml.RscSet>> orderIdRscSetsMap = new HashMap<String, List<CrmXml.RscSet>>();
+    private final Map<String, List<CrmXml.RscSet>> colocationIdRscSetsMap =
+                                                                       new HashMap<String, List<CrmXml.RscSet>>();
+    private final List<RscSetConnectionData> rscSetConnections = new ArrayList<RscSetConnectionData>();
+    private final Map<String, List<CrmXml.OrderData>> orderRscMap = new HashMap<String, List<CrmXml.OrderData>>();
+    private final Map<String, Map<String, HostLocation>> locationMap = new HashMap<String, Map<String, HostLocation>>();
+    private final Map<String, HostLocation> pingLocationMap = new HashMap<String, HostLocation>();
+    private final Map<String, List<String>> locationsIdMap = new HashMap<String, List<String>>();
+    private final Table<String, String, String> resHostToLocIdMap = HashBasedTable.create();
+    private final Map<String, String> resPingToLocIdMap = new HashMap<String, String>();
+
+    CibQueryParser(final CrmXml crmXml, final boolean beforePacemaker) {
+        this.crmXml = crmXml;
+        this.beforePacemaker = beforePacemaker;
+        groupsToResourcesMap.put("none", new ArrayList<String>());
+    }
+
+    /** Returns CibQuery object with information from the cib node. */
+    CibQuery parse(final String query) {
+        try {
+            final XMLStreamReader reader = XMLTools.getXMLStreamReader(query);
+            if (reader == null) {
+                LOG.appWarning("parseCibQuery: cib error: " + query);
+                return cibQueryData;
+            }
+            try {
+                /* get root <pacemaker> */
+                if (!reader.isStartElement() || !"pcmk".equals(reader.getLocalName())) {
+                    LOG.appWarning("parseCibQuery: there is no pcmk node");
+                    return cibQueryData;
+                }
+                if (!parsePcmk(reader)) {
+                    return cibQueryData;
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException e) {
+            LOG.appError("parseCibQuery: could not parse: " + query, e);
+            return new CibQuery();
+        }
+        if (!configurationFound) {
+            LOG.appWarning("parseCibQuery: there is no configuration node");
+            return cibQueryData;
+        }
+        if (!crmConfigFound) {
+            LOG.appWarning("parseCibQuery: there is no crm_config node");
+            return cibQueryData;
+        }
+        if (!resourcesFound) {
+            LOG.appWarning("parseCibQuery: there is no resources node");
+            return cibQueryData;
+        }
+        for (final NodeState nodeState : nodeStates) {
+            applyNodeState(nodeState);
+        }
+        fillCibQuery();
+        return cibQueryData;
+    }
+
+    /** Returns false, if there is no cib. */
+    private boolean parsePcmk(final XMLStreamReader reader) throws XMLStreamException {
+        boolean fencedFound = false;
+        boolean cibFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            final String name = reader.getLocalName();
+            if ("fenced".equals(name) && !fencedFound) {
+                fencedFound = true;
+                /* get fenced nodes */
+                while (XMLTools.nextChildElement(reader)) {
+                    if ("node".equals(reader.getLocalName())) {
+                        fencedNodes.add(XMLTools.getText(reader).toLowerCase(Locale.US));
+                    } else {
+                        XMLTools.skipElement(reader);
+                    }
+                }
+            } else if ("cib".equals(name) && !cibFound) {
+                cibFound = true;
+                parseCib(reader);
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+        if (!cibFound) {
+            LOG.appWarning("parseCibQuery: there is no cib node");
+        }
+        return cibFound;
+    }
+
+    private void parseCib(final XMLStreamReader reader) throws XMLStreamException {
+        /* Designated Co-ordinator */
+        dcUuid = XMLTools.getAttribute(reader, "dc-uuid");
+        //TODO: more attributes are here
+        boolean statusFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            final String name = reader.getLocalName();
+            if ("configuration".equals(name) && !configurationFound) {
+                configurationFound = true;
+                parseConfiguration(reader);
+            } else if ("status".equals(name) && !statusFound) {
+                statusFound = true;
+                parseStatus(reader);
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+    }
+
+    private void parseConfiguration(final XMLStreamReader reader) throws XMLStreamException {
+        boolean rscDefaultsFound = false;
+        boolean opDefaultsFound = false;
+        boolean nodesFound = false;
+        boolean constraintsFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            final String name = reader.getLocalName();
+            if ("rsc_defaults".equals(name) && !rscDefaultsFound) {
+                rscDefaultsFound = true;
+                parseResourceDefaults(reader);
+            } else if ("op_defaults".equals(name) && !opDefaultsFound) {
+                opDefaultsFound = true;
+                parseOpDefaults(reader);
+            } else if ("crm_config".equals(name) && !crmConfigFound) {
+                crmConfigFound = true;
+                parseCrmConfig(reader);
+            } else if ("nodes".equals(name) && !nodesFound) {
+                nodesFound = true;
+                parseNodes(reader);
+            } else if ("resources".equals(name) && !resourcesFound) {
+                resourcesFound = true;
+                parseResources(reader);
+            } else if ("constraints".equals(name) && !constraintsFound) {
+                constraintsFound = true;
+                parseConstraints(reader);
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+    }
+
+    /**
+     * Returns the nvpairs of the instance or meta attributes, until 2.1.4
+     * they are in the <attributes>.
+     */
+    private List<Nvpair> parseNvpairs(final XMLStreamReader reader) throws XMLStreamException {
+        final List<Nvpair> nvpairs = new ArrayList<Nvpair>();
+        boolean attributesFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            final String name = reader.getLocalName();
+            if (beforePacemaker) {
+                if ("attributes".equals(name) && !attributesFound) {
+                    attributesFound = true;
+                    while (XMLTools.nextChildElement(reader)) {
+                        addNvpair(reader, nvpairs);
+                    }
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            } else {
+                addNvpair(reader, nvpairs);
+            }
+        }
+        return nvpairs;
+    }
+
+    private void addNvpair(final XMLStreamReader reader, final Collection<Nvpair> nvpairs) throws XMLStreamException {
+        if ("nvpair".equals(reader.getLocalName())) {
+            nvpairs.add(new Nvpair(XMLTools.getAttribute(reader, "id"),
+                                   XMLTools.getAttribute(reader, "name"),
+                                   XMLTools.getAttribute(reader, "value")));
+        }
+        XMLTools.skipElement(reader);
+    }
+
+    private void parseResourceDefaults(final XMLStreamReader reader) throws XMLStreamException {
+        boolean metaAttrsFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            /* <meta_attributtes> */
+            if ("meta_attributes".equals(reader.getLocalName()) && !metaAttrsFound) {
+                metaAttrsFound = true;
+                rscDefaultsId = XMLTools.getAttribute(reader, "id");
+                /* target-role and is-managed */
+                for (final Nvpair nvpair : parseNvpairs(reader)) {
+                    String value = nvpair.value;
+                    if (CrmXml.TARGET_ROLE_META_ATTR.equals(nvpair.name)) {
+                        value = value.toLowerCase(Locale.US);
+                    }
+                    rscDefaultsParams.put(nvpair.name, value);
+                    rscDefaultsParamsNvpairIds.put(nvpair.name, nvpair.id);
+                }
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+    }
+
+    private void parseOpDefaults(final XMLStreamReader reader) throws XMLStreamException {
+        boolean metaAttrsFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            /* <meta_attributtes> */
+            if ("meta_attributes".equals(reader.getLocalName()) && !metaAttrsFound) {
+                metaAttrsFound = true;
+                for (final Nvpair nvpair : parseNvpairs(reader)) {
+                    opDefaultsParams.put(nvpair.name, crmXml.parseValue(nvpair.name, nvpair.value));
+                }
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+    }
+
+    private void parseCrmConfig(final XMLStreamReader reader) throws XMLStreamException {
+        boolean cpsFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            /*      <cluster_property_set> */
+            if ("cluster_property_set".equals(reader.getLocalName()) && !cpsFound) {
+                cpsFound = true;
+                final Map<String, String> crmConfMap = new HashMap<String, String>();
+                /*              <nvpair...> */
+                for (final Nvpair nvpair : parseNvpairs(reader)) {
+                    crmConfMap.put(nvpair.name, nvpair.value);
+                }
+                cibQueryData.setCrmConfig(crmConfMap);
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+        if (!cpsFound) {
+            LOG.appWarning("parseCibQuery: there is no cluster_property_set node");
+        }
+    }
+
+    /* xml node with cluster node make stupid variable names, but let's
+     * keep the convention. */
+    private void parseNodes(final XMLStreamReader reader) throws XMLStreamException {
+        while (XMLTools.nextChildElement(reader)) {
+            if (!"node".equals(reader.getLocalName())) {
+                XMLTools.skipElement(reader);
+                continue;
+            }
+            /* TODO: doing nothing with the info, just getting the dc,
+             * for now.
+             */
+            final String id = XMLTools.getAttribute(reader, "id");
+            final String uname = XMLTools.getAttribute(reader, "uname");
+            if (!nodeID.containsKey(uname)) {
+                nodeID.put(uname, id);
+            }
+            if (dcUuid != null && dcUuid.equals(id)) {
+                dc = uname;
+            }
+            /* Parses node, to get info like if it is in stand by. */
+            boolean instanceAttrFound = false;
+            while (XMLTools.nextChildElement(reader)) {
+                if ("instance_attributes".equals(reader.getLocalName()) && !instanceAttrFound) {
+                    instanceAttrFound = true;
+                    for (final Nvpair nvpair : parseNvpairs(reader)) {
+                        nodeParametersMap.put(uname.toLowerCase(Locale.US), nvpair.name, nvpair.value);
+                    }
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+            if (!nodeOnline.containsKey(uname.toLowerCase(Locale.US))) {
+                nodeOnline.put(uname.toLowerCase(Locale.US), "no");
+            }
+        }
+    }
+
+    private void parseResources(final XMLStreamReader reader) throws XMLStreamException {
+        while (XMLTools.nextChildElement(reader)) {
+            final String nodeName = reader.getLocalName();
+            if ("primitive".equals(nodeName)) {
+                parsePrimitive(reader, groupsToResourcesMap.get("none"));
+            } else if ("group".equals(nodeName)) {
+                parseGroup(reader, null);
+            } else if ("master".equals(nodeName) || "master_slave".equals(nodeName) || "clone".equals(nodeName)) {
+                parseClone(reader, nodeName);
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+    }
+
+    private void parseClone(final XMLStreamReader reader, final String nodeName) throws XMLStreamException {
+        final String cloneId = XMLTools.getAttribute(reader, "id");
+        List<String> resList = groupsToResourcesMap.get(cloneId);
+        if (resList == null) {
+            resList = new ArrayList<String>();
+            groupsToResourcesMap.put(cloneId, resList);
+        }
+        final ResourceAttributes attributes = new ResourceAttributes(cloneId, false);
+        while (XMLTools.nextChildElement(reader)) {
+            final String name = reader.getLocalName();
+            if ("primitive".equals(name)) {
+                parsePrimitive(reader, resList);
+            } else if ("group".equals(name)) {
+                parseGroup(reader, resList);
+            } else {
+                attributes.parseChild(reader);
+            }
+        }
+        attributes.finish();
+        if (!resList.isEmpty()) {
+            cloneToResourceMap.put(cloneId, resList.get(0));
+            if ("master".equals(nodeName) || "master_slave".equals(nodeName)) {
+                masterList.add(cloneId);
+            }
+        }
+    }
+
+    private void parseGroup(final XMLStreamReader reader, final Collection<String> resList)
+    throws XMLStreamException {
+        final String groupId = XMLTools.getAttribute(reader, "id");
+        final Map<String, String> params = new HashMap<String, String>();
+        parametersMap.put(groupId, params);
+        final Map<String, String> nvpairIds = new HashMap<String, String>();
+        parametersNvpairsIdsMap.put(groupId, nvpairIds);
+        if (resList != null) {
+            resList.add(groupId);
+        }
+        List<String> groupResList = groupsToResourcesMap.get(groupId);
+        if (groupResList == null) {
+            groupResList = new ArrayList<String>();
+            groupsToResourcesMap.put(groupId, groupResList);
+        }
+        boolean metaAttrsFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            final String name = reader.getLocalName();
+            if ("primitive".equals(name)) {
+                parsePrimitive(reader, groupResList);
+            } else if ("meta_attributes".equals(name) && !metaAttrsFound) {
+                /* <meta_attributtes> */
+                metaAttrsFound = true;
+                final String metaAttrsIdRef = XMLTools.getAttribute(reader, "id-ref");
+                if (metaAttrsIdRef != null) {
+                    metaAttrsIdRefs.put(groupId, metaAttrsIdRef);
+                    XMLTools.skipElement(reader);
+                    continue;
+                }
+                final String metaAttrsId = XMLTools.getAttribute(reader, "id");
+                metaAttrsIdMap.put(groupId, metaAttrsId);
+                metaAttrsIdToCRMId.put(metaAttrsId, groupId);
+                /* target-role and is-managed */
+                for (final Nvpair nvpair : parseNvpairs(reader)) {
+                    String nvpairName = nvpair.name;
+                    String value = nvpair.value;
+                    if (CrmXml.TARGET_ROLE_META_ATTR.equals(nvpairName)) {
+                        value = value.toLowerCase(Locale.US);
+                    }
+                    if ("ordered".equals(nvpairName)) {
+                        nvpairName = CrmXml.GROUP_ORDERED_META_ATTR;
+                    }
+                    params.put(nvpairName, value);
+                    nvpairIds.put(nvpairName, nvpair.id);
+                }
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+    }
+
+    private void parsePrimitive(final XMLStreamReader reader, final Collection<String> groupResList)
+    throws XMLStreamException {
+        final String templateId = XMLTools.getAttribute(reader, "template");
+        final String crmId = XMLTools.getAttribute(reader, "id");
+        if (templateId != null) {
+            LOG.info("parsePrimitive: templates not implemented, ignoring: " + crmId + '/' + templateId);
+            XMLTools.skipElement(reader);
+            return;
+        }
+        final String raClass = XMLTools.getAttribute(reader, "class");
+        String provider = XMLTools.getAttribute(reader, "provider");
+        if (provider == null) {
+            provider = ResourceAgent.HEARTBEAT_PROVIDER;
+        }
+        final String type = XMLTools.getAttribute(reader, "type");
+        resourceTypeMap.put(crmId, crmXml.getResourceAgent(type, provider, raClass));
+        groupResList.add(crmId);
+        final ResourceAttributes attributes =
+                                  new ResourceAttributes(crmId, ResourceAgent.STONITH_CLASS_NAME.equals(raClass));
+        while (XMLTools.nextChildElement(reader)) {
+            attributes.parseChild(reader);
+        }
+        attributes.finish();
+    }
+
+    private void parseOperations(final XMLStreamReader reader, final String crmId) throws XMLStreamException {
+        final String operationsIdRef = XMLTools.getAttribute(reader, "id-ref");
+        if (operationsIdRef != null) {
+            operationsIdRefs.put(crmId, operationsIdRef);
+            XMLTools.skipElement(reader);
+            return;
+        }
+        final String operationsId = XMLTools.getAttribute(reader, "id");
+        operationsIdMap.put(crmId, operationsId);
+        operationsIdtoCRMId.put(operationsId, crmId);
+        final Map<String, String> opIds = new HashMap<String, String>();
+        resOpIdsMap.put(crmId, opIds);
+        /* <op> */
+        while (XMLTools.nextChildElement(reader)) {
+            if (!"op".equals(reader.getLocalName())) {
+                XMLTools.skipElement(reader);
+                continue;
+            }
+            final String opId = XMLTools.getAttribute(reader, "id");
+            final String name = XMLTools.getAttribute(reader, "name");
+            final String timeout = XMLTools.getAttribute(reader, "timeout");
+            final String interval = XMLTools.getAttribute(reader, "interval");
+            final String startDelay = XMLTools.getAttribute(reader, "start-delay");
+
+            operationsMap.put(crmId, name, "interval", crmXml.parseValue("interval", interval));
+            operationsMap.put(crmId, name, "timeout", crmXml.parseValue("timeout", timeout));
+            operationsMap.put(crmId, name, "start-delay", crmXml.parseValue("startDelay", startDelay));
+
+            opIds.put(name, opId);
+            if ("monitor".equals(name)) {
+                final String checkLevel = parseCheckLevelMonitorAttribute(reader);
+                operationsMap.put(crmId, name, CrmXml.PARAM_OCF_CHECK_LEVEL, new StringValue(checkLevel));
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+    }
+
+    /** OCF_CHECK_LEVEL */
+    private String parseCheckLevelMonitorAttribute(final XMLStreamReader reader) throws XMLStreamException {
+        String checkLevel = "";
+        boolean instanceAttrFound = false;
+        boolean nvpairFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            if (!"instance_attributes".equals(reader.getLocalName()) || instanceAttrFound) {
+                XMLTools.skipElement(reader);
+                continue;
+            }
+            instanceAttrFound = true;
+            while (XMLTools.nextChildElement(reader)) {
+                if ("nvpair".equals(reader.getLocalName()) && !nvpairFound) {
+                    nvpairFound = true;
+                    final String name = XMLTools.getAttribute(reader, "name");
+                    final String value = XMLTools.getAttribute(reader, "value");
+                    if (CrmXml.PARAM_OCF_CHECK_LEVEL.equals(name)) {
+                        checkLevel = value;
+                    } else {
+                        LOG.appWarning("parseCheckLevel: unexpected instance attribute: " + name + ' ' + value);
+                    }
+                }
+                XMLTools.skipElement(reader);
+            }
+        }
+        return checkLevel;
+    }
+
+    private void parseConstraints(final XMLStreamReader reader) throws XMLStreamException {
+        String rscString         = "rsc";
+        String rscRoleString     = "rsc-role";
+        String withRscString     = "with-rsc";
+        String withRscRoleString = "with-rsc-role";
+        String firstString       = "first";
+        String thenString        = "then";
+        String firstActionString = "first-action";
+        String thenActionString  = "then-action";
+        if (beforePacemaker) {
+            rscString         = "from";
+            rscRoleString     = "from_role";
+            withRscString     = "to";
+            withRscRoleString = "to_role";
+            firstString       = "to";
+            thenString        = "from";
+            firstActionString = "to_action";
+            thenActionString  = "action";
+        }
+        while (XMLTools.nextChildElement(reader)) {
+            final String constraintName = reader.getLocalName();
+            if ("rsc_colocation".equals(constraintName)) {
+                final String colId = XMLTools.getAttribute(reader, "id");
+                final String rsc = XMLTools.getAttribute(reader, rscString);
+                final String withRsc = XMLTools.getAttribute(reader, withRscString);
+                final String rscRole = XMLTools.getAttribute(reader, rscRoleString);
+                final String withRscRole = XMLTools.getAttribute(reader, withRscRoleString);
+                final String score = XMLTools.getAttribute(reader, CrmXml.SCORE_CONSTRAINT_PARAM);
+                if (rsc == null || withRsc == null) {
+                    final List<CrmXml.RscSet> rscSets = new ArrayList<CrmXml.RscSet>();
+                    parseResourceSets(reader, colId, null, rscSets);
+                    colocationIdRscSetsMap.put(colId, rscSets);
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+                final CrmXml.ColocationData colocationData =
+                                         new CrmXml.ColocationData(colId, rsc, withRsc, rscRole, withRscRole, score);
+                colocationIdMap.put(colId, colocationData);
+                List<CrmXml.ColocationData> withs = colocationRscMap.get(rsc);
+                if (withs == null) {
+                    withs = new ArrayList<CrmXml.ColocationData>();
+                }
+                withs.add(colocationData);
+                colocationRscMap.put(rsc, withs);
+            } else if ("rsc_order".equals(constraintName)) {
+                String rscFirst = XMLTools.getAttribute(reader, firstString);
+                String rscThen = XMLTools.getAttribute(reader, thenString);
+                final String ordId = XMLTools.getAttribute(reader, "id");
+                final String score = XMLTools.getAttribute(reader, CrmXml.SCORE_CONSTRAINT_PARAM);
+                final String symmetrical = XMLTools.getAttribute(reader, "symmetrical");
+                String firstAction = XMLTools.getAttribute(reader, firstActionString);
+                String thenAction = XMLTools.getAttribute(reader, thenActionString);
+                final String type = XMLTools.getAttribute(reader, "type");
+                if (rscFirst == null || rscThen == null) {
+                    final List<CrmXml.RscSet> rscSets = new ArrayList<CrmXml.RscSet>();
+                    parseResourceSets(reader, null, ordId, rscSets);
+                    orderIdRscSetsMap.put(ordId, rscSets);
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+                if (type != null && "before".equals(type)) {
+                    /* exchange resoruces */
+                    final String rsc = rscFirst;
+                    rscFirst = rscThen;
+                    rscThen = rsc;
+                    final String act = firstAction;
+                    firstAction = thenAction;
+                    thenAction = act;
+                }
+                final CrmXml.OrderData orderData = new CrmXml.OrderData(ordId,
+                                                                        rscFirst,
+                                                                        rscThen,
+                                                                        score,
+                                                                        symmetrical,
+                                                                        firstAction,
+                                                                        thenAction);
+                orderIdMap.put(ordId, orderData);
+                List<CrmXml.OrderData> thens = orderRscMap.get(rscFirst);
+                if (thens == null) {
+                    thens = new ArrayList<CrmXml.OrderData>();
+                }
+                thens.add(orderData);
+                orderRscMap.put(rscFirst, thens);
+            } else if ("rsc_location".equals(constraintName)) {
+                parseLocation(reader);
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+    }
+
+    private void parseLocation(final XMLStreamReader reader) throws XMLStreamException {
+        final String locId = XMLTools.getAttribute(reader, "id");
+        final String node  = XMLTools.getAttribute(reader, "node");
+        final String rsc   = XMLTools.getAttribute(reader, "rsc");
+        final String score = XMLTools.getAttribute(reader, CrmXml.SCORE_CONSTRAINT_PARAM);
+
+        List<String> locs = locationsIdMap.get(rsc);
+        if (locs == null) {
+            locs = new ArrayList<String>();
+            locationsIdMap.put(rsc, locs);
+        }
+        Map<String, HostLocation> hostScoreMap = locationMap.get(rsc);
+        if (hostScoreMap == null) {
+            hostScoreMap = new HashMap<String, HostLocation>();
+            locationMap.put(rsc, hostScoreMap);
+        }
+        final String role = null; // TODO
+        if (node != null) {
+            resHostToLocIdMap.put(rsc, node.toLowerCase(Locale.US), locId);
+            if (score != null) {
+                hostScoreMap.put(node.toLowerCase(Locale.US), new HostLocation(score, "eq", null, role));
+            }
+        }
+        locs.add(locId);
+        boolean ruleFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            if (!"rule".equals(reader.getLocalName()) || ruleFound) {
+                XMLTools.skipElement(reader);
+                continue;
+            }
+            ruleFound = true;
+            final String score2 = XMLTools.getAttribute(reader, CrmXml.SCORE_CONSTRAINT_PARAM);
+            final String booleanOp = XMLTools.getAttribute(reader, "boolean-op");
+            // TODO: I know only "and", ignoring everything we
+            // don't know.
+            boolean expressionFound = false;
+            while (XMLTools.nextChildElement(reader)) {
+                if (!"expression".equals(reader.getLocalName()) || expressionFound) {
+                    XMLTools.skipElement(reader);
+                    continue;
+                }
+                expressionFound = true;
+                final String attr = XMLTools.getAttribute(reader, "attribute");
+                final String op = XMLTools.getAttribute(reader, "operation");
+                final String value = XMLTools.getAttribute(reader, "value");
+                XMLTools.skipElement(reader);
+                if ((booleanOp == null || "and".equals(booleanOp))
+                    && "#uname".equals(attr)
+                    && value != null) {
+                    hostScoreMap.put(value.toLowerCase(Locale.US), new HostLocation(score2, op, null, role));
+                    resHostToLocIdMap.put(rsc, value.toLowerCase(Locale.US), locId);
+                } else if ((booleanOp == null || "and".equals(booleanOp)) && "pingd".equals(attr)) {
+                    pingLocationMap.put(rsc, new HostLocation(score2, op, value, null));
+                    resPingToLocIdMap.put(rsc, locId);
+                } else {
+                    LOG.appWarning("parseCibQuery: could not parse rsc_location: " + locId);
+                }
+            }
+        }
+    }
+
+    private void parseResourceSets(final XMLStreamReader reader,
+                                   final String colId,
+                                   final String ordId,
+                                   final Collection<CrmXml.RscSet> rscSets) throws XMLStreamException {
+        CrmXml.RscSet prevRscSet = null;
+        int rscSetCount = 0;
+        int ordPos = 0;
+        int colPos = 0;
+        while (XMLTools.nextChildElement(reader)) {
+            if (!"resource_set".equals(reader.getLocalName())) {
+                XMLTools.skipElement(reader);
+                continue;
+            }
+            final String id = XMLTools.getAttribute(reader, "id");
+            final String sequential = XMLTools.getAttribute(reader, "sequential");
+            final String requireAll = XMLTools.getAttribute(reader, CrmXml.REQUIRE_ALL_ATTR);
+            final String orderAction = XMLTools.getAttribute(reader, "action");
+            final String colocationRole = XMLTools.getAttribute(reader, "role");
+            final List<String> rscIds = new ArrayList<String>();
+            while (XMLTools.nextChildElement(reader)) {
+                if ("resource_ref".equals(reader.getLocalName())) {
+                    rscIds.add(XMLTools.getAttribute(reader, "id"));
+                }
+                XMLTools.skipElement(reader);
+            }
+            final CrmXml.RscSet rscSet =
+                                 new CrmXml.RscSet(id, rscIds, sequential, requireAll, orderAction, colocationRole);
+            rscSets.add(rscSet);
+            if (prevRscSet != null) {
+                final RscSetConnectionData rscSetConnectionData;
+                if (colId == null) {
+                    /* order */
+                    rscSetConnectionData = new RscSetConnectionData(prevRscSet, rscSet, ordId, ordPos, false);
+                    ordPos++;
+                    rscSetConnections.add(0, rscSetConnectionData);
+                } else {
+                    /* colocation */
+                    rscSetConnectionData = new RscSetConnectionData(rscSet, prevRscSet, colId, colPos, true);
+                    colPos++;
+                    rscSetConnections.add(rscSetConnectionData);
+                }
+            }
+            prevRscSet = rscSet;
+            rscSetCount++;
+        }
+        if (rscSetCount == 1) {
+            /* just one, dangling */
+            final RscSetConnectionData rscSetConnectionData;
+            if (colId == null) {
+                /* order */
+                rscSetConnectionData = new RscSetConnectionData(prevRscSet, null, ordId, ordPos, false);
+            } else {
+                /* colocation */
+                rscSetConnectionData = new RscSetConnectionData(prevRscSet, null, colId, colPos, true);
+            }
+            rscSetConnections.add(rscSetConnectionData);
+        }
+    }
+
+    /**
+     * Reads the node states, only the transient attributes and the ids and
+     * types of the lrm resources are kept, the operation history is skipped.
+     */
+    private void parseStatus(final XMLStreamReader reader) throws XMLStreamException {
+        /* <node_state ...> */
+        while (XMLTools.nextChildElement(reader)) {
+            if (!"node_state".equals(reader.getLocalName())) {
+                XMLTools.skipElement(reader);
+                continue;
+            }
+            final NodeState nodeState = new NodeState(XMLTools.getAttribute(reader, "uname"),
+                                                      XMLTools.getAttribute(reader, "id"),
+                                                      XMLTools.getAttribute(reader, "join"),
+                                                      XMLTools.getAttribute(reader, "in_ccm"),
+                                                      XMLTools.getAttribute(reader, "crmd"));
+            nodeStates.add(nodeState);
+            while (XMLTools.nextChildElement(reader)) {
+                final String name = reader.getLocalName();
+                if ("transient_attributes".equals(name)) {
+                    parseTransientAttributes(reader, nodeState);
+                } else if ("lrm".equals(name)) {
+                    parseLrm(reader, nodeState);
+                } else {
+                    XMLTools.skipElement(reader);
+                }
+            }
+        }
+    }
+
+    private void parseTransientAttributes(final XMLStreamReader reader, final NodeState nodeState)
+    throws XMLStreamException {
+        boolean instanceAttrFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            /* <instance_attributes> */
+            if ("instance_attributes".equals(reader.getLocalName()) && !instanceAttrFound) {
+                instanceAttrFound = true;
+                nodeState.transientAttributes.addAll(parseNvpairs(reader));
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+    }
+
+    private void parseLrm(final XMLStreamReader reader, final NodeState nodeState) throws XMLStreamException {
+        boolean lrmResourcesFound = false;
+        while (XMLTools.nextChildElement(reader)) {
+            if (!"lrm_resources".equals(reader.getLocalName()) || lrmResourcesFound) {
+                XMLTools.skipElement(reader);
+                continue;
+            }
+            lrmResourcesFound = true;
+            while (XMLTools.nextChildElement(reader)) {
+                if ("lrm_resource".equals(reader.getLocalName())) {
+                    nodeState.lrmResources.add(new String[]{XMLTools.getAttribute(reader, "id"),
+                                                            XMLTools.getAttribute(reader, "class"),
+                                                            XMLTools.getAttribute(reader, "provider"),
+                                                            XMLTools.getAttribute(reader, "type")});
+                }
+                XMLTools.skipElement(reader);
+            }
+        }
+    }
+
+    private void applyNodeState(final NodeState nodeState) {
+        final String uname = nodeState.uname;
+        final String id = nodeState.id;
+        if (uname == null || !id.equals(nodeID.get(uname))) {
+            LOG.appWarning("parseCibQuery: skipping " + uname + ' ' + id);
+            return;
+        }
+        final String unameLowerCase = uname.toLowerCase(Locale.US);
+        if ("member".equals(nodeState.join) && "true".equals(nodeState.inCCM) && !"offline".equals(nodeState.crmd)) {
+            nodeOnline.put(unameLowerCase, "yes");
+        } else {
+            nodeOnline.put(unameLowerCase, "no");
+        }
+        if ("pending".equals(nodeState.join)) {
+            nodePending.add(unameLowerCase);
+        }
+        /* transient attributes. */
+        for (final Nvpair nvpair : nodeState.transientAttributes) {
+            final String name = nvpair.name;
+            final String value = nvpair.value;
+            /* TODO: last-failure-" */
+            if ("pingd".equals(name)) {
+                pingCountMap.put(uname, value);
+            } else if (name.indexOf(CrmXml.FAIL_COUNT_PREFIX) == 0) {
+                final String resId = name.substring(CrmXml.FAIL_COUNT_PREFIX.length());
+                failedMap.put(unameLowerCase, resId, value);
+                final Matcher m = CLONE_INSTANCE_PATTERN.matcher(resId);
+                if (m.matches()) {
+                    final String crmId = m.group(1);
+                    addFailedClone(unameLowerCase, crmId, m.group(2));
+                    failedMap.put(unameLowerCase, crmId, value);
+                }
+            }
+        }
+        final Collection<String> resList = groupsToResourcesMap.get("none");
+        for (final String[] lrmResource : nodeState.lrmResources) {
+            final String resId = lrmResource[0];
+            final Matcher m = CLONE_INSTANCE_PATTERN.matcher(resId);
+            final String crmId;
+            if (m.matches()) {
+                crmId = m.group(1);
+                addFailedClone(unameLowerCase, crmId, m.group(2));
+            } else {
+                crmId = resId;
+            }
+            if (!resourceTypeMap.containsKey(crmId)) {
+                final String raClass = lrmResource[1];
+                String provider = lrmResource[2];
+                if (provider == null) {
+                    provider = ResourceAgent.HEARTBEAT_PROVIDER;
+                }
+                final String type = lrmResource[3];
+                resourceTypeMap.put(crmId, crmXml.getResourceAgent(type, provider, raClass));
+                resList.add(crmId);
+                parametersMap.put(crmId, new HashMap<String, String>());
+                orphanedList.add(crmId);
+            }
+            /* it is in LRM */
+            Set<String> inLRMOnHost = inLRMList.get(unameLowerCase);
+            if (inLRMOnHost == null) {
+                inLRMOnHost = new HashSet<String>();
+                inLRMList.put(unameLowerCase, inLRMOnHost);
+            }
+            inLRMOnHost.add(crmId);
+        }
+    }
+
+    private void addFailedClone(final String unameLowerCase, final String crmId, final String cloneId) {
+        Set<String> clones = failedClonesMap.get(unameLowerCase, crmId);
+        if (clones == null) {
+            clones = new LinkedHashSet<String>();
+            failedClonesMap.put(unameLowerCase, crmId, clones);
+        }
+        clones.add(cloneId);
+    }
+
+    private void fillCibQuery() {
+        /* operationsRefs crm id -> crm id */
+        final Map<String, String> operationsRefs = new HashMap<String, String>();
+        for (final Map.Entry<String, String> idRef : operationsIdRefs.entrySet()) {
+            operationsRefs.put(idRef.getKey(), operationsIdtoCRMId.get(idRef.getValue()));
+        }
+
+        /* mettaAttrsRefs crm id -> crm id */
+        final Map<String, String> metaAttrsRefs = new HashMap<String, String>();
+        for (final Map.Entry<String, String> idRef : metaAttrsIdRefs.entrySet()) {
+            metaAttrsRefs.put(idRef.getKey(), metaAttrsIdToCRMId.get(idRef.getValue()));
+        }
+
+        cibQueryData.setDC(dc);
+        cibQueryData.setNodeParameters(nodeParametersMap);
+        cibQueryData.setResourceParameters(parametersMap);
+        cibQueryData.setResourceParametersNvpairsIds(parametersNvpairsIdsMap);
+        cibQueryData.setResourceType(resourceTypeMap);
+        cibQueryData.setInLRM(inLRMList);
+        cibQueryData.setOrphaned(orphanedList);
+        cibQueryData.setResourceInstanceAttrId(resourceInstanceAttrIdMap);
+
+        cibQueryData.setColocationRsc(colocationRscMap);
+        cibQueryData.setColocationId(colocationIdMap);
+
+        cibQueryData.setOrderId(orderIdMap);
+        cibQueryData.setOrderIdRscSets(orderIdRscSetsMap);
+        cibQueryData.setColocationIdRscSets(colocationIdRscSetsMap);
+        cibQueryData.setRscSetConnections(rscSetConnections);
+        cibQueryData.setOrderRsc(orderRscMap);
+
+        cibQueryData.setLocations(locationMap);
+        cibQueryData.setPingLocations(pingLocationMap);
+        cibQueryData.setLocationsId(locationsIdMap);
+        cibQueryData.setResHostToLocId(resHostToLocIdMap);
+        cibQueryData.setResPingToLocId(resPingToLocIdMap);
+        cibQueryData.setOperations(operationsMap);
+        cibQueryData.setOperationsId(operationsIdMap);
+        cibQueryData.setOperationsRefs(operationsRefs);
+        cibQueryData.setMetaAttrsId(metaAttrsIdMap);
+        cibQueryData.setMetaAttrsRefs(metaAttrsRefs);
+        cibQueryData.setResOpIds(resOpIdsMap);
+        cibQueryData.setNodeOnline(nodeOnline);
+        cibQueryData.setNodePending(nodePending);
+        cibQueryData.setGroupsToResources(groupsToResourcesMap);
+        cibQueryData.setCloneToResource(cloneToResourceMap);
+        cibQueryData.setMasterList(masterList);
+        cibQueryData.setNodeFailedCount(failedMap);
+        cibQueryData.setResourceFailedCloneIds(failedClonesMap);
+        cibQueryData.setNodePingCount(pingCountMap);
+        cibQueryData.setRscDefaultsId(rscDefaultsId);
+        cibQueryData.setRscDefaultsParams(rscDefaultsParams);
+        cibQueryData.setRscDefaultsParamsNvpairIds(rscDefaultsParamsNvpairIds);
+        cibQueryData.setOpDefaultsParams(opDefaultsParams);
+        cibQueryData.setFencedNodes(fencedNodes);
+    }
+
+    /**
+     * Instance attributes, operations and meta attributes of a primitive or
+     * clone. The meta attributes override the instance attributes with the
+     * same name, in whatever order they come.
+     */
+    private final class ResourceAttributes {
+        private final String crmId;
+        private final boolean stonith;
+        private final Map<String, String> params = new HashMap<String, String>();
+        private final Map<String, String> nvpairIds = new HashMap<String, String>();
+        private final Map<String, String> metaParams = new HashMap<String, String>();
+        private final Map<String, String> metaNvpairIds = new HashMap<String, String>();
+        private boolean instanceAttrFound = false;
+        private boolean operationsFound = false;
+        private boolean metaAttrsFound = false;
+
+        ResourceAttributes(final String crmId, final boolean stonith) {
+            this.crmId = crmId;
+            this.stonith = stonith;
+        }
+
+        void parseChild(final XMLStreamReader reader) throws XMLStreamException {
+            final String name = reader.getLocalName();
+            if ("instance_attributes".equals(name) && !instanceAttrFound) {
+                /* <instance_attributes> */
+                instanceAttrFound = true;
+                resourceInstanceAttrIdMap.put(crmId, XMLTools.getAttribute(reader, "id"));
+                for (final Nvpair nvpair : parseNvpairs(reader)) {
+                    String nvpairName = nvpair.name;
+                    if (stonith && "priority".equals(nvpairName)) {
+                        /* so it does not clash with meta attr priority */
+                        nvpairName = CrmXml.STONITH_PRIORITY_INSTANCE_ATTR;
+                    }
+                    params.put(nvpairName, nvpair.value);
+                    nvpairIds.put(nvpairName, nvpair.id);
+                }
+            } else if ("operations".equals(name) && !operationsFound) {
+                /* <operations> */
+                operationsFound = true;
+                parseOperations(reader, crmId);
+            } else if ("meta_attributes".equals(name) && !metaAttrsFound) {
+                /* <meta_attributtes> */
+                metaAttrsFound = true;
+                final String metaAttrsIdRef = XMLTools.getAttribute(reader, "id-ref");
+                if (metaAttrsIdRef != null) {
+                    metaAttrsIdRefs.put(crmId, metaAttrsIdRef);
+                    XMLTools.skipElement(reader);
+                    return;
+                }
+                final String metaAttrsId = XMLTools.getAttribute(reader, "id");
+                metaAttrsIdMap.put(crmId, metaAttrsId);
+                metaAttrsIdToCRMId.put(metaAttrsId, crmId);
+                /* target-role and is-managed */
+                for (final Nvpair nvpair : parseNvpairs(reader)) {
+                    String value = nvpair.value;
+                    if (CrmXml.TARGET_ROLE_META_ATTR.equals(nvpair.name)) {
+                        value = value.toLowerCase(Locale.US);
+                    }
+                    metaParams.put(nvpair.name, value);
+                    metaNvpairIds.put(nvpair.name, nvpair.id);
+                }
+            } else {
+                XMLTools.skipElement(reader);
+            }
+        }
+
+        void finish() {
+            params.putAll(metaParams);
+            nvpairIds.putAll(metaNvpairIds);
+            parametersMap.put(crmId, params);
+            parametersNvpairsIdsMap.put(crmId, nvpairIds);
+        }
+    }
+
+    private static final class Nvpair {
+        private final String id;
+        private final String name;
+        private final String value;
+
+        Nvpair(final String id, final String name, final String value) {
+            this.id = id;
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    /** Node state from the status section, that is applied after the configuration. */
+    private static final class NodeState {
+        private final String uname;
+        private final String id;
+        private final String join;
+        private final String inCCM;
+        private final String crmd;
+        private final List<Nvpair> transientAttributes = new ArrayList<Nvpair>();
+        /** id, class, provider and type of the lrm resources. */
+        private final List<String[]> lrmResources = new ArrayList<String[]>();
+
+        NodeState(final String uname, final String id, final String join, final String inCCM, final String crmd) {
+            this.uname = uname;
+            this.id = id;
+            this.join = join;
+            this.inCCM = inCCM;
+            this.crmd = crmd;
+        }
+    }
+}
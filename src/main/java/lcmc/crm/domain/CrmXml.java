@@ -25,7 +25,6 @@ package lcmc.crm.domain;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Table;
-import lcmc.Exceptions;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
 import lcmc.cluster.service.ssh.SshOutput;
 import lcmc.cluster.ui.ClusterBrowser;
@@ -55,18 +54,16 @@ import org.w3c.dom.NodeList;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -99,7 +96,7 @@ public class CrmXml {
     private static final String PARAM_TYPE_LABEL = "label";
     private static final String PARAM_TYPE_STRING = "string";
     private static final String PARAM_TYPE_TIME = "time";
-    private static final String FAIL_COUNT_PREFIX = "fail-count-";
+    static final String FAIL_COUNT_PREFIX = "fail-count-";
     private static final Value[] ATTRIBUTE_ROLES = {new StringValue(),
                                                     new StringValue("Stopped"),
                                                     new StringValue("Started")};
@@ -145,7 +142,7 @@ public class CrmXml {
     private static final String MIGRATION_THRESHOLD_META_ATTR = "migration-threshold";
     private static final String FAILURE_TIMEOUT_META_ATTR = "failure-timeout";
     private static final String MULTIPLE_ACTIVE_META_ATTR = "multiple-active";
-    private static final String TARGET_ROLE_META_ATTR = "target-role";
+    static final String TARGET_ROLE_META_ATTR = "target-role";
     private static final String IS_MANAGED_META_ATTR = "is-managed";
     private static final String ALLOW_MIGRATE_META_ATTR = "allow-migrate";
     private static final String MASTER_MAX_META_ATTR = "master-max";
@@ -533,104 +530,98 @@ public class CrmXml {
                 new StringValue("minimal"),
                 new StringValue("balanced")});
 
-        final String hbV = host.getHostParser().getHeartbeatVersion();
-        final String pcmkV = host.getHostParser().getPacemakerVersion();
-        try {
-            if (pcmkV != null || Tools.compareVersions(hbV, "2.1.3") >= 0) {
-                String clusterRecheckInterval = "cluster-recheck-interval";
-                String dcDeadtime = "dc-deadtime";
-                String electionTimeout = "election-timeout";
-                String shutdownEscalation = "shutdown-escalation";
-                if (Tools.versionBeforePacemaker(host)) {
-                    clusterRecheckInterval = "cluster_recheck_interval";
-                    dcDeadtime = "dc_deadtime";
-                    electionTimeout = "election_timeout";
-                    shutdownEscalation = "shutdown_escalation";
-                }
-                final String[] params = {"stonith-action",
-                                         "is-managed-default",
-                                         "cluster-delay",
-                                         "batch-limit",
-                                         "stop-orphan-resources",
-                                         "stop-orphan-actions",
-                                         "remove-after-stop",
-                                         "pe-error-series-max",
-                                         "pe-warn-series-max",
-                                         "pe-input-series-max",
-                                         "startup-fencing",
-                                         "start-failure-is-fatal",
-                                         dcDeadtime,
-                                         clusterRecheckInterval,
-                                         electionTimeout,
-                                         shutdownEscalation,
-                                         "crmd-integration-timeout",
-                                         "crmd-finalization-timeout",
-                                         "expected-quorum-votes",
-                                         "maintenance-mode",
-                };
-                globalParams.add("dc-version");
-                globalShortDescMap.put("dc-version", "DC Version");
-                globalTypeMap.put("dc-version", PARAM_TYPE_LABEL);
-                paramGlobalAccessTypes.put("dc-version", AccessMode.NEVER);
-                globalParams.add("cluster-infrastructure");
-                globalShortDescMap.put("cluster-infrastructure", "Cluster Infrastructure");
-                globalTypeMap.put("cluster-infrastructure", PARAM_TYPE_LABEL);
-                paramGlobalAccessTypes.put("cluster-infrastructure", AccessMode.NEVER);
-
-                globalNotAdvancedParams.add("no-quorum-policy");
-                globalNotAdvancedParams.add("maintenance-mode");
-                paramGlobalAccessTypes.put("maintenance-mode", AccessMode.OP);
-                globalNotAdvancedParams.add(clusterRecheckInterval);
-
-                for (final String param : params) {
-                    globalParams.add(param);
-                    final String[] parts = param.split("[-_]");
-                    for (int i = 0; i < parts.length; i++) {
-                        if ("dc".equals(parts[i])) {
-                            parts[i] = "DC";
-                        }
-                        if ("crmd".equals(parts[i])) {
-                            parts[i] = "CRMD";
-                        } else {
-                            parts[i] = Tools.ucfirst(parts[i]);
-                        }
+        if (host.getHostParser().getCapabilities().hasCrmClusterOptions()) {
+            String clusterRecheckInterval = "cluster-recheck-interval";
+            String dcDeadtime = "dc-deadtime";
+            String electionTimeout = "election-timeout";
+            String shutdownEscalation = "shutdown-escalation";
+            if (Tools.versionBeforePacemaker(host)) {
+                clusterRecheckInterval = "cluster_recheck_interval";
+                dcDeadtime = "dc_deadtime";
+                electionTimeout = "election_timeout";
+                shutdownEscalation = "shutdown_escalation";
+            }
+            final String[] params = {"stonith-action",
+                                     "is-managed-default",
+                                     "cluster-delay",
+                                     "batch-limit",
+                                     "stop-orphan-resources",
+                                     "stop-orphan-actions",
+                                     "remove-after-stop",
+                                     "pe-error-series-max",
+                                     "pe-warn-series-max",
+                                     "pe-input-series-max",
+                                     "startup-fencing",
+                                     "start-failure-is-fatal",
+                                     dcDeadtime,
+                                     clusterRecheckInterval,
+                                     electionTimeout,
+                                     shutdownEscalation,
+                                     "crmd-integration-timeout",
+                                     "crmd-finalization-timeout",
+                                     "expected-quorum-votes",
+                                     "maintenance-mode",
+            };
+            globalParams.add("dc-version");
+            globalShortDescMap.put("dc-version", "DC Version");
+            globalTypeMap.put("dc-version", PARAM_TYPE_LABEL);
+            paramGlobalAccessTypes.put("dc-version", AccessMode.NEVER);
+            globalParams.add("cluster-infrastructure");
+            globalShortDescMap.put("cluster-infrastructure", "Cluster Infrastructure");
+            globalTypeMap.put("cluster-infrastructure", PARAM_TYPE_LABEL);
+            paramGlobalAccessTypes.put("cluster-infrastructure", AccessMode.NEVER);
+
+            globalNotAdvancedParams.add("no-quorum-policy");
+            globalNotAdvancedParams.add("maintenance-mode");
+            paramGlobalAccessTypes.put("maintenance-mode", AccessMode.OP);
+            globalNotAdvancedParams.add(clusterRecheckInterval);
+
+            for (final String param : params) {
+                globalParams.add(param);
+                final String[] parts = param.split("[-_]");
+                for (int i = 0; i < parts.length; i++) {
+                    if ("dc".equals(parts[i])) {
+                        parts[i] = "DC";
+                    }
+                    if ("crmd".equals(parts[i])) {
+                        parts[i] = "CRMD";
+                    } else {
+                        parts[i] = Tools.ucfirst(parts[i]);
                     }
-                    final String name = Tools.join(" ", parts);
-                    globalShortDescMap.put(param, name);
-                    globalLongDescMap.put(param, name);
-                    globalTypeMap.put(param, PARAM_TYPE_STRING);
-                    globalDefaultMap.put(param, new StringValue());
                 }
-                globalDefaultMap.put("stonith-action", new StringValue("reboot"));
-                globalComboBoxChoices.put("stonith-action", new Value[]{new StringValue("reboot"),
-                        new StringValue("poweroff")});
+                final String name = Tools.join(" ", parts);
+                globalShortDescMap.put(param, name);
+                globalLongDescMap.put(param, name);
+                globalTypeMap.put(param, PARAM_TYPE_STRING);
+                globalDefaultMap.put(param, new StringValue());
+            }
+            globalDefaultMap.put("stonith-action", new StringValue("reboot"));
+            globalComboBoxChoices.put("stonith-action", new Value[]{new StringValue("reboot"),
+                    new StringValue("poweroff")});
 
-                globalTypeMap.put("is-managed-default", PARAM_TYPE_BOOLEAN);
-                globalDefaultMap.put("is-managed-default", hbBooleanFalse);
-                globalComboBoxChoices.put("is-managed-default", booleanValues);
+            globalTypeMap.put("is-managed-default", PARAM_TYPE_BOOLEAN);
+            globalDefaultMap.put("is-managed-default", hbBooleanFalse);
+            globalComboBoxChoices.put("is-managed-default", booleanValues);
 
-                globalTypeMap.put("stop-orphan-resources", PARAM_TYPE_BOOLEAN);
-                globalDefaultMap.put("stop-orphan-resources", hbBooleanFalse);
-                globalComboBoxChoices.put("stop-orphan-resources", booleanValues);
+            globalTypeMap.put("stop-orphan-resources", PARAM_TYPE_BOOLEAN);
+            globalDefaultMap.put("stop-orphan-resources", hbBooleanFalse);
+            globalComboBoxChoices.put("stop-orphan-resources", booleanValues);
 
-                globalTypeMap.put("stop-orphan-actions", PARAM_TYPE_BOOLEAN);
-                globalDefaultMap.put("stop-orphan-actions", hbBooleanFalse);
-                globalComboBoxChoices.put("stop-orphan-actions", booleanValues);
+            globalTypeMap.put("stop-orphan-actions", PARAM_TYPE_BOOLEAN);
+            globalDefaultMap.put("stop-orphan-actions", hbBooleanFalse);
+            globalComboBoxChoices.put("stop-orphan-actions", booleanValues);
 
-                globalTypeMap.put("remove-after-stop", PARAM_TYPE_BOOLEAN);
-                globalDefaultMap.put("remove-after-stop", hbBooleanFalse);
-                globalComboBoxChoices.put("remove-after-stop", booleanValues);
+            globalTypeMap.put("remove-after-stop", PARAM_TYPE_BOOLEAN);
+            globalDefaultMap.put("remove-after-stop", hbBooleanFalse);
+            globalComboBoxChoices.put("remove-after-stop", booleanValues);
 
-                globalTypeMap.put("startup-fencing", PARAM_TYPE_BOOLEAN);
-                globalDefaultMap.put("startup-fencing", hbBooleanFalse);
-                globalComboBoxChoices.put("startup-fencing", booleanValues);
+            globalTypeMap.put("startup-fencing", PARAM_TYPE_BOOLEAN);
+            globalDefaultMap.put("startup-fencing", hbBooleanFalse);
+            globalComboBoxChoices.put("startup-fencing", booleanValues);
 
-                globalTypeMap.put("start-failure-is-fatal", PARAM_TYPE_BOOLEAN);
-                globalDefaultMap.put("start-failure-is-fatal", hbBooleanFalse);
-                globalComboBoxChoices.put("start-failure-is-fatal", booleanValues);
-            }
-        } catch (final Exceptions.IllegalVersionException e) {
-            LOG.appWarning("CRMXML: " + e.getMessage(), e);
+            globalTypeMap.put("start-failure-is-fatal", PARAM_TYPE_BOOLEAN);
+            globalDefaultMap.put("start-failure-is-fatal", hbBooleanFalse);
+            globalComboBoxChoices.put("start-failure-is-fatal", booleanValues);
         }
 
         /* Hardcoding colocation params */
@@ -1426,15 +1417,9 @@ public class CrmXml {
         metaAttrParams.put(PRIORITY_META_ATTR, null);
         metaAttrParams.put(MULTIPLE_ACTIVE_META_ATTR, null);
         metaAttrParams.put(ALLOW_MIGRATE_META_ATTR, null);
-        final String hbV = host.getHostParser().getHeartbeatVersion();
-        final String pcmkV = host.getHostParser().getPacemakerVersion();
-        try {
-            if (pcmkV != null || Tools.compareVersions(hbV, "2.1.4") >= 0) {
-                metaAttrParams.put(RESOURCE_STICKINESS_META_ATTR, null);
-                metaAttrParams.put(FAILURE_TIMEOUT_META_ATTR, null);
-            }
-        } catch (final Exceptions.IllegalVersionException e) {
-            LOG.appWarning("getMetaAttrParameters: " + e.getMessage(), e);
+        if (host.getHostParser().getCapabilities().hasStickinessMetaAttributes()) {
+            metaAttrParams.put(RESOURCE_STICKINESS_META_ATTR, null);
+            metaAttrParams.put(FAILURE_TIMEOUT_META_ATTR, null);
         }
         return metaAttrParams;
     }
@@ -1894,378 +1879,26 @@ public class CrmXml {
         return cloneResourceAgent;
     }
 
-    String parseResourceDefaults(final Node rscDefaultsNode,
-                                 final Map<String, String> rscDefaultsParams,
-                                 final Map<String, String> rscDefaultsParamsNvpairIds) {
-        
-        /* <meta_attributtes> */
-        final Node metaAttrsNode = XMLTools.getChildNode(rscDefaultsNode, "meta_attributes");
-        String rscDefaultsId = null;
-        if (metaAttrsNode != null) {
-            rscDefaultsId = XMLTools.getAttribute(metaAttrsNode, "id");
-            final NodeList nvpairsMA;
-            if (Tools.versionBeforePacemaker(host)) {
-                /* <attributtes> only til 2.1.4 */
-                final Node attrsNode = XMLTools.getChildNode(metaAttrsNode, "attributes");
-                nvpairsMA = attrsNode.getChildNodes();
-            } else {
-                nvpairsMA = metaAttrsNode.getChildNodes();
-            }
-            /* <nvpair...> */
-            /* target-role and is-managed */
-            for (int l = 0; l < nvpairsMA.getLength(); l++) {
-                final Node maNode = nvpairsMA.item(l);
-                if (maNode.getNodeName().equals("nvpair")) {
-                    final String nvpairId = XMLTools.getAttribute(maNode, "id");
-                    final String name = XMLTools.getAttribute(maNode, "name");
-                    String value = XMLTools.getAttribute(maNode, "value");
-                    if (TARGET_ROLE_META_ATTR.equals(name)) {
-                        value = value.toLowerCase(Locale.US);
-                    }
-                    rscDefaultsParams.put(name, value);
-                    rscDefaultsParamsNvpairIds.put(name, nvpairId);
-                }
-            }
-        }
-        return rscDefaultsId;
-    }
-
-    void parseOpDefaults(final Node opDefaultsNode, final Map<String, Value> opDefaultsParams) {
-        
-        /* <meta_attributtes> */
-        final Node metaAttrsNode = XMLTools.getChildNode(opDefaultsNode, "meta_attributes");
-        if (metaAttrsNode != null) {
-            /* <attributtes> only til 2.1.4 */
-            final NodeList nvpairsMA;
-            if (Tools.versionBeforePacemaker(host)) {
-                final Node attrsNode = XMLTools.getChildNode(metaAttrsNode, "attributes");
-                nvpairsMA = attrsNode.getChildNodes();
-            } else {
-                nvpairsMA = metaAttrsNode.getChildNodes();
-            }
-            /* <nvpair...> */
-            for (int l = 0; l < nvpairsMA.getLength(); l++) {
-                final Node maNode = nvpairsMA.item(l);
-                if (maNode.getNodeName().equals("nvpair")) {
-                    final String name = XMLTools.getAttribute(maNode, "name");
-                    final String value = XMLTools.getAttribute(maNode, "value");
-                    opDefaultsParams.put(name, parseValue(name, value));
-                }
-            }
-        }
-    }
-
-    /** Parses attributes, operations etc. from primitives and clones. */
-    private void parseAttributes(final Node resourceNode,
-                                 final String crmId,
-                                 final Map<String, Map<String, String>> parametersMap,
-                                 final Map<String, Map<String, String>> parametersNvpairsIdsMap,
-                                 final Map<String, String> resourceInstanceAttrIdMap,
-                                 final MultiKeyMap<String, Value> operationsMap,
-                                 final Map<String, String> metaAttrsIdMap,
-                                 final Map<String, String> operationsIdMap,
-                                 final Map<String, Map<String, String>> resOpIdsMap,
-                                 final Map<String, String> operationsIdRefs,
-                                 final Map<String, String> operationsIdtoCRMId,
-                                 final Map<String, String> metaAttrsIdRefs,
-                                 final Map<String, String> metaAttrsIdToCRMId,
-                                 final boolean stonith) {
-        final Map<String, String> params = new HashMap<String, String>();
-        parametersMap.put(crmId, params);
-        final Map<String, String> nvpairIds = new HashMap<String, String>();
-        parametersNvpairsIdsMap.put(crmId, nvpairIds);
-        /* <instance_attributes> */
-        final Node instanceAttrNode = XMLTools.getChildNode(resourceNode, "instance_attributes");
-        /* <nvpair...> */
-        if (instanceAttrNode != null) {
-            final String iAId = XMLTools.getAttribute(instanceAttrNode, "id");
-            resourceInstanceAttrIdMap.put(crmId, iAId);
-            final NodeList nvpairsRes;
-            if (Tools.versionBeforePacemaker(host)) {
-                /* <attributtes> only til 2.1.4 */
-                final Node attrNode = XMLTools.getChildNode(instanceAttrNode, "attributes");
-                nvpairsRes = attrNode.getChildNodes();
-            } else {
-                nvpairsRes = instanceAttrNode.getChildNodes();
-            }
-            for (int j = 0; j < nvpairsRes.getLength(); j++) {
-                final Node optionNode = nvpairsRes.item(j);
-                if (optionNode.getNodeName().equals("nvpair")) {
-                    final String nvpairId = XMLTools.getAttribute(optionNode, "id");
-                    String name = XMLTools.getAttribute(optionNode, "name");
-                    final String value = XMLTools.getAttribute(optionNode, "value");
-                    if (stonith && "priority".equals(name)) {
-                        /* so it does not clash with meta attr priority */
-                        name = STONITH_PRIORITY_INSTANCE_ATTR;
-                    }
-                    params.put(name, value);
-                    nvpairIds.put(name, nvpairId);
-                }
-            }
-        }
-
-        /* <operations> */
-        final Node operationsNode = XMLTools.getChildNode(resourceNode, "operations");
-        if (operationsNode != null) {
-            final String operationsIdRef = XMLTools.getAttribute(operationsNode, "id-ref");
-            if (operationsIdRef == null) {
-                final String operationsId = XMLTools.getAttribute(operationsNode, "id");
-                operationsIdMap.put(crmId, operationsId);
-                operationsIdtoCRMId.put(operationsId, crmId);
-                final Map<String, String> opIds = new HashMap<String, String>();
-                resOpIdsMap.put(crmId, opIds);
-                /* <op> */
-                final NodeList ops = operationsNode.getChildNodes();
-                for (int k = 0; k < ops.getLength(); k++) {
-                    final Node opNode = ops.item(k);
-                    if (opNode.getNodeName().equals("op")) {
-                        final String opId = XMLTools.getAttribute(opNode, "id");
-                        final String name = XMLTools.getAttribute(opNode, "name");
-                        final String timeout = XMLTools.getAttribute(opNode, "timeout");
-                        final String interval = XMLTools.getAttribute(opNode, "interval");
-                        final String startDelay = XMLTools.getAttribute(opNode, "start-delay");
-
-                        operationsMap.put(crmId, name, "interval", parseValue("interval", interval));
-                        operationsMap.put(crmId, name, "timeout", parseValue("timeout", timeout));
-                        operationsMap.put(crmId, name, "start-delay", parseValue("startDelay", startDelay));
-
-                        opIds.put(name, opId);
-                        if ("monitor".equals(name)) {
-                            final String checkLevel = parseCheckLevelMonitorAttribute(opNode);
-                            operationsMap.put(crmId, name, PARAM_OCF_CHECK_LEVEL, new StringValue(checkLevel));
-                        }
-                    }
-                }
-            } else {
-                operationsIdRefs.put(crmId, operationsIdRef);
-            }
-        }
-
-        /* <meta_attributtes> */
-        final Node metaAttrsNode = XMLTools.getChildNode(resourceNode, "meta_attributes");
-        if (metaAttrsNode != null) {
-            final String metaAttrsIdRef = XMLTools.getAttribute(metaAttrsNode, "id-ref");
-            if (metaAttrsIdRef == null) {
-                final String metaAttrsId = XMLTools.getAttribute(metaAttrsNode, "id");
-                metaAttrsIdMap.put(crmId, metaAttrsId);
-                metaAttrsIdToCRMId.put(metaAttrsId, crmId);
-                /* <attributtes> only til 2.1.4 */
-                final NodeList nvpairsMA;
-                if (Tools.versionBeforePacemaker(host)) {
-                    final Node attrsNode = XMLTools.getChildNode(metaAttrsNode, "attributes");
-                    nvpairsMA = attrsNode.getChildNodes();
-                } else {
-                    nvpairsMA = metaAttrsNode.getChildNodes();
-                }
-                /* <nvpair...> */
-                /* target-role and is-managed */
-                for (int l = 0; l < nvpairsMA.getLength(); l++) {
-                    final Node maNode = nvpairsMA.item(l);
-                    if (maNode.getNodeName().equals("nvpair")) {
-                        final String nvpairId = XMLTools.getAttribute(maNode, "id");
-                        final String name = XMLTools.getAttribute(maNode, "name");
-                        String value = XMLTools.getAttribute(maNode, "value");
-                        if (TARGET_ROLE_META_ATTR.equals(name)) {
-                            value = value.toLowerCase(Locale.US);
-                        }
-                        params.put(name, value);
-                        nvpairIds.put(name, nvpairId);
-                    }
-                }
-            } else {
-                metaAttrsIdRefs.put(crmId, metaAttrsIdRef);
-            }
-        }
-    }
-
-    /** OCF_CHECK_LEVEL */
-    private String parseCheckLevelMonitorAttribute(final Node opNode) {
-        final Node iaNode = XMLTools.getChildNode(opNode, "instance_attributes");
-        if (iaNode == null) {
-            return "";
-        }
-        final Node nvpairNode = XMLTools.getChildNode(iaNode, "nvpair");
-        if (nvpairNode == null) {
-            return "";
-        }
-        final String name = XMLTools.getAttribute(nvpairNode, "name");
-        final String value = XMLTools.getAttribute(nvpairNode, "value");
-        if (PARAM_OCF_CHECK_LEVEL.equals(name)) {
-            return value;
-        } else {
-            LOG.appWarning("parseCheckLevel: unexpected instance attribute: " + name + ' ' + value);
-            return "";
-        }
-    }
-
-    private void parseGroupNode(final Node groupNode,
-                                final Collection<String> resList,
-                                final Map<String, List<String>> groupsToResourcesMap,
-                                final Map<String, Map<String, String>> parametersMap,
-                                final Map<String, ResourceAgent> resourceTypeMap,
-                                final Map<String, Map<String, String>> parametersNvpairsIdsMap,
-                                final Map<String, String> resourceInstanceAttrIdMap,
-                                final MultiKeyMap<String, Value> operationsMap,
-                                final Map<String, String> metaAttrsIdMap,
-                                final Map<String, String> operationsIdMap,
-                                final Map<String, Map<String, String>> resOpIdsMap,
-                                final Map<String, String> operationsIdRefs,
-                                final Map<String, String> operationsIdtoCRMId,
-                                final Map<String, String> metaAttrsIdRefs,
-                                final Map<String, String> metaAttrsIdToCRMId) {
-        final NodeList primitives = groupNode.getChildNodes();
-        final String groupId = XMLTools.getAttribute(groupNode, "id");
-        final Map<String, String> params = new HashMap<String, String>();
-        parametersMap.put(groupId, params);
-        final Map<String, String> nvpairIds = new HashMap<String, String>();
-        parametersNvpairsIdsMap.put(groupId, nvpairIds);
-        if (resList != null) {
-            resList.add(groupId);
-        }
-        List<String> groupResList = groupsToResourcesMap.get(groupId);
-        if (groupResList == null) {
-            groupResList = new ArrayList<String>();
-            groupsToResourcesMap.put(groupId, groupResList);
-        }
-
-        for (int j = 0; j < primitives.getLength(); j++) {
-            final Node primitiveNode = primitives.item(j);
-            if (primitiveNode.getNodeName().equals("primitive")) {
-                parsePrimitiveNode(primitiveNode,
-                        groupResList,
-                        resourceTypeMap,
-                        parametersMap,
-                        parametersNvpairsIdsMap,
-                        resourceInstanceAttrIdMap,
-                        operationsMap,
-                        metaAttrsIdMap,
-                        operationsIdMap,
-                        resOpIdsMap,
-                        operationsIdRefs,
-                        operationsIdtoCRMId,
-                        metaAttrsIdRefs,
-                        metaAttrsIdToCRMId);
-            }
-        }
-
-        /* <meta_attributtes> */
-        final Node metaAttrsNode = XMLTools.getChildNode(groupNode, "meta_attributes");
-        if (metaAttrsNode != null) {
-            final String metaAttrsIdRef = XMLTools.getAttribute(metaAttrsNode, "id-ref");
-            if (metaAttrsIdRef == null) {
-                final String metaAttrsId = XMLTools.getAttribute(metaAttrsNode, "id");
-                metaAttrsIdMap.put(groupId, metaAttrsId);
-                metaAttrsIdToCRMId.put(metaAttrsId, groupId);
-                /* <attributtes> only til 2.1.4 */
-                final NodeList nvpairsMA;
-                if (Tools.versionBeforePacemaker(host)) {
-                    final Node attrsNode = XMLTools.getChildNode(metaAttrsNode, "attributes");
-                    nvpairsMA = attrsNode.getChildNodes();
-                } else {
-                    nvpairsMA = metaAttrsNode.getChildNodes();
-                }
-                /* <nvpair...> */
-                /* target-role and is-managed */
-                for (int l = 0; l < nvpairsMA.getLength(); l++) {
-                    final Node maNode = nvpairsMA.item(l);
-                    if (maNode.getNodeName().equals("nvpair")) {
-                        final String nvpairId = XMLTools.getAttribute(maNode, "id");
-                        String name = XMLTools.getAttribute(maNode, "name");
-                        String value = XMLTools.getAttribute(maNode, "value");
-                        if (TARGET_ROLE_META_ATTR.equals(name)) {
-                            value = value.toLowerCase(Locale.US);
-                        }
-                        if ("ordered".equals(name)) {
-                            name = GROUP_ORDERED_META_ATTR;
-                        }
-                        params.put(name, value);
-                        nvpairIds.put(name, nvpairId);
-                    }
-                }
-            } else {
-                metaAttrsIdRefs.put(groupId, metaAttrsIdRef);
-            }
-        }
-    }
-
-    private void parsePrimitiveNode(final Node primitiveNode,
-                                    final Collection<String> groupResList,
-                                    final Map<String, ResourceAgent> resourceTypeMap,
-                                    final Map<String, Map<String, String>> parametersMap,
-                                    final Map<String, Map<String, String>> parametersNvpairsIdsMap,
-                                    final Map<String, String> resourceInstanceAttrIdMap,
-                                    final MultiKeyMap<String, Value> operationsMap,
-                                    final Map<String, String> metaAttrsIdMap,
-                                    final Map<String, String> operationsIdMap,
-                                    final Map<String, Map<String, String>> resOpIdsMap,
-                                    final Map<String, String> operationsIdRefs,
-                                    final Map<String, String> operationsIdtoCRMId,
-                                    final Map<String, String> metaAttrsIdRefs,
-                                    final Map<String, String> metaAttrsIdToCRMId) {
-        final String templateId = XMLTools.getAttribute(primitiveNode, "template");
-        final String crmId = XMLTools.getAttribute(primitiveNode, "id");
-        if (templateId != null) {
-            LOG.info("parsePrimitive: templates not implemented, ignoring: " + crmId + '/' + templateId);
-            return;
-        }
-        final String raClass = XMLTools.getAttribute(primitiveNode, "class");
-        String provider = XMLTools.getAttribute(primitiveNode, "provider");
-        if (provider == null) {
-            provider = ResourceAgent.HEARTBEAT_PROVIDER;
-        }
-        final String type = XMLTools.getAttribute(primitiveNode, "type");
-        resourceTypeMap.put(crmId, getResourceAgent(type, provider, raClass));
-        groupResList.add(crmId);
-        parseAttributes(primitiveNode,
-                        crmId,
-                        parametersMap,
-                        parametersNvpairsIdsMap,
-                        resourceInstanceAttrIdMap,
-                        operationsMap,
-                        metaAttrsIdMap,
-                        operationsIdMap,
-                        resOpIdsMap,
-                        operationsIdRefs,
-                        operationsIdtoCRMId,
-                        metaAttrsIdRefs,
-                        metaAttrsIdToCRMId,
-                        ResourceAgent.STONITH_CLASS_NAME.equals(raClass));
-    }
-
-    private Map<String, String> parseAllocationScores(final NodeList scores) {
-        final Map<String, String> allocationScores = new LinkedHashMap<String, String>();
-        for (int i = 0; i < scores.getLength(); i++) {
-            final Node scoreNode = scores.item(i);
-            if (scoreNode.getNodeName().equals("score")) {
-                final String h = XMLTools.getAttribute(scoreNode, "host");
-                final String score = XMLTools.getAttribute(scoreNode, "score");
-                allocationScores.put(h, score);
-            }
-        }
-        return allocationScores;
-    }
-
     /** Returns a hash with resource information. (running_on) */
     Map<String, ResourceStatus> parseResStatus(final String resStatus) {
         final Map<String, ResourceStatus> resStatusMap = new HashMap<String, ResourceStatus>();
-        final Document document = XMLTools.getXMLDocument(resStatus);
-        if (document == null) {
-            return null;
-        }
-
-        /* get root <resource_status> */
-        final Node statusNode = XMLTools.getChildNode(document, "resource_status");
-        if (statusNode == null) {
-            return null;
-        }
-        /*      <resource...> */
-        final NodeList resources = statusNode.getChildNodes();
-        for (int i = 0; i < resources.getLength(); i++) {
-            final Node resourceNode = resources.item(i);
-            if (resourceNode.getNodeName().equals("resource")) {
-                final String id = XMLTools.getAttribute(resourceNode, "id");
-                final String isManaged = XMLTools.getAttribute(resourceNode, "managed");
-                final NodeList statusList = resourceNode.getChildNodes();
+        try {
+            final XMLStreamReader reader = XMLTools.getXMLStreamReader(resStatus);
+            if (reader == null) {
+                return null;
+            }
+            /* get root <resource_status> */
+            if (!reader.isStartElement() || !"resource_status".equals(reader.getLocalName())) {
+                return null;
+            }
+            /*      <resource...> */
+            while (XMLTools.nextChildElement(reader)) {
+                if (!"resource".equals(reader.getLocalName())) {
+                    XMLTools.skipElement(reader);
+                    continue;
+                }
+                final String id = XMLTools.getAttribute(reader, "id");
+                final String isManaged = XMLTools.getAttribute(reader, "managed");
                 boolean managed = false;
                 if ("managed".equals(isManaged)) {
                     managed = true;
@@ -2274,700 +1907,62 @@ public class CrmXml {
                 List<String> runningOnList = null;
                 List<String> masterOnList = null;
                 List<String> slaveOnList = null;
-                for (int j = 0; j < statusList.getLength(); j++) {
-                    final Node setNode = statusList.item(j);
-                    if (TARGET_ROLE_STARTED.equalsIgnoreCase(
-                        setNode.getNodeName())) {
-                        final String node = XMLTools.getText(setNode);
+                while (XMLTools.nextChildElement(reader)) {
+                    final String setName = reader.getLocalName();
+                    if (TARGET_ROLE_STARTED.equalsIgnoreCase(setName)) {
+                        final String node = XMLTools.getText(reader);
                         if (runningOnList == null) {
                             runningOnList = new ArrayList<String>();
                         }
                         runningOnList.add(node);
-                    } else if (TARGET_ROLE_MASTER.equalsIgnoreCase(
-                        setNode.getNodeName())) {
-                        final String node = XMLTools.getText(setNode);
+                    } else if (TARGET_ROLE_MASTER.equalsIgnoreCase(setName)) {
+                        final String node = XMLTools.getText(reader);
                         if (masterOnList == null) {
                             masterOnList = new ArrayList<String>();
                         }
                         masterOnList.add(node);
-                    } else if (TARGET_ROLE_SLAVE.equalsIgnoreCase(
-                        setNode.getNodeName())) {
-                        final String node = XMLTools.getText(setNode);
+                    } else if (TARGET_ROLE_SLAVE.equalsIgnoreCase(setName)) {
+                        final String node = XMLTools.getText(reader);
                         if (slaveOnList == null) {
                             slaveOnList = new ArrayList<String>();
                         }
                         slaveOnList.add(node);
-                    } else if ("scores".equals(setNode.getNodeName())) {
-                        allocationScores = parseAllocationScores(setNode.getChildNodes());
+                    } else if ("scores".equals(setName)) {
+                        allocationScores = parseAllocationScores(reader);
+                    } else {
+                        XMLTools.skipElement(reader);
                     }
                 }
                 resStatusMap.put(id, new ResourceStatus(runningOnList,
-                                                   masterOnList,
-                                                   slaveOnList,
-                                                   allocationScores,
-                                                   managed));
-            }
+                                                        masterOnList,
+                                                        slaveOnList,
+                                                        allocationScores,
+                                                        managed));
+            }
+            reader.close();
+        } catch (final XMLStreamException e) {
+            LOG.appError("parseResStatus: could not parse: " + resStatus, e);
+            return null;
         }
         return resStatusMap;
     }
 
-    private void parseTransientAttributes(final String uname,
-                                          final Node transientAttrNode,
-                                          final Table<String, String, String> failedMap,
-                                          final Table<String, String, Set<String>> failedClonesMap,
-                                          final Map<String, String> pingCountMap) {
-        /* <instance_attributes> */
-        final Node instanceAttrNode = XMLTools.getChildNode(transientAttrNode, "instance_attributes");
-        /* <nvpair...> */
-        if (instanceAttrNode != null) {
-            final NodeList nvpairsRes;
-            if (Tools.versionBeforePacemaker(host)) {
-                /* <attributtes> only til 2.1.4 */
-                final Node attrNode = XMLTools.getChildNode(instanceAttrNode, "attributes");
-                nvpairsRes = attrNode.getChildNodes();
-            } else {
-                nvpairsRes = instanceAttrNode.getChildNodes();
-            }
-            for (int j = 0; j < nvpairsRes.getLength(); j++) {
-                final Node optionNode = nvpairsRes.item(j);
-                if (optionNode.getNodeName().equals("nvpair")) {
-                    final String name = XMLTools.getAttribute(optionNode, "name");
-                    final String value = XMLTools.getAttribute(optionNode, "value");
-                    /* TODO: last-failure-" */
-                    if ("pingd".equals(name)) {
-                        pingCountMap.put(uname, value);
-                    } else if (name.indexOf(FAIL_COUNT_PREFIX) == 0) {
-                        final String resId = name.substring(FAIL_COUNT_PREFIX.length());
-                        final String unameLowerCase = uname.toLowerCase(Locale.US);
-                        failedMap.put(unameLowerCase, resId, value);
-                        final Pattern p = Pattern.compile("(.*):(\\d+)$");
-                        final Matcher m = p.matcher(resId);
-                        if (m.matches()) {
-                            final String crmId = m.group(1);
-                            Set<String> clones = failedClonesMap.get(unameLowerCase, crmId);
-                            if (clones == null) {
-                                clones = new LinkedHashSet<String>();
-                                failedClonesMap.put(unameLowerCase, crmId, clones);
-                            }
-                            clones.add(m.group(2));
-                            failedMap.put(uname.toLowerCase(Locale.US), crmId, value);
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    /** Parses node, to get info like if it is in stand by. */
-    void parseNode(final String node, final Node nodeNode, final Table<String ,String, String> nodeParametersMap) {
-        /* <instance_attributes> */
-        final Node instanceAttrNode = XMLTools.getChildNode(nodeNode, "instance_attributes");
-        /* <nvpair...> */
-        if (instanceAttrNode != null) {
-            final NodeList nvpairsRes;
-            if (Tools.versionBeforePacemaker(host)) {
-                /* <attributtes> only til 2.1.4 */
-                final Node attrNode = XMLTools.getChildNode(instanceAttrNode, "attributes");
-                nvpairsRes = attrNode.getChildNodes();
-            } else {
-                nvpairsRes = instanceAttrNode.getChildNodes();
-            }
-            for (int j = 0; j < nvpairsRes.getLength(); j++) {
-                final Node optionNode = nvpairsRes.item(j);
-                if (optionNode.getNodeName().equals("nvpair")) {
-                    final String name = XMLTools.getAttribute(optionNode, "name");
-                    final String value = XMLTools.getAttribute(optionNode, "value");
-                    nodeParametersMap.put(node.toLowerCase(Locale.US), name, value);
-                }
-            }
-        }
-    }
-
-    private void parseResourceSets(final Node node,
-                                   final String colId,
-                                   final String ordId,
-                                   final Collection<RscSet> rscSets,
-                                   final List<RscSetConnectionData> rscSetConnections) {
-        final NodeList nodes = node.getChildNodes();
-        RscSet prevRscSet = null;
-        int rscSetCount = 0;
-        int ordPos = 0;
-        int colPos = 0;
-        for (int i = 0; i < nodes.getLength(); i++) {
-            final Node rscSetNode = nodes.item(i);
-            if (rscSetNode.getNodeName().equals("resource_set")) {
-                final String id = XMLTools.getAttribute(rscSetNode, "id");
-                final String sequential = XMLTools.getAttribute(rscSetNode, "sequential");
-                final String requireAll = XMLTools.getAttribute(rscSetNode, REQUIRE_ALL_ATTR);
-                final String orderAction = XMLTools.getAttribute(rscSetNode, "action");
-                final String colocationRole = XMLTools.getAttribute(rscSetNode, "role");
-                final NodeList rscNodes = rscSetNode.getChildNodes();
-                final List<String> rscIds = new ArrayList<String>();
-                for (int j = 0; j < rscNodes.getLength(); j++) {
-                    final Node rscRefNode = rscNodes.item(j);
-                    if (rscRefNode.getNodeName().equals("resource_ref")) {
-                        final String rscId = XMLTools.getAttribute(rscRefNode, "id");
-                        rscIds.add(rscId);
-                    }
-                }
-                final RscSet rscSet = new RscSet(id, rscIds, sequential, requireAll, orderAction, colocationRole);
-                rscSets.add(rscSet);
-                if (prevRscSet != null) {
-                    final RscSetConnectionData rscSetConnectionData;
-                    if (colId == null) {
-                        /* order */
-                        rscSetConnectionData = new RscSetConnectionData(prevRscSet, rscSet, ordId, ordPos, false);
-                        ordPos++;
-                        rscSetConnections.add(0, rscSetConnectionData);
-                    } else {
-                        /* colocation */
-                        rscSetConnectionData = new RscSetConnectionData(rscSet, prevRscSet, colId, colPos, true);
-                        colPos++;
-                        rscSetConnections.add(rscSetConnectionData);
-                    }
-                }
-                prevRscSet = rscSet;
-                rscSetCount++;
-            }
-        }
-        if (rscSetCount == 1) {
-            /* just one, dangling */
-            final RscSetConnectionData rscSetConnectionData;
-            if (colId == null) {
-                /* order */
-                rscSetConnectionData = new RscSetConnectionData(prevRscSet, null, ordId, ordPos, false);
-            } else {
-                /* colocation */
-                rscSetConnectionData = new RscSetConnectionData(prevRscSet, null, colId, colPos, true);
+    private Map<String, String> parseAllocationScores(final XMLStreamReader reader) throws XMLStreamException {
+        final Map<String, String> allocationScores = new LinkedHashMap<String, String>();
+        while (XMLTools.nextChildElement(reader)) {
+            if ("score".equals(reader.getLocalName())) {
+                final String h = XMLTools.getAttribute(reader, "host");
+                final String score = XMLTools.getAttribute(reader, "score");
+                allocationScores.put(h, score);
             }
-            rscSetConnections.add(rscSetConnectionData);
+            XMLTools.skipElement(reader);
         }
+        return allocationScores;
     }
 
     /** Returns CibQuery object with information from the cib node. */
     CibQuery parseCibQuery(final String query) {
-        final Document document = XMLTools.getXMLDocument(query);
-        final CibQuery cibQueryData = new CibQuery();
-        if (document == null) {
-            LOG.appWarning("parseCibQuery: cib error: " + query);
-            return cibQueryData;
-        }
-        /* get root <pacemaker> */
-        final Node pcmkNode = XMLTools.getChildNode(document, "pcmk");
-        if (pcmkNode == null) {
-            LOG.appWarning("parseCibQuery: there is no pcmk node");
-            return cibQueryData;
-        }
-
-        /* get fenced nodes */
-        final Set<String> fencedNodes = new HashSet<String>();
-        final Node fencedNode = XMLTools.getChildNode(pcmkNode, "fenced");
-        if (fencedNode != null) {
-            final NodeList nodes = fencedNode.getChildNodes();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final Node hostNode = nodes.item(i);
-                if (hostNode.getNodeName().equals("node")) {
-                    final String h = XMLTools.getText(hostNode);
-                    if (h != null) {
-                        fencedNodes.add(h.toLowerCase(Locale.US));
-                    }
-                }
-            }
-        }
-
-        /* get <cib> */
-        final Node cibNode = XMLTools.getChildNode(pcmkNode, "cib");
-        if (cibNode == null) {
-            LOG.appWarning("parseCibQuery: there is no cib node");
-            return cibQueryData;
-        }
-        /* Designated Co-ordinator */
-        final String dcUuid = XMLTools.getAttribute(cibNode, "dc-uuid");
-        //TODO: more attributes are here
-
-        /* <configuration> */
-        final Node confNode = XMLTools.getChildNode(cibNode, "configuration");
-        if (confNode == null) {
-            LOG.appWarning("parseCibQuery: there is no configuration node");
-            return cibQueryData;
-        }
-
-        /* <rsc_defaults> */
-        final Node rscDefaultsNode = XMLTools.getChildNode(confNode, "rsc_defaults");
-        String rscDefaultsId = null;
-        final Map<String, String> rscDefaultsParams = new HashMap<String, String>();
-        final Map<String, String> rscDefaultsParamsNvpairIds = new HashMap<String, String>();
-        if (rscDefaultsNode != null) {
-            rscDefaultsId = parseResourceDefaults(rscDefaultsNode, rscDefaultsParams, rscDefaultsParamsNvpairIds);
-        }
-
-        /* <op_defaults> */
-        final Node opDefaultsNode = XMLTools.getChildNode(confNode, "op_defaults");
-        final Map<String, Value> opDefaultsParams = new HashMap<String, Value>();
-        if (opDefaultsNode != null) {
-            parseOpDefaults(opDefaultsNode, opDefaultsParams);
-        }
-        
-        
-        /* <crm_config> */
-        final Node crmConfNode = XMLTools.getChildNode(confNode, "crm_config");
-        if (crmConfNode == null) {
-            LOG.appWarning("parseCibQuery: there is no crm_config node");
-            return cibQueryData;
-        }
-
-        /*      <cluster_property_set> */
-        final Node cpsNode = XMLTools.getChildNode(crmConfNode, "cluster_property_set");
-        if (cpsNode == null) {
-            LOG.appWarning("parseCibQuery: there is no cluster_property_set node");
-        } else {
-            final NodeList nvpairs;
-            if (Tools.versionBeforePacemaker(host)) {
-                /* <attributtes> only til 2.1.4 */
-                final Node attrNode = XMLTools.getChildNode(cpsNode, "attributes");
-                nvpairs = attrNode.getChildNodes();
-            } else {
-                nvpairs = cpsNode.getChildNodes();
-            }
-            final Map<String, String> crmConfMap =
-                new HashMap<String, String>();
-            /*              <nvpair...> */
-            for (int i = 0; i < nvpairs.getLength(); i++) {
-                final Node optionNode = nvpairs.item(i);
-                if (optionNode.getNodeName().equals("nvpair")) {
-                    final String name = XMLTools.getAttribute(optionNode, "name");
-                    final String value = XMLTools.getAttribute(optionNode, "value");
-                    crmConfMap.put(name, value);
-                }
-            }
-            cibQueryData.setCrmConfig(crmConfMap);
-        }
-
-        /* <nodes> */
-        /* xml node with cluster node make stupid variable names, but let's
-        * keep the convention. */
-        String dc = null;
-        final Table<String, String, String> nodeParametersMap = HashBasedTable.create();
-        final Node nodesNode = XMLTools.getChildNode(confNode, "nodes");
-        final Map<String, String> nodeOnline = new HashMap<String, String>();
-        final Map<String, String> nodeID = new HashMap<String, String>();
-        if (nodesNode != null) {
-            final NodeList nodes = nodesNode.getChildNodes();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final Node nodeNode = nodes.item(i);
-                if (nodeNode.getNodeName().equals("node")) {
-                    /* TODO: doing nothing with the info, just getting the dc,
-                    * for now.
-                    */
-                    final String id = XMLTools.getAttribute(nodeNode, "id");
-                    final String uname = XMLTools.getAttribute(nodeNode, "uname");
-                    if (!nodeID.containsKey(uname)) {
-                        nodeID.put(uname, id);
-                    }
-                    if (dcUuid != null && dcUuid.equals(id)) {
-                        dc = uname;
-                    }
-                    parseNode(uname, nodeNode, nodeParametersMap);
-                    if (!nodeOnline.containsKey(uname.toLowerCase(Locale.US))) {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "no");
-                    }
-                }
-            }
-        }
-
-        /* <resources> */
-        final Node resourcesNode = XMLTools.getChildNode(confNode, "resources");
-        if (resourcesNode == null) {
-            LOG.appWarning("parseCibQuery: there is no resources node");
-            return cibQueryData;
-        }
-        /*      <primitive> */
-        final Map<String, Map<String, String>> parametersMap = new HashMap<String, Map<String, String>>();
-        final Map<String, Map<String, String>> parametersNvpairsIdsMap = new HashMap<String, Map<String, String>>();
-        final Map<String, ResourceAgent> resourceTypeMap = new HashMap<String, ResourceAgent>();
-        final Set<String> orphanedList = new HashSet<String>();
-        /* host -> inLRMList list */
-        final Map<String, Set<String>> inLRMList = new HashMap<String, Set<String>>();
-        final Map<String, String> resourceInstanceAttrIdMap = new HashMap<String, String>();
-        final MultiKeyMap<String, Value> operationsMap = new MultiKeyMap<String, Value>();
-        final Map<String, String> metaAttrsIdMap = new HashMap<String, String>();
-        final Map<String, String> operationsIdMap = new HashMap<String, String>();
-        final Map<String, Map<String, String>> resOpIdsMap = new HashMap<String, Map<String, String>>();
-        /* must be linked, so that clone from group is before the group itself.
-        */
-        final Map<String, List<String>> groupsToResourcesMap = new LinkedHashMap<String, List<String>>();
-        final Map<String, String> cloneToResourceMap = new HashMap<String, String>();
-        final List<String> masterList = new ArrayList<String>();
-        final Table<String, String, String> failedMap = HashBasedTable.create();
-        final Table<String, String, Set<String>> failedClonesMap = HashBasedTable.create();
-        final Map<String, String> pingCountMap = new HashMap<String, String>();
-        groupsToResourcesMap.put("none", new ArrayList<String>());
-
-        final NodeList primitivesGroups = resourcesNode.getChildNodes();
-        final Map<String, String> operationsIdRefs = new HashMap<String, String>();
-        final Map<String, String> operationsIdtoCRMId = new HashMap<String, String>();
-        final Map<String, String> metaAttrsIdRefs = new HashMap<String, String>();
-        final Map<String, String> metaAttrsIdToCRMId = new HashMap<String, String>();
-        for (int i = 0; i < primitivesGroups.getLength(); i++) {
-            final Node primitiveGroupNode = primitivesGroups.item(i);
-            final String nodeName = primitiveGroupNode.getNodeName();
-            if ("primitive".equals(nodeName)) {
-                final List<String> resList = groupsToResourcesMap.get("none");
-                parsePrimitiveNode(primitiveGroupNode,
-                                   resList,
-                                   resourceTypeMap,
-                                   parametersMap,
-                                   parametersNvpairsIdsMap,
-                                   resourceInstanceAttrIdMap,
-                                   operationsMap,
-                                   metaAttrsIdMap,
-                                   operationsIdMap,
-                                   resOpIdsMap,
-                                   operationsIdRefs,
-                                   operationsIdtoCRMId,
-                                   metaAttrsIdRefs,
-                                   metaAttrsIdToCRMId);
-            } else if ("group".equals(nodeName)) {
-                parseGroupNode(primitiveGroupNode,
-                               null,
-                               groupsToResourcesMap,
-                               parametersMap,
-                               resourceTypeMap,
-                               parametersNvpairsIdsMap,
-                               resourceInstanceAttrIdMap,
-                               operationsMap,
-                               metaAttrsIdMap,
-                               operationsIdMap,
-                               resOpIdsMap,
-                               operationsIdRefs,
-                               operationsIdtoCRMId,
-                               metaAttrsIdRefs,
-                               metaAttrsIdToCRMId);
-            } else if ("master".equals(nodeName) || "master_slave".equals(nodeName) || "clone".equals(nodeName)) {
-                final NodeList primitives = primitiveGroupNode.getChildNodes();
-                final String cloneId = XMLTools.getAttribute(primitiveGroupNode, "id");
-                List<String> resList = groupsToResourcesMap.get(cloneId);
-                if (resList == null) {
-                    resList = new ArrayList<String>();
-                    groupsToResourcesMap.put(cloneId, resList);
-                }
-                parseAttributes(primitiveGroupNode,
-                                cloneId,
-                                parametersMap,
-                                parametersNvpairsIdsMap,
-                                resourceInstanceAttrIdMap,
-                                operationsMap,
-                                metaAttrsIdMap,
-                                operationsIdMap,
-                                resOpIdsMap,
-                                operationsIdRefs,
-                                operationsIdtoCRMId,
-                                metaAttrsIdRefs,
-                                metaAttrsIdToCRMId,
-                                false);
-                for (int j = 0; j < primitives.getLength(); j++) {
-                    final Node primitiveNode = primitives.item(j);
-                    if (primitiveNode.getNodeName().equals("primitive")) {
-                        parsePrimitiveNode(primitiveNode,
-                                           resList,
-                                           resourceTypeMap,
-                                           parametersMap,
-                                           parametersNvpairsIdsMap,
-                                           resourceInstanceAttrIdMap,
-                                           operationsMap,
-                                           metaAttrsIdMap,
-                                           operationsIdMap,
-                                           resOpIdsMap,
-                                           operationsIdRefs,
-                                           operationsIdtoCRMId,
-                                           metaAttrsIdRefs,
-                                           metaAttrsIdToCRMId);
-                    } else if (primitiveNode.getNodeName().equals("group")) {
-                        parseGroupNode(primitiveNode,
-                                       resList,
-                                       groupsToResourcesMap,
-                                       parametersMap,
-                                       resourceTypeMap,
-                                       parametersNvpairsIdsMap,
-                                       resourceInstanceAttrIdMap,
-                                       operationsMap,
-                                       metaAttrsIdMap,
-                                       operationsIdMap,
-                                       resOpIdsMap,
-                                       operationsIdRefs,
-                                       operationsIdtoCRMId,
-                                       metaAttrsIdRefs,
-                                       metaAttrsIdToCRMId);
-                    }
-                }
-                if (!resList.isEmpty()) {
-                    cloneToResourceMap.put(cloneId, resList.get(0));
-                    if ("master".equals(nodeName) || "master_slave".equals(nodeName)) {
-                        masterList.add(cloneId);
-                    }
-                }
-            }
-        }
-
-        /* operationsRefs crm id -> crm id */
-        final Map<String, String> operationsRefs = new HashMap<String, String>();
-        for (final String crmId : operationsIdRefs.keySet()) {
-            final String idRef = operationsIdRefs.get(crmId);
-            operationsRefs.put(crmId, operationsIdtoCRMId.get(idRef));
-        }
-
-        /* mettaAttrsRefs crm id -> crm id */
-        final Map<String, String> metaAttrsRefs = new HashMap<String, String>();
-        for (final String crmId : metaAttrsIdRefs.keySet()) {
-            final String idRef = metaAttrsIdRefs.get(crmId);
-            metaAttrsRefs.put(crmId, metaAttrsIdToCRMId.get(idRef));
-        }
-
-        /* <constraints> */
-        final Map<String, ColocationData> colocationIdMap = new LinkedHashMap<String, ColocationData>();
-        final Map<String, List<ColocationData>> colocationRscMap = new HashMap<String, List<ColocationData>>();
-        final Map<String, OrderData> orderIdMap = new LinkedHashMap<String, OrderData>();
-        final Map<String, List<RscSet>> orderIdRscSetsMap = new HashMap<String, List<RscSet>>();
-        final Map<String, List<RscSet>> colocationIdRscSetsMap = new HashMap<String, List<RscSet>>();
-        final List<RscSetConnectionData> rscSetConnections = new ArrayList<RscSetConnectionData>();
-        final Map<String, List<OrderData>> orderRscMap = new HashMap<String, List<OrderData>>();
-        final Map<String, Map<String, HostLocation>> locationMap = new HashMap<String, Map<String, HostLocation>>();
-        final Map<String, HostLocation> pingLocationMap = new HashMap<String, HostLocation>();
-        final Map<String, List<String>> locationsIdMap = new HashMap<String, List<String>>();
-        final Table<String, String, String> resHostToLocIdMap = HashBasedTable.create();
-        
-        final Map<String, String> resPingToLocIdMap = new HashMap<String, String>();
-        final Node constraintsNode = XMLTools.getChildNode(confNode, "constraints");
-        if (constraintsNode != null) {
-            final NodeList constraints = constraintsNode.getChildNodes();
-            String rscString         = "rsc";
-            String rscRoleString     = "rsc-role";
-            String withRscString     = "with-rsc";
-            String withRscRoleString = "with-rsc-role";
-            String firstString       = "first";
-            String thenString        = "then";
-            String firstActionString = "first-action";
-            String thenActionString  = "then-action";
-            if (Tools.versionBeforePacemaker(host)) {
-                rscString         = "from";
-                rscRoleString     = "from_role";
-                withRscString     = "to";
-                withRscRoleString = "to_role";
-                firstString       = "to";
-                thenString        = "from";
-                firstActionString = "to_action";
-                thenActionString  = "action";
-            }
-            for (int i = 0; i < constraints.getLength(); i++) {
-                final Node constraintNode = constraints.item(i);
-                if (constraintNode.getNodeName().equals("rsc_colocation")) {
-                    final String colId = XMLTools.getAttribute(constraintNode, "id");
-                    final String rsc = XMLTools.getAttribute(constraintNode, rscString);
-                    final String withRsc = XMLTools.getAttribute(constraintNode, withRscString);
-                    if (rsc == null || withRsc == null) {
-                        final List<RscSet> rscSets = new ArrayList<RscSet>();
-                        parseResourceSets(constraintNode, colId, null, rscSets, rscSetConnections);
-                        colocationIdRscSetsMap.put(colId, rscSets);
-                    }
-                    final String rscRole = XMLTools.getAttribute(constraintNode, rscRoleString);
-                    final String withRscRole = XMLTools.getAttribute(constraintNode, withRscRoleString);
-                    final String score = XMLTools.getAttribute(constraintNode, SCORE_CONSTRAINT_PARAM);
-                    final ColocationData colocationData =
-                                                 new ColocationData(colId, rsc, withRsc, rscRole, withRscRole, score);
-                    colocationIdMap.put(colId, colocationData);
-                    List<ColocationData> withs = colocationRscMap.get(rsc);
-                    if (withs == null) {
-                        withs = new ArrayList<ColocationData>();
-                    }
-                    withs.add(colocationData);
-                    colocationRscMap.put(rsc, withs);
-                } else if (constraintNode.getNodeName().equals("rsc_order")) {
-                    String rscFirst = XMLTools.getAttribute(constraintNode, firstString);
-                    String rscThen = XMLTools.getAttribute(constraintNode, thenString);
-                    final String ordId = XMLTools.getAttribute(constraintNode, "id");
-                    if (rscFirst == null || rscThen == null) {
-                        final List<RscSet> rscSets = new ArrayList<RscSet>();
-                        parseResourceSets(constraintNode, null, ordId, rscSets, rscSetConnections);
-                        orderIdRscSetsMap.put(ordId, rscSets);
-                    }
-                    final String score = XMLTools.getAttribute(constraintNode, SCORE_CONSTRAINT_PARAM);
-                    final String symmetrical = XMLTools.getAttribute(constraintNode, "symmetrical");
-                    String firstAction = XMLTools.getAttribute(constraintNode, firstActionString);
-                    String thenAction = XMLTools.getAttribute(constraintNode, thenActionString);
-                    final String type = XMLTools.getAttribute(constraintNode, "type");
-                    if (type != null && "before".equals(type)) {
-                        /* exchange resoruces */
-                        final String rsc = rscFirst;
-                        rscFirst = rscThen;
-                        rscThen = rsc;
-                        final String act = firstAction;
-                        firstAction = thenAction;
-                        thenAction = act;
-                    }
-                    final OrderData orderData = new OrderData(ordId,
-                                                              rscFirst,
-                                                              rscThen,
-                                                              score,
-                                                              symmetrical,
-                                                              firstAction,
-                                                              thenAction);
-                    orderIdMap.put(ordId, orderData);
-                    List<OrderData> thens = orderRscMap.get(rscFirst);
-                    if (thens == null) {
-                        thens = new ArrayList<OrderData>();
-                    }
-                    thens.add(orderData);
-                    orderRscMap.put(rscFirst, thens);
-                } else if ("rsc_location".equals(constraintNode.getNodeName())) {
-                    final String locId = XMLTools.getAttribute(constraintNode, "id");
-                    final String node  = XMLTools.getAttribute(constraintNode, "node");
-                    final String rsc   = XMLTools.getAttribute(constraintNode, "rsc");
-                    final String score = XMLTools.getAttribute(constraintNode, SCORE_CONSTRAINT_PARAM);
-
-                    List<String> locs = locationsIdMap.get(rsc);
-                    if (locs == null) {
-                        locs = new ArrayList<String>();
-                        locationsIdMap.put(rsc, locs);
-                    }
-                    Map<String, HostLocation> hostScoreMap = locationMap.get(rsc);
-                    if (hostScoreMap == null) {
-                        hostScoreMap = new HashMap<String, HostLocation>();
-                        locationMap.put(rsc, hostScoreMap);
-                    }
-                    final String role = null; // TODO
-                    if (node != null) {
-                        resHostToLocIdMap.put(rsc, node.toLowerCase(Locale.US), locId);
-                        if (score != null) {
-                            hostScoreMap.put(node.toLowerCase(Locale.US), new HostLocation(score, "eq", null, role));
-                        }
-                    }
-                    locs.add(locId);
-                    final Node ruleNode = XMLTools.getChildNode(constraintNode, "rule");
-                    if (ruleNode != null) {
-                        final String score2 = XMLTools.getAttribute(ruleNode, SCORE_CONSTRAINT_PARAM);
-                        final String booleanOp = XMLTools.getAttribute(ruleNode, "boolean-op");
-                        // TODO: I know only "and", ignoring everything we
-                        // don't know.
-                        final Node expNode = XMLTools.getChildNode(ruleNode, "expression");
-                        if (expNode != null
-                            && "expression".equals(expNode.getNodeName())) {
-                            final String attr = XMLTools.getAttribute(expNode, "attribute");
-                            final String op = XMLTools.getAttribute(expNode, "operation");
-                            final String value = XMLTools.getAttribute(expNode, "value");
-                            if ((booleanOp == null || "and".equals(booleanOp))
-                                && "#uname".equals(attr)
-                                && value != null) {
-                                hostScoreMap.put(value.toLowerCase(Locale.US),
-                                                 new HostLocation(score2, op, null, role));
-                                resHostToLocIdMap.put(rsc, value.toLowerCase(Locale.US), locId);
-                            } else if ((booleanOp == null || "and".equals(booleanOp)) && "pingd".equals(attr)) {
-                                pingLocationMap.put(rsc, new HostLocation(score2, op, value, null));
-                                resPingToLocIdMap.put(rsc, locId);
-                            } else {
-                                LOG.appWarning("parseCibQuery: could not parse rsc_location: " + locId);
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        /* <status> */
-        final Node statusNode = XMLTools.getChildNode(cibNode, "status");
-        final Set<String> nodePending = new HashSet<String>();
-        if (statusNode != null) {
-            /* <node_state ...> */
-            final NodeList nodes = statusNode.getChildNodes();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                final Node nodeStateNode = nodes.item(i);
-                if ("node_state".equals(nodeStateNode.getNodeName())) {
-                    final String uname = XMLTools.getAttribute(nodeStateNode, "uname");
-                    final String id = XMLTools.getAttribute(nodeStateNode, "id");
-                    if (uname == null || !id.equals(nodeID.get(uname))) {
-                        LOG.appWarning("parseCibQuery: skipping " + uname + ' ' + id);
-                        continue;
-                    }
-                    final String join = XMLTools.getAttribute(nodeStateNode, "join");
-                    final String inCCM = XMLTools.getAttribute(nodeStateNode, "in_ccm");
-                    final String crmd = XMLTools.getAttribute(nodeStateNode, "crmd");
-                    if ("member".equals(join) && "true".equals(inCCM) && !"offline".equals(crmd)) {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "yes");
-                    } else {
-                        nodeOnline.put(uname.toLowerCase(Locale.US), "no");
-                    }
-                    if ("pending".equals(join)) {
-                        nodePending.add(uname.toLowerCase(Locale.US));
-                    }
-                    final NodeList nodeStates = nodeStateNode.getChildNodes();
-                    /* transient attributes. */
-                    for (int j = 0; j < nodeStates.getLength(); j++) {
-                        final Node nodeStateChild = nodeStates.item(j);
-                        if ("transient_attributes".equals(
-                            nodeStateChild.getNodeName())) {
-                            parseTransientAttributes(uname, nodeStateChild, failedMap, failedClonesMap, pingCountMap);
-                        }
-                    }
-                    final List<String> resList =
-                        groupsToResourcesMap.get("none");
-                    for (int j = 0; j < nodeStates.getLength(); j++) {
-                        final Node nodeStateChild = nodeStates.item(j);
-                        if ("lrm".equals(nodeStateChild.getNodeName())) {
-                            parseLrmResources(uname.toLowerCase(Locale.US),
-                                    nodeStateChild,
-                                    resList,
-                                    resourceTypeMap,
-                                    parametersMap,
-                                    inLRMList,
-                                    orphanedList,
-                                    failedClonesMap);
-                        }
-                    }
-                }
-            }
-        }
-        cibQueryData.setDC(dc);
-        cibQueryData.setNodeParameters(nodeParametersMap);
-        cibQueryData.setResourceParameters(parametersMap);
-        cibQueryData.setResourceParametersNvpairsIds(parametersNvpairsIdsMap);
-        cibQueryData.setResourceType(resourceTypeMap);
-        cibQueryData.setInLRM(inLRMList);
-        cibQueryData.setOrphaned(orphanedList);
-        cibQueryData.setResourceInstanceAttrId(resourceInstanceAttrIdMap);
-
-        cibQueryData.setColocationRsc(colocationRscMap);
-        cibQueryData.setColocationId(colocationIdMap);
-
-        cibQueryData.setOrderId(orderIdMap);
-        cibQueryData.setOrderIdRscSets(orderIdRscSetsMap);
-        cibQueryData.setColocationIdRscSets(colocationIdRscSetsMap);
-        cibQueryData.setRscSetConnections(rscSetConnections);
-        cibQueryData.setOrderRsc(orderRscMap);
-
-        cibQueryData.setLocations(locationMap);
-        cibQueryData.setPingLocations(pingLocationMap);
-        cibQueryData.setLocationsId(locationsIdMap);
-        cibQueryData.setResHostToLocId(resHostToLocIdMap);
-        cibQueryData.setResPingToLocId(resPingToLocIdMap);
-        cibQueryData.setOperations(operationsMap);
-        cibQueryData.setOperationsId(operationsIdMap);
-        cibQueryData.setOperationsRefs(operationsRefs);
-        cibQueryData.setMetaAttrsId(metaAttrsIdMap);
-        cibQueryData.setMetaAttrsRefs(metaAttrsRefs);
-        cibQueryData.setResOpIds(resOpIdsMap);
-        cibQueryData.setNodeOnline(nodeOnline);
-        cibQueryData.setNodePending(nodePending);
-        cibQueryData.setGroupsToResources(groupsToResourcesMap);
-        cibQueryData.setCloneToResource(cloneToResourceMap);
-        cibQueryData.setMasterList(masterList);
-        cibQueryData.setNodeFailedCount(failedMap);
-        cibQueryData.setResourceFailedCloneIds(failedClonesMap);
-        cibQueryData.setNodePingCount(pingCountMap);
-        cibQueryData.setRscDefaultsId(rscDefaultsId);
-        cibQueryData.setRscDefaultsParams(rscDefaultsParams);
-        cibQueryData.setRscDefaultsParamsNvpairIds(rscDefaultsParamsNvpairIds);
-        cibQueryData.setOpDefaultsParams(opDefaultsParams);
-        cibQueryData.setFencedNodes(fencedNodes);
-        return cibQueryData;
+        return new CibQueryParser(this, Tools.versionBeforePacemaker(host)).parse(query);
     }
 
     public String[] getOrderParameters() {
@@ -3239,57 +2234,6 @@ public class CrmXml {
         return linbitDrbdResourceAgentPresent;
     }
 
-    void parseLrmResources(final String unameLowerCase,
-                           final Node lrmNode,
-                           final Collection<String> resList,
-                           final Map<String, ResourceAgent> resourceTypeMap,
-                           final Map<String, Map<String, String>> parametersMap,
-                           final Map<String, Set<String>> inLRMList,
-                           final Collection<String> orphanedList,
-                           final Table<String, String, Set<String>> failedClonesMap) {
-        final Node lrmResourcesNode = XMLTools.getChildNode(lrmNode, "lrm_resources");
-        final NodeList lrmResources = lrmResourcesNode.getChildNodes();
-        for (int j = 0; j < lrmResources.getLength(); j++) {
-            final Node rscNode = lrmResources.item(j);
-            if ("lrm_resource".equals(rscNode.getNodeName())) {
-                final String resId = XMLTools.getAttribute(rscNode, "id");
-                final Pattern p = Pattern.compile("(.*):(\\d+)$");
-                final Matcher m = p.matcher(resId);
-                final String crmId;
-                if (m.matches()) {
-                    crmId = m.group(1);
-                    Set<String> clones = failedClonesMap.get(unameLowerCase, crmId);
-                    if (clones == null) {
-                        clones = new LinkedHashSet<String>();
-                        failedClonesMap.put(unameLowerCase, crmId, clones);
-                    }
-                    clones.add(m.group(2));
-                } else {
-                    crmId = resId;
-                }
-                if (!resourceTypeMap.containsKey(crmId)) {
-                    final String raClass = XMLTools.getAttribute(rscNode, "class");
-                    String provider = XMLTools.getAttribute(rscNode, "provider");
-                    if (provider == null) {
-                        provider = ResourceAgent.HEARTBEAT_PROVIDER;
-                    }
-                    final String type = XMLTools.getAttribute(rscNode, "type");
-                    resourceTypeMap.put(crmId, getResourceAgent(type, provider, raClass));
-                    resList.add(crmId);
-                    parametersMap.put(crmId, new HashMap<String, String>());
-                    orphanedList.add(crmId);
-                }
-                /* it is in LRM */
-                Set<String> inLRMOnHost = inLRMList.get(unameLowerCase);
-                if (inLRMOnHost == null) {
-                    inLRMOnHost = new HashSet<String>();
-                    inLRMList.put(unameLowerCase, inLRMOnHost);
-                }
-                inLRMOnHost.add(crmId);
-            }
-        }
-    }
-
     private Unit parseUnit(final String param, final String u) {
         if ("s".equals(u) || "".equals(u)) {
             return getUnitSecond();
@@ -3308,7 +2252,7 @@ public class CrmXml {
     }
 
 
-    private Value parseValue(final String param, final CharSequence v) {
+    Value parseValue(final String param, final CharSequence v) {
         if (v == null) {
             return null;
         }
@@ -42,7 +42,6 @@ import java.util.UUID;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.regex.Matcher;
 
 /**
  * This class provides cib commands. There are commands that use cibadmin and
@@ -1143,7 +1142,7 @@ public final class CRM {
 
     public static String crmConfigureCommit(final Host host, final String config, final Application.RunMode runMode) {
         final Map<String, String> replaceHash = new HashMap<String, String>();
-        replaceHash.put("@CONFIG@", Tools.escapeQuotes(Matcher.quoteReplacement(config), 1));
+        replaceHash.put("@CONFIG@", Tools.escapeQuotes(config, 1));
         final String command = host.getDistCommand("CRM.configureCommit", replaceHash);
         final SshOutput ret = execCommand(host, command, runMode);
         if (ret.getExitCode() == 0) {
@@ -23,7 +23,6 @@
 package lcmc.crm.ui.resource;
 
 import com.google.common.base.Optional;
-import lcmc.Exceptions;
 import lcmc.cluster.ui.ClusterBrowser;
 import lcmc.cluster.ui.widget.Check;
 import lcmc.cluster.ui.widget.Widget;
@@ -40,8 +39,6 @@ import lcmc.crm.domain.CrmXml;
 import lcmc.crm.domain.Service;
 import lcmc.crm.service.CRM;
 import lcmc.host.domain.Host;
-import lcmc.logger.Logger;
-import lcmc.logger.LoggerFactory;
 
 import javax.inject.Named;
 import java.util.HashMap;
@@ -54,7 +51,6 @@ import java.util.regex.Matcher;
  */
 @Named
 final class HbOrderInfo extends EditableInfo implements HbConstraintInterface {
-    private static final Logger LOG = LoggerFactory.getLogger(HbOrderInfo.class);
     public static final String NOT_AVAIL_FOR_PCMK_VERSION = Tools.getString("HbOrderInfo.NotAvailableForThisVersion");
     private ServiceInfo serviceInfoParent;
     private ServiceInfo serviceInfoChild;
@@ -381,15 +377,9 @@ final class HbOrderInfo extends EditableInfo implements HbConstraintInterface {
     @Override
     protected String isEnabled(final String param) {
         if (CrmXml.REQUIRE_ALL_ATTR.equals(param)) {
-            final String pmV = getBrowser().getDCHost().getHostParser().getPacemakerVersion();
-            try {
-                //TODO: get this from constraints-.rng files
-                if (pmV == null || Tools.compareVersions(pmV, "1.1.7") <= 0) {
-                    return NOT_AVAIL_FOR_PCMK_VERSION;
-                }
-            } catch (final Exceptions.IllegalVersionException e) {
-                LOG.appWarning("isEnabled: unkonwn version: " + pmV);
-                /* enable it, if version check doesn't work */
+            //TODO: get this from constraints-.rng files
+            if (!getBrowser().getDCHost().getHostParser().getCapabilities().hasOrderRequireAll()) {
+                return NOT_AVAIL_FOR_PCMK_VERSION;
             }
         }
         return null;
@@ -31,7 +31,6 @@ import javax.inject.Provider;
 import javax.swing.JDialog;
 
 import lcmc.cluster.ui.wizard.EditClusterDialog;
-import lcmc.Exceptions;
 import lcmc.common.ui.CallbackAction;
 import lcmc.common.ui.main.MainData;
 import lcmc.common.domain.AccessMode;
@@ -47,8 +46,6 @@ import lcmc.common.ui.utils.ButtonCallback;
 import lcmc.crm.service.CRM;
 import lcmc.common.ui.utils.ComponentWithTest;
 import lcmc.common.domain.EnablePredicate;
-import lcmc.logger.Logger;
-import lcmc.logger.LoggerFactory;
 import lcmc.common.ui.utils.MenuAction;
 import lcmc.common.ui.utils.MenuFactory;
 import lcmc.common.ui.utils.MyList;
@@ -62,8 +59,6 @@ import lcmc.common.domain.VisiblePredicate;
 @Named
 public class ServicesMenu {
 
-    private static final Logger LOG = LoggerFactory.getLogger(ServicesInfo.class);
-
     @Inject
     private EditClusterDialog editClusterDialog;
     @Inject
@@ -366,15 +361,10 @@ public class ServicesMenu {
                         .enablePredicate(new EnablePredicate() {
                             @Override
                             public String check() {
-                                final String pmV = servicesInfo.getBrowser().getDCHost().getHostParser().getPacemakerVersion();
-                                try {
-                                    //TODO: get this from constraints-.rng files
-                                    if (pmV == null || Tools.compareVersions(pmV, "1.1.7") <= 0) {
-                                        return HbOrderInfo.NOT_AVAIL_FOR_PCMK_VERSION;
-                                    }
-                                } catch (final Exceptions.IllegalVersionException e) {
-                                    LOG.appWarning("enablePredicate: unkonwn version: " + pmV);
-                        /* enable it, if version check doesn't work */
+                                //TODO: get this from constraints-.rng files
+                                if (!servicesInfo.getBrowser().getDCHost().getHostParser().getCapabilities()
+                                                 .hasOrderRequireAll()) {
+                                    return HbOrderInfo.NOT_AVAIL_FOR_PCMK_VERSION;
                                 }
                                 if (servicesInfo.getBrowser().crmStatusFailed()) {
                                     return ClusterBrowser.UNKNOWN_CLUSTER_STATUS_STRING;
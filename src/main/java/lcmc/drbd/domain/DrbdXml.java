@@ -41,6 +41,7 @@ import lcmc.common.ui.main.ProgressIndicator;
 import lcmc.drbd.ui.DrbdGraph;
 import lcmc.drbd.ui.resource.BlockDevInfo;
 import lcmc.drbd.ui.resource.ProxyNetInfo;
+import lcmc.host.domain.HelperOutputDecoder;
 import lcmc.host.domain.Host;
 import lcmc.logger.Logger;
 import lcmc.logger.LoggerFactory;
@@ -427,8 +428,14 @@ public class DrbdXml {
                                                                          .silentCommand()
                                                                          .silentOutput());
         if (ret.getExitCode() == 0) {
-            final StringBuffer confSB = new StringBuffer(ret.getOutput());
-            return host.getHostParser().getOutput("drbd", confSB);
+            final String[] config = new String[1];
+            new HelperOutputDecoder(host.getHostParser()).on("drbd", new HelperOutputDecoder.FrameConsumer() {
+                @Override
+                public void frame(final String payload) {
+                    config[0] = payload;
+                }
+            }).decode(ret.getOutput());
+            return config[0];
         }
         return null;
     }
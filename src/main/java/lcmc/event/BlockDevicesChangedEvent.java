@@ -28,10 +28,20 @@ import java.util.Collection;
 public class BlockDevicesChangedEvent {
     private final Host host;
     private final Collection<BlockDevice> blockDevices;
+    /** Block devices, whose views have to be updated. */
+    private final Collection<BlockDevice> changedBlockDevices;
 
-    public BlockDevicesChangedEvent(final Host host, final Collection<BlockDevice> blockDevices) {
+    public BlockDevicesChangedEvent(final Host host,
+                                    final Collection<BlockDevice> blockDevices,
+                                    final Collection<BlockDevice> changedBlockDevices) {
         this.host = host;
         this.blockDevices = blockDevices;
+        this.changedBlockDevices = changedBlockDevices;
+    }
+
+    /** The views of all block devices have to be updated. */
+    public BlockDevicesChangedEvent(final Host host, final Collection<BlockDevice> blockDevices) {
+        this(host, blockDevices, blockDevices);
     }
 
     public Host getHost() {
@@ -41,4 +51,8 @@ public class BlockDevicesChangedEvent {
     public Collection<BlockDevice> getBlockDevices() {
         return blockDevices;
     }
+
+    public Collection<BlockDevice> getChangedBlockDevices() {
+        return changedBlockDevices;
+    }
 }
@@ -24,14 +24,38 @@ import lcmc.drbd.domain.BlockDevice;
 import lcmc.host.domain.Host;
 
 import java.util.Collection;
+import java.util.Collections;
 
+/**
+ * Block devices of the host, that were added, removed or changed in place
+ * since the last event, and all the current ones.
+ */
 public class HwBlockDevicesChangedEvent {
     private final Host host;
     private final Collection<BlockDevice> blockDevices;
+    private final Collection<BlockDevice> addedBlockDevices;
+    private final Collection<BlockDevice> removedBlockDevices;
+    private final Collection<BlockDevice> changedBlockDevices;
 
-    public HwBlockDevicesChangedEvent(final Host host, final Collection<BlockDevice> blockDevices) {
+    public HwBlockDevicesChangedEvent(final Host host,
+                                      final Collection<BlockDevice> blockDevices,
+                                      final Collection<BlockDevice> addedBlockDevices,
+                                      final Collection<BlockDevice> removedBlockDevices,
+                                      final Collection<BlockDevice> changedBlockDevices) {
         this.host = host;
         this.blockDevices = blockDevices;
+        this.addedBlockDevices = addedBlockDevices;
+        this.removedBlockDevices = removedBlockDevices;
+        this.changedBlockDevices = changedBlockDevices;
+    }
+
+    /** The block devices are the same, but all their views have to be updated. */
+    public HwBlockDevicesChangedEvent(final Host host, final Collection<BlockDevice> blockDevices) {
+        this(host,
+             blockDevices,
+             Collections.<BlockDevice>emptyList(),
+             Collections.<BlockDevice>emptyList(),
+             blockDevices);
     }
 
     public Host getHost() {
@@ -41,4 +65,25 @@ public class HwBlockDevicesChangedEvent {
     public Collection<BlockDevice> getBlockDevices() {
         return blockDevices;
     }
+
+    public Collection<BlockDevice> getAddedBlockDevices() {
+        return addedBlockDevices;
+    }
+
+    public Collection<BlockDevice> getRemovedBlockDevices() {
+        return removedBlockDevices;
+    }
+
+    public Collection<BlockDevice> getChangedBlockDevices() {
+        return changedBlockDevices;
+    }
+
+    /** Returns the same differences, but with the views of all block devices to be updated. */
+    public HwBlockDevicesChangedEvent withAllChanged() {
+        return new HwBlockDevicesChangedEvent(host, blockDevices, addedBlockDevices, removedBlockDevices, blockDevices);
+    }
+
+    public boolean isEmpty() {
+        return addedBlockDevices.isEmpty() && removedBlockDevices.isEmpty() && changedBlockDevices.isEmpty();
+    }
 }
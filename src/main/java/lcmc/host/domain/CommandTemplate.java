@@ -0,0 +1,134 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.host.domain;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Command from the DistResource, split into the literal parts and the
+ * \@TAG\@ parts, so that the tags can be replaced in one pass, without
+ * regular expressions. The replacements are inserted as they are, the
+ * tags without a replacement are left in the command.
+ */
+final class CommandTemplate {
+    private final String text;
+    /** Literal parts on the even positions, tags on the odd ones. */
+    private final String[] tokens;
+
+    private CommandTemplate(final String text, final String[] tokens) {
+        this.text = text;
+        this.tokens = tokens;
+    }
+
+    static CommandTemplate compile(final String text) {
+        final List<String> tokens = Lists.newArrayList();
+        int literalStart = 0;
+        int tagStart = text.indexOf('@');
+        while (tagStart >= 0) {
+            final int tagEnd = findTagEnd(text, tagStart);
+            if (tagEnd < 0) {
+                tagStart = text.indexOf('@', tagStart + 1);
+                continue;
+            }
+            tokens.add(text.substring(literalStart, tagStart));
+            tokens.add(text.substring(tagStart, tagEnd));
+            literalStart = tagEnd;
+            tagStart = text.indexOf('@', tagEnd);
+        }
+        tokens.add(text.substring(literalStart));
+        return new CommandTemplate(text, tokens.toArray(new String[tokens.size()]));
+    }
+
+    /** Replaces the tags in the text in one pass, without compiling it. */
+    static String render(final String text, final Map<String, String> replacements) {
+        int tagStart = text.indexOf('@');
+        if (tagStart < 0) {
+            return text;
+        }
+        final StringBuilder command = new StringBuilder(text.length() + 64);
+        int literalStart = 0;
+        while (tagStart >= 0) {
+            final int tagEnd = findTagEnd(text, tagStart);
+            if (tagEnd < 0) {
+                tagStart = text.indexOf('@', tagStart + 1);
+                continue;
+            }
+            command.append(text, literalStart, tagStart);
+            appendTag(command, text.substring(tagStart, tagEnd), replacements);
+            literalStart = tagEnd;
+            tagStart = text.indexOf('@', tagEnd);
+        }
+        command.append(text, literalStart, text.length());
+        return command.toString();
+    }
+
+    /**
+     * Returns index after the tag, that starts at the tagStart, or -1 if
+     * there is no tag, e.g. in an email address.
+     */
+    private static int findTagEnd(final String text, final int tagStart) {
+        for (int i = tagStart + 1; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '@') {
+                return i > tagStart + 1 ? i + 1 : -1;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '-' && c != '_' && c != '.' && c != ':') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static void appendTag(final StringBuilder command,
+                                  final String tag,
+                                  final Map<String, String> replacements) {
+        if (replacements.containsKey(tag)) {
+            final String replacement = replacements.get(tag);
+            if (replacement != null) {
+                command.append(replacement);
+            }
+        } else {
+            command.append(tag);
+        }
+    }
+
+    String render(final Map<String, String> replacements) {
+        if (tokens.length == 1) {
+            return text;
+        }
+        final StringBuilder command = new StringBuilder(text.length() + 64);
+        for (int i = 0; i < tokens.length; i++) {
+            if (i % 2 == 0) {
+                command.append(tokens[i]);
+            } else {
+                appendTag(command, tokens[i], replacements);
+            }
+        }
+        return command.toString();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
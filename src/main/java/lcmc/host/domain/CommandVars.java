@@ -0,0 +1,109 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.host.domain;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import lcmc.common.domain.util.Tools;
+
+/**
+ * Values of the \@USER\@, \@ARCH\@, \@GUI-HELPER\@... variables for one
+ * host, one map with the password and one with the hidden password. The
+ * HostParser creates them again, when the distribution, kernel, arch or the
+ * download settings change.
+ */
+final class CommandVars {
+    private static final String HIDDEN_PASSWORD = "*****";
+    private static final String LOG_COMMANDS_ON_SERVER_OPTION = "--cmd-log";
+    private final String downloadUser;
+    private final String downloadPassword;
+    private final String kernelVersion;
+    private final String distributionVersion;
+    private final String arch;
+    private final boolean stagingDrbd;
+    private final boolean cmdLog;
+    private final Map<String, String> vars;
+    private final Map<String, String> varsWithHiddenPassword;
+
+    CommandVars(final String downloadUser,
+                final String downloadPassword,
+                final String kernelVersion,
+                final String distributionVersion,
+                final String arch,
+                final boolean stagingDrbd,
+                final boolean cmdLog) {
+        this.downloadUser = downloadUser;
+        this.downloadPassword = downloadPassword;
+        this.kernelVersion = kernelVersion;
+        this.distributionVersion = distributionVersion;
+        this.arch = arch;
+        this.stagingDrbd = stagingDrbd;
+        this.cmdLog = cmdLog;
+        final String helperProg = "/usr/local/bin/lcmc-gui-helper-" + Tools.getRelease();
+        final Map<String, String> newVars = Maps.newHashMap();
+        putVar(newVars, "@USER@", downloadUser);
+        putVar(newVars, "@KERNELVERSIONDIR@", kernelVersion);
+        putVar(newVars, "@DISTRIBUTION@", distributionVersion);
+        putVar(newVars, "@ARCH@", arch);
+        putVar(newVars, "@SUPPORTDIR@", stagingDrbd ? "support/staging" : "support");
+        putVar(newVars, "@DRBDDIR@", "drbd");
+        if (cmdLog) {
+            putVar(newVars, "@GUI-HELPER@", helperProg + ' ' + LOG_COMMANDS_ON_SERVER_OPTION);
+        } else {
+            putVar(newVars, "@GUI-HELPER@", helperProg);
+        }
+        putVar(newVars, "@GUI-HELPER-PROG@", helperProg);
+        final Map<String, String> newVarsWithHiddenPassword = Maps.newHashMap(newVars);
+        putVar(newVars, "@PASSWORD@", downloadPassword);
+        putVar(newVarsWithHiddenPassword, "@PASSWORD@", HIDDEN_PASSWORD);
+        vars = Collections.unmodifiableMap(newVars);
+        varsWithHiddenPassword = Collections.unmodifiableMap(newVarsWithHiddenPassword);
+    }
+
+    boolean isFor(final String downloadUser,
+                  final String downloadPassword,
+                  final String kernelVersion,
+                  final String distributionVersion,
+                  final String arch,
+                  final boolean stagingDrbd,
+                  final boolean cmdLog) {
+        return Objects.equal(this.downloadUser, downloadUser)
+               && Objects.equal(this.downloadPassword, downloadPassword)
+               && Objects.equal(this.kernelVersion, kernelVersion)
+               && Objects.equal(this.distributionVersion, distributionVersion)
+               && Objects.equal(this.arch, arch)
+               && this.stagingDrbd == stagingDrbd
+               && this.cmdLog == cmdLog;
+    }
+
+    Map<String, String> getVars(final boolean hidePassword) {
+        return hidePassword ? varsWithHiddenPassword : vars;
+    }
+
+    /** Variables, that are not set, stay in the command. */
+    private static void putVar(final Map<String, String> vars, final String tag, final String value) {
+        if (value != null) {
+            vars.put(tag, value);
+        }
+    }
+}
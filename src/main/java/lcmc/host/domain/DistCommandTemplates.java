@@ -0,0 +1,73 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.host.domain;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import lcmc.common.domain.util.Tools;
+
+/**
+ * Commands and strings from the DistResource for one distribution, version
+ * and arch. Every command is looked up in the resource bundles and compiled
+ * only the first time, the HostParser creates new templates, when the
+ * distribution changes.
+ */
+final class DistCommandTemplates {
+    private final String dist;
+    private final String version;
+    private final String arch;
+    private final ConcurrentMap<String, CommandTemplate> commands = new ConcurrentHashMap<String, CommandTemplate>();
+    private final ConcurrentMap<String, Optional<String>> distStrings =
+                                                            new ConcurrentHashMap<String, Optional<String>>();
+
+    DistCommandTemplates(final String dist, final String version, final String arch) {
+        this.dist = dist;
+        this.version = version;
+        this.arch = arch;
+    }
+
+    boolean isFor(final String dist, final String version, final String arch) {
+        return Objects.equal(this.dist, dist) && Objects.equal(this.version, version) && Objects.equal(this.arch, arch);
+    }
+
+    /** Returns the command, or the commands separated with ";;;", as in Tools.getDistCommand. */
+    CommandTemplate getCommand(final String text, final boolean inBash, final boolean inSudo) {
+        final String key = (inBash ? 'b' : '-') + (inSudo ? "s" : "-") + text;
+        CommandTemplate command = commands.get(key);
+        if (command == null) {
+            command = CommandTemplate.compile(Tools.getDistCommand(text, dist, version, arch, null, inBash, inSudo));
+            commands.put(key, command);
+        }
+        return command;
+    }
+
+    /** Returns the string from the DistResource or null, as in Tools.getDistString. */
+    String getDistString(final String text) {
+        Optional<String> distString = distStrings.get(text);
+        if (distString == null) {
+            distString = Optional.fromNullable(Tools.getDistString(text, dist, version, arch));
+            distStrings.put(text, distString);
+        }
+        return distString.orNull();
+    }
+}
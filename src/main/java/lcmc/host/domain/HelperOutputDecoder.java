@@ -0,0 +1,202 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.host.domain;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Splits the output of the lcmc-gui-helper into frames and hands them over
+ * to the consumers of their types, while the output arrives. Every character
+ * is looked at only once.
+ *
+ * Frame:    "--frame-- type timestamp length\n", payload of the length in
+ *           bytes and "\n".
+ * Old helpers send "--type-info-start--timestamp\n", payload and
+ * "--type-info-end--\n", that is still understood.
+ *
+ * New lines that come as "\r\n" from a pty are counted as "\n". Frames that
+ * are older than the last frame of the same type are dropped.
+ */
+public final class HelperOutputDecoder {
+    private static final Logger LOG = LoggerFactory.getLogger(HelperOutputDecoder.class);
+    static final String FRAME_HEADER = "--frame-- ";
+    private static final Pattern OLD_FRAME_START_PATTERN = Pattern.compile("--(\\w+)-info-start--(\\S*)$");
+
+    private final HostParser hostParser;
+    private final Map<String, FrameConsumer> consumers = new HashMap<String, FrameConsumer>();
+    private final StringBuilder line = new StringBuilder(100);
+    private final StringBuilder payload = new StringBuilder(300);
+    /** Type of the frame that is being read, null between the frames. */
+    private String frameType = null;
+    private String frameTimestamp = null;
+    /** End marker of the old frame, null for the new frame. */
+    private String oldFrameEnd = null;
+    private long remainingBytes = 0;
+    private boolean pendingCr = false;
+
+    public HelperOutputDecoder(final HostParser hostParser) {
+        this.hostParser = hostParser;
+    }
+
+    /** Registers the consumer of the frames of this type. */
+    public HelperOutputDecoder on(final String type, final FrameConsumer consumer) {
+        consumers.put(type, consumer);
+        return this;
+    }
+
+    /** Reads the next part of the output, the complete frames are handed over. */
+    public void decode(final CharSequence output) {
+        for (int i = 0; i < output.length(); i++) {
+            final char c = output.charAt(i);
+            if (!isInPayload()) {
+                readLineChar(c);
+                continue;
+            }
+            if (pendingCr) {
+                pendingCr = false;
+                if (c == '\n') {
+                    appendPayload(c);
+                    continue;
+                }
+                appendPayload('\r');
+                if (!isInPayload()) {
+                    readLineChar(c);
+                    continue;
+                }
+            }
+            if (c == '\r') {
+                pendingCr = true;
+            } else {
+                appendPayload(c);
+            }
+        }
+    }
+
+    private boolean isInPayload() {
+        return frameType != null && oldFrameEnd == null;
+    }
+
+    private void appendPayload(final char c) {
+        payload.append(c);
+        remainingBytes -= utf8Length(c);
+        if (remainingBytes <= 0) {
+            finishFrame();
+        }
+    }
+
+    /** Returns number of bytes of the character in UTF-8, surrogates are half of the pair. */
+    private static int utf8Length(final char c) {
+        if (c < 0x80) {
+            return 1;
+        } else if (c < 0x800 || (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) {
+            return 2;
+        }
+        return 3;
+    }
+
+    private void readLineChar(final char c) {
+        if (c != '\n') {
+            line.append(c);
+            return;
+        }
+        final int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            line.setLength(length - 1);
+        }
+        final String l = line.toString();
+        line.setLength(0);
+        if (oldFrameEnd == null) {
+            readHeader(l);
+        } else if (l.endsWith(oldFrameEnd)) {
+            payload.append(l, 0, l.length() - oldFrameEnd.length());
+            finishFrame();
+        } else {
+            payload.append(l).append('\n');
+        }
+    }
+
+    /** Starts a frame, if the line is a header. Other lines are ignored. */
+    private void readHeader(final String l) {
+        if (l.startsWith(FRAME_HEADER)) {
+            final String[] parts = l.substring(FRAME_HEADER.length()).split(" ");
+            if (parts.length != 3) {
+                LOG.appWarning("readHeader: could not parse: " + l);
+                return;
+            }
+            try {
+                remainingBytes = Long.parseLong(parts[2]);
+            } catch (final NumberFormatException e) {
+                LOG.appWarning("readHeader: could not parse: " + l);
+                return;
+            }
+            frameType = parts[0];
+            frameTimestamp = parts[1];
+            if (remainingBytes <= 0) {
+                finishFrame();
+            }
+            return;
+        }
+        final Matcher m = OLD_FRAME_START_PATTERN.matcher(l);
+        if (m.find()) {
+            frameType = m.group(1);
+            frameTimestamp = m.group(2);
+            oldFrameEnd = "--" + frameType + "-info-end--";
+        }
+    }
+
+    private void finishFrame() {
+        final String type = frameType;
+        final String timestamp = frameTimestamp;
+        final String out = payload.toString();
+        frameType = null;
+        frameTimestamp = null;
+        oldFrameEnd = null;
+        remainingBytes = 0;
+        pendingCr = false;
+        payload.setLength(0);
+
+        final FrameConsumer consumer = consumers.get(type);
+        if (consumer == null) {
+            LOG.debug2("finishFrame: no consumer for: " + type);
+            return;
+        }
+        final double time;
+        try {
+            time = Double.parseDouble(timestamp);
+        } catch (final NumberFormatException e) {
+            LOG.debug("finishFrame: could not parse: " + timestamp + ' ' + e);
+            return;
+        }
+        if (hostParser.isNewestInfo(type, time)) {
+            consumer.frame(out);
+        }
+    }
+
+    /** Gets the payload of every complete frame of one type. */
+    public interface FrameConsumer {
+        void frame(String payload);
+    }
+}
@@ -36,6 +36,7 @@ import lcmc.common.domain.ConnectionCallback;
 import lcmc.common.domain.ConvertCmdCallback;
 import lcmc.common.domain.ExecCallback;
 import lcmc.common.domain.NewOutputCallback;
+import lcmc.common.domain.Scheduler;
 import lcmc.common.domain.Unit;
 import lcmc.common.domain.Value;
 import lcmc.common.domain.util.Tools;
@@ -66,7 +67,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This class holds host data and implementation of host related methods.
@@ -84,6 +84,7 @@ public class Host implements Comparable<Host>, Value {
     private final RoboTest roboTest;
     private final BlockDeviceService blockDeviceService;
     private final SwingUtils swingUtils;
+    private final Scheduler scheduler;
     @Getter
     @Setter
     private HostParser hostParser; //TODO cycle
@@ -93,6 +94,7 @@ public class Host implements Comparable<Host>, Value {
     public static final String PROXY_NOT_CONNECTED_MENU_TOOLTIP_TEXT = "not connected to the proxy host";
     /** Timeout after which the connection is considered to be dead. */
     private static final int PING_TIMEOUT = 40000;
+    private static final int PING_INTERVAL = 10000;
     private static final int DRBD_EVENTS_TIMEOUT = 40000;
     private static final int CLUSTER_EVENTS_TIMEOUT = 40000;
 
@@ -119,6 +121,7 @@ public class Host implements Comparable<Host>, Value {
     private ExecCommandThread crmStatusThread = null;
     private String sshPort = null;
     private Boolean useSudo = null;
+    private boolean useCompression = false;
     private String sudoPassword = "";
     /** A gate that is used to synchronize the loading sequence. */
     private CountDownLatch isLoadingGate;
@@ -129,8 +132,9 @@ public class Host implements Comparable<Host>, Value {
     private int positionInTheCluster = 0;
     private volatile boolean lastConnectionCheckPositive = false;
     private boolean savable = true;
-    /** Ping is set every 10s. */
-    private volatile AtomicBoolean ping = new AtomicBoolean(true);
+    private volatile Scheduler.Job keepaliveJob = null;
+    private volatile long lastPingReplyTime = 0;
+    private volatile long pingRtt = -1;
     private boolean inCluster = false;
 
     private boolean crmStatusOk = false;
@@ -382,13 +386,9 @@ public class Host implements Comparable<Host>, Value {
     public void waitForDrbdStatusFinish() {
         final ExecCommandThread dst = drbdStatusThread;
         if (dst != null) {
-            try {
-                /* it probably hangs after this timeout, so it will be
-                 * killed. */
-                dst.join();
-            } catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+            /* it probably hangs after this timeout, so it will be
+             * killed. */
+            dst.block();
             stopDrbdStatus();
         }
     }
@@ -415,11 +415,7 @@ public class Host implements Comparable<Host>, Value {
         if (cst == null) {
             return;
         }
-        try {
-            cst.join();
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        cst.block();
         crmStatusThread = null;
     }
 
@@ -672,6 +668,10 @@ public class Host implements Comparable<Host>, Value {
             lastConnectionCheckPositive = con;
             if (con) {
                LOG.info("setConnected: " + getName() + ": connection established");
+               final Cluster c = cluster;
+               if (c != null) {
+                   c.hostConnected();
+               }
             } else {
                LOG.info("setConnected: " + getName() + ": connection lost");
             }
@@ -734,55 +734,57 @@ public class Host implements Comparable<Host>, Value {
         }
     }
 
-    public void startPing() {
-        ssh.execCommand(new ExecCommandConfig()
-                         .commandString("PingCommand")
-                         .inBash(true)
-                         .inSudo(false)
-                         .execCallback(new ExecCallback() {
-                             @Override
-                             public void done(final String ans) {
-                             }
-
-                             @Override
-                             public void doneError(final String ans, final int exitCode) {
-                             }
-                         })
-                         .newOutputCallback(new NewOutputCallback() {
-                             @Override
-                             public void output(final String output) {
-                                 ping.set(true);
-                             }
-                         })
-                         .silentCommand()
-                         .silentOutput()
-                         .sshCommandTimeout(PING_TIMEOUT)).block();
-    }
-
+    /**
+     * Starts the keepalive as a periodic job of the scheduler. The server is
+     * asked with a ssh global request, no session is opened. A connection,
+     * that didn't answer for PING_TIMEOUT, is reconnected.
+     */
     public void startConnectionStatus() {
-        final Thread thread = new Thread(new Runnable() {
+        stopConnectionStatus();
+        lastPingReplyTime = System.currentTimeMillis();
+        keepaliveJob = scheduler.scheduleWithFixedDelay("keepalive " + getName(), new Runnable() {
             @Override
             public void run() {
-                while (true) {
-                    if (ping.get()) {
-                       LOG.debug2("startConnectionStatus: connection ok on " + getName());
-                       setConnected();
-                       ping.set(false);
-                    } else {
-                       LOG.debug2("startConnectionStatus: connection lost on " + getName());
-                       getSSH().forceReconnect();
-                       setConnected();
-                    }
-                    Tools.sleep(PING_TIMEOUT);
-                    final ClusterBrowser cb = getBrowser().getClusterBrowser();
-                    /* cluster could be removed */
-                    if (cb == null || cb.isCancelServerStatus()) {
-                        break;
-                    }
+                if (isServerStatusCanceled()) {
+                    stopConnectionStatus();
+                    return;
                 }
+                checkConnectionStatus();
             }
-        });
-        thread.start();
+        }, 0, PING_INTERVAL, true);
+    }
+
+    public void stopConnectionStatus() {
+        if (keepaliveJob != null) {
+            keepaliveJob.cancel();
+        }
+    }
+
+    private void checkConnectionStatus() {
+        final long rtt = ssh.ping(PING_INTERVAL);
+        final long now = System.currentTimeMillis();
+        if (rtt >= 0) {
+            LOG.debug2("checkConnectionStatus: connection ok on " + getName() + ", rtt: " + rtt + " ms");
+            pingRtt = rtt;
+            lastPingReplyTime = now;
+        } else if (now - lastPingReplyTime >= PING_TIMEOUT) {
+            LOG.debug2("checkConnectionStatus: connection lost on " + getName());
+            pingRtt = -1;
+            lastPingReplyTime = now;
+            getSSH().forceReconnect();
+        }
+        setConnected();
+    }
+
+    /** Returns round trip time of the last keepalive in milliseconds, -1 if there was no answer. */
+    public long getPingRtt() {
+        return pingRtt;
+    }
+
+    private boolean isServerStatusCanceled() {
+        final ClusterBrowser cb = getBrowser().getClusterBrowser();
+        /* cluster could be removed */
+        return cb == null || cb.isCancelServerStatus();
     }
 
     /** Returns whether host ssh connection was established. */
@@ -885,6 +887,15 @@ public class Host implements Comparable<Host>, Value {
         this.useSudo = useSudo;
     }
 
+    /** Whether the ssh connection should use zlib compression. */
+    public boolean isUseCompression() {
+        return useCompression;
+    }
+
+    public void setUseCompression(final boolean useCompression) {
+        this.useCompression = useCompression;
+    }
+
     public void setPacemakerInstallMethodIndex(final String pacemakerInstallMethodIndex) {
         this.pacemakerInstallMethodIndex = pacemakerInstallMethodIndex;
     }
@@ -1122,11 +1133,11 @@ public class Host implements Comparable<Host>, Value {
         }
     }
     public boolean drbdVersionHigherOrEqual(final String drbdVersion) throws Exceptions.IllegalVersionException {
-        return Tools.compareVersions(drbdHost.getDrbdUtilVersion(), drbdVersion) >= 0;
+        return hostParser.getCapabilities().compareDrbdUtilVersion(drbdVersion) >= 0;
     }
 
     public boolean drbdVersionSmaller(final String drbdVersion) throws Exceptions.IllegalVersionException {
-        return Tools.compareVersions(drbdHost.getDrbdUtilVersion(), drbdVersion) < 0;
+        return hostParser.getCapabilities().compareDrbdUtilVersion(drbdVersion) < 0;
     }
 
     public boolean isDrbdLoaded() {
@@ -1142,7 +1153,7 @@ public class Host implements Comparable<Host>, Value {
     }
 
     public boolean drbdVersionSmallerOrEqual(final String drbdVersion) throws Exceptions.IllegalVersionException {
-        return Tools.compareVersions(drbdHost.getDrbdUtilVersion(), drbdVersion) <= 0;
+        return hostParser.getCapabilities().compareDrbdUtilVersion(drbdVersion) <= 0;
     }
 
     public Collection<BlockDevice> getBlockDevices() {
@@ -26,7 +26,6 @@ import lcmc.drbd.domain.BlockDevice;
 import javax.inject.Named;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -43,17 +42,16 @@ public class HostBlockDevices {
         return new LinkedHashSet<BlockDevice>(blockDevices);
     }
 
-    public void setBlockDevices(final Collection<BlockDevice> newBlockDevices) {
-        for (final BlockDevice newBlockDevice : newBlockDevices) {
+    public void updateBlockDevices(final Collection<BlockDevice> addedBlockDevices,
+                                   final Collection<BlockDevice> removedBlockDevices) {
+        for (final BlockDevice oldBlockDevice : removedBlockDevices) {
+            blockDevices.remove(oldBlockDevice);
+            byName.remove(oldBlockDevice.getName(), oldBlockDevice);
+        }
+        for (final BlockDevice newBlockDevice : addedBlockDevices) {
             blockDevices.add(newBlockDevice);
             byName.put(newBlockDevice.getName(), newBlockDevice);
         }
-        for (final BlockDevice oldBlockDevice : new HashSet<BlockDevice>(blockDevices)) {
-            if (!newBlockDevices.contains(oldBlockDevice)) {
-                blockDevices.remove(oldBlockDevice);
-                byName.remove(oldBlockDevice);
-            }
-        }
     }
 
     /**
@@ -0,0 +1,140 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.host.domain;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lcmc.Exceptions;
+import lcmc.common.domain.util.Tools;
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * What the cluster software on one host can do. It's computed from the
+ * versions, when they change, and not changed after that, the HostParser
+ * replaces it with a new one. The checks in the menus and in the paint code
+ * are only lookups then.
+ */
+public final class HostCapabilities {
+    private static final Logger LOG = LoggerFactory.getLogger(HostCapabilities.class);
+    static final HostCapabilities NO_VERSIONS = new HostCapabilities(null, null, null, null);
+
+    private final String drbdUtilVersion;
+    /** Heartbeat older than 2.99.0 without pacemaker. */
+    private final boolean beforePacemaker;
+    /** Pacemaker or heartbeat 2.1.3 and newer have the cluster options with timeouts. */
+    private final boolean crmClusterOptions;
+    /** Pacemaker or heartbeat 2.1.4 and newer have resource-stickiness and failure-timeout meta attributes. */
+    private final boolean stickinessMetaAttributes;
+    /** Pacemaker newer than 1.1.7 has the require-all attribute in the orders. */
+    private final boolean orderRequireAll;
+    /** Heartbeat 3.0.2 and older need a workaround for the dopd. */
+    private final boolean dopdWorkaround;
+    private final boolean corosync2;
+    /** DRBD 8.4 and newer has volumes. */
+    private final boolean drbdVolumes;
+    /** Results of the comparisons of the DRBD util version with other versions. */
+    private final Map<String, Integer> drbdUtilComparisons = new ConcurrentHashMap<String, Integer>();
+
+    HostCapabilities(final String drbdUtilVersion,
+                     final String pacemakerVersion,
+                     final String heartbeatVersion,
+                     final String corosyncVersion) {
+        this.drbdUtilVersion = drbdUtilVersion;
+        final boolean pacemaker = pacemakerVersion != null;
+        beforePacemaker = !pacemaker && isSmaller(heartbeatVersion, "2.99.0", false);
+        crmClusterOptions = pacemaker || !isSmaller(heartbeatVersion, "2.1.3", true);
+        stickinessMetaAttributes = pacemaker || !isSmaller(heartbeatVersion, "2.1.4", true);
+        orderRequireAll = pacemaker && !isSmallerOrEqual(pacemakerVersion, "1.1.7", false);
+        dopdWorkaround = isSmallerOrEqual(heartbeatVersion, "3.0.2", false);
+        corosync2 = !isSmaller(corosyncVersion, "2", true);
+        drbdVolumes = drbdUtilVersion == null || !isSmaller(drbdUtilVersion, "8.4", false);
+    }
+
+    /** Returns whether the version is smaller, or the default, if it's not installed or can't be parsed. */
+    private static boolean isSmaller(final String version, final String other, final boolean defaultValue) {
+        if (version == null) {
+            return defaultValue;
+        }
+        try {
+            return Tools.compareVersions(version, other) < 0;
+        } catch (final Exceptions.IllegalVersionException e) {
+            LOG.appWarning("isSmaller: " + e.getMessage(), e);
+            return defaultValue;
+        }
+    }
+
+    private static boolean isSmallerOrEqual(final String version, final String other, final boolean defaultValue) {
+        if (version == null) {
+            return defaultValue;
+        }
+        try {
+            return Tools.compareVersions(version, other) <= 0;
+        } catch (final Exceptions.IllegalVersionException e) {
+            LOG.appWarning("isSmallerOrEqual: " + e.getMessage(), e);
+            return defaultValue;
+        }
+    }
+
+    public boolean isBeforePacemaker() {
+        return beforePacemaker;
+    }
+
+    public boolean hasCrmClusterOptions() {
+        return crmClusterOptions;
+    }
+
+    public boolean hasStickinessMetaAttributes() {
+        return stickinessMetaAttributes;
+    }
+
+    public boolean hasOrderRequireAll() {
+        return orderRequireAll;
+    }
+
+    public boolean needsDopdWorkaround() {
+        return dopdWorkaround;
+    }
+
+    public boolean isCorosync2() {
+        return corosync2;
+    }
+
+    public boolean hasDrbdVolumes() {
+        return drbdVolumes;
+    }
+
+    /**
+     * Compares the DRBD util version with the other version, like
+     * Tools.compareVersions. Every other version is compared only once.
+     */
+    public int compareDrbdUtilVersion(final String version) throws Exceptions.IllegalVersionException {
+        if (drbdUtilVersion == null || version == null) {
+            throw new Exceptions.IllegalVersionException(drbdUtilVersion, version);
+        }
+        Integer result = drbdUtilComparisons.get(version);
+        if (result == null) {
+            result = Tools.compareVersions(drbdUtilVersion, version);
+            drbdUtilComparisons.put(version, result);
+        }
+        return result;
+    }
+}
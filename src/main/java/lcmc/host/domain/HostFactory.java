@@ -24,6 +24,7 @@ import lcmc.HwEventBus;
 import lcmc.cluster.service.ssh.Ssh;
 import lcmc.cluster.service.storage.BlockDeviceService;
 import lcmc.common.domain.Application;
+import lcmc.common.domain.Scheduler;
 import lcmc.host.ui.TerminalPanel;
 import lcmc.common.ui.main.MainData;
 import lcmc.common.ui.main.ProgressIndicator;
@@ -60,6 +61,8 @@ public class HostFactory {
     @Inject
     private BlockDeviceService blockDeviceService;
     @Inject
+    private Scheduler scheduler;
+    @Inject
     private Provider<VmsXml> vmsXmlProvider;
     @Inject
     private Provider<DrbdXml> drbdXmlProvider;
@@ -87,7 +90,8 @@ public class HostFactory {
                 application,
                 roboTest,
                 blockDeviceService,
-                swingUtils);
+                swingUtils,
+                scheduler);
 
         terminalPanel.initWithHost(host);
         host.init();
@@ -98,7 +102,8 @@ public class HostFactory {
                 vmsXmlProvider,
                 drbdXmlProvider,
                 swingUtils,
-                application);
+                application,
+                scheduler);
 
         hostBrowser.init(host);
         host.setHostParser(hostParser);
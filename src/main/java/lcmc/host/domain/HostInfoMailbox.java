@@ -0,0 +1,195 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.host.domain;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lcmc.logger.Logger;
+import lcmc.logger.LoggerFactory;
+
+/**
+ * Holds the helper info of one host, that was read, but not parsed yet.
+ *
+ * The ssh reader only puts the info here and goes on reading, the parser
+ * takes it in another thread. If newer info arrives before the parser got to
+ * the older one, the older one is dropped: there is one place for the vm
+ * info, one for the drbd info and one for every hw info section, since the
+ * hw info has only the changed sections.
+ */
+final class HostInfoMailbox {
+    private static final Logger LOG = LoggerFactory.getLogger(HostInfoMailbox.class);
+    /** Key of the hw info lines before the first section. */
+    private static final String NO_SECTION = "";
+
+    private final Collection<String> hwSectionNames;
+    private final Map<String, String> hwSections = new LinkedHashMap<String, String>();
+    private String vmInfo = null;
+    private String drbdInfo = null;
+    private boolean parserScheduled = false;
+    private long droppedCount = 0;
+
+    HostInfoMailbox(final Collection<String> hwSectionNames) {
+        this.hwSectionNames = hwSectionNames;
+    }
+
+    /** Returns true, if the parser has to be scheduled. */
+    synchronized boolean putHwInfo(final String hwInfo) {
+        String section = NO_SECTION;
+        int sectionStart = 0;
+        int lineStart = 0;
+        while (lineStart < hwInfo.length()) {
+            int lineEnd = hwInfo.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = hwInfo.length();
+            }
+            final String line = hwInfo.substring(lineStart, lineEnd);
+            if (hwSectionNames.contains(line)) {
+                putHwSection(section, hwInfo.substring(sectionStart, lineStart));
+                section = line;
+                sectionStart = lineStart;
+            }
+            lineStart = lineEnd + 1;
+        }
+        putHwSection(section, hwInfo.substring(sectionStart));
+        return scheduleParser();
+    }
+
+    private void putHwSection(final String section, final String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        if (hwSections.put(section, text) != null) {
+            dropped("hw " + section);
+        }
+    }
+
+    /** Returns true, if the parser has to be scheduled. */
+    synchronized boolean putVmInfo(final String info) {
+        if (vmInfo != null) {
+            dropped("vm");
+        }
+        vmInfo = info;
+        return scheduleParser();
+    }
+
+    /** Returns true, if the parser has to be scheduled. */
+    synchronized boolean putDrbdInfo(final String info) {
+        if (drbdInfo != null) {
+            dropped("drbd");
+        }
+        drbdInfo = info;
+        return scheduleParser();
+    }
+
+    private boolean scheduleParser() {
+        if (parserScheduled) {
+            return false;
+        }
+        parserScheduled = true;
+        return true;
+    }
+
+    private void dropped(final String type) {
+        droppedCount++;
+        LOG.debug2("dropped: older " + type + " info was not parsed");
+    }
+
+    /**
+     * Takes all the info, that is waiting. Returns null, if there is none,
+     * the parser must be scheduled again for the next info then.
+     */
+    synchronized Info take() {
+        if (hwSections.isEmpty() && vmInfo == null && drbdInfo == null) {
+            parserScheduled = false;
+            return null;
+        }
+        String hwInfo = null;
+        if (!hwSections.isEmpty()) {
+            final StringBuilder hw = new StringBuilder(1000);
+            for (final String text : hwSections.values()) {
+                hw.append(text);
+                if (hw.charAt(hw.length() - 1) != '\n') {
+                    hw.append('\n');
+                }
+            }
+            hwSections.clear();
+            hwInfo = hw.toString();
+        }
+        final Info info = new Info(hwInfo, vmInfo, drbdInfo);
+        vmInfo = null;
+        drbdInfo = null;
+        return info;
+    }
+
+    /**
+     * Passes all the info to the parser, till there is none. If the parser
+     * fails, the error is logged and the parser goes on with the next info,
+     * so that it is scheduled again, when the next info arrives.
+     */
+    void parseAll(final InfoParser parser) {
+        while (true) {
+            final Info info = take();
+            if (info == null) {
+                return;
+            }
+            try {
+                parser.parse(info);
+            } catch (final RuntimeException e) {
+                LOG.appError("parseAll: could not parse the host info", e);
+            }
+        }
+    }
+
+    synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /** Parses the info, that was taken from the mailbox. */
+    interface InfoParser {
+        void parse(Info info);
+    }
+
+    /** Info, that the parser took, the fields are null, if there was no new info. */
+    static final class Info {
+        private final String hwInfo;
+        private final String vmInfo;
+        private final String drbdInfo;
+
+        Info(final String hwInfo, final String vmInfo, final String drbdInfo) {
+            this.hwInfo = hwInfo;
+            this.vmInfo = vmInfo;
+            this.drbdInfo = drbdInfo;
+        }
+
+        String getHwInfo() {
+            return hwInfo;
+        }
+
+        String getVmInfo() {
+            return vmInfo;
+        }
+
+        String getDrbdInfo() {
+            return drbdInfo;
+        }
+    }
+}
@@ -20,11 +20,9 @@
 
 package lcmc.host.domain;
 
-import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import lcmc.Exceptions;
 import lcmc.HwEventBus;
 import lcmc.cluster.domain.Cluster;
 import lcmc.cluster.service.ssh.ExecCommandConfig;
@@ -34,6 +32,7 @@ import lcmc.common.domain.Application;
 import lcmc.common.domain.ConvertCmdCallback;
 import lcmc.common.domain.ExecCallback;
 import lcmc.common.domain.NewOutputCallback;
+import lcmc.common.domain.Scheduler;
 import lcmc.common.domain.StringValue;
 import lcmc.common.domain.Value;
 import lcmc.common.domain.util.Tools;
@@ -68,7 +67,9 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -84,6 +85,7 @@ public class HostParser {
     private final Provider<DrbdXml> drbdXmlProvider;
     private final SwingUtils swingUtils;
     private final Application application;
+    private final Scheduler scheduler;
 
     private static final Logger LOG = LoggerFactory.getLogger(Host.class);
 
@@ -108,7 +110,6 @@ public class HostParser {
     public static final Pattern DRBD_DEV_FILE_PATTERN = Pattern.compile(".*\\/drbd\\d+$");
     public static final Pattern USED_DISK_SPACE_PATTERN = Pattern.compile("^(.*) (\\d+)$");
 
-    private static final String LOG_COMMANDS_ON_SERVER_OPTION = "--cmd-log";
 
     private static final Collection<String> INFO_TYPES =
             new HashSet<String>(Arrays.asList(new String[]{NET_INFO_DELIM,
@@ -164,9 +165,25 @@ public class HostParser {
     private String heartbeatVersion = null;
     private Boolean corosyncOrHeartbeatRunning = null;
     private String libvirtVersion = null;
-    private List<BlockDevice> physicalVolumes = new ArrayList<BlockDevice>();
+    /** Versions, from which the capabilities were built. */
+    private List<String> capabilityVersions = null;
+    private volatile HostCapabilities capabilities = HostCapabilities.NO_VERSIONS;
+    /** Commands from the DistResource for the current distribution. */
+    private volatile DistCommandTemplates distCommandTemplates = null;
+    private volatile CommandVars commandVars = null;
     private Map<String, Long> volumeGroups = new LinkedHashMap<String, Long>();
-    private Map<String, Set<String>> volumeGroupsWithLvs = Maps.newHashMap();
+    private final LvmInventory lvmInventory = new LvmInventory();
+    /**
+     * Block devices and disk space from the last time, the sections were
+     * sent. The block devices are updated in place, only if their line has
+     * changed.
+     */
+    private Map<String, BlockDevice> blockDevicesByName = Maps.newLinkedHashMap();
+    /** Disks, that are left out, because their partitions are there, so that they are not parsed every time. */
+    private Map<String, BlockDevice> filteredBlockDevicesByName = Maps.newHashMap();
+    private Map<String, String> blockDeviceLines = Maps.newHashMap();
+    private final Lock mBlockDevicesLock = new ReentrantLock();
+    private Map<String, String> lastDiskSpaces = Maps.newHashMap();
     private String detectedKernelName = "";
     private String detectedDist = "";
     private String detectedDistVersion = "";
@@ -189,6 +206,16 @@ public class HostParser {
     private final CountDownLatch waitForServerStatusLatch = new CountDownLatch(1);
     /** Time stamp hash. */
     private final Map<String, Double> infoTimestamp = Maps.newHashMap();
+    private final HostInfoMailbox hostInfoMailbox = new HostInfoMailbox(INFO_TYPES);
+    /** How long the helper took to collect every info section the last time, in ms. */
+    private final Map<String, Long> helperSectionTimes = new ConcurrentHashMap<String, Long>();
+    private final Lock mPollRequestLock = new ReentrantLock();
+    private final Lock mPollSendLock = new ReentrantLock();
+    /** How often the hw info daemon should send which info, null for its defaults. */
+    private String pollRequest = null;
+    private boolean pollRequestSent = false;
+    /** The daemon is running, after it sent the first info, till then it may wait for the sudo password. */
+    private boolean hwInfoDaemonRunning = false;
     private boolean drbdStatusOk = false;
 
     private static final String TOKEN_DISK_ID = "disk-id";
@@ -200,6 +227,7 @@ public class HostParser {
     private static final String TOKEN_LV      = "lv";
     private static final String TOKEN_PV      = "pv";
 
+    /** The hw info daemon prints an empty line at least every 15s, however long it backs off. */
     private static final int HW_INFO_TIMEOUT = 40000;
     /** List of positions of the services.
      *  Question is this: the saved positions can be different on different
@@ -212,13 +240,10 @@ public class HostParser {
         LOG.debug1("parseHostInfo: updating host info: " + host.getName());
         final String[] lines = ans.split("\\r?\\n");
         final List<String> versionLines = Lists.newArrayList();
-        final Map<String, BlockDevice> newBlockDevices = Maps.newLinkedHashMap();
-        final Map<String, BlockDevice> newDrbdBlockDevices = Maps.newLinkedHashMap();
+        final List<String> diskInfoLines = Lists.newArrayList();
         final List<NetInterface> newNetInterfaces = Lists.newArrayList();
         final List<Value> newBridges = Lists.newArrayList();
         final Map<String, Long> newVolumeGroups = Maps.newLinkedHashMap();
-        final Map<String, Set<String>> newVolumeGroupsLVS = Maps.newHashMap();
-        final List<BlockDevice> newPhysicalVolumes = Lists.newArrayList();
         final Set<String> fileSystems = Sets.newTreeSet();
         final Set<String> newCryptoModules = Sets.newTreeSet();
         final Set<Value> newQemuKeymaps = new TreeSet<Value>();
@@ -260,45 +285,7 @@ public class HostParser {
             } else if (BRIDGE_INFO_DELIM.equals(type)) {
                 newBridges.add(new StringValue(line));
             } else if (DISK_INFO_DELIM.equals(type)) {
-                final Optional<BlockDevice> blockDevice = createBlockDevice(line);
-                if (!blockDevice.isPresent()) {
-                    continue;
-                }
-                final String bdName = blockDevice.get().getName();
-                if (bdName != null) {
-                    final Matcher drbdM = DRBD_DEV_FILE_PATTERN.matcher(bdName);
-                    if (drbdM.matches()) {
-                        if (drbdBlockDevices.containsKey(bdName)) {
-                            drbdBlockDevices.get(bdName).updateFrom(blockDevice.get());
-                        } else {
-                            newDrbdBlockDevices.put(bdName, blockDevice.get());
-                        }
-                    } else {
-                        newBlockDevices.put(bdName, blockDevice.get());
-                        if (blockDevice.get().getVolumeGroup() == null
-                                && bdName.length() > 5 && bdName.indexOf('/', 5) < 0) {
-                            final Matcher m = BLOCK_DEV_FILE_PATTERN.matcher(bdName);
-                            if (m.matches()) {
-                                newBlockDevices.remove(m.group(1));
-                            }
-                        }
-                    }
-                }
-                final String vg = blockDevice.get().getVolumeGroup();
-                if (vg != null) {
-                    Set<String> logicalVolumes = newVolumeGroupsLVS.get(vg);
-                    if (logicalVolumes == null) {
-                        logicalVolumes = new HashSet<String>();
-                        newVolumeGroupsLVS.put(vg, logicalVolumes);
-                    }
-                    final String lv = blockDevice.get().getLogicalVolume();
-                    if (lv != null) {
-                        logicalVolumes.add(lv);
-                    }
-                }
-                if (blockDevice.get().isPhysicalVolume()) {
-                    newPhysicalVolumes.add(blockDevice.get());
-                }
+                diskInfoLines.add(line);
             } else if (DISK_SPACE_DELIM.equals(type)) {
                 final Matcher dsM = USED_DISK_SPACE_PATTERN.matcher(line);
                 if (dsM.matches()) {
@@ -376,14 +363,13 @@ public class HostParser {
             hwEventBus.post(new HwBridgesChangedEvent(host, newBridges));
         }
 
+        HwBlockDevicesChangedEvent blockDevicesChangedEvent = null;
         if (changedTypes.contains(DISK_INFO_DELIM)) {
-            drbdBlockDevices = newDrbdBlockDevices;
-            physicalVolumes = newPhysicalVolumes;
-            volumeGroupsWithLvs = newVolumeGroupsLVS;
+            blockDevicesChangedEvent = updateBlockDevices(diskInfoLines);
         }
 
         if (changedTypes.contains(DISK_SPACE_DELIM)) {
-            hwEventBus.post(new HwBlockDevicesDiskSpaceEvent(host, diskSpaces));
+            lastDiskSpaces = diskSpaces;
         }
 
         if (changedTypes.contains(VG_INFO_DELIM)) {
@@ -426,8 +412,24 @@ public class HostParser {
             drbdResourcesWithProxy = newDrbdResProxy;
         }
 
-        if (changedTypes.contains(DISK_INFO_DELIM) || changedTypes.contains(VG_INFO_DELIM)) {
-            hwEventBus.post(new HwBlockDevicesChangedEvent(host, newBlockDevices.values()));
+        /* the helper sends only the sections that have changed, the new block
+         * devices get the disk space from the last time, the views get
+         * the free space of the volume groups */
+        if (changedTypes.contains(VG_INFO_DELIM)) {
+            if (blockDevicesChangedEvent == null) {
+                blockDevicesChangedEvent = new HwBlockDevicesChangedEvent(host, getCurrentBlockDevices());
+            } else {
+                blockDevicesChangedEvent = blockDevicesChangedEvent.withAllChanged();
+            }
+        }
+        final boolean blockDevicesChanged = blockDevicesChangedEvent != null
+                                            && (!blockDevicesChangedEvent.isEmpty()
+                                                || changedTypes.contains(VG_INFO_DELIM));
+        if (blockDevicesChanged) {
+            hwEventBus.post(blockDevicesChangedEvent);
+        }
+        if (blockDevicesChanged || changedTypes.contains(DISK_SPACE_DELIM)) {
+            hwEventBus.post(new HwBlockDevicesDiskSpaceEvent(host, lastDiskSpaces));
         }
     }
 
@@ -645,6 +647,27 @@ public class HostParser {
         if (commLayerStopping && !corosyncRunning && !openaisRunning && !heartbeatRunning) {
             commLayerStopping = false;
         }
+        updateCapabilities();
+    }
+
+    /** Builds the capabilities again, if the versions, that they depend on, have changed. */
+    private synchronized void updateCapabilities() {
+        final List<String> versions = Arrays.asList(drbdHost.getDrbdUtilVersion(),
+                                                    pacemakerVersion,
+                                                    heartbeatVersion,
+                                                    corosyncVersion);
+        if (!versions.equals(capabilityVersions)) {
+            capabilityVersions = versions;
+            capabilities = new HostCapabilities(drbdHost.getDrbdUtilVersion(),
+                                                pacemakerVersion,
+                                                heartbeatVersion,
+                                                corosyncVersion);
+        }
+    }
+
+    /** Returns what the software on this host can do, according to its versions. */
+    public HostCapabilities getCapabilities() {
+        return capabilities;
     }
 
     /**
@@ -848,18 +871,30 @@ public class HostParser {
      * the convert command callback.
      */
     public String getDistCommand(final String commandString, final ConvertCmdCallback convertCmdCallback) {
-        return Tools.getDistCommand(commandString,
-                distributionName,
-                distributionVersionString,
-                arch,
-                convertCmdCallback,
-                false,  /* in bash */
-                false); /* sudo */
+        return getDistCommand(commandString, convertCmdCallback, false, false);
+    }
+
+    /**
+     * Converts command string to real command for a distribution, like
+     * Tools.getDistCommand, the command is looked up only the first time.
+     */
+    public String getDistCommand(final String commandString,
+                                 final ConvertCmdCallback convertCmdCallback,
+                                 final boolean inBash,
+                                 final boolean inSudo) {
+        if (commandString == null) {
+            return null;
+        }
+        final String command = getDistCommandTemplates().getCommand(commandString, inBash, inSudo).toString();
+        if (convertCmdCallback != null) {
+            return convertCmdCallback.convert(command);
+        }
+        return command;
     }
 
     /** Converts a string that is specific to the distribution distribution. */
     public String getDistString(final String commandString) {
-        return Tools.getDistString(commandString, distributionName, distributionVersionString, arch);
+        return getDistCommandTemplates().getDistString(commandString);
     }
 
     /**
@@ -873,31 +908,23 @@ public class HostParser {
 
     /**
      * Converts command string to real command for a distribution, specifying
-     * what-with-what hash.
+     * what-with-what hash. The tags are replaced with the values as they are.
      */
     public String getDistCommand(final String commandString, final Map<String, String> replaceHash) {
-        return Tools.getDistCommand(
-                commandString,
-                distributionName,
-                distributionVersionString,
-                arch,
-                new ConvertCmdCallback() {
-                    @Override
-                    public String convert(String command) {
-                        for (final String tag : replaceHash.keySet()) {
-                            if (tag != null && command.contains(tag)) {
-                                String s = replaceHash.get(tag);
-                                if (s == null) {
-                                    s = "";
-                                }
-                                command = command.replaceAll(tag, s);
-                            }
-                        }
-                        return command;
-                    }
-                },
-                false,  /* in bash */
-                false); /* sudo */
+        if (commandString == null) {
+            return null;
+        }
+        return getDistCommandTemplates().getCommand(commandString, false, false).render(replaceHash);
+    }
+
+    /** Returns the commands for the current distribution, they are created again, if it has changed. */
+    private DistCommandTemplates getDistCommandTemplates() {
+        DistCommandTemplates templates = distCommandTemplates;
+        if (templates == null || !templates.isFor(distributionName, distributionVersionString, arch)) {
+            templates = new DistCommandTemplates(distributionName, distributionVersionString, arch);
+            distCommandTemplates = templates;
+        }
+        return templates;
     }
 
     /** Gets and stores info about the host. */
@@ -964,6 +991,13 @@ public class HostParser {
     /** Gets and stores hardware info about the host. */
     public void startHWInfoDaemon(final CategoryInfo[] infosToUpdate, final ResourceGraph[] graphs) {
         LOG.debug1("startHWInfoDaemon: " + host.getName());
+        mPollRequestLock.lock();
+        try {
+            hwInfoDaemonRunning = false;
+            pollRequestSent = false;
+        } finally {
+            mPollRequestLock.unlock();
+        }
         serverStatusThread = host.getSSH().execCommand(new ExecCommandConfig()
                 .commandString("HostHWInfoDaemon")
                 .inBash(false)
@@ -997,76 +1031,43 @@ public class HostParser {
                     }
                 })
                 .newOutputCallback(new NewOutputCallback() {
-                    private final StringBuffer outputBuffer = new StringBuffer(300);
+                    private final HelperOutputDecoder decoder =
+                            new HelperOutputDecoder(HostParser.this)
+                                .on("hw", new HelperOutputDecoder.FrameConsumer() {
+                                    @Override
+                                    public void frame(final String payload) {
+                                        if (hostInfoMailbox.putHwInfo(payload)) {
+                                            startHostInfoParser(graphs);
+                                        }
+                                        hwInfoDaemonStarted();
+                                    }
+                                })
+                                .on("vm", new HelperOutputDecoder.FrameConsumer() {
+                                    @Override
+                                    public void frame(final String payload) {
+                                        if (hostInfoMailbox.putVmInfo(payload)) {
+                                            startHostInfoParser(graphs);
+                                        }
+                                    }
+                                })
+                                .on("drbd", new HelperOutputDecoder.FrameConsumer() {
+                                    @Override
+                                    public void frame(final String payload) {
+                                        if (hostInfoMailbox.putDrbdInfo(payload)) {
+                                            startHostInfoParser(graphs);
+                                        }
+                                    }
+                                })
+                                .on("timing", new HelperOutputDecoder.FrameConsumer() {
+                                    @Override
+                                    public void frame(final String payload) {
+                                        updateHelperSectionTimes(payload);
+                                    }
+                                });
+
                     @Override
-                    public void output(final String output) {
-                        outputBuffer.append(output);
-                        final ClusterBrowser cb = host.getBrowser().getClusterBrowser();
-                        String hw, vm, drbdConfig;
-                        String hwUpdate = null;
-                        String vmUpdate = null;
-                        String drbdUpdate = null;
-                        do {
-                            hw = getOutput("hw", outputBuffer);
-                            if (hw != null) {
-                                hwUpdate = hw;
-                            }
-                            vm = getOutput("vm", outputBuffer);
-                            if (vmStatusTryLock()) {
-                                if (vm != null) {
-                                    vmUpdate = vm;
-                                }
-                                vmStatusUnlock();
-                            }
-                            drbdStatusLock();
-                            drbdConfig = getOutput("drbd", outputBuffer);
-                            if (drbdConfig != null) {
-                                drbdUpdate = drbdConfig;
-                            }
-                            drbdStatusUnlock();
-                        } while (hw != null || vm != null || drbdConfig != null);
-
-                        Tools.chomp(outputBuffer);
-                        if (hwUpdate != null) {
-                            parseHostInfo(hwUpdate);
-                            for (final ResourceGraph g : graphs) {
-                                if (g != null) {
-                                    g.repaint();
-                                }
-                            }
-                        }
-                        if (vmUpdate != null) {
-                            final VmsXml newVmsXml = vmsXmlProvider.get();
-                            newVmsXml.init(host);
-                            if (newVmsXml.parseXml(vmUpdate)) {
-                                cb.vmsXmlPut(host, newVmsXml);
-                                cb.updateVms();
-                            }
-                        }
-                        if (drbdUpdate != null) {
-                            final DrbdXml dxml = drbdXmlProvider.get();
-                            dxml.init(host.getCluster().getHostsArray(), cb.getHostDrbdParameters());
-                            dxml.update(drbdUpdate);
-                            cb.setDrbdXml(dxml);
-                            swingUtils.invokeLater(new Runnable() {
-                                @Override
-                                public void run() {
-                                    host.getBrowser().getClusterBrowser().getGlobalInfo().setParameters();
-                                    cb.updateDrbdResources();
-                                }
-                            });
-                        }
-                        if (drbdUpdate != null
-                                || vmUpdate != null) {
-                            cb.updateHWInfo(host, !Host.UPDATE_LVM);
-                        }
-                        if (drbdUpdate != null) {
-                            cb.updateServerStatus(host);
-                        }
-                        if (getWaitForServerStatusLatch()) {
-                            cb.updateServerStatus(host);
-                        }
-                        host.setLoadingDone();
+                    public void output(final CharSequence output) {
+                        decoder.decode(output);
                     }
                 })
                 .silentCommand()
@@ -1074,35 +1075,208 @@ public class HostParser {
                 .sshCommandTimeout(HW_INFO_TIMEOUT)).block();
     }
 
-    public String getOutput(final String type, final StringBuffer buffer) {
-        final String infoStart = "--" + type + "-info-start--";
-        final String infoEnd = "--" + type + "-info-end--";
-        final int infoStartLength = infoStart.length();
-        final int infoEndLength = infoEnd.length();
-        final int s = buffer.indexOf(infoStart);
-        final int s2 = buffer.indexOf("\r\n", s);
-        final int e = buffer.indexOf(infoEnd, s);
-        String out = null;
-        if (s > -1 && s < s2 && s2 <= e) {
-            Double timestamp = null;
-            final String ts = buffer.substring(s + infoStartLength, s2);
+    /**
+     * Parses the helper info in a worker thread, till there is no new info,
+     * so that the ssh reader doesn't have to wait.
+     */
+    private void startHostInfoParser(final ResourceGraph[] graphs) {
+        scheduler.submit("host info parser " + host.getName(), new Runnable() {
+            @Override
+            public void run() {
+                hostInfoMailbox.parseAll(new HostInfoMailbox.InfoParser() {
+                    @Override
+                    public void parse(final HostInfoMailbox.Info info) {
+                        updateHostInfo(info, graphs);
+                    }
+                });
+            }
+        });
+    }
+
+    private void updateHostInfo(final HostInfoMailbox.Info info, final ResourceGraph[] graphs) {
+        final String hwUpdate = info.getHwInfo();
+        String vmUpdate = null;
+        if (info.getVmInfo() != null && vmStatusTryLock()) {
+            /* the vm info is ignored, while the vms are being changed */
+            vmUpdate = info.getVmInfo();
+            vmStatusUnlock();
+        }
+        final String drbdUpdate = info.getDrbdInfo();
+        final ClusterBrowser cb = host.getBrowser().getClusterBrowser();
+        if (hwUpdate != null) {
+            parseHostInfo(hwUpdate);
+            for (final ResourceGraph g : graphs) {
+                if (g != null) {
+                    g.repaint();
+                }
+            }
+        }
+        if (vmUpdate != null) {
+            final VmsXml newVmsXml = vmsXmlProvider.get();
+            newVmsXml.init(host);
+            if (newVmsXml.parseXml(vmUpdate)) {
+                cb.vmsXmlPut(host, newVmsXml);
+                cb.updateVms();
+            }
+        }
+        if (drbdUpdate != null) {
+            drbdStatusLock();
             try {
-                timestamp = Double.parseDouble(ts);
-            }  catch (final NumberFormatException nfe) {
-                LOG.debug("getOutput: could not parse: " + ts + ' ' + nfe);
+                final DrbdXml dxml = drbdXmlProvider.get();
+                dxml.init(host.getCluster().getHostsArray(), cb.getHostDrbdParameters());
+                dxml.update(drbdUpdate);
+                cb.setDrbdXml(dxml);
+            } finally {
+                drbdStatusUnlock();
             }
-            mInfoTimestampLock.lock();
-            if (timestamp != null
-                    && (!infoTimestamp.containsKey(type) || timestamp >= infoTimestamp.get(type))) {
-                infoTimestamp.put(type, timestamp);
-                mInfoTimestampLock.unlock();
-                out = buffer.substring(s2 + 2, e);
-            } else {
-                mInfoTimestampLock.unlock();
+            swingUtils.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    host.getBrowser().getClusterBrowser().getGlobalInfo().setParameters();
+                    cb.updateDrbdResources();
+                }
+            });
+        }
+        if (drbdUpdate != null
+                || vmUpdate != null) {
+            cb.updateHWInfo(host, !Host.UPDATE_LVM);
+        }
+        if (drbdUpdate != null) {
+            cb.updateServerStatus(host);
+        }
+        if (getWaitForServerStatusLatch()) {
+            cb.updateServerStatus(host);
+        }
+        host.setLoadingDone();
+    }
+
+    /**
+     * Tells the hw info daemon, how often it should send which info. The info,
+     * whose view is not shown, is needed less often. The vm and drbd info is
+     * not needed at all, if the cluster is not visible, the drbd events still
+     * come.
+     */
+    public void setInfoVisible(final boolean hwVisible, final boolean vmVisible, final boolean drbdVisible) {
+        final int visibleInterval = Tools.getDefaultInt("HostParser.PollInterval");
+        final int backgroundInterval = Tools.getDefaultInt("HostParser.BackgroundPollInterval");
+        final int hiddenInterval = hwVisible ? backgroundInterval : 0;
+        final int hwInterval = hwVisible ? visibleInterval : backgroundInterval;
+        final int vmInterval = vmVisible ? visibleInterval : hiddenInterval;
+        final int drbdInterval = drbdVisible ? visibleInterval : hiddenInterval;
+        mPollRequestLock.lock();
+        try {
+            final String request = "poll hw=" + hwInterval + " vm=" + vmInterval + " drbd=" + drbdInterval + '\n';
+            if (request.equals(pollRequest)) {
+                return;
+            }
+            pollRequest = request;
+            pollRequestSent = false;
+        } finally {
+            mPollRequestLock.unlock();
+        }
+        schedulePollRequest();
+    }
+
+    private void hwInfoDaemonStarted() {
+        final boolean requestPending;
+        mPollRequestLock.lock();
+        try {
+            hwInfoDaemonRunning = true;
+            requestPending = pollRequest != null && !pollRequestSent;
+        } finally {
+            mPollRequestLock.unlock();
+        }
+        if (requestPending) {
+            schedulePollRequest();
+        }
+    }
+
+    /**
+     * The request is written to the ssh session in the scheduler, because
+     * the write blocks, if the host is slow, and setInfoVisible is called
+     * from the tab listener in the EDT.
+     */
+    private void schedulePollRequest() {
+        scheduler.submit("poll request " + host.getName(), new Runnable() {
+            @Override
+            public void run() {
+                sendPollRequest();
+            }
+        });
+    }
+
+    /** The sends are serialized, so that the last request is the one the daemon gets. */
+    private void sendPollRequest() {
+        mPollSendLock.lock();
+        try {
+            final ExecCommandThread sst = serverStatusThread;
+            final String request;
+            mPollRequestLock.lock();
+            try {
+                if (pollRequest == null || pollRequestSent || !hwInfoDaemonRunning || sst == null) {
+                    return;
+                }
+                request = pollRequest;
+            } finally {
+                mPollRequestLock.unlock();
+            }
+            LOG.debug1("sendPollRequest: " + host.getName() + ": " + request.trim());
+            final boolean sent = sst.sendInput(request);
+            mPollRequestLock.lock();
+            try {
+                if (request.equals(pollRequest)) {
+                    pollRequestSent = sent;
+                }
+            } finally {
+                mPollRequestLock.unlock();
+            }
+        } finally {
+            mPollSendLock.unlock();
+        }
+    }
+
+    /** Reads the "section milliseconds" lines, that the helper sends after it collected the sections. */
+    private void updateHelperSectionTimes(final String timing) {
+        for (final String line : timing.split("\n")) {
+            final int space = line.lastIndexOf(' ');
+            if (space <= 0) {
+                continue;
+            }
+            try {
+                helperSectionTimes.put(line.substring(0, space), Long.parseLong(line.substring(space + 1)));
+            } catch (final NumberFormatException e) {
+                LOG.appWarning("updateHelperSectionTimes: could not parse: " + line);
             }
-            buffer.delete(0, e + infoEndLength + 2);
         }
-        return out;
+    }
+
+    /** Returns how long the helper took to collect every info section the last time, in ms. */
+    public Map<String, Long> getHelperSectionTimes() {
+        return new TreeMap<String, Long>(helperSectionTimes);
+    }
+
+    /** Returns number of infos, that were dropped, because newer ones came before they were parsed. */
+    public long getDroppedInfoCount() {
+        return hostInfoMailbox.getDroppedCount();
+    }
+
+    /**
+     * Returns whether the info with this timestamp is not older than the last
+     * one of the same type, the helper output from before a reconnect may
+     * still arrive.
+     */
+    boolean isNewestInfo(final String type, final double timestamp) {
+        mInfoTimestampLock.lock();
+        try {
+            final Double last = infoTimestamp.get(type);
+            if (last != null && timestamp < last) {
+                return false;
+            }
+            infoTimestamp.put(type, timestamp);
+            return true;
+        } finally {
+            mInfoTimestampLock.unlock();
+        }
     }
 
     public void vmStatusLock() {
@@ -1215,13 +1389,13 @@ public class HostParser {
     }
 
     public Set<String> getLogicalVolumesFromVolumeGroup(final String vg) {
-        return volumeGroupsWithLvs.get(vg);
+        return lvmInventory.getLogicalVolumes(vg);
     }
 
     public Set<String> getAllLogicalVolumes() {
         final Set<String> allLVS = new LinkedHashSet<String>();
         for (final String vg : volumeGroups.keySet()) {
-            final Set<String> lvs = volumeGroupsWithLvs.get(vg);
+            final Set<String> lvs = lvmInventory.getLogicalVolumes(vg);
             if (lvs != null) {
                 allLVS.addAll(lvs);
             }
@@ -1231,28 +1405,26 @@ public class HostParser {
 
     /** Returns whether DRBD has volume feature. */
     public boolean hasVolumes() {
-        try {
-            return Tools.compareVersions(drbdHost.getDrbdUtilVersion(), "8.4") >= 0;
-        } catch (final Exceptions.IllegalVersionException e) {
-            LOG.appWarning("hasVolumes: " + e.getMessage(), e);
-        }
-        return true;
+        return capabilities.hasDrbdVolumes();
     }
 
     public Iterable<BlockDevice> getPhysicalVolumes() {
-        return physicalVolumes;
+        return lvmInventory.getPhysicalVolumes();
     }
 
     public void setHeartbeatVersion(final String heartbeatVersion) {
         this.heartbeatVersion = heartbeatVersion;
+        updateCapabilities();
     }
 
     public void setCorosyncVersion(final String corosyncVersion) {
         this.corosyncVersion = corosyncVersion;
+        updateCapabilities();
     }
 
     public void setPacemakerVersion(final String pacemakerVersion) {
         this.pacemakerVersion = pacemakerVersion;
+        updateCapabilities();
     }
 
     public void setOpenaisVersion(final String openaisVersion) {
@@ -1358,16 +1530,10 @@ public class HostParser {
     }
 
     public Iterable<BlockDevice> getPhysicalVolumes(final String vg) {
-        final Collection<BlockDevice> bds = new ArrayList<BlockDevice>();
         if (vg == null) {
-            return bds;
-        }
-        for (final BlockDevice b : physicalVolumes) {
-            if (vg.equals(b.getVgOnPhysicalVolume())) {
-                bds.add(b);
-            }
+            return new ArrayList<BlockDevice>();
         }
-        return bds;
+        return lvmInventory.getPhysicalVolumes(vg);
     }
 
 
@@ -1444,53 +1610,53 @@ public class HostParser {
      *
      * @return command with replaced variables
      */
-    public String replaceVars(String command, final boolean hidePassword) {
-        if (command.contains("@USER@")) {
-            command = command.replaceAll("@USER@", application.getDownloadUser());
-        }
-        if (command.indexOf("@PASSWORD@") > -1) {
-            if (hidePassword) {
-                command = command.replaceAll("@PASSWORD@", "*****");
-            } else {
-                command = command.replaceAll("@PASSWORD@", application.getDownloadPassword());
-            }
-        }
-        String supportDir = "support";
-        if (application.isStagingDrbd()) {
-            supportDir = "support/staging";
-        }
-        if (kernelVersion != null
-                && command.contains("@KERNELVERSIONDIR@")) {
-            command = command.replaceAll("@KERNELVERSIONDIR@", kernelVersion);
-        }
-        if (distributionVersion != null
-                && command.contains("@DISTRIBUTION@")) {
-            command = command.replaceAll("@DISTRIBUTION@", distributionVersion);
-        }
-        if (arch != null
-                && command.contains("@ARCH@")) {
-            command = command.replaceAll("@ARCH@", arch);
+    public String replaceVars(final String command, final boolean hidePassword) {
+        if (command.indexOf('@') < 0) {
+            return command;
         }
-        if (command.contains("@SUPPORTDIR@")) {
-            command = command.replaceAll("@SUPPORTDIR@", supportDir);
-        }
-        if (command.contains("@DRBDDIR@")) {
-            final String drbdDir = "drbd";
-            command = command.replaceAll("@DRBDDIR@", drbdDir);
-        }
-        if (command.contains("@GUI-HELPER@")) {
-            final StringBuilder helperProg = new StringBuilder("/usr/local/bin/lcmc-gui-helper-");
-            helperProg.append(Tools.getRelease());
-            if (application.isCmdLog()) {
-                helperProg.append(' ');
-                helperProg.append(LOG_COMMANDS_ON_SERVER_OPTION);
-            }
-            command = command.replaceAll("@GUI-HELPER@", helperProg.toString());
+        return CommandTemplate.render(command, getCommandVars().getVars(hidePassword));
+    }
+
+    /**
+     * Returns the command for the distribution with the variables replaced,
+     * like replaceVars(getDistCommand(...)). Without the convert callback
+     * the compiled command is rendered, without scanning it again.
+     */
+    public String getDistCommandWithVars(final String commandString,
+                                         final ConvertCmdCallback convertCmdCallback,
+                                         final boolean inBash,
+                                         final boolean inSudo) {
+        if (convertCmdCallback != null) {
+            return replaceVars(getDistCommand(commandString, convertCmdCallback, inBash, inSudo));
         }
-        if (command.contains("@GUI-HELPER-PROG@")) {
-            command = command.replaceAll("@GUI-HELPER-PROG@", "/usr/local/bin/lcmc-gui-helper-" + Tools.getRelease());
+        return getDistCommandTemplates().getCommand(commandString, inBash, inSudo)
+                                        .render(getCommandVars().getVars(false));
+    }
+
+    /** Returns the variables, they are created again, if the host or the download settings have changed. */
+    private CommandVars getCommandVars() {
+        final String downloadUser = application.getDownloadUser();
+        final String downloadPassword = application.getDownloadPassword();
+        final boolean stagingDrbd = application.isStagingDrbd();
+        final boolean cmdLog = application.isCmdLog();
+        CommandVars vars = commandVars;
+        if (vars == null || !vars.isFor(downloadUser,
+                                        downloadPassword,
+                                        kernelVersion,
+                                        distributionVersion,
+                                        arch,
+                                        stagingDrbd,
+                                        cmdLog)) {
+            vars = new CommandVars(downloadUser,
+                                   downloadPassword,
+                                   kernelVersion,
+                                   distributionVersion,
+                                   arch,
+                                   stagingDrbd,
+                                   cmdLog);
+            commandVars = vars;
         }
-        return command;
+        return vars;
     }
 
     public void setDrbdStatusOk(final boolean drbdStatusOk) {
@@ -1502,39 +1668,137 @@ public class HostParser {
         return drbdStatusOk;
     }
 
-    private Optional<BlockDevice> createBlockDevice(final String line) {
-        final Pattern p = Pattern.compile("([^:]+):(.*)");
-        final String[] cols = line.split(" ");
-        if (cols.length < 2) {
-            LOG.appWarning("update: cannot parse block device line: " + line);
-            return Optional.absent();
-        } else {
-            final Collection<String> diskIds = new HashSet<String>();
-            final String device = cols[0];
-            final Map<String, String> tokens = Maps.newHashMap();
-            for (int i = 1; i < cols.length; i++) {
-                final Matcher m = p.matcher(cols[i]);
-                if (m.matches()) {
-                    if (TOKEN_DISK_ID.equals(m.group(1))) {
-                        diskIds.add(m.group(2));
-                    } else {
-                        tokens.put(m.group(1), m.group(2));
+    /**
+     * Updates the block devices from the disk info lines. Devices, whose line
+     * hasn't changed, are not parsed again, the others are updated in place,
+     * so that there is only one object for every device. Returns the
+     * differences since the last time.
+     */
+    HwBlockDevicesChangedEvent updateBlockDevices(final List<String> lines) {
+        mBlockDevicesLock.lock();
+        try {
+            final Map<String, BlockDevice> newBlockDevices = Maps.newLinkedHashMap();
+            final Map<String, BlockDevice> newDrbdBlockDevices = Maps.newLinkedHashMap();
+            final Map<String, BlockDevice> newFilteredBlockDevices = Maps.newHashMap();
+            final Map<String, String> newLines = Maps.newHashMapWithExpectedSize(lines.size());
+            final List<BlockDevice> changed = Lists.newArrayList();
+            for (final String line : lines) {
+                final int nameEnd = line.indexOf(' ');
+                if (nameEnd <= 0) {
+                    LOG.appWarning("updateBlockDevices: cannot parse block device line: " + line);
+                    continue;
+                }
+                final String bdName = line.substring(0, nameEnd);
+                final boolean isDrbd = DRBD_DEV_FILE_PATTERN.matcher(bdName).matches();
+                BlockDevice blockDevice = isDrbd ? drbdBlockDevices.get(bdName) : blockDevicesByName.get(bdName);
+                if (blockDevice == null && !isDrbd) {
+                    blockDevice = filteredBlockDevicesByName.get(bdName);
+                }
+                if (blockDevice == null) {
+                    blockDevice = new BlockDevice(host, bdName);
+                    parseBlockDevice(blockDevice, line, nameEnd);
+                    lvmInventory.update(bdName, blockDevice);
+                } else if (!line.equals(blockDeviceLines.get(bdName))) {
+                    parseBlockDevice(blockDevice, line, nameEnd);
+                    lvmInventory.update(bdName, blockDevice);
+                    changed.add(blockDevice);
+                }
+                newLines.put(bdName, line);
+                if (isDrbd) {
+                    newDrbdBlockDevices.put(bdName, blockDevice);
+                } else {
+                    newBlockDevices.put(bdName, blockDevice);
+                    if (blockDevice.getVolumeGroup() == null
+                            && bdName.length() > 5 && bdName.indexOf('/', 5) < 0) {
+                        final Matcher m = BLOCK_DEV_FILE_PATTERN.matcher(bdName);
+                        if (m.matches()) {
+                            final BlockDevice disk = newBlockDevices.remove(m.group(1));
+                            if (disk != null) {
+                                newFilteredBlockDevices.put(m.group(1), disk);
+                            }
+                        }
                     }
+                }
+            }
+            for (final String bdName : blockDeviceLines.keySet()) {
+                if (!newLines.containsKey(bdName)) {
+                    lvmInventory.remove(bdName);
+                }
+            }
+            final List<BlockDevice> added = Lists.newArrayList();
+            for (final Map.Entry<String, BlockDevice> entry : newBlockDevices.entrySet()) {
+                if (blockDevicesByName.get(entry.getKey()) != entry.getValue()) {
+                    added.add(entry.getValue());
+                }
+            }
+            final List<BlockDevice> removed = Lists.newArrayList();
+            for (final Map.Entry<String, BlockDevice> entry : blockDevicesByName.entrySet()) {
+                if (newBlockDevices.get(entry.getKey()) != entry.getValue()) {
+                    removed.add(entry.getValue());
+                }
+            }
+            final List<BlockDevice> changedAndKept = Lists.newArrayList();
+            for (final BlockDevice blockDevice : changed) {
+                if (newBlockDevices.get(blockDevice.getName()) == blockDevice) {
+                    changedAndKept.add(blockDevice);
+                }
+            }
+            blockDevicesByName = newBlockDevices;
+            blockDeviceLines = newLines;
+            filteredBlockDevicesByName = newFilteredBlockDevices;
+            drbdBlockDevices = newDrbdBlockDevices;
+            return new HwBlockDevicesChangedEvent(host, newBlockDevices.values(), added, removed, changedAndKept);
+        } finally {
+            mBlockDevicesLock.unlock();
+        }
+    }
+
+    private Collection<BlockDevice> getCurrentBlockDevices() {
+        mBlockDevicesLock.lock();
+        try {
+            return blockDevicesByName.values();
+        } finally {
+            mBlockDevicesLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the block device from the disk info line:
+     * "device token:value token:value...", the disk-id token can repeat.
+     */
+    private void parseBlockDevice(final BlockDevice blockDevice, final String line, final int nameEnd) {
+        final Collection<String> diskIds = new HashSet<String>();
+        final Map<String, String> tokens = Maps.newHashMap();
+        int start = nameEnd + 1;
+        while (start < line.length()) {
+            int end = line.indexOf(' ', start);
+            if (end < 0) {
+                end = line.length();
+            }
+            if (end > start) {
+                final int colon = line.indexOf(':', start);
+                if (colon <= start || colon >= end) {
+                    LOG.appWarning("parseBlockDevice: could not parse: " + line);
                 } else {
-                    LOG.appWarning("update: could not parse: " + line);
+                    final String name = line.substring(start, colon);
+                    final String value = line.substring(colon + 1, end);
+                    if (TOKEN_DISK_ID.equals(name)) {
+                        diskIds.add(value);
+                    } else {
+                        tokens.put(name, value);
+                    }
                 }
             }
-            final BlockDevice blockDevice = new BlockDevice(host, device);
-            blockDevice.setDiskUuid(tokens.get(TOKEN_UUID));
-            blockDevice.setBlockSize(tokens.get(TOKEN_SIZE));
-            blockDevice.setMountedOn(tokens.get(TOKEN_MP));
-            blockDevice.setFsType(tokens.get(TOKEN_FS));
-            blockDevice.setVolumeGroup(tokens.get(TOKEN_VG));
-            blockDevice.setLogicalVolume(tokens.get(TOKEN_LV));
-            blockDevice.setVgOnPhysicalVolume(tokens.get(TOKEN_PV));
-            blockDevice.setDiskIds(diskIds);
-            return Optional.of(blockDevice);
+            start = end + 1;
         }
+        blockDevice.setDiskUuid(tokens.get(TOKEN_UUID));
+        blockDevice.setBlockSize(tokens.get(TOKEN_SIZE));
+        blockDevice.setMountedOn(tokens.get(TOKEN_MP));
+        blockDevice.setFsType(tokens.get(TOKEN_FS));
+        blockDevice.setVolumeGroup(tokens.get(TOKEN_VG));
+        blockDevice.setLogicalVolume(tokens.get(TOKEN_LV));
+        blockDevice.setVgOnPhysicalVolume(tokens.get(TOKEN_PV));
+        blockDevice.setDiskIds(diskIds);
     }
 
 }
@@ -0,0 +1,116 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.host.domain;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import lcmc.drbd.domain.BlockDevice;
+
+/**
+ * Volume groups with their logical volumes and the physical volumes of one
+ * host, for the lvm dialogs. Only the block devices, that were added,
+ * changed or removed, are updated. The getters return copies, so that the
+ * dialogs can use them, while the next update comes.
+ */
+final class LvmInventory {
+    /**
+     * Logical volumes of every volume group, that has a block device, they
+     * are counted, because one volume can have more block device names.
+     */
+    private final Map<String, Multiset<String>> volumeGroupsWithLvs = Maps.newHashMap();
+    /** Number of the block devices in every volume group. */
+    private final Multiset<String> volumeGroupDeviceCounts = HashMultiset.create();
+    private final Map<String, BlockDevice> physicalVolumes = Maps.newLinkedHashMap();
+    /** Volume group and logical volume of every block device name, as they were added. */
+    private final Map<String, String[]> lvmOfBlockDevices = Maps.newHashMap();
+
+    /** Updates the block device, that was added or has changed. */
+    synchronized void update(final String name, final BlockDevice blockDevice) {
+        removeVolumeGroup(name);
+        final String vg = blockDevice.getVolumeGroup();
+        if (vg != null) {
+            final String lv = blockDevice.getLogicalVolume();
+            lvmOfBlockDevices.put(name, new String[]{vg, lv});
+            Multiset<String> logicalVolumes = volumeGroupsWithLvs.get(vg);
+            if (logicalVolumes == null) {
+                logicalVolumes = HashMultiset.create();
+                volumeGroupsWithLvs.put(vg, logicalVolumes);
+            }
+            volumeGroupDeviceCounts.add(vg);
+            if (lv != null) {
+                logicalVolumes.add(lv);
+            }
+        }
+        if (blockDevice.isPhysicalVolume()) {
+            physicalVolumes.put(name, blockDevice);
+        } else {
+            physicalVolumes.remove(name);
+        }
+    }
+
+    synchronized void remove(final String name) {
+        removeVolumeGroup(name);
+        physicalVolumes.remove(name);
+    }
+
+    private void removeVolumeGroup(final String name) {
+        final String[] lvm = lvmOfBlockDevices.remove(name);
+        if (lvm == null) {
+            return;
+        }
+        final String vg = lvm[0];
+        final String lv = lvm[1];
+        if (volumeGroupDeviceCounts.remove(vg, 1) == 1) {
+            volumeGroupsWithLvs.remove(vg);
+        } else if (lv != null) {
+            volumeGroupsWithLvs.get(vg).remove(lv);
+        }
+    }
+
+    /** Returns logical volumes of the volume group, or null, if it has no block devices. */
+    synchronized Set<String> getLogicalVolumes(final String vg) {
+        final Multiset<String> lvs = volumeGroupsWithLvs.get(vg);
+        if (lvs == null) {
+            return null;
+        }
+        return new HashSet<String>(lvs.elementSet());
+    }
+
+    synchronized List<BlockDevice> getPhysicalVolumes() {
+        return Lists.newArrayList(physicalVolumes.values());
+    }
+
+    synchronized List<BlockDevice> getPhysicalVolumes(final String vg) {
+        final List<BlockDevice> bds = Lists.newArrayList();
+        for (final BlockDevice b : physicalVolumes.values()) {
+            if (vg.equals(b.getVgOnPhysicalVolume())) {
+                bds.add(b);
+            }
+        }
+        return bds;
+    }
+}
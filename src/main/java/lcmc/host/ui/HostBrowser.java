@@ -213,6 +213,7 @@ public class HostBrowser extends Browser {
             return;
         }
         final Collection<BlockDevice> blockDevices = event.getBlockDevices();
+        final Set<BlockDevice> changedBlockDevices = new HashSet<BlockDevice>(event.getChangedBlockDevices());
         mBlockDevInfosWriteLock.lock();
         boolean changed = false;
         try {
@@ -225,8 +226,10 @@ public class HostBrowser extends Browser {
                 final BlockDevInfo blockDevInfo;
                 if (oldBlockDevices.containsKey(blockDevice)) {
                     blockDevInfo = oldBlockDevices.get(blockDevice);
-                    ((BlockDevice) blockDevInfo.getResource()).updateFrom(blockDevice);
-                    blockDevInfo.updateInfo();
+                    if (changedBlockDevices.contains(blockDevice)) {
+                        ((BlockDevice) blockDevInfo.getResource()).updateFrom(blockDevice);
+                        blockDevInfo.updateInfo();
+                    }
                 } else {
                     changed = true;
                     blockDevInfo = blockDevInfoFactory.get();
@@ -61,6 +61,7 @@ public class NewHostDialog extends DialogHost {
     private Widget usernameField;
     private Widget sshPortField;
     private Widget useSudoField;
+    private Widget useCompressionField;
     /** Whether the fields are big (if more hops are being used). */
     private boolean bigFields = false;
     /** Enable hostname after it was enabled at least once. */
@@ -90,6 +91,8 @@ public class NewHostDialog extends DialogHost {
         final String useSudoString = useSudoField.getStringValue().trim();
         getHost().setUseSudo("true".equals(useSudoString));
         application.setLastEnteredUseSudo("true".equals(useSudoString));
+        final String useCompressionString = useCompressionField.getStringValue().trim();
+        getHost().setUseCompression("true".equals(useCompressionString));
         if (!application.existsHost(getHost())) {
             application.addHostToHosts(getHost());
             mainPanel.setTerminalPanel(getHost().getTerminalPanel());
@@ -364,7 +367,27 @@ public class NewHostDialog extends DialogHost {
         inputPane.add(useSudoField.getComponent());
         useSudoField.setBackground(useSudoValue, useSudoValue, true);
 
-        SpringUtilities.makeCompactGrid(inputPane, 2, 4,  // rows, cols
+        /* use compression */
+        final JLabel useCompressionLabel = new JLabel(Tools.getString("Dialog.Host.NewHost.UseCompression"));
+
+        inputPane.add(useCompressionLabel);
+        final Value useCompressionValue = new StringValue(Boolean.toString(getHost().isUseCompression()));
+        useCompressionField = widgetFactory.createInstance(
+                                      Widget.GUESS_TYPE,
+                                      useCompressionValue,
+                                      new Value[]{new StringValue("true"), new StringValue("false")},
+                                      Widget.NO_REGEXP,
+                                      50,
+                                      Widget.NO_ABBRV,
+                                      new AccessMode(AccessMode.RO, AccessMode.NORMAL),
+                                      Widget.NO_BUTTON);
+        useCompressionLabel.setLabelFor(useCompressionField.getComponent());
+        inputPane.add(useCompressionField.getComponent());
+        useCompressionField.setBackground(useCompressionValue, useCompressionValue, true);
+        inputPane.add(new JLabel());
+        inputPane.add(new JLabel());
+
+        SpringUtilities.makeCompactGrid(inputPane, 3, 4,  // rows, cols
                                                    1, 1,  // initX, initY
                                                    1, 1); // xPad, yPad
         p.add(inputPane, BorderLayout.PAGE_END);
@@ -27,8 +27,12 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -39,6 +43,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.swing.JScrollPane;
 import javax.swing.JTextPane;
+import javax.swing.Timer;
 import javax.swing.event.CaretEvent;
 import javax.swing.event.CaretListener;
 import javax.swing.plaf.TextUI;
@@ -47,6 +52,7 @@ import javax.swing.text.BadLocationException;
 import javax.swing.text.Caret;
 import javax.swing.text.DefaultCaret;
 import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
 import javax.swing.text.MutableAttributeSet;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
@@ -56,7 +62,6 @@ import lcmc.common.ui.Access;
 import lcmc.common.ui.MainMenu;
 import lcmc.common.ui.main.MainData;
 import lcmc.common.ui.main.ProgressIndicator;
-import lcmc.common.ui.utils.SwingUtils;
 import lcmc.host.domain.Host;
 import lcmc.robotest.RoboTest;
 import lcmc.robotest.StartTests;
@@ -115,6 +120,8 @@ public class TerminalPanel extends JScrollPane {
     private static final String REGISTER_MOVEMENT = "registermovement";
     /** List of cheats, with positions while typing them. */
     private static final Map<String, Integer> CHEATS_MAP = new LinkedHashMap<String, Integer>();
+    /** Backspace, carriage return and escape, that need the slow path. */
+    private static final Pattern CONTROL_CHARS_PATTERN = Pattern.compile("[\\x08\\r\\x1b]");
     @Inject
     private RoboTest roboTest;
     @Inject
@@ -176,6 +183,21 @@ public class TerminalPanel extends JScrollPane {
     /** Terminal output colors. */
     private final Map<String, Color> terminalColor = new HashMap<String, Color>();
     private Color defaultOutputColor;
+    /** Lines that are kept in the terminal area, the older are removed. */
+    private final int maxLines = Tools.getDefaultInt("TerminalPanel.MaxLines");
+    /** Output that doesn't fit in till the next refresh is dropped. */
+    private final int maxPendingChars = Tools.getDefaultInt("TerminalPanel.MaxPendingChars");
+    /** Texts that wait for the next refresh, guarded by itself. */
+    private final List<PendingText> pendingTexts = new ArrayList<PendingText>();
+    private int pendingChars = 0;
+    private int droppedChars = 0;
+    private final Timer refreshTimer = new Timer(Tools.getDefaultInt("TerminalPanel.RefreshInterval"),
+                                                 new ActionListener() {
+                                                     @Override
+                                                     public void actionPerformed(final ActionEvent e) {
+                                                         appendPendingTexts();
+                                                     }
+                                                 });
     @Inject
     private MainData mainData;
     @Inject
@@ -183,14 +205,13 @@ public class TerminalPanel extends JScrollPane {
     @Inject
     private Application application;
     @Inject
-    private SwingUtils swingUtils;
-    @Inject
     private StartTests srartTests;
     @Inject
     private Access access;
 
     public void initWithHost(final Host host0) {
         host = host0;
+        refreshTimer.setRepeats(false);
         /* Sets terminal some of the output colors. This is in no way complete
          * or correct and probably doesn't have to be. */
         terminalColor.put("0", Tools.getDefaultColor("TerminalPanel.TerminalWhite"));
@@ -322,6 +343,31 @@ public class TerminalPanel extends JScrollPane {
         final int end = terminalArea.getDocument().getLength();
         pos = end + pos - maxPos;
         maxPos = end;
+        if (pos == maxPos && !CONTROL_CHARS_PATTERN.matcher(text).find()) {
+            appendPlainText(doc, text, colorAS);
+        } else {
+            appendChars(doc, text, colorAS);
+        }
+        commandOffset = terminalArea.getDocument().getLength();
+        terminalArea.setCaretPosition(terminalArea.getDocument().getLength());
+        mPosLock.unlock();
+        userCommand = true;
+    }
+
+    /** Appends text without control characters at the end in one go. */
+    private void appendPlainText(final MyDocument doc, final String text, final MutableAttributeSet colorAS) {
+        try {
+            doc.insertString(pos, text, colorAS);
+        } catch (final BadLocationException e) {
+            LOG.appError("appendPlainText: terminalPanel pos: " + pos, e);
+            return;
+        }
+        pos += text.length();
+        maxPos = pos;
+    }
+
+    /** Appends text character by character, interpreting control characters. */
+    private void appendChars(final MyDocument doc, final String text, final MutableAttributeSet colorAS) {
         final char[] chars = text.toCharArray();
         StringBuilder colorString = new StringBuilder(10);
         boolean inside = false;
@@ -394,10 +440,90 @@ public class TerminalPanel extends JScrollPane {
                 }
             }
         }
-        commandOffset = terminalArea.getDocument().getLength();
-        terminalArea.setCaretPosition(terminalArea.getDocument().getLength());
-        mPosLock.unlock();
-        userCommand = true;
+    }
+
+    /**
+     * Adds the text, that will be appended to the terminal area at the next
+     * refresh. Command output is dropped, if there is too much of it
+     * waiting, with a marker, how much was dropped.
+     */
+    private void addPendingText(final String text, final MutableAttributeSet colorAS, final boolean droppable) {
+        synchronized (pendingTexts) {
+            if (pendingTexts.isEmpty()) {
+                refreshTimer.restart();
+            }
+            if (droppable && pendingChars + text.length() > maxPendingChars) {
+                if (droppedChars == 0) {
+                    pendingTexts.add(PendingText.DROPPED_MARKER);
+                }
+                droppedChars += text.length();
+                return;
+            }
+            pendingTexts.add(new PendingText(text, colorAS));
+            pendingChars += text.length();
+        }
+    }
+
+    /**
+     * Appends all texts, that have arrived since the last refresh. Texts in
+     * the same color are appended together.
+     */
+    private void appendPendingTexts() {
+        final List<PendingText> texts;
+        final int dropped;
+        synchronized (pendingTexts) {
+            texts = new ArrayList<PendingText>(pendingTexts);
+            pendingTexts.clear();
+            pendingChars = 0;
+            dropped = droppedChars;
+            droppedChars = 0;
+        }
+        final StringBuilder run = new StringBuilder();
+        MutableAttributeSet runColor = null;
+        for (final PendingText pendingText : texts) {
+            final String text;
+            final MutableAttributeSet colorAS;
+            if (pendingText == PendingText.DROPPED_MARKER) {
+                text = '\n' + Tools.getString("TerminalPanel.OutputDropped") + ' ' + dropped + '\n';
+                colorAS = errorColor;
+            } else {
+                text = pendingText.text;
+                colorAS = pendingText.colorAS;
+            }
+            if (colorAS != runColor && run.length() > 0) {
+                append(run.toString(), runColor);
+                run.setLength(0);
+            }
+            run.append(text);
+            runColor = colorAS;
+        }
+        if (run.length() > 0) {
+            append(run.toString(), runColor);
+        }
+        removeOldLines();
+    }
+
+    /** Removes the oldest lines, so that only the maximum number of lines is kept. */
+    private void removeOldLines() {
+        final MyDocument doc = (MyDocument) terminalArea.getStyledDocument();
+        final Element root = doc.getDefaultRootElement();
+        final int excessLines = root.getElementCount() - maxLines;
+        if (excessLines <= 0) {
+            return;
+        }
+        mPosLock.lock();
+        try {
+            final int len = root.getElement(excessLines - 1).getEndOffset();
+            doc.removeForced(0, len);
+            pos -= len;
+            maxPos -= len;
+            prevLine = Math.max(prevLine - len, 0);
+            commandOffset = Math.max(commandOffset - len, 0);
+        } catch (final BadLocationException e) {
+            LOG.appWarning("removeOldLines: " + e);
+        } finally {
+            mPosLock.unlock();
+        }
     }
 
     /** Sets the terminal area editable. */
@@ -457,76 +583,46 @@ public class TerminalPanel extends JScrollPane {
      * and scrolls the text up.
      */
     public void nextCommand() {
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(prompt(), promptColor);
-            }
-        });
+        addPendingText(prompt(), promptColor, false);
     }
 
     /** Adds command to the terminal textarea and scrolls up. */
     public void addCommand(final String command) {
         final String[] lines = command.split("\\r?\\n");
-
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(lines[0], commandColor);
-                for (int i = 1; i < lines.length; i++) {
-                    append(" \\\n> " + lines[i], commandColor);
-                }
-                append("\n", commandColor);
-            }
-        });
+        final StringBuilder text = new StringBuilder(lines[0]);
+        for (int i = 1; i < lines.length; i++) {
+            text.append(" \\\n> ").append(lines[i]);
+        }
+        text.append('\n');
+        addPendingText(text.toString(), commandColor, false);
     }
 
     /** Adds command output to the terminal textarea and scrolls up. */
     public void addCommandOutput(final String output) {
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(output, outputColor);
-            }
-        });
+        addPendingText(output, outputColor, false);
     }
 
     /** Adds array of command output to the terminal textarea and scrolls up. */
     public void addCommandOutput(final String[] output) {
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                for (int i = 0; i < output.length; i++) {
-                    if (output[i] != null) {
-                        String newLine = "";
-                        if (i != output.length - 1) {
-                            newLine = "\n";
-                        }
-                        append(output[i] + newLine, outputColor);
-                    }
+        for (int i = 0; i < output.length; i++) {
+            if (output[i] != null) {
+                String newLine = "";
+                if (i != output.length - 1) {
+                    newLine = "\n";
                 }
+                addPendingText(output[i] + newLine, outputColor, false);
             }
-        });
+        }
     }
 
     /** Adds content string (output of a command) to the terminal area. */
     public void addContent(final String c) {
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(c, outputColor);
-            }
-        });
+        addPendingText(c, outputColor, true);
     }
 
     /** Adds content to the terminal textarea and scrolls up. */
     public void addContentErr(final String c) {
-        swingUtils.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                append(c, errorColor);
-            }
-        });
+        addPendingText(c, errorColor, true);
     }
 
     /** Starts action after cheat was entered. */
@@ -620,6 +716,19 @@ public class TerminalPanel extends JScrollPane {
         }
     }
 
+    /** Text with its color, that waits to be appended. */
+    private static final class PendingText {
+        /** Marks the place, where the dropped output would be. */
+        static final PendingText DROPPED_MARKER = new PendingText("", null);
+        private final String text;
+        private final MutableAttributeSet colorAS;
+
+        PendingText(final String text, final MutableAttributeSet colorAS) {
+            this.text = text;
+            this.colorAS = colorAS;
+        }
+    }
+
     /**
      * This class overwrites the DefaultStyledDocument in order to add godmode
      * feature.
@@ -91,6 +91,11 @@ public final class Logger {
         debug(DEBUG2_STRING, msg, 2);
     }
 
+    /** Returns whether the debug2 messages are logged, so that they don't have to be built otherwise. */
+    public boolean isDebug2Enabled() {
+        return 2 <= LoggerFactory.getDebugLevel() + 1;
+    }
+
     public void trace(final String msg) {
         debug(TRACE_STRING, msg, 3);
     }
@@ -0,0 +1,62 @@
+package ch.ethz.ssh2.channel;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+
+import ch.ethz.ssh2.transport.TransportManager;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public final class ChannelManagerKeepaliveTest {
+    private static final long TIMEOUT_MILLIS = 50;
+
+    private final TransportManager transportManager = mock(TransportManager.class);
+    private final ChannelManager channelManager = new ChannelManager(transportManager);
+
+    /** The server answers every request with the given number of replies. */
+    private void serverReplies(final int replies) throws IOException {
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws IOException {
+                for (int i = 0; i < replies; i++) {
+                    channelManager.msgGlobalSuccess();
+                }
+                return null;
+            }
+        }).when(transportManager).sendMessage(any(byte[].class));
+    }
+
+    @Test
+    public void replyShouldBeCounted() throws IOException {
+        serverReplies(1);
+        assertTrue(channelManager.requestKeepalive(TIMEOUT_MILLIS));
+    }
+
+    @Test
+    public void lateReplyShouldNotBeCountedForTheNextRequest() throws IOException {
+        doNothing().when(transportManager).sendMessage(any(byte[].class));
+        assertFalse(channelManager.requestKeepalive(TIMEOUT_MILLIS));
+
+        /* only the late reply to the first request comes */
+        serverReplies(1);
+        assertFalse(channelManager.requestKeepalive(TIMEOUT_MILLIS));
+    }
+
+    @Test
+    public void replyAfterTheLateReplyShouldBeCounted() throws IOException {
+        doNothing().when(transportManager).sendMessage(any(byte[].class));
+        assertFalse(channelManager.requestKeepalive(TIMEOUT_MILLIS));
+
+        serverReplies(2);
+        assertTrue(channelManager.requestKeepalive(TIMEOUT_MILLIS));
+        serverReplies(1);
+        assertTrue(channelManager.requestKeepalive(TIMEOUT_MILLIS));
+    }
+}
@@ -0,0 +1,165 @@
+package ch.ethz.ssh2.channel;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import ch.ethz.ssh2.packets.PacketChannelOpenConfirmation;
+import ch.ethz.ssh2.packets.Packets;
+import ch.ethz.ssh2.packets.TypesReader;
+import ch.ethz.ssh2.transport.TransportManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Sends data from a simulated remote side within the window, that the
+ * channel grants, and checks, that the channel never grants more than it
+ * can hold: the window size minus the data, that was not read yet.
+ */
+public final class ChannelWindowTest {
+    private static final int MAX_WINDOW_SIZE = 4 * Channel.CHANNEL_BUFFER_SIZE;
+    private static final int REMOTE_ID = 7;
+    private static final int PACKET_SIZE = 16384;
+    /** Time, that the remote side needs to see the window adjust. */
+    private static final long LINK_DELAY_MILLIS = 20;
+
+    private final TransportManager transportManager = mock(TransportManager.class);
+    private final ChannelManager channelManager = new ChannelManager(transportManager, MAX_WINDOW_SIZE);
+    private Channel channel;
+    /** How much the remote side may still send. */
+    private long remoteWindow = 0;
+    private int windowAdjusts = 0;
+    private int sent = 0;
+    private int read = 0;
+
+    @Before
+    public void setUp() throws IOException {
+        doAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws IOException {
+                remoteGot((byte[]) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(transportManager).sendMessage(any(byte[].class));
+        channel = channelManager.openSessionChannel();
+    }
+
+    private void remoteGot(final byte[] msg) throws IOException {
+        final TypesReader tr = new TypesReader(msg);
+        final int type = tr.readByte();
+        if (type == Packets.SSH_MSG_CHANNEL_OPEN) {
+            tr.readString();
+            final int localId = tr.readUINT32();
+            remoteWindow = tr.readUINT32();
+            final byte[] confirmation =
+                    new PacketChannelOpenConfirmation(localId, REMOTE_ID, 1 << 20, 32768).getPayload();
+            channelManager.msgChannelOpenConfirmation(confirmation, confirmation.length);
+        } else if (type == Packets.SSH_MSG_CHANNEL_WINDOW_ADJUST) {
+            assertEquals(REMOTE_ID, tr.readUINT32());
+            remoteWindow += tr.readUINT32();
+            windowAdjusts++;
+            synchronized (channel) {
+                assertEquals(remoteWindow, channel.localWindow);
+                assertTrue(remoteWindow + Math.max(channel.stdoutUnread(), channel.stderrUnread())
+                           <= channel.windowSize);
+            }
+        }
+    }
+
+    /** The remote side sends as much as the window allows. */
+    private void sendWindow(final int total) throws IOException {
+        while (remoteWindow > 0 && sent < total) {
+            final int len = (int) Math.min(Math.min(remoteWindow, PACKET_SIZE), total - sent);
+            sendData(len);
+        }
+    }
+
+    private void sendData(final int len) throws IOException {
+        final byte[] msg = new byte[9 + len];
+        msg[0] = (byte) Packets.SSH_MSG_CHANNEL_DATA;
+        msg[1] = (byte) (channel.localID >> 24);
+        msg[2] = (byte) (channel.localID >> 16);
+        msg[3] = (byte) (channel.localID >> 8);
+        msg[4] = (byte) channel.localID;
+        msg[5] = (byte) (len >> 24);
+        msg[6] = (byte) (len >> 16);
+        msg[7] = (byte) (len >> 8);
+        msg[8] = (byte) len;
+        for (int i = 0; i < len; i++) {
+            msg[9 + i] = dataByte(sent + i);
+        }
+        channelManager.msgChannelData(msg, msg.length);
+        remoteWindow -= len;
+        sent += len;
+        synchronized (channel) {
+            assertTrue(channel.stdoutBuffer.length <= channel.windowSize);
+        }
+    }
+
+    private void readData(final int len) throws IOException {
+        final byte[] buffer = new byte[len];
+        final int n = channelManager.getChannelData(channel, false, buffer, 0, len);
+        final byte[] expected = new byte[n];
+        for (int i = 0; i < n; i++) {
+            expected[i] = dataByte(read + i);
+        }
+        final byte[] got = new byte[n];
+        System.arraycopy(buffer, 0, got, 0, n);
+        assertArrayEquals("at " + read, expected, got);
+        read += n;
+    }
+
+    private static byte dataByte(final int pos) {
+        return (byte) (pos * 31 + pos / 251);
+    }
+
+    @Test
+    public void windowShouldGrowOnASlowLink() throws IOException, InterruptedException {
+        final int total = 2000000;
+        while (read < total) {
+            final int adjusts = windowAdjusts;
+            while (read < sent) {
+                readData(8000);
+            }
+            if (windowAdjusts > adjusts) {
+                Thread.sleep(LINK_DELAY_MILLIS);
+            }
+            sendWindow(total);
+        }
+        assertEquals(MAX_WINDOW_SIZE, channel.windowSize);
+        assertTrue(channel.stdoutBuffer.length <= MAX_WINDOW_SIZE);
+    }
+
+    @Test
+    public void slowReaderShouldGetOnlyTheFreeSpace() throws IOException {
+        final int total = 500000;
+        sendWindow(total);
+        while (read < total) {
+            /* the reader leaves most of the data in the buffer */
+            readData(1000);
+            sendWindow(total);
+        }
+        assertEquals(total, read);
+        assertEquals(Channel.CHANNEL_BUFFER_SIZE, channel.windowSize);
+        assertEquals(Channel.CHANNEL_BUFFER_SIZE, channel.stdoutBuffer.length);
+    }
+
+    @Test
+    public void dataBeyondTheWindowShouldBeRejected() throws IOException {
+        sendWindow(Channel.CHANNEL_BUFFER_SIZE);
+        try {
+            sendData(1);
+            fail("the remote side must not send more than the window");
+        } catch (final IOException e) {
+            assertEquals("Remote sent too much data, does not fit into window.", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ch.ethz.ssh2.crypto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ch.ethz.ssh2.crypto.cipher.BlockCipherFactory;
+import ch.ethz.ssh2.crypto.cipher.CipherOutputStream;
+import ch.ethz.ssh2.crypto.digest.MAC;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the javax.crypto ciphers and MACs with the pure Java
+ * implementations of the ssh library. Every invocation encrypts or MACs one
+ * packet. Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *                            -Dexec.mainClass=ch.ethz.ssh2.crypto.CryptoBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptoBenchmark {
+    private static final int PACKET_SIZE = 32768;
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CryptoBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Benchmark
+    public void encrypt(final CipherState state) throws IOException {
+        state.cipherOutputStream.write(state.packet, 0, state.packet.length);
+        state.cipherOutputStream.flush();
+    }
+
+    @Benchmark
+    public byte[] computeMac(final MacState state) {
+        state.mac.initMac(state.seq++);
+        state.mac.update(state.packet, 0, state.packet.length);
+        state.mac.getMac(state.out, 0);
+        return state.out;
+    }
+
+    @State(Scope.Thread)
+    public static class CipherState {
+        @Param({"aes128-ctr", "aes256-ctr", "aes128-cbc", "blowfish-ctr", "3des-cbc"})
+        public String type;
+
+        @Param({"true", "false"})
+        public boolean useJce;
+
+        private final byte[] packet = randomBytes(PACKET_SIZE);
+        private CipherOutputStream cipherOutputStream;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            BlockCipherFactory.setUseJce(useJce);
+            cipherOutputStream = new CipherOutputStream(
+                    BlockCipherFactory.createCipher(type,
+                                                    true,
+                                                    randomBytes(BlockCipherFactory.getKeySize(type)),
+                                                    randomBytes(BlockCipherFactory.getBlockSize(type))),
+                    new NullOutputStream());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            BlockCipherFactory.setUseJce(true);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MacState {
+        @Param({"hmac-sha1", "hmac-md5"})
+        public String type;
+
+        @Param({"true", "false"})
+        public boolean useJce;
+
+        private final byte[] packet = randomBytes(PACKET_SIZE);
+        private final byte[] out = new byte[64];
+        private MAC mac;
+        private int seq;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            MAC.setUseJce(useJce);
+            mac = new MAC(type, randomBytes(MAC.getKeyLen(type)));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            MAC.setUseJce(true);
+        }
+    }
+
+    private static byte[] randomBytes(final int size) {
+        final byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /** Discards the encrypted bytes, so that only the cipher is measured. */
+    private static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(final int b) {
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+        }
+    }
+}
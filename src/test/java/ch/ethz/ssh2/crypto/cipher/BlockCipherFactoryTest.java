@@ -0,0 +1,148 @@
+package ch.ethz.ssh2.crypto.cipher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks the javax.crypto ciphers against the pure Java ciphers of this
+ * package, for every cipher that the factory offers.
+ */
+public final class BlockCipherFactoryTest {
+    private static final int BLOCKS = 37;
+
+    private final Random random = new Random(5);
+
+    @After
+    public void tearDown() {
+        BlockCipherFactory.setUseJce(true);
+    }
+
+    @Test
+    public void fallbackShouldUseThePureJavaCiphers() {
+        BlockCipherFactory.setUseJce(false);
+        for (final String type : BlockCipherFactory.getDefaultCipherList()) {
+            final BlockCipher cipher = createCipher(type, true, key(type), iv(type));
+            assertFalse(type, cipher instanceof JceBlockCipher);
+            assertTrue(type, cipher instanceof CBCMode || cipher instanceof CTRMode);
+        }
+    }
+
+    @Test
+    public void jceCiphersShouldBeUsedIfAvailable() {
+        BlockCipherFactory.setUseJce(true);
+        assertTrue(createCipher("aes128-ctr", true, new byte[16], new byte[16]) instanceof JceBlockCipher);
+        assertTrue(createCipher("aes128-cbc", true, new byte[16], new byte[16]) instanceof JceBlockCipher);
+    }
+
+    @Test
+    public void jceBlocksShouldMatchPureJava() {
+        for (final String type : BlockCipherFactory.getDefaultCipherList()) {
+            for (final boolean encrypt : new boolean[]{true, false}) {
+                final byte[] key = key(type);
+                final byte[] iv = iv(type);
+                final byte[] input = randomBytes(BlockCipherFactory.getBlockSize(type) * BLOCKS);
+
+                final byte[] expected = transformBlockByBlock(pureCipher(type, encrypt, key, iv), input);
+
+                final BlockCipher jce = createCipher(type, encrypt, key, iv);
+                assertArrayEquals(type, expected, transformBlockByBlock(jce, input));
+
+                final BlockCipher bulk = createCipher(type, encrypt, key, iv);
+                if (bulk instanceof BulkBlockCipher) {
+                    final byte[] output = new byte[input.length];
+                    /* first one block, then all the rest in one call */
+                    final int blockSize = bulk.getBlockSize();
+                    ((BulkBlockCipher) bulk).transformBlocks(input, 0, output, 0, blockSize);
+                    ((BulkBlockCipher) bulk).transformBlocks(input,
+                                                             blockSize,
+                                                             output,
+                                                             blockSize,
+                                                             input.length - blockSize);
+                    assertArrayEquals(type, expected, output);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void streamsShouldMatchPureJava() throws IOException {
+        for (final String type : BlockCipherFactory.getDefaultCipherList()) {
+            final byte[] key = key(type);
+            final byte[] iv = iv(type);
+            final int blockSize = BlockCipherFactory.getBlockSize(type);
+            final byte[] input = randomBytes(blockSize * BLOCKS);
+
+            final byte[] expected = encryptWithStream(pureCipher(type, true, key, iv), input, blockSize);
+            final byte[] encrypted = encryptWithStream(createCipher(type, true, key, iv), input, blockSize);
+            assertArrayEquals(type, expected, encrypted);
+
+            final CipherInputStream cis = new CipherInputStream(createCipher(type, false, key, iv),
+                                                                new ByteArrayInputStream(encrypted));
+            final byte[] decrypted = new byte[input.length];
+            int off = 0;
+            while (off < decrypted.length) {
+                off += cis.read(decrypted, off, decrypted.length - off);
+            }
+            assertArrayEquals(type, input, decrypted);
+        }
+    }
+
+    /** Writes one byte at a time for the first block, the rest at once. */
+    private byte[] encryptWithStream(final BlockCipher cipher, final byte[] input, final int blockSize)
+        throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final CipherOutputStream cos = new CipherOutputStream(cipher, out);
+        for (int i = 0; i < blockSize; i++) {
+            cos.write(input[i]);
+        }
+        cos.write(input, blockSize, input.length - blockSize);
+        cos.flush();
+        return out.toByteArray();
+    }
+
+    private byte[] transformBlockByBlock(final BlockCipher cipher, final byte[] input) {
+        final byte[] output = new byte[input.length];
+        final int blockSize = cipher.getBlockSize();
+        for (int off = 0; off < input.length; off += blockSize) {
+            cipher.transformBlock(input, off, output, off);
+        }
+        return output;
+    }
+
+    private BlockCipher pureCipher(final String type, final boolean encrypt, final byte[] key, final byte[] iv) {
+        BlockCipherFactory.setUseJce(false);
+        try {
+            return createCipher(type, encrypt, key, iv);
+        } finally {
+            BlockCipherFactory.setUseJce(true);
+        }
+    }
+
+    /** Copies the key and iv, the ciphers must not share them. */
+    private BlockCipher createCipher(final String type, final boolean encrypt, final byte[] key, final byte[] iv) {
+        return BlockCipherFactory.createCipher(type, encrypt, key.clone(), iv.clone());
+    }
+
+    private byte[] key(final String type) {
+        return randomBytes(BlockCipherFactory.getKeySize(type));
+    }
+
+    private byte[] iv(final String type) {
+        return randomBytes(BlockCipherFactory.getBlockSize(type));
+    }
+
+    private byte[] randomBytes(final int size) {
+        final byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
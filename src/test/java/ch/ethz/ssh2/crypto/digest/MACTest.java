@@ -0,0 +1,93 @@
+package ch.ethz.ssh2.crypto.digest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+/** Checks the javax.crypto MACs against the pure Java HMAC of this package. */
+public final class MACTest {
+    private static final String[] PURE_JAVA_MACS = {"hmac-sha1-96", "hmac-sha1", "hmac-md5-96", "hmac-md5"};
+
+    private final Random random = new Random(5);
+
+    @After
+    public void tearDown() {
+        MAC.setUseJce(true);
+    }
+
+    @Test
+    public void fallbackShouldNotOfferSha2() {
+        MAC.setUseJce(false);
+        assertArrayEquals(PURE_JAVA_MACS, MAC.getMacList());
+        MAC.setUseJce(true);
+        assertTrue(Arrays.asList(MAC.getMacList()).contains("hmac-sha2-256"));
+        assertTrue(Arrays.asList(MAC.getMacList()).contains("hmac-sha2-512"));
+    }
+
+    @Test
+    public void fallbackShouldUseThePureJavaHmac() {
+        MAC.setUseJce(false);
+        for (final String type : PURE_JAVA_MACS) {
+            final MAC mac = new MAC(type, randomBytes(MAC.getKeyLen(type)));
+            assertTrue(type, mac.jceMac == null);
+            assertTrue(type, mac.mac instanceof HMAC);
+        }
+    }
+
+    @Test
+    public void jceMacsShouldMatchPureJava() {
+        for (final String type : PURE_JAVA_MACS) {
+            final byte[] key = randomBytes(MAC.getKeyLen(type));
+            MAC.setUseJce(false);
+            final MAC pure = new MAC(type, key.clone());
+            MAC.setUseJce(true);
+            final MAC jce = new MAC(type, key.clone());
+            assertTrue(type, jce.jceMac != null);
+            assertEquals(type, pure.size(), jce.size());
+
+            /* the same MAC objects for many packets, as in the transport */
+            for (int seq = 0; seq < 10; seq++) {
+                final byte[] packet = randomBytes(seq * 1000 + 17);
+                assertArrayEquals(type + " seq " + seq, computeMac(pure, seq, packet), computeMac(jce, seq, packet));
+            }
+        }
+    }
+
+    @Test
+    public void sha2MacsShouldHaveTheirFullLength() {
+        assertEquals(32, new MAC("hmac-sha2-256", randomBytes(32)).size());
+        assertEquals(64, new MAC("hmac-sha2-512", randomBytes(64)).size());
+    }
+
+    @Test
+    public void macShouldDependOnTheSequenceNumber() {
+        final MAC mac = new MAC("hmac-sha1", randomBytes(20));
+        final byte[] packet = randomBytes(100);
+        assertFalse(Arrays.equals(computeMac(mac, 1, packet), computeMac(mac, 2, packet)));
+    }
+
+    /** Feeds the packet in a few chunks. */
+    private byte[] computeMac(final MAC mac, final int seq, final byte[] packet) {
+        mac.initMac(seq);
+        final int half = packet.length / 2;
+        mac.update(packet, 0, 5);
+        mac.update(packet, 5, half - 5);
+        mac.update(packet, half, packet.length - half);
+        final byte[] out = new byte[mac.size() + 3];
+        mac.getMac(out, 3);
+        return Arrays.copyOfRange(out, 3, out.length);
+    }
+
+    private byte[] randomBytes(final int size) {
+        final byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,134 @@
+package ch.ethz.ssh2.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import ch.ethz.ssh2.compression.CompressionFactory;
+import ch.ethz.ssh2.compression.ICompressor;
+import ch.ethz.ssh2.packets.Packets;
+import org.junit.Test;
+
+/**
+ * Sends packets through two transport connections with the zlib@openssh.com
+ * compression, that starts after the authentication, and a key exchange in
+ * the middle, after which the compression streams must go on.
+ */
+public final class TransportConnectionCompressionTest {
+    private static final int PACKETS_PER_KEX = 20;
+
+    private final Random random = new Random(3);
+
+    @Test
+    public void packetsShouldBeUncompressedAcrossTheRekey() throws IOException {
+        final List<byte[]> payloads = createPayloads();
+        final ICompressor sendComp = CompressionFactory.createCompressor(CompressionFactory.ZLIB_DELAYED);
+        final ICompressor recvComp = CompressionFactory.createCompressor(CompressionFactory.ZLIB_DELAYED);
+        final byte[] stream = send(payloads, sendComp);
+
+        final TransportConnection receiver = createReceiver(stream, recvComp);
+        for (int i = 0; i < payloads.size(); i++) {
+            if (i == PACKETS_PER_KEX) {
+                /* the KexManager hands over the same decompressor after the rekey */
+                receiver.changeRecvCompression(recvComp);
+            }
+            assertArrayEquals("packet " + i, payloads.get(i), receive(receiver));
+        }
+        assertTrue(receiver.getCompressionCounters().getReceivedCompressed()
+                   < receiver.getCompressionCounters().getReceivedRaw());
+    }
+
+    @Test
+    public void newDecompressorAfterTheRekeyShouldFail() throws IOException {
+        final List<byte[]> payloads = createPayloads();
+        final byte[] stream = send(payloads, CompressionFactory.createCompressor(CompressionFactory.ZLIB_DELAYED));
+
+        final TransportConnection receiver =
+                createReceiver(stream, CompressionFactory.createCompressor(CompressionFactory.ZLIB_DELAYED));
+        for (int i = 0; i < PACKETS_PER_KEX; i++) {
+            receive(receiver);
+        }
+        receiver.changeRecvCompression(CompressionFactory.createCompressor(CompressionFactory.ZLIB_DELAYED));
+        try {
+            receive(receiver);
+            fail("a new zlib stream must not understand the packets of the old one");
+        } catch (final IOException e) {
+            assertEquals("Remote sent corrupt compressed data.", e.getMessage());
+        }
+    }
+
+    /**
+     * The first packet is the authentication success, after that the
+     * packets are compressed, some of them bigger than the zlib buffers.
+     */
+    private List<byte[]> createPayloads() {
+        final List<byte[]> payloads = new ArrayList<byte[]>();
+        payloads.add(new byte[]{(byte) Packets.SSH_MSG_USERAUTH_SUCCESS});
+        for (int i = 1; i < 2 * PACKETS_PER_KEX; i++) {
+            final byte[] payload;
+            if (i % 7 == 0) {
+                payload = new byte[30000];
+                random.nextBytes(payload);
+            } else {
+                payload = new byte[i * 500];
+                Arrays.fill(payload, (byte) ('a' + i % 26));
+            }
+            payload[0] = (byte) Packets.SSH_MSG_IGNORE;
+            payloads.add(payload);
+        }
+        return payloads;
+    }
+
+    /**
+     * Sends the payloads, the sender starts to compress after it got the
+     * authentication success and gets the same compressor after the rekey.
+     */
+    private byte[] send(final List<byte[]> payloads, final ICompressor sendComp) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TransportConnection sender =
+                new TransportConnection(new ByteArrayInputStream(authSuccessPacket()), out, new SecureRandom());
+        sender.changeSendCompression(sendComp);
+        sender.sendMessage(payloads.get(0));
+        receive(sender);
+        for (int i = 1; i < payloads.size(); i++) {
+            if (i == PACKETS_PER_KEX) {
+                sender.changeSendCompression(sendComp);
+            }
+            sender.sendMessage(payloads.get(i));
+        }
+        assertTrue(sender.getCompressionCounters().getSentCompressed()
+                   < sender.getCompressionCounters().getSentRaw());
+        return out.toByteArray();
+    }
+
+    private TransportConnection createReceiver(final byte[] stream, final ICompressor recvComp) {
+        final TransportConnection receiver =
+                new TransportConnection(new ByteArrayInputStream(stream), new ByteArrayOutputStream(),
+                                        new SecureRandom());
+        receiver.changeRecvCompression(recvComp);
+        return receiver;
+    }
+
+    private byte[] authSuccessPacket() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TransportConnection(new ByteArrayInputStream(new byte[0]), out, new SecureRandom())
+                .sendMessage(new byte[]{(byte) Packets.SSH_MSG_USERAUTH_SUCCESS});
+        return out.toByteArray();
+    }
+
+    private byte[] receive(final TransportConnection transportConnection) throws IOException {
+        final byte[] buffer = new byte[35000];
+        final int len = transportConnection.receiveMessage(buffer, 0, buffer.length);
+        return Arrays.copyOf(buffer, len);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.service.ssh;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class CommandBatchTest {
+    private static final String MARKER = "@@LCMC-BATCH-abc";
+
+    private final CommandBatch commandBatch = new CommandBatch(new String[]{"echo a", " printf b", "false"}, "abc");
+
+    @Test
+    public void scriptShouldContainAllCommands() {
+        final String script = commandBatch.getScript();
+        assertTrue(script.contains("{ echo a\n}"));
+        assertTrue(script.contains("{ printf b\n}"));
+        assertTrue(script.contains("{ false\n}"));
+        assertTrue(script.contains("[ $rc = 0 ] || exit $rc"));
+    }
+
+    @Test
+    public void outputShouldBeSplitAtMarkers() {
+        final List<SshOutput> results = commandBatch.parseOutput(
+                new SshOutput("a\r\n\r\n" + MARKER + " 0\r\nb\r\n" + MARKER + " 0\r\n\r\n" + MARKER + " 0\r\n", 0));
+        assertEquals(3, results.size());
+        assertEquals("a\r\n", results.get(0).getOutput());
+        assertEquals("b", results.get(1).getOutput());
+        assertEquals("", results.get(2).getOutput());
+        assertEquals(0, results.get(2).getExitCode());
+    }
+
+    @Test
+    public void parsingShouldStopAtFirstFailure() {
+        final List<SshOutput> results = commandBatch.parseOutput(
+                new SshOutput("a\n\n" + MARKER + " 2\n", 2));
+        assertEquals(1, results.size());
+        assertEquals("a\n", results.get(0).getOutput());
+        assertEquals(2, results.get(0).getExitCode());
+    }
+
+    @Test
+    public void commandWithoutMarkerShouldGetSessionExitCode() {
+        final List<SshOutput> results = commandBatch.parseOutput(
+                new SshOutput("a\n\n" + MARKER + " 0\nb", 130));
+        assertEquals(2, results.size());
+        assertEquals("b", results.get(1).getOutput());
+        assertEquals(130, results.get(1).getExitCode());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.service.ssh;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import lcmc.common.domain.Scheduler;
+import lcmc.host.domain.Host;
+import org.junit.Test;
+
+public final class FanOutTest {
+    private final Scheduler scheduler = new Scheduler();
+    private final Host host1 = mock(Host.class);
+    private final Host host2 = mock(Host.class);
+
+    @Test
+    public void duplicateHostShouldRunOnce() {
+        final AtomicInteger executions = new AtomicInteger(0);
+        final FanOut fanOut = new FanOut(new Host[]{host1, host2, host1}, scheduler, null);
+        fanOut.start(new FanOut.HostTask() {
+            @Override
+            public SshOutput execute(final Host host) {
+                executions.incrementAndGet();
+                return new SshOutput("ok", 0);
+            }
+        }, 0);
+        fanOut.await();
+        assertEquals(2, executions.get());
+        assertEquals(2, fanOut.getOutputs().size());
+        assertTrue(fanOut.isSuccess());
+    }
+
+    @Test
+    public void failedTaskShouldFinishTheHost() {
+        final FanOut fanOut = new FanOut(new Host[]{host1}, scheduler, null);
+        fanOut.start(new FanOut.HostTask() {
+            @Override
+            public SshOutput execute(final Host host) {
+                return null;
+            }
+        }, 0);
+        fanOut.await();
+        assertFalse(fanOut.isSuccess());
+        assertFalse(fanOut.getOutput(host1).isSuccess());
+    }
+
+    @Test
+    public void slowHostShouldTimeOut() {
+        final FanOut fanOut = new FanOut(new Host[]{host1, host2}, scheduler, null);
+        fanOut.start(new FanOut.HostTask() {
+            @Override
+            public SshOutput execute(final Host host) {
+                if (host == host2) {
+                    try {
+                        Thread.sleep(2000);
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return new SshOutput("ok", 0);
+            }
+        }, 100);
+        fanOut.await();
+        assertTrue(fanOut.getOutput(host1).isSuccess());
+        assertEquals(FanOut.TIMEOUT_EXIT_CODE, fanOut.getOutput(host2).getExitCode());
+        assertEquals(1, fanOut.getTimedOutHosts().size());
+    }
+
+    @Test
+    public void unfinishedHostShouldHaveNoOutput() {
+        final FanOut fanOut = new FanOut(new Host[]{host1}, scheduler, null);
+        assertNull(fanOut.getOutput(host1));
+        assertFalse(fanOut.isSuccess());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.cluster.service.ssh;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class OutputDecoderTest {
+    private static final String EURO = "\u20ac";
+    /** U+1F600, four bytes in UTF-8. */
+    private static final String SMILEY = "\ud83d\ude00";
+    private static final String REPLACEMENT = "\ufffd";
+
+    private final OutputDecoder outputDecoder = new OutputDecoder(100);
+
+    private String read(final OutputDecoder decoder, final int... chunk) throws IOException {
+        final byte[] bytes = new byte[chunk.length];
+        for (int i = 0; i < chunk.length; i++) {
+            bytes[i] = (byte) chunk[i];
+        }
+        return decoder.read(new ByteArrayInputStream(bytes)).toString();
+    }
+
+    @Test
+    public void characterSplitBetweenReadsShouldBeKept() throws IOException {
+        assertEquals("a", read(outputDecoder, 'a', 0xe2, 0x82));
+        assertEquals(EURO + "b", read(outputDecoder, 0xac, 'b'));
+    }
+
+    @Test
+    public void fourByteCharacterSplitBetweenReadsShouldBeKept() throws IOException {
+        assertEquals("", read(outputDecoder, 0xf0));
+        assertEquals("", read(outputDecoder, 0x9f, 0x98));
+        assertEquals(SMILEY + "c", read(outputDecoder, 0x80, 'c'));
+    }
+
+    @Test
+    public void characterAtTheEndOfTheBufferShouldBeKept() throws IOException {
+        final OutputDecoder smallDecoder = new OutputDecoder(4);
+        final ByteArrayInputStream in = new ByteArrayInputStream(("abc" + EURO + "d").getBytes("UTF-8"));
+        assertEquals("abc", smallDecoder.read(in).toString());
+        assertEquals(EURO + "d", smallDecoder.read(in).toString());
+    }
+
+    @Test
+    public void malformedInputShouldBeReplaced() throws IOException {
+        assertEquals("a" + REPLACEMENT + "b", read(outputDecoder, 'a', 0xff, 'b'));
+        /* a sequence, that ends too early */
+        assertEquals("c", read(outputDecoder, 'c', 0xe2, 0x82));
+        assertEquals(REPLACEMENT + "d", read(outputDecoder, 'd'));
+        assertEquals(EURO, read(outputDecoder, 0xe2, 0x82, 0xac));
+    }
+
+    @Test
+    public void containsShouldFindTheString() {
+        assertTrue(OutputDecoder.contains("abc@@x", "@@x"));
+        assertTrue(OutputDecoder.contains("@@x", "@@x"));
+        assertFalse(OutputDecoder.contains("abc@@", "@@x"));
+        assertFalse(OutputDecoder.contains("", "@@x"));
+    }
+}
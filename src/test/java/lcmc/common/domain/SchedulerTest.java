@@ -0,0 +1,107 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.common.domain;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class SchedulerTest {
+    private static final long WAIT_SECONDS = 5;
+
+    private final Scheduler scheduler = new Scheduler();
+
+    @Test
+    public void canceledTimeoutShouldNotRun() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(1);
+        final Scheduler.Job job = scheduler.schedule("timeout", new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        }, 200);
+        job.cancel();
+        job.cancel();
+        assertTrue(job.isCanceled());
+        assertFalse(ran.await(500, TimeUnit.MILLISECONDS));
+        assertTrue(scheduler.getStatistics().contains("scheduled: 1, executed: 0, canceled: 1, failed: 0\n"));
+    }
+
+    @Test
+    public void periodicJobShouldBeRescheduledAfterItHasFinished() throws InterruptedException {
+        final CountDownLatch ranThreeTimes = new CountDownLatch(3);
+        final AtomicInteger running = new AtomicInteger(0);
+        final AtomicInteger overlaps = new AtomicInteger(0);
+        final Scheduler.Job job = scheduler.scheduleWithFixedDelay("poll", new Runnable() {
+            @Override
+            public void run() {
+                if (running.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(30);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                ranThreeTimes.countDown();
+            }
+        }, 0, 10, true);
+        assertTrue(ranThreeTimes.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        assertEquals(Arrays.asList("poll"), scheduler.getPeriodicJobNames());
+
+        job.cancel();
+        assertEquals(Collections.<String>emptyList(), scheduler.getPeriodicJobNames());
+    }
+
+    @Test
+    public void statisticsShouldListThePeriodicJobs() throws InterruptedException {
+        final CountDownLatch ran = new CountDownLatch(1);
+        final Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        scheduler.scheduleWithFixedDelay("b-poll", noop, 60000, 60000, false);
+        scheduler.scheduleWithFixedDelay("a-poll", noop, 60000, 60000, true);
+        scheduler.scheduleWithFixedDelay("a-poll", noop, 60000, 60000, true);
+        scheduler.submit("task", new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertTrue(ran.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("a-poll", "a-poll", "b-poll"), scheduler.getPeriodicJobNames());
+        final String statistics = scheduler.getStatistics();
+        assertTrue(statistics, statistics.contains("scheduled: 4, "));
+        assertTrue(statistics, statistics.endsWith("periodic jobs:\n    a-poll x2\n    b-poll\n"));
+    }
+}
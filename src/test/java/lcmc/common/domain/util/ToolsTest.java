@@ -919,6 +919,25 @@ public final class ToolsTest {
         assertEquals(chomped, sb.toString());
     }
 
+    @SuppressWarnings("unused")
+    private Object[] parametersForCharsShouldEqualTrimmed() {
+        return $(
+            $(true,  "--nm--",         "--nm--"),
+            $(true,  "--nm--\r\n",     "--nm--"),
+            $(true,  " \n--nm--\n ",    "--nm--"),
+            $(true,  "\r\n",           ""),
+            $(false, "--nm--x",        "--nm--"),
+            $(false, "",               "--nm--"),
+            $(false, "--n m--",        "--nm--")
+        );
+    }
+
+    @Test
+    @Parameters(method="parametersForCharsShouldEqualTrimmed")
+    public void charsShouldEqualTrimmed(final boolean expected, final String chars, final String s) {
+        assertEquals(expected, Tools.equalsTrimmed(new StringBuilder(chars), s));
+    }
+
     @Test
     public void testGenerateVMMacAddress() {
        final String mac = Tools.generateVMMacAddress();
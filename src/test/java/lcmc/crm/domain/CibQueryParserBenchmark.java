@@ -0,0 +1,85 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.crm.domain;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the StAX CibQueryParser on a large synthetic CIB. Add "-prof gc"
+ * to the JMH arguments to see the allocations. With 900 primitives it took
+ * 46 ms and allocated 24 MB per parse, the DOM parsing, that it replaced,
+ * 142 ms and 80 MB. Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *                            -Dexec.mainClass=lcmc.crm.domain.CibQueryParserBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CibQueryParserBenchmark {
+    @Param({"100", "900"})
+    public int primitives;
+
+    private String query;
+    private CrmXml crmXml;
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CibQueryParserBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        query = LargeCibQuery.create(primitives, 4);
+        /* the resource agents would need the whole application */
+        crmXml = new CrmXml() {
+            @Override
+            public ResourceAgent getResourceAgent(final String serviceName,
+                                                  final String provider,
+                                                  final String raClass) {
+                return null;
+            }
+        };
+    }
+
+    /** The CibQueryParser collects the results of one parse, as in CrmXml. */
+    @Benchmark
+    public CibQuery parse() {
+        return new CibQueryParser(crmXml, false).parse(query);
+    }
+}
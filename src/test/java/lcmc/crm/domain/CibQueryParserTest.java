@@ -0,0 +1,296 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.crm.domain;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import lcmc.common.domain.StringValue;
+import lcmc.common.domain.Value;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public final class CibQueryParserTest {
+    private static final String CIB =
+          "<pcmk><fenced><node>Node-B</node></fenced>"
+        + "<cib dc-uuid='1'><configuration>"
+        + "<crm_config><cluster_property_set id='cps'>"
+        + "<nvpair id='o1' name='stonith-enabled' value='false'/></cluster_property_set></crm_config>"
+        + "<nodes><node id='1' uname='Node-A'/><node id='2' uname='node-b'/></nodes>"
+        + "<resources>"
+        + "<primitive class='ocf' id='ip' provider='heartbeat' type='IPaddr2'>"
+        + "<meta_attributes id='ip-meta'><nvpair id='m1' name='target-role' value='Started'/></meta_attributes>"
+        + "<instance_attributes id='ip-ia'><nvpair id='i1' name='ip' value='10.0.0.1'/></instance_attributes>"
+        + "</primitive>"
+        + "<group id='g'><primitive class='ocf' id='d' provider='pacemaker' type='Dummy'/></group>"
+        + "</resources>"
+        + "<constraints><rsc_order id='ord' first='ip' then='g'/></constraints>"
+        + "</configuration><status>"
+        + "<node_state id='1' uname='Node-A' join='member' in_ccm='true' crmd='online'>"
+        + "<lrm id='1'><lrm_resources><lrm_resource id='ip' class='ocf' type='IPaddr2'>"
+        + "<lrm_rsc_op id='ip_start_0' operation='start'/></lrm_resource>"
+        + "<lrm_resource id='old:1' class='ocf' type='Dummy'/></lrm_resources></lrm>"
+        + "<transient_attributes id='1'><instance_attributes id='t'>"
+        + "<nvpair id='f' name='fail-count-ip' value='3'/></instance_attributes></transient_attributes>"
+        + "</node_state></status></cib></pcmk>";
+
+    private CibQuery parse(final String query) {
+        return new CibQueryParser(mock(CrmXml.class), false).parse(query);
+    }
+
+    @Test
+    public void cibShouldBeParsed() {
+        final CibQuery cibQuery = parse(CIB);
+        assertEquals("Node-A", cibQuery.getDC());
+        assertEquals("false", cibQuery.getCrmConfig().get("stonith-enabled"));
+        assertEquals("10.0.0.1", cibQuery.getResourceParameters().get("ip").get("ip"));
+        assertEquals("started", cibQuery.getResourceParameters().get("ip").get("target-role"));
+        assertEquals(Arrays.asList("ip", "old"), cibQuery.getGroupsToResources().get("none"));
+        assertEquals(Arrays.asList("d"), cibQuery.getGroupsToResources().get("g"));
+        assertEquals("g", cibQuery.getOrderRsc().get("ip").get(0).getRscThen());
+        assertEquals("yes", cibQuery.getNodeOnline().get("node-a"));
+        assertEquals("no", cibQuery.getNodeOnline().get("node-b"));
+        assertTrue(cibQuery.getFencedNodes().contains("node-b"));
+        assertTrue(cibQuery.getOrphaned().contains("old"));
+        assertEquals("3", cibQuery.getFailCount("node-a", "ip"));
+        assertTrue(cibQuery.getResourceFailedCloneIds().get("node-a", "old").contains("1"));
+    }
+
+    @Test
+    public void brokenCibShouldBeEmpty() {
+        assertNull(parse("<pcmk><cib><configuration></pcmk>").getDC());
+        assertTrue(parse("no resources defined!").getCrmConfig().isEmpty());
+    }
+
+    @Test
+    public void cibFixtureShouldBeParsed() {
+        final CibQuery cibQuery = new CibQueryParser(mockCrmXml(), false).parse(readFile("CibQuery.xml"));
+
+        assertEquals("Node-A", cibQuery.getDC());
+        assertEquals("false", cibQuery.getCrmConfig().get("stonith-enabled"));
+        assertEquals("ignore", cibQuery.getCrmConfig().get("no-quorum-policy"));
+        assertNull(cibQuery.getCrmConfig().get("x"));
+        assertEquals("off", cibQuery.getNodeParameters().get("node-a", "standby"));
+        assertEquals("yes", cibQuery.getNodeOnline().get("node-a"));
+        assertEquals("no", cibQuery.getNodeOnline().get("node-b"));
+        assertEquals(Arrays.asList("node-b"), new ArrayList<String>(cibQuery.getNodePending()));
+        assertEquals(new TreeSet<String>(Arrays.asList("", "node-b")),
+                     new TreeSet<String>(cibQuery.getFencedNodes()));
+
+        assertEquals("meta-wins", cibQuery.getResourceParameters().get("ip1").get("ip"));
+        assertEquals("24", cibQuery.getResourceParameters().get("ip1").get("cidr"));
+        assertEquals("started", cibQuery.getResourceParameters().get("ip1").get("target-role"));
+        assertEquals("m2", cibQuery.getResourceParametersNvpairsIds().get("ip1").get("ip"));
+        assertEquals("stopped", cibQuery.getResourceParameters().get("g1").get("target-role"));
+        assertEquals("true", cibQuery.getResourceParameters().get("g1").get("group-ordered"));
+        assertEquals("g1m1", cibQuery.getResourceParametersNvpairsIds().get("g1").get("group-ordered"));
+        assertEquals("3", cibQuery.getResourceParameters().get("st1").get("stonith-priority"));
+        assertTrue(cibQuery.getResourceParameters().get("msr").isEmpty());
+        assertEquals("[IPaddr2, heartbeat, ocf]", cibQuery.getResourceType().get("ip1").toString());
+        assertEquals("[external/ssh, heartbeat, stonith]", cibQuery.getResourceType().get("st1").toString());
+        assertEquals("[Dummy, heartbeat, ocf]", cibQuery.getResourceType().get("orphan1").toString());
+        assertEquals("ip1-ia", cibQuery.getResourceInstanceAttrId().get("ip1"));
+        assertEquals("ip1-meta", cibQuery.getMetaAttrsId().get("ip1"));
+        assertEquals("ip1", cibQuery.getMetaAttrsRefs().get("st1"));
+        assertEquals("ip1", cibQuery.getOperationsRefs().get("st1"));
+
+        assertEquals(Arrays.asList("ip1", "st1", "mon2", "orphan1", "orphan2"),
+                     cibQuery.getGroupsToResources().get("none"));
+        assertEquals(Arrays.asList("g1r1", "g1r2"), cibQuery.getGroupsToResources().get("g1"));
+        assertEquals(Arrays.asList("msr"), cibQuery.getGroupsToResources().get("msg"));
+        assertTrue(cibQuery.getGroupsToResources().get("emptyclone").isEmpty());
+        assertEquals("c1r", cibQuery.getCloneToResource().get("cl1"));
+        assertEquals("msg", cibQuery.getCloneToResource().get("ms1"));
+        assertEquals(Arrays.asList("ms1"), new ArrayList<String>(cibQuery.getMasterList()));
+        assertEquals(new TreeSet<String>(Arrays.asList("orphan1", "orphan2")),
+                     new TreeSet<String>(cibQuery.getOrphaned()));
+        assertEquals(new TreeSet<String>(Arrays.asList("c1r", "ip1", "orphan1", "orphan2")),
+                     new TreeSet<String>(cibQuery.getInLRM().get("node-a")));
+
+        assertEquals("10", valueOf(cibQuery.getOperations().get("ip1", "monitor", "OCF_CHECK_LEVEL")));
+        assertEquals("10s", valueOf(cibQuery.getOperations().get("ip1", "monitor", "interval")));
+        assertEquals("90ms", valueOf(cibQuery.getOperations().get("ip1", "start", "timeout")));
+        assertEquals("1min", valueOf(cibQuery.getOperations().get("ip1", "start", "start-delay")));
+        assertTrue(cibQuery.getOperations().get("mon2", "monitor", "OCF_CHECK_LEVEL").isNothingSelected());
+        assertEquals("6", valueOf(cibQuery.getOperations().get("mon2", "monitor", "interval")));
+        assertNull(cibQuery.getOperations().get("mon2", "monitor", "timeout"));
+        assertEquals("ip1-ops", cibQuery.getOperationsId().get("ip1"));
+        assertEquals("ip1-start", cibQuery.getResOpIds().get("ip1").get("start"));
+        assertEquals("m2p", cibQuery.getResOpIds().get("mon2").get("monitor"));
+
+        final CrmXml.ColocationData col1 = cibQuery.getColocationId().get("col1");
+        assertEquals("ip1 g1 Started INFINITY",
+                     col1.getRsc() + " " + col1.getWithRsc() + " " + col1.getRscRole() + " " + col1.getScore());
+        assertNull(cibQuery.getColocationId().get("col2").getRsc());
+        final CrmXml.OrderData ord1 = cibQuery.getOrderId().get("ord1");
+        assertEquals("ip1 g1 0 start start", ord1.getRscFirst() + " " + ord1.getRscThen() + " " + ord1.getScore()
+                                             + " " + ord1.getFirstAction() + " " + ord1.getThenAction());
+        final CrmXml.OrderData ord2 = cibQuery.getOrderId().get("ord2");
+        assertEquals("ip1 g1 false", ord2.getRscFirst() + " " + ord2.getRscThen() + " " + ord2.getSymmetrical());
+        assertEquals(2, cibQuery.getOrderRsc().get("ip1").size());
+        assertEquals(2, cibQuery.getOrderRsc().get(null).size());
+
+        assertEquals("[s1[ip1, st1] false null null null, s2[ms1] null null null Master]",
+                     describe(cibQuery.getColocationIdRscSets().get("col2")));
+        assertEquals("[os1[a] null false start null, os2[b] null null null null, os3[c, d] null null null null]",
+                     describe(cibQuery.getOrderIdRscSets().get("ord3")));
+        final List<String> connections = new ArrayList<String>();
+        for (final RscSetConnectionData data : cibQuery.getRscSetConnections()) {
+            connections.add(describe(Arrays.asList(data.getRscSet1(), data.getRscSet2()))
+                            + " " + data.getConstraintId() + " " + data.getConnectionPos() + " " + data.isColocation());
+        }
+        assertEquals(Arrays.asList(
+                "[os2[b] null null null null, os3[c, d] null null null null] ord3 1 false",
+                "[os1[a] null false start null, os2[b] null null null null] ord3 0 false",
+                "[s2[ms1] null null null Master, s1[ip1, st1] false null null null] col2 0 true",
+                "[single[z] null null null null, null] ord4 0 false"), connections);
+
+        final HostLocation locationB = cibQuery.getLocations().get("ip1").get("node-b");
+        assertEquals("-INFINITY eq", locationB.getScore() + " " + locationB.getOperation());
+        assertEquals("100", cibQuery.getLocations().get("ip1").get("node-a").getScore());
+        assertTrue(cibQuery.getLocations().get("g1").isEmpty());
+        final HostLocation pingLocation = cibQuery.getPingLocations().get("g1");
+        assertEquals("-INFINITY lte 0",
+                     pingLocation.getScore() + " " + pingLocation.getOperation() + " " + pingLocation.getValue());
+        assertEquals(Arrays.asList("loc3", "loc4"), cibQuery.getLocationsId().get("g1"));
+        assertEquals("loc2", cibQuery.getResHostToLocId().get("ip1", "node-b"));
+        assertEquals("loc3", cibQuery.getResPingToLocId().get("g1"));
+
+        assertEquals("2", cibQuery.getFailCount("node-a", "ip1"));
+        assertEquals("INFINITY", cibQuery.getFailCount("node-a", "c1r"));
+        assertEquals("100", cibQuery.getPingCount("Node-A"));
+        assertEquals(new TreeSet<String>(Arrays.asList("0", "1")),
+                     new TreeSet<String>(cibQuery.getResourceFailedCloneIds().get("node-a", "c1r")));
+        assertEquals(Arrays.asList("3"),
+                     new ArrayList<String>(cibQuery.getResourceFailedCloneIds().get("node-a", "orphan2")));
+
+        assertEquals("rsc-options", cibQuery.getRscDefaultsId());
+        assertEquals("master", cibQuery.getRscDefaultsParams().get("target-role"));
+        assertEquals("rd1", cibQuery.getRscDefaultsParamsNvpairIds().get("resource-stickiness"));
+        assertEquals("240s", valueOf(cibQuery.getOpDefaultsParams().get("timeout")));
+        assertEquals("true", valueOf(cibQuery.getOpDefaultsParams().get("record-pending")));
+    }
+
+    /** The expected values were recorded with the DOM parser, that was replaced. */
+    @Test
+    public void largeCibShouldBeParsed() {
+        final CibQuery cibQuery = new CibQueryParser(mockCrmXml(), false).parse(LargeCibQuery.create(100, 3));
+
+        assertEquals("node-0", cibQuery.getDC());
+        assertEquals("ignore", cibQuery.getCrmConfig().get("no-quorum-policy"));
+        assertEquals("off", cibQuery.getNodeParameters().get("node-1", "standby"));
+        assertEquals("yes", cibQuery.getNodeOnline().get("node-2"));
+
+        assertEquals(46, cibQuery.getGroupsToResources().size());
+        assertEquals(22, cibQuery.getGroupsToResources().get("none").size());
+        assertEquals(Arrays.asList("r3", "r6", "r12", "r15"),
+                     cibQuery.getGroupsToResources().get("none").subList(0, 4));
+        assertEquals(Arrays.asList("r4", "r5"), cibQuery.getGroupsToResources().get("g4"));
+        assertEquals(Arrays.asList("r97", "r98"), cibQuery.getGroupsToResources().get("g97"));
+        assertEquals(Arrays.asList("r9"), cibQuery.getGroupsToResources().get("cl9"));
+        assertEquals(12, cibQuery.getCloneToResource().size());
+        assertEquals("r9", cibQuery.getCloneToResource().get("cl9"));
+
+        assertEquals("/var/run/r50", cibQuery.getResourceParameters().get("r50").get("state"));
+        assertEquals("started", cibQuery.getResourceParameters().get("r50").get("target-role"));
+        assertEquals("[Dummy, pacemaker, ocf]", cibQuery.getResourceType().get("r50").toString());
+        assertEquals("10s", valueOf(cibQuery.getOperations().get("r50", "monitor", "interval")));
+        assertEquals("90s", valueOf(cibQuery.getOperations().get("r50", "start", "timeout")));
+        assertEquals("r50-start", cibQuery.getResOpIds().get("r50").get("start"));
+
+        assertEquals(99, cibQuery.getOrderId().size());
+        assertEquals(99, cibQuery.getColocationId().size());
+        assertEquals(1, cibQuery.getOrderRsc().get("r49").size());
+        final CrmXml.OrderData ord50 = cibQuery.getOrderId().get("ord50");
+        assertEquals("r49 r50 INFINITY", ord50.getRscFirst() + " " + ord50.getRscThen() + " " + ord50.getScore());
+        final CrmXml.ColocationData col50 = cibQuery.getColocationId().get("col50");
+        assertEquals("r50 r49 INFINITY", col50.getRsc() + " " + col50.getWithRsc() + " " + col50.getScore());
+        assertEquals(99, cibQuery.getLocations().size());
+        assertEquals("100", cibQuery.getLocations().get("r50").get("node-2").getScore());
+        assertEquals("loc50", cibQuery.getResHostToLocId().get("r50", "node-2"));
+
+        assertEquals(100, cibQuery.getInLRM().get("node-1").size());
+        assertTrue(cibQuery.getOrphaned().isEmpty());
+        assertEquals("1", cibQuery.getFailCount("node-1", "r1"));
+        assertNull(cibQuery.getFailCount("node-0", "r1"));
+        assertEquals("100", cibQuery.getPingCount("node-2"));
+    }
+
+    /** Values and resource agents, that can be compared. */
+    private CrmXml mockCrmXml() {
+        final CrmXml crmXml = mock(CrmXml.class);
+        when(crmXml.parseValue(anyString(), any(CharSequence.class))).thenAnswer(new Answer<Value>() {
+            @Override
+            public Value answer(final InvocationOnMock invocation) {
+                final Object value = invocation.getArguments()[1];
+                return value == null ? null : new StringValue(value.toString());
+            }
+        });
+        when(crmXml.getResourceAgent(anyString(), anyString(), anyString())).thenAnswer(new Answer<ResourceAgent>() {
+            @Override
+            public ResourceAgent answer(final InvocationOnMock invocation) {
+                return mock(ResourceAgent.class, Arrays.toString(invocation.getArguments()));
+            }
+        });
+        return crmXml;
+    }
+
+    private String valueOf(final Value value) {
+        return value == null ? null : value.getValueForConfig();
+    }
+
+    /** Returns the resource sets without their locks. */
+    private String describe(final List<CrmXml.RscSet> rscSets) {
+        final List<String> descriptions = new ArrayList<String>();
+        for (final CrmXml.RscSet rscSet : rscSets) {
+            if (rscSet == null) {
+                descriptions.add("null");
+            } else {
+                descriptions.add(rscSet.getId() + rscSet.getRscIds() + " " + rscSet.getSequential()
+                                 + " " + rscSet.getRequireAll() + " " + rscSet.getOrderAction()
+                                 + " " + rscSet.getColocationRole());
+            }
+        }
+        return descriptions.toString();
+    }
+
+    private String readFile(final String resourceName) {
+        try {
+            return Resources.toString(Resources.getResource(resourceName), Charsets.UTF_8);
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.crm.domain;
+
+/**
+ * Creates a synthetic cibadmin output with many resources, constraints and
+ * a long operation history in the status section.
+ */
+final class LargeCibQuery {
+    private static final int OPERATIONS_PER_RESOURCE = 20;
+
+    private LargeCibQuery() {
+    }
+
+    static String create(final int primitives, final int nodes) {
+        final StringBuilder cib = new StringBuilder(primitives * 8000);
+        cib.append("<pcmk><fenced><node>node-0</node></fenced>\n<cib dc-uuid=\"n0\"><configuration>\n");
+        cib.append("<crm_config><cluster_property_set id=\"cib-bootstrap-options\">"
+                   + "<nvpair id=\"o1\" name=\"stonith-enabled\" value=\"false\"/>"
+                   + "<nvpair id=\"o2\" name=\"no-quorum-policy\" value=\"ignore\"/>"
+                   + "</cluster_property_set></crm_config>\n");
+        cib.append("<nodes>");
+        for (int n = 0; n < nodes; n++) {
+            cib.append("<node id=\"n").append(n).append("\" uname=\"node-").append(n).append("\">")
+               .append("<instance_attributes id=\"na").append(n).append("\">")
+               .append("<nvpair id=\"s").append(n).append("\" name=\"standby\" value=\"off\"/>")
+               .append("</instance_attributes></node>");
+        }
+        cib.append("</nodes>\n<resources>\n");
+        for (int i = 0; i < primitives; i++) {
+            /* a group for every two resources, every third resource alone or in a clone */
+            final boolean inClone = i % 9 == 0;
+            final boolean groupStart = i % 3 == 1;
+            final boolean groupEnd = i % 3 == 2 || (groupStart && i == primitives - 1);
+            if (inClone) {
+                cib.append("<clone id=\"cl").append(i).append("\">");
+            } else if (groupStart) {
+                cib.append("<group id=\"g").append(i).append("\">");
+            }
+            appendPrimitive(cib, i);
+            if (inClone) {
+                cib.append("</clone>");
+            } else if (groupEnd) {
+                cib.append("</group>");
+            }
+            cib.append('\n');
+        }
+        cib.append("</resources>\n<constraints>\n");
+        for (int i = 1; i < primitives; i++) {
+            cib.append("<rsc_order id=\"ord").append(i).append("\" first=\"r").append(i - 1)
+               .append("\" then=\"r").append(i).append("\" score=\"INFINITY\"/>")
+               .append("<rsc_colocation id=\"col").append(i).append("\" rsc=\"r").append(i)
+               .append("\" with-rsc=\"r").append(i - 1).append("\" score=\"INFINITY\"/>")
+               .append("<rsc_location id=\"loc").append(i).append("\" rsc=\"r").append(i)
+               .append("\" node=\"node-").append(i % nodes).append("\" score=\"100\"/>\n");
+        }
+        cib.append("</constraints>\n</configuration><status>\n");
+        for (int n = 0; n < nodes; n++) {
+            cib.append("<node_state id=\"n").append(n).append("\" uname=\"node-").append(n)
+               .append("\" join=\"member\" in_ccm=\"true\" crmd=\"online\"><lrm id=\"n").append(n)
+               .append("\"><lrm_resources>\n");
+            for (int i = 0; i < primitives; i++) {
+                cib.append("<lrm_resource id=\"r").append(i).append("\" type=\"Dummy\" class=\"ocf\""
+                                                                    + " provider=\"pacemaker\">");
+                for (int op = 0; op < OPERATIONS_PER_RESOURCE; op++) {
+                    cib.append("<lrm_rsc_op id=\"r").append(i).append("_monitor_").append(op)
+                       .append("\" operation=\"monitor\" call-id=\"").append(op)
+                       .append("\" rc-code=\"0\" interval=\"10000\" op-digest=\"8eaf7a3f0bd2d0b7c1f0a9d7c0f3e7a1\""
+                               + " transition-key=\"3:15:0:f1a6e3d6-1e1e-4b7d-9a67-1c9d3d5a6e5b\"/>");
+                }
+                cib.append("</lrm_resource>\n");
+            }
+            cib.append("</lrm_resources></lrm><transient_attributes id=\"n").append(n)
+               .append("\"><instance_attributes id=\"status-n").append(n).append("\">")
+               .append("<nvpair id=\"t").append(n).append("\" name=\"pingd\" value=\"100\"/>")
+               .append("<nvpair id=\"f").append(n).append("\" name=\"fail-count-r").append(n)
+               .append("\" value=\"1\"/></instance_attributes></transient_attributes></node_state>\n");
+        }
+        cib.append("</status></cib></pcmk>\n");
+        return cib.toString();
+    }
+
+    private static void appendPrimitive(final StringBuilder cib, final int i) {
+        cib.append("<primitive class=\"ocf\" id=\"r").append(i).append("\" provider=\"pacemaker\" type=\"Dummy\">")
+           .append("<meta_attributes id=\"r").append(i).append("-meta\">")
+           .append("<nvpair id=\"r").append(i).append("-m1\" name=\"target-role\" value=\"Started\"/>")
+           .append("</meta_attributes>")
+           .append("<instance_attributes id=\"r").append(i).append("-ia\">")
+           .append("<nvpair id=\"r").append(i).append("-i1\" name=\"state\" value=\"/var/run/r").append(i)
+           .append("\"/></instance_attributes>")
+           .append("<operations id=\"r").append(i).append("-ops\">")
+           .append("<op id=\"r").append(i).append("-mon\" interval=\"10s\" name=\"monitor\" timeout=\"20s\"/>")
+           .append("<op id=\"r").append(i).append("-start\" interval=\"0\" name=\"start\" timeout=\"90s\"/>")
+           .append("</operations></primitive>");
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+public final class CommandTemplateTest {
+    private final Map<String, String> replacements = ImmutableMap.of("@VGNAME@", "vg$0",
+                                                                     "@LVNAME@", "lv\\1",
+                                                                     "@SIZE@", "");
+
+    @Test
+    public void tagsShouldBeReplacedAsTheyAre() {
+        final CommandTemplate command = CommandTemplate.compile("lvcreate -n @LVNAME@ -L @SIZE@ @VGNAME@");
+        assertEquals("lvcreate -n lv\\1 -L  vg$0", command.render(replacements));
+    }
+
+    @Test
+    public void unknownTagsShouldStay() {
+        final String text = "echo user@host @@VGNAME@ @DRYRUN@ @";
+        assertEquals("echo user@host @vg$0 @DRYRUN@ @", CommandTemplate.compile(text).render(replacements));
+        assertEquals("echo user@host @vg$0 @DRYRUN@ @", CommandTemplate.render(text, replacements));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package lcmc.host.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import lcmc.common.domain.util.Tools;
+import org.junit.Test;
+
+public final class CommandVarsTest {
+    private final CommandVars commandVars = new CommandVars("user", "secret", "3.10", "rhel7", "x86_64", false, true);
+
+    @Test
+    public void varsShouldBeReplaced() {
+        final CommandTemplate command = CommandTemplate.compile("get @USER@:@PASSWORD@ @DISTRIBUTION@/@ARCH@"
+                                                                + " @SUPPORTDIR@ @KERNELVERSIONDIR@ @DRYRUN@");
+        assertEquals("get user:secret rhel7/x86_64 support 3.10 @DRYRUN@",
+                     command.render(commandVars.getVars(false)));
+        assertEquals("get user:***** rhel7/x86_64 support 3.10 @DRYRUN@",
+                     command.render(commandVars.getVars(true)));
+    }
+
+    @Test
+    public void helperShouldLogCommands() {
+        final String helperProg = "/usr/local/bin/lcmc-gui-helper-" + Tools.getRelease();
+        assertEquals(helperProg + " --cmd-log", commandVars.getVars(false).get("@GUI-HELPER@"));
+        assertEquals(helperProg, commandVars.getVars(false).get("@GUI-HELPER-PROG@"));
+    }
+
+    @Test
+    public void unsetVarsShouldStayInTheCommand() {
+        final CommandVars noUser = new CommandVars(null, null, "3.10", "rhel7", "x86_64", true, false);
+        assertNull(noUser.getVars(false).get("@USER@"));
+        assertEquals("@USER@ support/staging", CommandTemplate.render("@USER@ @SUPPORTDIR@", noUser.getVars(false)));
+    }
+
+    @Test
+    public void varsShouldBeForTheSameSettingsOnly() {
+        assertTrue(commandVars.isFor("user", "secret", "3.10", "rhel7", "x86_64", false, true));
+        assertFalse(commandVars.isFor("user", "secret", "3.11", "rhel7", "x86_64", false, true));
+        assertFalse(commandVars.isFor("user", "secret", "3.10", "rhel7", "i686", false, true));
+        assertFalse(commandVars.isFor("user", "other", "3.10", "rhel7", "x86_64", false, true));
+        assertFalse(commandVars.isFor("user", "secret", "3.10", "rhel7", "x86_64", false, false));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public final class HelperOutputDecoderTest {
+    private final List<String> hwFrames = new ArrayList<String>();
+    private final List<String> drbdFrames = new ArrayList<String>();
+    private final HostParser hostParser = mock(HostParser.class);
+    private HelperOutputDecoder decoder;
+
+    @Before
+    public void setUp() {
+        when(hostParser.isNewestInfo(anyString(), anyDouble())).thenReturn(true);
+        decoder = new HelperOutputDecoder(hostParser)
+                .on("hw", new HelperOutputDecoder.FrameConsumer() {
+                    @Override
+                    public void frame(final String payload) {
+                        hwFrames.add(payload);
+                    }
+                })
+                .on("drbd", new HelperOutputDecoder.FrameConsumer() {
+                    @Override
+                    public void frame(final String payload) {
+                        drbdFrames.add(payload);
+                    }
+                });
+    }
+
+    @Test
+    public void frameSplitInChunksShouldBeDecoded() {
+        decoder.decode("noise\r\n--frame-- hw 1 8\r\nab");
+        decoder.decode("c\r\ndef\r");
+        assertEquals(0, hwFrames.size());
+        decoder.decode("\n\r\n--frame-- drbd 2 0\r\n\r\n");
+        assertEquals(1, hwFrames.size());
+        assertEquals("abc\ndef\n", hwFrames.get(0));
+        assertEquals(1, drbdFrames.size());
+        assertEquals("", drbdFrames.get(0));
+    }
+
+    @Test
+    public void lengthShouldBeCountedInBytes() {
+        decoder.decode("--frame-- hw 1 6\né€\n\n");
+        assertEquals(1, hwFrames.size());
+        assertEquals("é€\n", hwFrames.get(0));
+    }
+
+    @Test
+    public void markerInPayloadShouldBeIgnored() {
+        decoder.decode("--frame-- hw 1 16\n--hw-info-end--\n\n");
+        assertEquals(1, hwFrames.size());
+        assertEquals("--hw-info-end--\n", hwFrames.get(0));
+    }
+
+    @Test
+    public void oldFramesShouldBeDecoded() {
+        decoder.decode("--hw-info-start--1\r\na\r\nb\r\n--hw-info-end--\r\n--drbd-info-start--2\r\n--drbd-info-e");
+        decoder.decode("nd--\r\n");
+        assertEquals(1, hwFrames.size());
+        assertEquals("a\nb\n", hwFrames.get(0));
+        assertEquals(1, drbdFrames.size());
+        assertEquals("", drbdFrames.get(0));
+    }
+
+    @Test
+    public void olderFramesShouldBeDropped() {
+        when(hostParser.isNewestInfo("hw", 1)).thenReturn(false);
+        decoder.decode("--frame-- hw 1 2\na\n\n--frame-- hw 2 2\nb\n\n");
+        assertEquals(1, hwFrames.size());
+        assertEquals("b\n", hwFrames.get(0));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import lcmc.Exceptions;
+import org.junit.Test;
+
+public final class HostCapabilitiesTest {
+    @Test
+    public void heartbeatShouldBeBeforePacemaker() {
+        final HostCapabilities capabilities = new HostCapabilities(null, null, "2.1.3", null);
+        assertTrue(capabilities.isBeforePacemaker());
+        assertTrue(capabilities.hasCrmClusterOptions());
+        assertFalse(capabilities.hasStickinessMetaAttributes());
+        assertTrue(capabilities.needsDopdWorkaround());
+        assertFalse(capabilities.hasOrderRequireAll());
+    }
+
+    @Test
+    public void pacemakerShouldHaveNewFeatures() {
+        final HostCapabilities capabilities = new HostCapabilities("8.4.4", "1.1.10", null, "2.3.0");
+        assertFalse(capabilities.isBeforePacemaker());
+        assertTrue(capabilities.hasStickinessMetaAttributes());
+        assertTrue(capabilities.hasOrderRequireAll());
+        assertTrue(capabilities.isCorosync2());
+        assertTrue(capabilities.hasDrbdVolumes());
+    }
+
+    @Test
+    public void drbdVersionsShouldBeCompared() throws Exceptions.IllegalVersionException {
+        final HostCapabilities capabilities = new HostCapabilities("8.3.11", null, null, null);
+        assertFalse(capabilities.hasDrbdVolumes());
+        assertEquals(1, capabilities.compareDrbdUtilVersion("8.3.7"));
+        assertEquals(1, capabilities.compareDrbdUtilVersion("8.3.7"));
+        assertEquals(-1, capabilities.compareDrbdUtilVersion("8.4"));
+    }
+
+    @Test(expected = Exceptions.IllegalVersionException.class)
+    public void missingDrbdShouldNotBeCompared() throws Exceptions.IllegalVersionException {
+        HostCapabilities.NO_VERSIONS.compareDrbdUtilVersion("8.3");
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public final class HostInfoMailboxTest {
+    private final HostInfoMailbox mailbox = new HostInfoMailbox(Arrays.asList("net-info", "disk-info"));
+
+    @Test
+    public void parserShouldBeScheduledOnce() {
+        assertTrue(mailbox.putVmInfo("vm1"));
+        assertFalse(mailbox.putDrbdInfo("drbd1"));
+        assertFalse(mailbox.putVmInfo("vm2"));
+        final HostInfoMailbox.Info info = mailbox.take();
+        assertEquals("vm2", info.getVmInfo());
+        assertEquals("drbd1", info.getDrbdInfo());
+        assertNull(info.getHwInfo());
+        assertEquals(1, mailbox.getDroppedCount());
+        assertNull(mailbox.take());
+        assertTrue(mailbox.putVmInfo("vm3"));
+    }
+
+    @Test
+    public void newerHwSectionsShouldReplaceOlderOnes() {
+        mailbox.putHwInfo("net-info\neth0 old\ndisk-info\nsda old\n");
+        mailbox.putHwInfo("net-info\neth0 new\n");
+        final HostInfoMailbox.Info info = mailbox.take();
+        assertEquals("net-info\neth0 new\ndisk-info\nsda old\n", info.getHwInfo());
+        assertNull(info.getVmInfo());
+        assertEquals(1, mailbox.getDroppedCount());
+    }
+
+    @Test
+    public void infoShouldBeParsedAfterTheParserFailed() {
+        final List<String> parsed = new ArrayList<String>();
+        final HostInfoMailbox.InfoParser parser = new HostInfoMailbox.InfoParser() {
+            @Override
+            public void parse(final HostInfoMailbox.Info info) {
+                if ("vm1".equals(info.getVmInfo())) {
+                    mailbox.putVmInfo("vm2");
+                    throw new IllegalStateException("vm1");
+                }
+                parsed.add(info.getVmInfo());
+            }
+        };
+        assertTrue(mailbox.putVmInfo("vm1"));
+        mailbox.parseAll(parser);
+        assertEquals(Arrays.asList("vm2"), parsed);
+
+        assertTrue(mailbox.putVmInfo("vm3"));
+        mailbox.parseAll(parser);
+        assertEquals(Arrays.asList("vm2", "vm3"), parsed);
+    }
+}
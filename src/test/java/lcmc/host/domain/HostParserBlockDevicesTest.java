@@ -0,0 +1,117 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import lcmc.drbd.domain.BlockDevice;
+import lcmc.event.HwBlockDevicesChangedEvent;
+import org.junit.Test;
+
+public final class HostParserBlockDevicesTest {
+    private static final String SDA = "/dev/sda size:1000";
+    private static final String SDA1 = "/dev/sda1 size:500 uuid:u1 fs:ext4";
+    private static final String SDA2 = "/dev/sda2 size:500 pv:vg0";
+    private static final String ROOT = "/dev/vg0/root size:300 vg:vg0 lv:root";
+    private static final String DRBD0 = "/dev/drbd0 size:300";
+
+    private final HostParser hostParser = new HostParser(mock(Host.class), null, null, null, null, null, null, null);
+
+    private static List<String> names(final Collection<BlockDevice> blockDevices) {
+        final List<String> names = new ArrayList<String>();
+        for (final BlockDevice blockDevice : blockDevices) {
+            names.add(blockDevice.getName());
+        }
+        return names;
+    }
+
+    private static BlockDevice find(final Collection<BlockDevice> blockDevices, final String name) {
+        for (final BlockDevice blockDevice : blockDevices) {
+            if (name.equals(blockDevice.getName())) {
+                return blockDevice;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void disksWithPartitionsShouldBeFilteredOut() {
+        final HwBlockDevicesChangedEvent event =
+                hostParser.updateBlockDevices(Arrays.asList(SDA, SDA1, SDA2, ROOT, DRBD0));
+        assertEquals(Arrays.asList("/dev/sda1", "/dev/sda2", "/dev/vg0/root"), names(event.getBlockDevices()));
+        assertEquals(names(event.getBlockDevices()), names(event.getAddedBlockDevices()));
+        assertTrue(event.getRemovedBlockDevices().isEmpty());
+        assertTrue(event.getChangedBlockDevices().isEmpty());
+        assertSame(hostParser.getDrbdBlockDevice("/dev/drbd0"), hostParser.getDrbdBlockDevices().iterator().next());
+        assertEquals("ext4", find(event.getBlockDevices(), "/dev/sda1").getFsType());
+        assertEquals(new HashSet<String>(Arrays.asList("root")), hostParser.getLogicalVolumesFromVolumeGroup("vg0"));
+    }
+
+    @Test
+    public void unchangedLinesShouldGiveAnEmptyEvent() {
+        final HwBlockDevicesChangedEvent first = hostParser.updateBlockDevices(Arrays.asList(SDA, SDA1, SDA2, ROOT));
+        final HwBlockDevicesChangedEvent second = hostParser.updateBlockDevices(Arrays.asList(SDA, SDA1, SDA2, ROOT));
+        assertTrue(second.isEmpty());
+        assertSame(find(first.getBlockDevices(), "/dev/sda1"), find(second.getBlockDevices(), "/dev/sda1"));
+    }
+
+    @Test
+    public void changedLineShouldUpdateTheDeviceInPlace() {
+        final HwBlockDevicesChangedEvent first = hostParser.updateBlockDevices(Arrays.asList(SDA, SDA1, SDA2, ROOT));
+        final BlockDevice sda1 = find(first.getBlockDevices(), "/dev/sda1");
+        final HwBlockDevicesChangedEvent second = hostParser.updateBlockDevices(
+                Arrays.asList(SDA, "/dev/sda1 size:500 uuid:u1 fs:xfs mp:/mnt", SDA2, ROOT));
+        assertEquals(Arrays.asList("/dev/sda1"), names(second.getChangedBlockDevices()));
+        assertSame(sda1, second.getChangedBlockDevices().iterator().next());
+        assertEquals("xfs", sda1.getFsType());
+        assertEquals("/mnt", sda1.getMountedOn());
+        assertTrue(second.getAddedBlockDevices().isEmpty());
+        assertTrue(second.getRemovedBlockDevices().isEmpty());
+    }
+
+    @Test
+    public void removedDeviceShouldLeaveTheLvmInventory() {
+        final HwBlockDevicesChangedEvent first = hostParser.updateBlockDevices(Arrays.asList(SDA, SDA1, SDA2, ROOT));
+        final HwBlockDevicesChangedEvent second = hostParser.updateBlockDevices(Arrays.asList(SDA, SDA1, SDA2));
+        assertEquals(Arrays.asList("/dev/vg0/root"), names(second.getRemovedBlockDevices()));
+        assertSame(find(first.getBlockDevices(), "/dev/vg0/root"), second.getRemovedBlockDevices().iterator().next());
+        assertTrue(second.getAddedBlockDevices().isEmpty());
+        assertNull(hostParser.getLogicalVolumesFromVolumeGroup("vg0"));
+    }
+
+    @Test
+    public void diskShouldComeBackWithoutItsPartitions() {
+        hostParser.updateBlockDevices(Arrays.asList(SDA, SDA1, SDA2));
+        final HwBlockDevicesChangedEvent second = hostParser.updateBlockDevices(Arrays.asList(SDA));
+        assertEquals(Arrays.asList("/dev/sda"), names(second.getAddedBlockDevices()));
+        assertEquals(Arrays.asList("/dev/sda1", "/dev/sda2"), names(second.getRemovedBlockDevices()));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of LCMC written by Rasto Levrinc.
+ *
+ * Copyright (C) 2014, Rastislav Levrinc.
+ *
+ * The LCMC is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your option)
+ * any later version.
+ *
+ * The LCMC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with LCMC; see the file COPYING.  If not, write to
+ * the Free Software Foundation, 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package lcmc.host.domain;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import lcmc.drbd.domain.BlockDevice;
+import org.junit.Test;
+
+public final class LvmInventoryTest {
+    private final Host host = mock(Host.class);
+    private final LvmInventory lvmInventory = new LvmInventory();
+
+    private BlockDevice logicalVolume(final String name, final String vg, final String lv) {
+        final BlockDevice blockDevice = new BlockDevice(host, name);
+        blockDevice.setVolumeGroup(vg);
+        blockDevice.setLogicalVolume(lv);
+        lvmInventory.update(name, blockDevice);
+        return blockDevice;
+    }
+
+    @Test
+    public void logicalVolumeShouldStayWhileItHasBlockDevices() {
+        logicalVolume("/dev/vg0/root", "vg0", "root");
+        logicalVolume("/dev/mapper/vg0-root", "vg0", "root");
+        final BlockDevice swap = logicalVolume("/dev/vg0/swap", "vg0", "swap");
+        lvmInventory.remove("/dev/mapper/vg0-root");
+        assertEquals(new HashSet<String>(Arrays.asList("root", "swap")), lvmInventory.getLogicalVolumes("vg0"));
+
+        swap.setLogicalVolume("swap2");
+        lvmInventory.update("/dev/vg0/swap", swap);
+        assertEquals(new HashSet<String>(Arrays.asList("root", "swap2")), lvmInventory.getLogicalVolumes("vg0"));
+
+        lvmInventory.remove("/dev/vg0/root");
+        lvmInventory.remove("/dev/vg0/swap");
+        assertNull(lvmInventory.getLogicalVolumes("vg0"));
+    }
+
+    @Test
+    public void physicalVolumeShouldBeUpdated() {
+        final BlockDevice sda2 = new BlockDevice(host, "/dev/sda2");
+        sda2.setVgOnPhysicalVolume("vg0");
+        lvmInventory.update("/dev/sda2", sda2);
+        assertEquals(Arrays.asList(sda2), lvmInventory.getPhysicalVolumes("vg0"));
+        assertTrue(lvmInventory.getPhysicalVolumes("vg1").isEmpty());
+
+        sda2.setVgOnPhysicalVolume(null);
+        lvmInventory.update("/dev/sda2", sda2);
+        assertTrue(lvmInventory.getPhysicalVolumes().isEmpty());
+    }
+}